@@ -0,0 +1,29 @@
+package guitarvision.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the detection benchmarks with the GC profiler, which reports the Java allocation rate of each benchmark
+ * alongside its throughput. Native memory allocated for Mats is not included, the transcription profile counts that.
+ * Must be run from the project directory, so that the sample images and MIDI files are found.
+ * Any arguments are passed to JMH, for example a regular expression to select benchmarks, or "-rf json" to save the results.
+ */
+public class BenchmarkRunner {
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException
+	{
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				//The forked benchmark JVMs need the OpenCV native library
+				.jvmArgsAppend("-Djava.library.path=" + System.getProperty("java.library.path"))
+				.build();
+
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,204 @@
+package guitarvision.benchmark;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import guitarvision.detection.DetectedLine;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of the line geometry used for every string and fret of every frame.
+ * The lines are six strings and twenty frets at angles like those of a guitar neck in a frame at the processing resolution.
+ * The earlier implementations, which warped the end points of a line with Mats and intersected lines through their
+ * rounded end points, are kept here for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DetectedLineBenchmark {
+	static
+	{
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+	}
+
+	private ArrayList<DetectedLine> strings = new ArrayList<DetectedLine>();
+	private ArrayList<DetectedLine> frets = new ArrayList<DetectedLine>();
+
+	//Perspective transform like the one from a rectified neck back to the frame
+	private Mat warp;
+	private double[] warpValues = new double[9];
+
+	@Setup(Level.Trial)
+	public void createLines()
+	{
+		Random random = new Random(50);
+
+		for(int string = 0; string < 6; string++)
+		{
+			strings.add(new DetectedLine(240.0 + (string * 15) + random.nextDouble(), 1.35 + (random.nextDouble() * 0.02)));
+		}
+
+		for(int fret = 0; fret < 20; fret++)
+		{
+			frets.add(new DetectedLine(100.0 + (fret * 40) + random.nextDouble(), (random.nextDouble() - 0.5) * 0.1));
+		}
+
+		MatOfPoint2f neckCorners = new MatOfPoint2f(new Point(0, 0), new Point(960, 0), new Point(960, 135), new Point(0, 135));
+		MatOfPoint2f frameCorners = new MatOfPoint2f(new Point(0, 220), new Point(960, 330), new Point(960, 420), new Point(0, 290));
+
+		warp = Imgproc.getPerspectiveTransform(neckCorners, frameCorners);
+		warp.get(0, 0, warpValues);
+	}
+
+	@TearDown(Level.Iteration)
+	public void freeNativeMemory()
+	{
+		System.gc();
+		System.runFinalization();
+	}
+
+	/**
+	 * Intersect every string with every fret, as note detection does
+	 */
+	@Benchmark
+	public void getCollisionPoint(Blackhole blackhole)
+	{
+		for(DetectedLine string : strings)
+		{
+			for(DetectedLine fret : frets)
+			{
+				blackhole.consume(string.getCollisionPoint(fret));
+			}
+		}
+	}
+
+	/**
+	 * Warp every fret from the rectified neck to the frame, as fret detection does
+	 */
+	@Benchmark
+	public void applyWarp(Blackhole blackhole)
+	{
+		for(DetectedLine fret : frets)
+		{
+			DetectedLine warpedFret = new DetectedLine(fret.getRho(), fret.getTheta());
+			warpedFret.applyWarp(warp);
+			blackhole.consume(warpedFret);
+		}
+	}
+
+	/**
+	 * Warp every fret with the transform read from its Mat once, as FretDetector does for each frame
+	 */
+	@Benchmark
+	public void applyWarpToValues(Blackhole blackhole)
+	{
+		warp.get(0, 0, warpValues);
+
+		for(DetectedLine fret : frets)
+		{
+			DetectedLine warpedFret = new DetectedLine(fret.getRho(), fret.getTheta());
+			warpedFret.applyWarp(warpValues);
+			blackhole.consume(warpedFret);
+		}
+	}
+
+	/**
+	 * Warp every fret as the earlier implementation did, multiplying each end point by the transform with Core.gemm
+	 */
+	@Benchmark
+	public void applyWarpWithMats(Blackhole blackhole)
+	{
+		for(DetectedLine fret : frets)
+		{
+			DetectedLine warpedFret = new DetectedLine(fret.getRho(), fret.getTheta());
+			Point p1 = warpedFret.getPoint1();
+			Point p2 = warpedFret.getPoint2();
+
+			Point warpedPoint1 = warpPointWithMats(p1);
+			Point warpedPoint2 = warpPointWithMats(p2);
+
+			double newGradient = (warpedPoint2.y - warpedPoint1.y) / (warpedPoint2.x - warpedPoint1.x);
+
+			warpedFret.setTheta(Math.atan(-1 / newGradient));
+			warpedFret.setRho(Math.abs(warpedPoint1.y - (newGradient * warpedPoint1.x)) / Math.sqrt((newGradient * newGradient) + 1));
+
+			blackhole.consume(warpedFret);
+		}
+	}
+
+	private Point warpPointWithMats(Point point)
+	{
+		Mat pointVector = new Mat(3, 1, CvType.CV_64F);
+		pointVector.put(0, 0, point.x, point.y, 1);
+
+		Mat noOffset = new Mat();
+		Mat pointTransformed = new Mat();
+
+		Core.gemm(warp, pointVector, 1, noOffset, 0, pointTransformed);
+
+		double normaliseFactor = pointTransformed.get(2, 0)[0];
+
+		Point warpedPoint = new Point(pointTransformed.get(0, 0)[0] / normaliseFactor, pointTransformed.get(1, 0)[0] / normaliseFactor);
+
+		pointVector.release();
+		noOffset.release();
+		pointTransformed.release();
+
+		return warpedPoint;
+	}
+
+	/**
+	 * Intersect every string with every fret as the earlier implementation did, from the gradients and intercepts
+	 * of the rounded end points. New lines are used, so that the end points are calculated as they were for every frame.
+	 */
+	@Benchmark
+	public void getCollisionPointFromEndPoints(Blackhole blackhole)
+	{
+		for(DetectedLine detectedString : strings)
+		{
+			DetectedLine string = new DetectedLine(detectedString.getRho(), detectedString.getTheta());
+
+			for(DetectedLine detectedFret : frets)
+			{
+				DetectedLine fret = new DetectedLine(detectedFret.getRho(), detectedFret.getTheta());
+
+				Point p1 = string.getPoint1();
+				Point p2 = string.getPoint2();
+
+				Point o1 = fret.getPoint1();
+				Point o2 = fret.getPoint2();
+
+				double m1 = (p1.y - p2.y) / (p1.x - p2.x);
+				double m2 = (o1.y - o2.y) / (o1.x - o2.x);
+
+				double c1 = p1.y - (m1 * p1.x);
+				double c2 = o1.y - (m2 * o1.x);
+
+				blackhole.consume(new Point((c2 - c1) / (m1 - m2), ((c1 * m2) - (c2 * m1)) / (m2 - m1)));
+			}
+		}
+	}
+}
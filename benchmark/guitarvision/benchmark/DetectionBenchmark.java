@@ -0,0 +1,109 @@
+package guitarvision.benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import guitarvision.detection.DetectedLine;
+import guitarvision.detection.FretDetector;
+import guitarvision.detection.GuitarString;
+import guitarvision.detection.ImageProcessingOptions;
+import guitarvision.detection.NoteDetector;
+import guitarvision.detection.PluckDetector;
+import guitarvision.detection.SkinDetector;
+import guitarvision.detection.StringDetector;
+import guitarvision.sheetmusic.MusicNote;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of each detection stage on the sample images.
+ * Each benchmark only runs its own stage, taking the results of the earlier stages from the sample image state.
+ * Previous strings and frets are not passed, so every invocation detects from scratch as for the first frame of a video.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DetectionBenchmark {
+	static
+	{
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+	}
+
+	private StringDetector stringDetector = new StringDetector();
+	private FretDetector fretDetector = new FretDetector();
+	private PluckDetector pluckDetector = new PluckDetector();
+	private SkinDetector skinDetector = new SkinDetector();
+	private NoteDetector noteDetector = new NoteDetector();
+
+	@Benchmark
+	public Mat edgeDetectorGetEdges(SampleImageState sample)
+	{
+		return sample.stringEdgeDetector.getEdges(sample.image);
+	}
+
+	@Benchmark
+	public Mat edgeDetectorHoughTransform(SampleImageState sample)
+	{
+		return sample.stringEdgeDetector.houghTransform(sample.stringEdges);
+	}
+
+	@Benchmark
+	public ArrayList<GuitarString> stringDetectorGetGuitarStrings(SampleImageState sample)
+	{
+		return stringDetector.getGuitarStrings(sample.image, sample.imageToAnnotate, sample.stringEdgeDetector, null, ImageProcessingOptions.NOPROCESSING);
+	}
+
+	/**
+	 * Includes rectifying the neck, which FrameProcessor shares with the string thickness measurement
+	 */
+	@Benchmark
+	public ArrayList<DetectedLine> fretDetectorGetGuitarFrets(SampleImageState sample)
+	{
+		return fretDetector.getGuitarFrets(sample.image, sample.imageToAnnotate, sample.guitarStrings, sample.fretEdgeDetector, null, ImageProcessingOptions.NOPROCESSING);
+	}
+
+	/**
+	 * Includes rectifying the neck, which FrameProcessor shares with fret detection
+	 */
+	@Benchmark
+	public ArrayList<GuitarString> pluckDetectorGetStringThicknesses(SampleImageState sample)
+	{
+		pluckDetector.getStringThicknesses(sample.guitarStrings, sample.guitarFrets, sample.image);
+		return sample.guitarStrings;
+	}
+
+	@Benchmark
+	public Mat skinDetectorGetSkin(SampleImageState sample)
+	{
+		return skinDetector.getSkin(sample.image);
+	}
+
+	/**
+	 * Finds the note held on every string, as the annotated video does for each frame
+	 */
+	@Benchmark
+	public ArrayList<MusicNote> noteDetectorGetNote(SampleImageState sample)
+	{
+		ArrayList<MusicNote> notes = new ArrayList<MusicNote>();
+
+		for(int string = 0; string < sample.guitarStrings.size(); string++)
+		{
+			notes.add(noteDetector.getNote(sample.imageToAnnotate, 0, sample.skin, string, sample.guitarStrings, sample.guitarFrets));
+		}
+
+		return notes;
+	}
+}
@@ -0,0 +1,84 @@
+package guitarvision.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Track;
+
+import guitarvision.sheetmusic.ObjectAlignment;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of aligning the note pitches of a sample MIDI file against the polyphonic sample,
+ * with the scores SheetComparator uses for measuring transcription accuracy
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ObjectAlignmentBenchmark {
+	public static final String SAMPLE_MIDI_DIRECTORY = "resources/midi/";
+
+	@Param({"piece_1", "piece_2", "piece_3", "piece_4"})
+	public String pieceName;
+
+	private ObjectAlignment<Byte> alignment;
+
+	@Setup(Level.Trial)
+	public void loadPitches() throws Exception
+	{
+		ArrayList<Byte> piecePitches = getPitches(new File(SAMPLE_MIDI_DIRECTORY + pieceName + ".mid"));
+		ArrayList<Byte> polyphonicPitches = getPitches(new File(SAMPLE_MIDI_DIRECTORY + "polyphonic.mid"));
+
+		alignment = new ObjectAlignment<Byte>(piecePitches, polyphonicPitches);
+
+		alignment.setMatchScore(100);
+		alignment.setMismatchScore(-25);
+		alignment.setInsertDeleteScore(-1);
+		alignment.setMatchTolerance((byte) 0);
+	}
+
+	//Pitches of the note starting events of the first track, as read by SheetComparator
+	private ArrayList<Byte> getPitches(File midiFile) throws Exception
+	{
+		Track track = MidiSystem.getSequence(midiFile).getTracks()[0];
+
+		ArrayList<Byte> pitches = new ArrayList<Byte>();
+
+		for(int x = 0; x < track.size(); x++)
+		{
+			MidiEvent event = track.get(x);
+			byte[] message = event.getMessage().getMessage();
+
+			if (event.getMessage().getStatus() == 0x90 && message.length >= 2)
+			{
+				pitches.add(message[1]);
+			}
+		}
+
+		return pitches;
+	}
+
+	@Benchmark
+	public int computeLongestMatchScore()
+	{
+		return alignment.computeLongestMatchScore();
+	}
+}
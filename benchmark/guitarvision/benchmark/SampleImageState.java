@@ -0,0 +1,102 @@
+package guitarvision.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import guitarvision.Engine;
+import guitarvision.detection.DetectedLine;
+import guitarvision.detection.EdgeDetector;
+import guitarvision.detection.FretDetector;
+import guitarvision.detection.GuitarString;
+import guitarvision.detection.ImageProcessingOptions;
+import guitarvision.detection.SkinDetector;
+import guitarvision.detection.SkinMask;
+import guitarvision.detection.StringDetector;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * One of the sample images in resources/images, resized to the processing resolution, with the results of
+ * each detection stage that the later stages take as input.
+ * The detectors are set up as FrameProcessor sets them up for a scene with normal lighting.
+ */
+@State(Scope.Benchmark)
+public class SampleImageState {
+	static
+	{
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+	}
+
+	public static final String SAMPLE_IMAGE_DIRECTORY = "resources/images/";
+
+	@Param({"guitar2", "guitar3", "guitar4", "guitar5", "guitar6"})
+	public String imageName;
+
+	public Mat image;
+	//Image the detectors draw on, which is never read
+	public Mat imageToAnnotate;
+
+	public EdgeDetector stringEdgeDetector;
+	public EdgeDetector fretEdgeDetector;
+
+	public Mat stringEdges;
+
+	public SkinMask skin;
+	public ArrayList<GuitarString> guitarStrings;
+	public ArrayList<DetectedLine> guitarFrets;
+
+	@Setup(Level.Trial)
+	public void loadImage()
+	{
+		image = Imgcodecs.imread(SAMPLE_IMAGE_DIRECTORY + imageName + ".png");
+
+		if (image.empty())
+		{
+			throw new IllegalStateException("Could not read sample image " + imageName + ", benchmarks must be run from the project directory");
+		}
+
+		Imgproc.resize(image, image, Engine.getInstance().processingResolution);
+
+		imageToAnnotate = image.clone();
+
+		stringEdgeDetector = new EdgeDetector();
+		stringEdgeDetector.setCannyUpperThreshold(70);
+		stringEdgeDetector.setHoughThreshold(300);
+
+		fretEdgeDetector = new EdgeDetector();
+		fretEdgeDetector.setCannyLowerThreshold(0);
+		fretEdgeDetector.setCannyUpperThreshold(250);
+		fretEdgeDetector.setHoughThreshold(70);
+
+		//Copied, as the detector overwrites its edge buffer when it is used again
+		stringEdges = stringEdgeDetector.getEdges(image).clone();
+
+		skin = new SkinDetector().getSkinMask(image);
+
+		guitarStrings = new StringDetector().getGuitarStrings(image, imageToAnnotate, stringEdgeDetector, null, ImageProcessingOptions.NOPROCESSING);
+
+		guitarFrets = new FretDetector().getGuitarFrets(image, imageToAnnotate, guitarStrings, fretEdgeDetector, null, ImageProcessingOptions.NOPROCESSING);
+
+		Collections.reverse(guitarFrets);
+	}
+
+	/**
+	 * The detectors allocate native Mats which are only freed when their Java objects are collected,
+	 * so collect them between iterations to stop native memory building up over the run
+	 */
+	@TearDown(Level.Iteration)
+	public void freeNativeMemory()
+	{
+		System.gc();
+		System.runFinalization();
+	}
+}
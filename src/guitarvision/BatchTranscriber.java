@@ -0,0 +1,197 @@
+package guitarvision;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Transcribes many videos using a fixed size pool of worker threads.
+ * Every job is run by its own Engine, so jobs do not share any detection or tracking state.
+ */
+public class BatchTranscriber {
+	private int numberOfWorkers = Runtime.getRuntime().availableProcessors();
+
+	private int checkpointInterval = 0;
+
+	private BatchTranscriptionListener listener = null;
+
+	public void setNumberOfWorkers(int workers)
+	{
+		numberOfWorkers = workers;
+	}
+
+	public int getNumberOfWorkers()
+	{
+		return numberOfWorkers;
+	}
+
+	/**
+	 * Write checkpoints of every job, and resume jobs from their checkpoints, so that running a batch again after it
+	 * was interrupted continues each job from where it stopped
+	 * @param number of processed frames between checkpoints, or 0 to not write checkpoints
+	 */
+	public void setCheckpointInterval(int frames)
+	{
+		checkpointInterval = frames;
+	}
+
+	public int getCheckpointInterval()
+	{
+		return checkpointInterval;
+	}
+
+	public void setListener(BatchTranscriptionListener listener)
+	{
+		this.listener = listener;
+	}
+
+	/**
+	 * Get a job for each video in a directory, using the default transcription options
+	 * @param directory containing .mov, .mp4 or .m4v videos
+	 * @param path of directory to write the output files to
+	 * @return list of jobs, ordered by file name
+	 */
+	public static List<TranscriptionJob> getJobsForDirectory(File directory, String outputDirectoryName)
+	{
+		String[] videoNames = directory.list(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				String lowerCaseName = name.toLowerCase();
+				return (new File(dir, name)).isFile() && (lowerCaseName.endsWith(".mov") || lowerCaseName.endsWith(".mp4") || lowerCaseName.endsWith(".m4v"));
+			}
+		});
+
+		List<TranscriptionJob> jobs = new ArrayList<TranscriptionJob>();
+
+		if (videoNames == null) return jobs;
+
+		Arrays.sort(videoNames);
+
+		for(String videoName : videoNames)
+		{
+			jobs.add(new TranscriptionJob(new File(directory, videoName), outputDirectoryName));
+		}
+
+		return jobs;
+	}
+
+	/**
+	 * Transcribe every video in a directory using the default transcription options
+	 * @param directory containing the videos
+	 * @param path of directory to write the output files to
+	 * @return results of the jobs in the order they finished
+	 */
+	public List<TranscriptionJobResult> transcribeDirectory(File directory, String outputDirectoryName)
+	{
+		return transcribe(getJobsForDirectory(directory, outputDirectoryName));
+	}
+
+	/**
+	 * Transcribe the videos of the jobs, returning once every job has finished.
+	 * A job that fails does not stop the other jobs, its result contains the exception instead.
+	 * @param jobs to run
+	 * @return results of the jobs in the order they finished
+	 */
+	public List<TranscriptionJobResult> transcribe(List<TranscriptionJob> jobs)
+	{
+		List<TranscriptionJobResult> results = new ArrayList<TranscriptionJobResult>();
+
+		if (jobs.size() == 0) return results;
+
+		ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, Math.min(numberOfWorkers, jobs.size())));
+		CompletionService<TranscriptionJobResult> completedJobs = new ExecutorCompletionService<TranscriptionJobResult>(workers);
+
+		for(TranscriptionJob job : jobs)
+		{
+			completedJobs.submit(new Callable<TranscriptionJobResult>() {
+				public TranscriptionJobResult call()
+				{
+					return runJob(job);
+				}
+			});
+		}
+
+		try
+		{
+			for(int x = 0; x < jobs.size(); x++)
+			{
+				TranscriptionJobResult result = completedJobs.take().get();
+
+				results.add(result);
+
+				if (listener != null)
+				{
+					listener.jobFinished(result);
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			//runJob catches the exceptions of the transcription, so this only happens for errors in the listener
+			throw new RuntimeException("Error running transcription job", e.getCause());
+		}
+		finally
+		{
+			workers.shutdownNow();
+		}
+
+		return results;
+	}
+
+	private TranscriptionJobResult runJob(TranscriptionJob job)
+	{
+		Engine engine = new Engine();
+
+		if (job.getFrameSampling() != null)
+		{
+			engine.setFrameSampling(job.getFrameSampling());
+		}
+
+		if (checkpointInterval > 0)
+		{
+			engine.setCheckpointInterval(checkpointInterval);
+			engine.setResumeFromCheckpoint(true);
+		}
+
+		long startTime = System.nanoTime();
+
+		if (listener != null)
+		{
+			engine.setProgressListener(new TranscriptionProgressListener() {
+				public void framesProcessed(int framesProcessed, int totalFrames)
+				{
+					double elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
+					listener.jobProgress(job, framesProcessed, totalFrames, framesProcessed / elapsedSeconds);
+				}
+			});
+		}
+
+		OutputFileReferences files = null;
+		Throwable error = null;
+
+		try
+		{
+			files = engine.transcribeFromVideo(job.getVideoFile(), job.getNumberFramesToProcess(), job.getOutputDirectoryName(), job.getFirstNoteDuration(), job.getPoorLighting(), job.getWriteAnnotatedVideo());
+		}
+		catch (RuntimeException e)
+		{
+			error = e;
+		}
+
+		long elapsedTime = System.nanoTime() - startTime;
+
+		return new TranscriptionJobResult(job, files, engine.getFramesProcessed(), elapsedTime, error);
+	}
+}
@@ -0,0 +1,21 @@
+package guitarvision;
+
+/**
+ * Receives updates about the jobs of a BatchTranscriber
+ */
+public interface BatchTranscriptionListener {
+	/**
+	 * Called from the worker thread running the job after each frame has been processed
+	 * @param job being processed
+	 * @param number of frames processed so far
+	 * @param estimated total number of frames that will be processed
+	 * @param throughput so far in frames per second
+	 */
+	void jobProgress(TranscriptionJob job, int framesProcessed, int totalFrames, double framesPerSecond);
+
+	/**
+	 * Called from the thread that started the batch as each job finishes, in the order they finish
+	 * @param result of the job
+	 */
+	void jobFinished(TranscriptionJobResult result);
+}
@@ -0,0 +1,364 @@
+package guitarvision;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import guitarvision.profiling.TranscriptionProfile;
+import guitarvision.sheetmusic.MusicNote;
+import guitarvision.sheetmusic.SheetMusic;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.VideoWriter;
+import org.opencv.videoio.Videoio;
+
+/**
+ * Transcribes a video by splitting it into evenly sized chunks which are transcribed in parallel.
+ * Each chunk seeks to its first frame and starts with a warm-up window, in which the strings, frets and pluck detector
+ * are tracked but no notes are produced, so that the tracking state has settled by the time the chunk starts.
+ * The notes of each chunk are then stitched together, merging notes that are held across chunk boundaries.
+ */
+public class ChunkedTranscriber {
+	private Engine engine;
+	private File videoFile;
+	private int numberOfChunks;
+	private int warmUpFrames;
+
+	private TranscriptionProfile profile = null;
+
+	/**
+	 * @param engine carrying out the transcription
+	 * @param video to transcribe
+	 * @param number of chunks to split the video into, each of which is transcribed on its own thread
+	 * @param number of frames before the start of each chunk to process for warming up the tracking state
+	 */
+	public ChunkedTranscriber(Engine engine, File videoFile, int numberOfChunks, int warmUpFrames)
+	{
+		this.engine = engine;
+		this.videoFile = videoFile;
+		this.numberOfChunks = numberOfChunks;
+		this.warmUpFrames = warmUpFrames;
+	}
+
+	/**
+	 * @param profile to record the frames of every chunk into, or null to not profile
+	 */
+	public void setProfile(TranscriptionProfile profile)
+	{
+		this.profile = profile;
+	}
+
+	/**
+	 * Transcribe the video
+	 * @param maximum number of frames to process, starting from frame 0
+	 * @param firstNoteDuration - number of ticks that the first note detected lasts (four ticks is one musical beat)
+	 * @param poorLighting - whether to use a lower Canny upper threshold due to a scene with poor lighting
+	 * @param video writer to write the annotated frames to, or null if no annotated video is required
+	 * @param name of the annotated video file, used for naming the annotated video of each chunk
+	 * @return sheet music containing the notes of every chunk
+	 */
+	public SheetMusic transcribe(int numberFramesToProcess, int firstNoteDuration, boolean poorLighting, VideoWriter outputVideo, String outputVideoFileName)
+	{
+		VideoCapture video = new VideoCapture(videoFile.getPath());
+		double videoFrameCount = video.get(Videoio.CAP_PROP_FRAME_COUNT);
+		double fps = video.get(Videoio.CAP_PROP_FPS);
+		double codec = video.get(Videoio.CAP_PROP_FOURCC);
+		video.release();
+
+		//Not all containers report the number of frames, in which case the frame limit is split between the chunks
+		int totalFrames = numberFramesToProcess;
+		if (videoFrameCount > 0)
+		{
+			totalFrames = Math.min(totalFrames, (int) Math.ceil(videoFrameCount / engine.getFrameSampling().getStride(fps)));
+		}
+
+		int chunks = Math.max(1, Math.min(numberOfChunks, totalFrames));
+
+		ExecutorService workers = Executors.newFixedThreadPool(chunks);
+		List<Future<ChunkResult>> futures = new ArrayList<Future<ChunkResult>>();
+
+		for(int chunkIndex = 0; chunkIndex < chunks; chunkIndex++)
+		{
+			int startFrame = (int) ((long) totalFrames * chunkIndex / chunks);
+			int endFrame = (int) ((long) totalFrames * (chunkIndex + 1) / chunks);
+
+			String chunkVideoFileName = null;
+
+			if (outputVideo != null)
+			{
+				int extensionIndex = outputVideoFileName.lastIndexOf(".");
+				chunkVideoFileName = outputVideoFileName.substring(0, extensionIndex) + "_chunk" + chunkIndex + outputVideoFileName.substring(extensionIndex);
+			}
+
+			String chunkVideo = chunkVideoFileName;
+
+			futures.add(workers.submit(new Callable<ChunkResult>() {
+				public ChunkResult call()
+				{
+					return transcribeChunk(startFrame, endFrame, firstNoteDuration, poorLighting, chunkVideo, codec, fps);
+				}
+			}));
+		}
+
+		ArrayList<ChunkResult> results = new ArrayList<ChunkResult>();
+
+		try
+		{
+			for(Future<ChunkResult> future : futures)
+			{
+				results.add(future.get());
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while processing video", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException("Error transcribing video chunk", e.getCause());
+		}
+		finally
+		{
+			workers.shutdownNow();
+		}
+
+		//Join the annotated video of each chunk
+		if (outputVideo != null)
+		{
+			Mat frame = new Mat();
+
+			for(ChunkResult result : results)
+			{
+				VideoCapture chunkVideo = new VideoCapture(result.videoFile.getPath());
+
+				while (chunkVideo.read(frame))
+				{
+					outputVideo.write(frame);
+				}
+
+				chunkVideo.release();
+				result.videoFile.delete();
+			}
+
+			frame.release();
+		}
+
+		return stitchNotes(results, firstNoteDuration);
+	}
+
+	/**
+	 * Transcribe one chunk of the video
+	 * @param number of the first frame of the chunk (counting processed frames)
+	 * @param number of the frame after the last frame of the chunk
+	 * @param firstNoteDuration - number of ticks that the first note detected lasts
+	 * @param poorLighting - whether to use a lower Canny upper threshold
+	 * @param name of the file to write the annotated frames of the chunk to, or null
+	 * @param codec of the annotated video
+	 * @param frame rate of the annotated video
+	 * @return the notes detected in the chunk
+	 */
+	private ChunkResult transcribeChunk(int startFrame, int endFrame, int firstNoteDuration, boolean poorLighting, String chunkVideoFileName, double codec, double fps)
+	{
+		VideoCapture video = new VideoCapture(videoFile.getPath());
+
+		int warmUpStartFrame = Math.max(0, startFrame - warmUpFrames);
+
+		VideoFrameSource frameSource = new VideoFrameSource(video, engine.processingResolution, engine.getFrameSampling(), warmUpStartFrame, endFrame);
+
+		frameSource.setProfile(profile);
+		frameSource.setLeakRegistry(engine.getMatLeakRegistry());
+
+		FrameProcessor processor = new FrameProcessor(engine, firstNoteDuration, poorLighting, chunkVideoFileName != null);
+
+		VideoWriter chunkVideo = null;
+
+		if (chunkVideoFileName != null)
+		{
+			chunkVideo = new VideoWriter(chunkVideoFileName, (int) codec, fps, new Size(engine.processingResolution.width, engine.processingResolution.height), true);
+		}
+
+		VideoFrame frame;
+
+		Double startTime = null;
+
+		while ((frame = frameSource.nextFrame()) != null)
+		{
+			if (frame.frameNumber < startFrame)
+			{
+				processor.warmUp(frame);
+				frame.release();
+				continue;
+			}
+
+			if (frame.frameNumber == startFrame)
+			{
+				startTime = frame.timestamp;
+			}
+
+			processor.detectSkin(frame);
+
+			processor.detectGuitar(frame);
+
+			processor.detectNotes(frame);
+
+			if (chunkVideo != null)
+			{
+				processor.writeFrame(frame, chunkVideo);
+			}
+
+			frame.release();
+		}
+
+		frameSource.release();
+		processor.release();
+		video.release();
+
+		File chunkVideoFile = null;
+
+		if (chunkVideo != null)
+		{
+			chunkVideo.release();
+			chunkVideoFile = new File(chunkVideoFileName);
+		}
+
+		ChunkResult result = new ChunkResult(startFrame, processor.getSheetMusic().getNotes(), processor.getCurrentlyHeldNotes(), chunkVideoFile);
+
+		result.startTime = startTime;
+
+		return result;
+	}
+
+	/**
+	 * Join the notes of consecutive chunks into one piece of sheet music.
+	 * A note still held at the end of a chunk is continued by the note on the same string which starts on the first
+	 * frame of the next chunk, as the string never stopped vibrating. If there is no such note, the held note finishes
+	 * on the first frame of the next chunk.
+	 * @param results of each chunk, in order
+	 * @param firstNoteDuration - number of ticks that the first note completed lasts
+	 * @return sheet music containing the notes in the order they were completed
+	 */
+	public static SheetMusic stitchNotes(List<ChunkResult> results, int firstNoteDuration)
+	{
+		ArrayList<MusicNote> notes = new ArrayList<MusicNote>();
+
+		//Notes held at the end of the previous chunk, indexed by string
+		ArrayList<MusicNote> carriedNotes = new ArrayList<MusicNote>();
+
+		for(ChunkResult result : results)
+		{
+			ArrayList<MusicNote> completedNotes = new ArrayList<MusicNote>(result.completedNotes);
+			ArrayList<MusicNote> heldNotes = new ArrayList<MusicNote>(result.heldNotes);
+
+			for(int string = 0; string < carriedNotes.size(); string++)
+			{
+				MusicNote carriedNote = carriedNotes.get(string);
+
+				if (carriedNote == null) continue;
+
+				MusicNote continuation = findNoteStartingAt(completedNotes, string, result.startFrame);
+
+				if (continuation != null)
+				{
+					carriedNote.setEndingFrame(continuation.getEndingFrame());
+					carriedNote.setEndingTime(continuation.getEndingTime());
+					completedNotes.set(completedNotes.indexOf(continuation), carriedNote);
+					continue;
+				}
+
+				continuation = findNoteStartingAt(heldNotes, string, result.startFrame);
+
+				if (continuation != null)
+				{
+					heldNotes.set(heldNotes.indexOf(continuation), carriedNote);
+					continue;
+				}
+
+				carriedNote.setEndingFrame(result.startFrame);
+				carriedNote.setEndingTime(result.startTime);
+				notes.add(carriedNote);
+			}
+
+			notes.addAll(completedNotes);
+
+			carriedNotes = heldNotes;
+		}
+
+		//Notes still held at the end of the video are not completed, as in a sequential transcription
+
+		//Order notes by when they were completed, matching the order of a sequential transcription
+		Collections.sort(notes, new Comparator<MusicNote>() {
+			public int compare(MusicNote note1, MusicNote note2)
+			{
+				int comparison = note1.getEndingFrame().compareTo(note2.getEndingFrame());
+
+				if (comparison == 0)
+				{
+					comparison = Integer.compare(note1.string, note2.string);
+				}
+
+				return comparison;
+			}
+		});
+
+		SheetMusic music = new SheetMusic();
+
+		if (notes.size() > 0)
+		{
+			music.setTimingFromFirstNote(notes.get(0), firstNoteDuration);
+		}
+
+		for(MusicNote note : notes)
+		{
+			music.addNote(note);
+		}
+
+		return music;
+	}
+
+	private static MusicNote findNoteStartingAt(ArrayList<MusicNote> notes, int string, int frame)
+	{
+		for(MusicNote note : notes)
+		{
+			if (note != null && note.string == string && note.startingFrame == frame)
+			{
+				return note;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * The notes produced by transcribing one chunk
+	 */
+	public static class ChunkResult {
+		//Number of the first frame of the chunk (excluding the warm-up frames)
+		public int startFrame;
+		//Time in milliseconds of the first frame of the chunk, or null if it is not known
+		public Double startTime = null;
+		//Notes that were completed within the chunk, in the order they were completed
+		public List<MusicNote> completedNotes;
+		//Note held on each string at the end of the chunk, or null
+		public List<MusicNote> heldNotes;
+		//Annotated video of the chunk, or null
+		public File videoFile;
+
+		public ChunkResult(int startFrame, List<MusicNote> completedNotes, List<MusicNote> heldNotes, File videoFile)
+		{
+			this.startFrame = startFrame;
+			this.completedNotes = completedNotes;
+			this.heldNotes = heldNotes;
+			this.videoFile = videoFile;
+		}
+	}
+}
@@ -0,0 +1,322 @@
+package guitarvision;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+import guitarvision.detection.DetectedLine;
+import guitarvision.detection.GuitarString;
+
+/**
+ * File of the detection results of each processed frame, so that the pluck and note detection can be run again
+ * with different settings without detecting the strings, frets and skin again.
+ * Each frame has a record of the same size: the frame numbers and timestamp, the strings (rho, theta and thickness),
+ * the frets (rho and theta), and for each string the segments between the frets which overlap the skin.
+ * A file is either being written, a record at a time, or read through memory mapping, in which case any frame
+ * can be read without reading the frames before it. The number of frames is found from the length of the file,
+ * so the file of an interrupted transcription can be read up to its last complete record.
+ * Rho and theta are stored with single precision, as the note detection only uses the thicknesses and the skin overlaps.
+ */
+public class DetectionCache {
+	private static final int MAGIC_NUMBER = 0x47564443;
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 20;
+
+	//Size of each record before the strings: frame number, video frame number, timestamp, number of strings and frets
+	private static final int FRAME_FIELDS_SIZE = 20;
+
+	private static final int STRING_SIZE = 16;
+	private static final int FRET_SIZE = 8;
+	private static final int OVERLAP_SIZE = 8;
+
+	//Number of strings and frets that each record has room for, extra frets are not stored
+	private int stringCapacity;
+	private int fretCapacity;
+	private int recordSize;
+
+	private File cacheFile;
+
+	//Output when writing
+	private DataOutputStream output = null;
+
+	//Mappings of the file when reading, each covering a whole number of records
+	private MappedByteBuffer[] mappings = null;
+	private int framesPerMapping;
+	private int numberOfFrames = 0;
+
+	private DetectionCache(File cacheFile, int stringCapacity, int fretCapacity)
+	{
+		this.cacheFile = cacheFile;
+		this.stringCapacity = stringCapacity;
+		this.fretCapacity = fretCapacity;
+
+		recordSize = FRAME_FIELDS_SIZE + (stringCapacity * (STRING_SIZE + OVERLAP_SIZE)) + (fretCapacity * FRET_SIZE);
+	}
+
+	/**
+	 * Create a cache file to write the frames to, replacing any existing file
+	 * @param file to write
+	 * @param maximum number of strings detected in a frame
+	 * @param maximum number of frets to store for a frame
+	 * @return the cache, or null if the file could not be created
+	 */
+	public static DetectionCache createFile(File cacheFile, int stringCapacity, int fretCapacity)
+	{
+		DetectionCache cache = new DetectionCache(cacheFile, stringCapacity, fretCapacity);
+
+		try
+		{
+			cache.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)));
+
+			cache.output.writeInt(MAGIC_NUMBER);
+			cache.output.writeInt(VERSION);
+			cache.output.writeInt(stringCapacity);
+			cache.output.writeInt(fretCapacity);
+			cache.output.writeInt(cache.recordSize);
+		}
+		catch (IOException e)
+		{
+			System.out.println(e.getMessage());
+			cache.close();
+			return null;
+		}
+
+		return cache;
+	}
+
+	/**
+	 * Open a cache file written by createFile for reading
+	 * @param file to read
+	 * @return the cache, or null if the file could not be read or is not a detection cache
+	 */
+	public static DetectionCache openFile(File cacheFile)
+	{
+		RandomAccessFile file = null;
+
+		try
+		{
+			file = new RandomAccessFile(cacheFile, "r");
+
+			if (file.length() < HEADER_SIZE || file.readInt() != MAGIC_NUMBER || file.readInt() != VERSION)
+			{
+				System.out.println("Not a detection cache: " + cacheFile.getPath());
+				return null;
+			}
+
+			DetectionCache cache = new DetectionCache(cacheFile, file.readInt(), file.readInt());
+
+			if (file.readInt() != cache.recordSize)
+			{
+				System.out.println("Not a detection cache: " + cacheFile.getPath());
+				return null;
+			}
+
+			long frames = (file.length() - HEADER_SIZE) / cache.recordSize;
+
+			cache.numberOfFrames = (int) Math.min(frames, Integer.MAX_VALUE);
+			cache.framesPerMapping = Integer.MAX_VALUE / cache.recordSize;
+
+			int numberOfMappings = (cache.numberOfFrames + cache.framesPerMapping - 1) / cache.framesPerMapping;
+
+			cache.mappings = new MappedByteBuffer[numberOfMappings];
+
+			FileChannel channel = file.getChannel();
+
+			for(int mapping = 0; mapping < numberOfMappings; mapping++)
+			{
+				long firstFrame = (long) mapping * cache.framesPerMapping;
+				long framesInMapping = Math.min(cache.framesPerMapping, cache.numberOfFrames - firstFrame);
+
+				cache.mappings[mapping] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + (firstFrame * cache.recordSize), framesInMapping * cache.recordSize);
+			}
+
+			return cache;
+		}
+		catch (IOException e)
+		{
+			System.out.println(e.getMessage());
+		}
+		finally
+		{
+			//The mappings stay valid after the file is closed
+			if (file != null)
+			{
+				try
+				{
+					file.close();
+				}
+				catch (IOException e)
+				{
+					System.out.println(e.getMessage());
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Append the detection results of a frame to a cache being written
+	 * @param frame which has been through the guitar detection stage
+	 * @param for each string, the segments between the frets which overlap the skin
+	 */
+	public void writeFrame(VideoFrame frame, long[] skinOverlaps)
+	{
+		if (output == null) return;
+
+		ArrayList<GuitarString> strings = frame.guitarStrings;
+		ArrayList<DetectedLine> frets = frame.guitarFrets;
+
+		int numberOfStrings = Math.min(strings.size(), stringCapacity);
+		int numberOfFrets = Math.min(frets.size(), fretCapacity);
+
+		try
+		{
+			output.writeInt(frame.frameNumber);
+			output.writeInt(frame.videoFrameNumber);
+			output.writeDouble(frame.timestamp == null ? Double.NaN : frame.timestamp);
+			output.writeByte(numberOfStrings);
+			output.writeByte(numberOfFrets);
+
+			//The number of segments is kept even if some of the frets are not stored
+			output.writeShort(frets.size() - 1);
+
+			for(int string = 0; string < stringCapacity; string++)
+			{
+				if (string < numberOfStrings)
+				{
+					output.writeFloat((float) strings.get(string).getRho());
+					output.writeFloat((float) strings.get(string).getTheta());
+					output.writeDouble(strings.get(string).thickness);
+				}
+				else
+				{
+					output.write(new byte[STRING_SIZE]);
+				}
+			}
+
+			for(int fret = 0; fret < fretCapacity; fret++)
+			{
+				if (fret < numberOfFrets)
+				{
+					output.writeFloat((float) frets.get(fret).getRho());
+					output.writeFloat((float) frets.get(fret).getTheta());
+				}
+				else
+				{
+					output.write(new byte[FRET_SIZE]);
+				}
+			}
+
+			for(int string = 0; string < stringCapacity; string++)
+			{
+				output.writeLong(string < numberOfStrings ? skinOverlaps[string] : 0);
+			}
+		}
+		catch (IOException e)
+		{
+			System.out.println(e.getMessage());
+			close();
+		}
+	}
+
+	/**
+	 * Read the detection results of a frame from a cache opened for reading
+	 * @param index of the frame in the cache
+	 * @return frame with its numbers, timestamp, strings, frets and skin overlaps set, but no images
+	 */
+	public VideoFrame readFrame(int index)
+	{
+		MappedByteBuffer mapping = mappings[index / framesPerMapping];
+		int position = (index % framesPerMapping) * recordSize;
+
+		VideoFrame frame = new VideoFrame(mapping.getInt(position), null);
+
+		frame.videoFrameNumber = mapping.getInt(position + 4);
+
+		double timestamp = mapping.getDouble(position + 8);
+		frame.timestamp = Double.isNaN(timestamp) ? null : timestamp;
+
+		int numberOfStrings = mapping.get(position + 16);
+		int numberOfFrets = mapping.get(position + 17);
+		int numberOfSegments = mapping.getShort(position + 18);
+
+		position += FRAME_FIELDS_SIZE;
+
+		frame.guitarStrings = new ArrayList<GuitarString>(numberOfStrings);
+
+		for(int string = 0; string < numberOfStrings; string++)
+		{
+			int stringPosition = position + (string * STRING_SIZE);
+
+			DetectedLine line = new DetectedLine((double) mapping.getFloat(stringPosition), (double) mapping.getFloat(stringPosition + 4));
+			frame.guitarStrings.add(new GuitarString(mapping.getDouble(stringPosition + 8), line));
+		}
+
+		position += stringCapacity * STRING_SIZE;
+
+		frame.guitarFrets = new ArrayList<DetectedLine>(numberOfFrets);
+
+		for(int fret = 0; fret < numberOfFrets; fret++)
+		{
+			int fretPosition = position + (fret * FRET_SIZE);
+
+			frame.guitarFrets.add(new DetectedLine((double) mapping.getFloat(fretPosition), (double) mapping.getFloat(fretPosition + 4)));
+		}
+
+		position += fretCapacity * FRET_SIZE;
+
+		frame.skinOverlaps = new long[numberOfStrings];
+
+		for(int string = 0; string < numberOfStrings; string++)
+		{
+			frame.skinOverlaps[string] = mapping.getLong(position + (string * OVERLAP_SIZE));
+		}
+
+		frame.skinSegments = numberOfSegments;
+
+		return frame;
+	}
+
+	/**
+	 * @return number of complete frames in a cache opened for reading
+	 */
+	public int getNumberOfFrames()
+	{
+		return numberOfFrames;
+	}
+
+	public File getFile()
+	{
+		return cacheFile;
+	}
+
+	/**
+	 * Finish writing the file, or release the mappings of a file being read
+	 */
+	public void close()
+	{
+		if (output != null)
+		{
+			try
+			{
+				output.close();
+			}
+			catch (IOException e)
+			{
+				System.out.println(e.getMessage());
+			}
+
+			output = null;
+		}
+
+		mappings = null;
+	}
+}
@@ -3,25 +3,21 @@ package guitarvision;
 import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import guitarvision.detection.EdgeDetector;
 import guitarvision.detection.FretDetector;
 import guitarvision.detection.GuitarString;
+import guitarvision.detection.HoughMode;
 import guitarvision.detection.ImageProcessingOptions;
-import guitarvision.detection.DetectedLine;
-import guitarvision.detection.NoteDetector;
-import guitarvision.detection.PluckDetector;
-import guitarvision.detection.SkinDetector;
 import guitarvision.detection.StringDetector;
-import guitarvision.sheetmusic.MusicNote;
+import guitarvision.memory.MatLeakRegistry;
+import guitarvision.profiling.TranscriptionProfile;
 import guitarvision.sheetmusic.SheetMusic;
+import guitarvision.sheetmusic.StreamingSheetMusic;
 
-import org.opencv.core.Core;
 import org.opencv.core.Mat;
-import org.opencv.core.Point;
-import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
@@ -32,14 +28,65 @@ import org.opencv.videoio.Videoio;
 /**
  * @author Alex Day
  * Core functionality of AMT system
- * Singleton class
+ * A shared instance is available through getInstance, separate instances may be created to transcribe videos concurrently
  */
 public class Engine {
 	private static Engine instance = null;
 	
 	public final Size processingResolution = new Size(960,540);
 	
-	public static Engine getInstance()
+	private ProcessingMode processingMode = ProcessingMode.SEQUENTIAL;
+	
+	private int pipelineQueueCapacity = 4;
+	
+	private int numberOfChunks = Runtime.getRuntime().availableProcessors();
+	
+	private int chunkWarmUpFrames = 10;
+	
+	private boolean regionOfInterestTracking = false;
+	
+	private boolean fretLayoutReuse = false;
+	
+	private boolean stringHoughAngleWindow = false;
+	
+	private HoughMode fretHoughMode = HoughMode.STANDARD;
+	
+	private int pyramidScale = 1;
+	
+	private boolean geometryTracking = false;
+	
+	private double trackingConfidenceThreshold = 0.75;
+	
+	private boolean motionGatedDetection = false;
+	
+	private double motionThreshold = 4.0;
+	
+	private FrameSampling frameSampling = new FrameSampling();
+	
+	private boolean streamingMidi = false;
+	
+	private int checkpointInterval = 0;
+	
+	private boolean resumeFromCheckpoint = false;
+	
+	private boolean detectionCaching = false;
+	
+	private double pluckThresholdFactor = 1.2;
+	
+	private boolean profiling = false;
+	
+	private boolean matLeakReporting = false;
+	
+	//Leak registry of the transcription in progress, or null if leaks are not being reported
+	private MatLeakRegistry matLeakRegistry = null;
+	
+	private TranscriptionProgressListener progressListener = null;
+	
+	private AtomicInteger framesProcessed = new AtomicInteger();
+	
+	private int framesToProcess = 0;
+	
+	public static synchronized Engine getInstance()
 	{
 		if (instance == null)
 		{
@@ -48,6 +95,345 @@ public class Engine {
 		return instance;
 	}
 	
+	public void setProcessingMode(ProcessingMode mode)
+	{
+		processingMode = mode;
+	}
+	
+	public ProcessingMode getProcessingMode()
+	{
+		return processingMode;
+	}
+	
+	/**
+	 * Set the number of frames that may wait between two stages when using the pipelined processing mode
+	 * @param capacity of each queue between stages
+	 */
+	public void setPipelineQueueCapacity(int capacity)
+	{
+		pipelineQueueCapacity = capacity;
+	}
+	
+	/**
+	 * Set the number of chunks that the video is split into when using the chunked processing mode.
+	 * Each chunk is transcribed on its own thread.
+	 * @param number of chunks
+	 */
+	public void setNumberOfChunks(int chunks)
+	{
+		numberOfChunks = chunks;
+	}
+	
+	/**
+	 * Set the number of frames processed before each chunk to let string, fret and pluck tracking settle
+	 * when using the chunked processing mode
+	 * @param number of warm-up frames
+	 */
+	public void setChunkWarmUpFrames(int frames)
+	{
+		chunkWarmUpFrames = frames;
+	}
+	
+	/**
+	 * Set whether string detection only searches around the strings found in the previous frame,
+	 * falling back to searching the whole frame when they are not all found there
+	 * @param tracking
+	 */
+	public void setRegionOfInterestTracking(boolean tracking)
+	{
+		regionOfInterestTracking = tracking;
+	}
+	
+	public boolean getRegionOfInterestTracking()
+	{
+		return regionOfInterestTracking;
+	}
+	
+	/**
+	 * Set whether the fret layout fitted in an earlier frame is used while the edges of the neck still support it,
+	 * skipping the Hough transform of the neck
+	 * @param reuse
+	 */
+	public void setFretLayoutReuse(boolean reuse)
+	{
+		fretLayoutReuse = reuse;
+	}
+	
+	public boolean getFretLayoutReuse()
+	{
+		return fretLayoutReuse;
+	}
+	
+	/**
+	 * Set whether the Hough transform for the strings only searches the angles around the strings of the previous frame
+	 * @param windowed
+	 */
+	public void setStringHoughAngleWindow(boolean windowed)
+	{
+		stringHoughAngleWindow = windowed;
+	}
+	
+	public boolean getStringHoughAngleWindow()
+	{
+		return stringHoughAngleWindow;
+	}
+	
+	/**
+	 * Set how the Hough transform finds the frets in the image of the neck: over every angle,
+	 * over only the angles close to vertical, or as segments with the probabilistic transform
+	 * @param mode
+	 */
+	public void setFretHoughMode(HoughMode mode)
+	{
+		fretHoughMode = mode;
+	}
+	
+	public HoughMode getFretHoughMode()
+	{
+		return fretHoughMode;
+	}
+	
+	/**
+	 * Set the scale of the coarse level of the image pyramid that the strings and frets are first found in.
+	 * They are then found at the processing resolution only around those found at the coarse level,
+	 * so that most of the edge detection and the Hough transform is of the smaller image.
+	 * @param number of pixels along each side of a pixel of the coarse level, or 1 to only detect at the processing resolution
+	 */
+	public void setPyramidScale(int scale)
+	{
+		pyramidScale = scale;
+	}
+	
+	public int getPyramidScale()
+	{
+		return pyramidScale;
+	}
+	
+	/**
+	 * Set whether the strings and frets are tracked from frame to frame, rather than weighted by those of the previous frame.
+	 * The lines detected in a frame are used as they are, and the tracks only predict the lines which are not detected.
+	 * The strings are searched for around those predicted by the tracker, and while the trackers are confident
+	 * the predicted strings and frets are used instead of detecting them.
+	 * @param tracking
+	 */
+	public void setGeometryTracking(boolean tracking)
+	{
+		geometryTracking = tracking;
+	}
+	
+	public boolean getGeometryTracking()
+	{
+		return geometryTracking;
+	}
+	
+	/**
+	 * Set the confidence of the string and fret trackers above which the strings and frets are predicted rather than detected
+	 * @param confidence between 0 and 1, above 1 to detect them in every frame
+	 */
+	public void setTrackingConfidenceThreshold(double threshold)
+	{
+		trackingConfidenceThreshold = threshold;
+	}
+	
+	public double getTrackingConfidenceThreshold()
+	{
+		return trackingConfidenceThreshold;
+	}
+	
+	/**
+	 * Set whether the strings and frets are only detected again when the guitar has moved.
+	 * The motion is measured from a shrunk image of the region around the neck, leaving out the skin.
+	 * In frames where the guitar has not moved the strings and frets of the last detection are used,
+	 * while the string thicknesses are still measured in every frame for pluck detection.
+	 * @param gating
+	 */
+	public void setMotionGatedDetection(boolean gating)
+	{
+		motionGatedDetection = gating;
+	}
+	
+	public boolean getMotionGatedDetection()
+	{
+		return motionGatedDetection;
+	}
+	
+	/**
+	 * Set the motion above which the strings and frets are detected again, when detection is gated by motion
+	 * @param mean difference in grey level of the pixels around the neck since the guitar was last detected
+	 */
+	public void setMotionThreshold(double threshold)
+	{
+		motionThreshold = threshold;
+	}
+	
+	public double getMotionThreshold()
+	{
+		return motionThreshold;
+	}
+	
+	/**
+	 * Set whether the MIDI file is written while the video is transcribed, with the notes appended as they are completed,
+	 * so that it can be read before the transcription finishes and the notes are not kept in memory.
+	 * The chunked processing mode stitches the notes of its chunks together at the end, so it always writes the file then.
+	 * @param streaming
+	 */
+	public void setStreamingMidi(boolean streaming)
+	{
+		streamingMidi = streaming;
+	}
+	
+	public boolean getStreamingMidi()
+	{
+		return streamingMidi;
+	}
+	
+	/**
+	 * Set the number of frames between checkpoints of the tracking state, which are written next to the MIDI file
+	 * so that an interrupted transcription can be resumed. The checkpoint is deleted once the transcription finishes.
+	 * Checkpoints are not written in the chunked processing mode, or when streaming the MIDI file, as the notes are not kept then.
+	 * @param number of processed frames between checkpoints, or 0 to not write checkpoints
+	 */
+	public void setCheckpointInterval(int frames)
+	{
+		checkpointInterval = frames;
+	}
+	
+	public int getCheckpointInterval()
+	{
+		return checkpointInterval;
+	}
+	
+	/**
+	 * Set whether to continue from the checkpoint of an interrupted transcription of the same video, if there is one.
+	 * The annotated video only contains the frames processed after resuming.
+	 * @param resume
+	 */
+	public void setResumeFromCheckpoint(boolean resume)
+	{
+		resumeFromCheckpoint = resume;
+	}
+	
+	public boolean getResumeFromCheckpoint()
+	{
+		return resumeFromCheckpoint;
+	}
+	
+	/**
+	 * Set whether the detection results of each frame are written to a cache file next to the MIDI file,
+	 * for running the note detection again with replayFromCache. The cache is not written in the chunked processing
+	 * mode, and only holds the frames processed after resuming from a checkpoint.
+	 * @param caching
+	 */
+	public void setDetectionCaching(boolean caching)
+	{
+		detectionCaching = caching;
+	}
+	
+	public boolean getDetectionCaching()
+	{
+		return detectionCaching;
+	}
+	
+	/**
+	 * Set the factor by which a string must be thicker than in the first frame to be detected as vibrating
+	 * @param factor
+	 */
+	public void setPluckThresholdFactor(double factor)
+	{
+		pluckThresholdFactor = factor;
+	}
+	
+	public double getPluckThresholdFactor()
+	{
+		return pluckThresholdFactor;
+	}
+	
+	/**
+	 * Set which frames of the video are processed: a fixed stride, or a target number of frames per second.
+	 * Notes are timed by the timestamps of the frames, so the sampling changes the temporal resolution of
+	 * pluck detection but not the tempo of the transcription.
+	 * @param sampling
+	 */
+	public void setFrameSampling(FrameSampling sampling)
+	{
+		frameSampling = sampling;
+	}
+	
+	public FrameSampling getFrameSampling()
+	{
+		return frameSampling;
+	}
+	
+	/**
+	 * Set whether to time each stage of every frame and count the lines and memory used.
+	 * The profile is returned with the output files, and written next to the MIDI file as
+	 * a CSV file with a row for each frame and a JSON file with the latency histogram of each stage.
+	 * @param profiling
+	 */
+	public void setProfiling(boolean profiling)
+	{
+		this.profiling = profiling;
+	}
+	
+	public boolean getProfiling()
+	{
+		return profiling;
+	}
+	
+	/**
+	 * Set whether to report the Mats which are not released with the frame they were allocated for.
+	 * The report is printed at the end of each transcription, listing the frames whose Mats were not released
+	 * and where Mats were allocated outside of a frame.
+	 * @param reporting
+	 */
+	public void setMatLeakReporting(boolean reporting)
+	{
+		matLeakReporting = reporting;
+	}
+	
+	public boolean getMatLeakReporting()
+	{
+		return matLeakReporting;
+	}
+	
+	/**
+	 * @return leak registry of the transcription in progress or last run, or null if leaks were not being reported
+	 */
+	public MatLeakRegistry getMatLeakRegistry()
+	{
+		return matLeakRegistry;
+	}
+	
+	/**
+	 * Set the listener which is notified after each frame of a transcription has been processed
+	 * @param listener, or null to stop notifying
+	 */
+	public void setProgressListener(TranscriptionProgressListener listener)
+	{
+		progressListener = listener;
+	}
+	
+	/**
+	 * Called by the frame processors of this engine after they have finished processing a frame
+	 */
+	void frameProcessed()
+	{
+		int frames = framesProcessed.incrementAndGet();
+		
+		if (progressListener != null)
+		{
+			progressListener.framesProcessed(frames, framesToProcess);
+		}
+	}
+	
+	/**
+	 * @return number of frames processed by the current or last transcription
+	 */
+	public int getFramesProcessed()
+	{
+		return framesProcessed.get();
+	}
+	
 	public void exportImage(Mat image, String fileName)
 	{
 		Imgcodecs.imwrite(fileName, image);
@@ -86,6 +472,35 @@ public class Engine {
 		}
 	}
 
+	/**
+	 * Run the pluck and note detection again on the detection results cached by an earlier transcription,
+	 * using the current settings, without processing the video
+	 * @param cache file written by a transcription with detection caching
+	 * @param firstNoteDuration - number of ticks that the first note detected lasts (four ticks is one musical beat)
+	 * @return the transcribed music, or null if the cache could not be read
+	 */
+	public SheetMusic replayFromCache(File cacheFile, int firstNoteDuration)
+	{
+		DetectionCache cache = DetectionCache.openFile(cacheFile);
+		
+		if (cache == null) return null;
+		
+		FrameProcessor processor = new FrameProcessor(this, firstNoteDuration, false, false);
+		
+		framesToProcess = cache.getNumberOfFrames();
+		framesProcessed.set(0);
+		
+		for(int index = 0; index < cache.getNumberOfFrames(); index++)
+		{
+			processor.detectNotes(cache.readFrame(index));
+		}
+		
+		processor.release();
+		cache.close();
+		
+		return processor.getSheetMusic();
+	}
+	
 	/**
 	 * The core method of the project, produces MIDI transcriptions from guitar videos
 	 * @param videoFile - file object pointing to the video to be processed
@@ -98,10 +513,21 @@ public class Engine {
 	 */
 	public OutputFileReferences transcribeFromVideo(File videoFile, Integer numberFramesToProcess, String outputDirectoryName, int firstNoteDuration, boolean poorLighting, boolean writeAnnotatedVideo)
 	{
-		VideoCapture guitarVideo = new VideoCapture(videoFile.getPath());
+		long startTime = System.nanoTime();
+		
+		TranscriptionProfile profile = null;
 		
-		Mat currentFrame = new Mat();
-		Mat frameToAnnotate = null;
+		if (profiling)
+		{
+			profile = new TranscriptionProfile();
+		}
+		
+		//Each transcription has its own registry, so transcriptions of other Engines running at the same time are not reported
+		matLeakRegistry = matLeakReporting ? new MatLeakRegistry() : null;
+		
+		MatLeakRegistry previousLeakRegistry = MatLeakRegistry.setCurrent(matLeakRegistry);
+		
+		VideoCapture guitarVideo = new VideoCapture(videoFile.getPath());
 		
 		String fileName = videoFile.getName();
 		String name = fileName.substring(0, fileName.lastIndexOf("."));
@@ -126,6 +552,7 @@ public class Engine {
 		outputMidiFileName += name;
 		
 		File outputFile = new File(outputVideoFileNameWithExtension);
+		File checkpointFile = new File(outputMidiFileName + "_checkpoint.dat");
 		
 		if (outputFile.exists()) outputFile.delete();
 		
@@ -136,192 +563,110 @@ public class Engine {
 			outputVideo = new VideoWriter(outputVideoFileNameWithExtension, (int)codecToUse, fps, new Size(width,height), true);
 		}
 		
-		int frameNo = 0;
-		
-		//Set up the required detection objects
-		EdgeDetector edgeDetector = new EdgeDetector();
-		if (poorLighting)
-		{
-			edgeDetector.setCannyUpperThreshold(32);
-		}
-		else 
-		{
-			edgeDetector.setCannyUpperThreshold(70);
-		}
-		
-		edgeDetector.setHoughThreshold(300);
-
-		StringDetector stringDetector = new StringDetector();
-		
-		FretDetector fretDetector = new FretDetector();
-
-		PluckDetector pluckDetector = new PluckDetector();
-		
-		SkinDetector skinDetector = new SkinDetector();
-		
-		NoteDetector noteDetector = new NoteDetector();
-		
-		SheetMusic transcribedMusic = new SheetMusic();
-		
 		if (numberFramesToProcess == null)
 		{
 			numberFramesToProcess = 1000;
 		}
-
-		boolean firstFrame = true;
 		
-		ArrayList<MusicNote> currentlyHeldNotes = new ArrayList<MusicNote>();
+		//Estimate the number of frames for reporting progress
+		double videoFrameCount = guitarVideo.get(Videoio.CAP_PROP_FRAME_COUNT);
 		
-		for(int x = 0; x < stringDetector.getNumberOfStringsToDetect(); x++)
+		framesToProcess = numberFramesToProcess;
+		
+		if (videoFrameCount > 0)
 		{
-			currentlyHeldNotes.add(null);
+			framesToProcess = Math.min(framesToProcess, (int) Math.ceil(videoFrameCount / frameSampling.getStride(fps)));
 		}
 		
-		ArrayList<GuitarString> previousStrings = null;
-		ArrayList<DetectedLine> previousFrets = null;
+		framesProcessed.set(0);
 		
-		boolean firstNote = true;
+		SheetMusic transcribedMusic;
 		
-		//Process frames one by one
-		while (guitarVideo.read(currentFrame))
+		if (processingMode == ProcessingMode.CHUNKED)
 		{
-			//Resize image
-			Imgproc.resize(currentFrame, currentFrame, processingResolution);
+			guitarVideo.release();
 			
-			frameToAnnotate =  currentFrame.clone();
+			ChunkedTranscriber chunkedTranscriber = new ChunkedTranscriber(this, videoFile, numberOfChunks, chunkWarmUpFrames);
 			
-			//Detect strings and frets in frame
-			ArrayList<GuitarString> guitarStrings = stringDetector.getGuitarStrings(currentFrame, frameToAnnotate, edgeDetector, previousStrings, ImageProcessingOptions.DRAWSELECTEDLINES);
-
-			previousStrings = guitarStrings;
-
-			EdgeDetector fretEdgeDetector = new EdgeDetector();
-			fretEdgeDetector.setCannyLowerThreshold(0);
-			fretEdgeDetector.setCannyUpperThreshold(250);
-			fretEdgeDetector.setHoughThreshold(70);
-
-			ArrayList<DetectedLine> guitarFrets = fretDetector.getGuitarFrets(currentFrame, frameToAnnotate, guitarStrings, fretEdgeDetector, previousFrets, ImageProcessingOptions.DRAWSELECTEDLINES);
+			chunkedTranscriber.setProfile(profile);
 			
-			Collections.reverse(guitarFrets);
-			
-			//Extract string thicknesses and store them in the string objects
-			pluckDetector.getStringThicknesses(guitarStrings, guitarFrets, currentFrame);
+			transcribedMusic = chunkedTranscriber.transcribe(numberFramesToProcess, firstNoteDuration, poorLighting, outputVideo, outputVideoFileNameWithExtension);
+		}
+		else
+		{
+			//Set up the required detection objects
+			FrameProcessor processor = new FrameProcessor(this, firstNoteDuration, poorLighting, writeAnnotatedVideo);
 			
-			previousFrets = guitarFrets;
-
-			//Detect skin
-			Mat skin = skinDetector.getSkin(currentFrame);
+			if (streamingMidi)
+			{
+				processor.setSheetMusic(new StreamingSheetMusic(outputMidiFileName));
+			}
 			
-			Core.addWeighted(frameToAnnotate, 0.8, skin, 0.2, 1.0, frameToAnnotate);
+			int startFrame = 0;
 			
-			//Plucking and note detection for frames after the first frame
-			if (!firstFrame)
+			if (!streamingMidi)
 			{
-				//Re-calibrate pluck detector if previous frames didn't detect all guitar strings
-				if (pluckDetector.getInitialStrings().size() < stringDetector.getNumberOfStringsToDetect() && guitarStrings.size() > pluckDetector.getInitialStrings().size())
-				{
-					pluckDetector.setInitialStrings(guitarStrings);
-				}
-				
-				//Detect which strings are vibrating
-				boolean[] stringsPlayed = pluckDetector.getVibratingStrings(guitarStrings);
-				
-				
-				if (stringsPlayed != null)
-				{	
-					for(int x = 0; x < stringsPlayed.length && x < currentlyHeldNotes.size(); x++)
-					{
-						if (stringsPlayed[x] && currentlyHeldNotes.get(x) == null)
-						{
-							//Create new note object
-							MusicNote notePlayed = noteDetector.getNote(frameToAnnotate, frameNo, skin, x, guitarStrings, guitarFrets);
-
-							currentlyHeldNotes.set(x, notePlayed);
-						}
-						else if (!stringsPlayed[x] && currentlyHeldNotes.get(x) != null)
-						{
-							//Finish note as the string is no longer vibrating and add to sheet music
-							MusicNote currentNote = currentlyHeldNotes.get(x);
-
-							currentNote.setEndingFrame(frameNo);
-							
-							//Use the first note to determine the relationship between number of frames and number of music ticks
-							//given the specified number of ticks of the first note
-							if (firstNote == true)
-							{
-								int initialFrame = currentNote.startingFrame;
-								int frameDuration = currentNote.getEndingFrame() - initialFrame;
-								int framesInTick = (int) Math.round((double) frameDuration / (double) firstNoteDuration);
-								if (framesInTick < 1) framesInTick = 1;
-								transcribedMusic.setInitialFrame(initialFrame);
-								transcribedMusic.setFramesPerBeat(framesInTick);
-							}
-							
-							firstNote = false;
-							transcribedMusic.addNote(currentNote);
-
-							currentlyHeldNotes.set(x, null);
-						}
-					}
-				}
-
-				//Annotate frame to show which notes are currently detected
-				//Display which fret is held down for each string even if it is not vibrating
-				if (writeAnnotatedVideo)
+				if (resumeFromCheckpoint)
 				{
-					int scaleFactor = 12;
-					if (stringsPlayed == null) stringsPlayed = new boolean[stringDetector.getNumberOfStringsToDetect()];
-
+					TranscriptionCheckpoint checkpoint = TranscriptionCheckpoint.read(checkpointFile);
 					
-					MusicNote currentNote;
-					for(int x = 0; x < stringDetector.getNumberOfStringsToDetect(); x++)
+					if (checkpoint != null)
 					{
-						String currentSemitone = "NONE";
-						
-						if (currentlyHeldNotes.get(x) != null)
-						{
-							currentNote = currentlyHeldNotes.get(x);
-							currentSemitone = intToMusicalNote(currentNote.note);
-						}
-						else
-						{
-							Mat nonVibratingAnnotations = currentFrame.clone();
-							MusicNote currentFretNote = noteDetector.getNote(nonVibratingAnnotations, frameNo, skin, x, guitarStrings, guitarFrets);
-							if (!(currentFretNote == null))
-							{
-								currentSemitone = intToMusicalNote(currentFretNote.note);
-							}
-						}
-						
+						processor.restoreCheckpoint(checkpoint);
 						
-						boolean beingPlayed = false;
-						if (x < stringsPlayed.length)
-						{
-							beingPlayed = stringsPlayed[x];
-						}
-
-						Imgproc.putText(frameToAnnotate, "String "+Integer.toString(x)+": " + beingPlayed , new Point((currentFrame.rows() / scaleFactor) * 1 ,(currentFrame.cols() / (scaleFactor)) * (x+1)), Core.FONT_ITALIC, 1.0, new Scalar(255,255,255), 2);
-						Imgproc.putText(frameToAnnotate, "Note : " + currentSemitone , new Point((currentFrame.rows() / scaleFactor) * 8 ,(currentFrame.cols() / (scaleFactor)) * (x+1)), Core.FONT_ITALIC, 1.0, new Scalar(255,255,255), 2);
+						startFrame = checkpoint.frameNumber + 1;
+						framesProcessed.set(startFrame);
 					}
 				}
+				
+				if (checkpointInterval > 0)
+				{
+					processor.setCheckpointing(checkpointFile, checkpointInterval);
+				}
 			}
-			//Initialise plucking detection from the strings in the first frame
-			else
+			
+			if (detectionCaching)
 			{
-				pluckDetector.setInitialStrings(guitarStrings);
-				firstFrame = false;
+				processor.setDetectionCacheFile(new File(outputMidiFileName + "_detections.cache"));
 			}
 			
-			if (writeAnnotatedVideo)
+			VideoFrameSource frameSource = new VideoFrameSource(guitarVideo, processingResolution, frameSampling, startFrame, numberFramesToProcess);
+			
+			frameSource.setProfile(profile);
+			frameSource.setLeakRegistry(matLeakRegistry);
+			
+			if (processingMode == ProcessingMode.PIPELINED)
+			{
+				FramePipeline pipeline = new FramePipeline(frameSource, processor, outputVideo, pipelineQueueCapacity);
+				
+				pipeline.run();
+			}
+			else
 			{
-				outputVideo.write(frameToAnnotate);
+				//Process frames one by one
+				VideoFrame frame;
+				
+				while ((frame = frameSource.nextFrame()) != null)
+				{
+					processor.detectSkin(frame);
+					
+					processor.detectGuitar(frame);
+					
+					processor.detectNotes(frame);
+					
+					if (writeAnnotatedVideo)
+					{
+						processor.writeFrame(frame, outputVideo);
+					}
+					
+					frame.release();
+				}
 			}
 			
-			frameNo++;
-			if ((numberFramesToProcess!= null) && (frameNo >= numberFramesToProcess)) break;
+			frameSource.release();
+			processor.release();
 			
-			//Skip every other frame to reduce processing time
-			guitarVideo.read(currentFrame);
+			transcribedMusic = processor.getSheetMusic();
 		}
 		
 		guitarVideo.release();
@@ -332,8 +677,34 @@ public class Engine {
 		
 		File midiFile = transcribedMusic.writeFile(outputMidiFileName);
 		
+		//The transcription has finished, so it does not need to be resumed
+		if (checkpointFile.exists()) checkpointFile.delete();
+		
 		//Return references to the created files
-		OutputFileReferences results = new OutputFileReferences(outputFile, midiFile);
+		OutputFileReferences results;
+		
+		if (profile != null)
+		{
+			profile.setElapsedNanoseconds(System.nanoTime() - startTime);
+			
+			File profileCsvFile = profile.writeCsvFile(outputMidiFileName + "_profile");
+			File profileJsonFile = profile.writeJsonFile(outputMidiFileName + "_profile");
+			
+			results = new OutputFileReferences(outputFile, midiFile, profile, profileCsvFile, profileJsonFile);
+		}
+		else
+		{
+			results = new OutputFileReferences(outputFile, midiFile);
+		}
+		
+		if (matLeakRegistry != null)
+		{
+			String leakReport = matLeakRegistry.getReport();
+			
+			System.out.println((leakReport == null) ? "No Mats leaked" : leakReport);
+		}
+		
+		MatLeakRegistry.setCurrent(previousLeakRegistry);
 		
 		System.out.println("Processing Video Complete");
 		SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss");
@@ -0,0 +1,163 @@
+package guitarvision;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.opencv.videoio.VideoWriter;
+
+/**
+ * Runs the stages of a FrameProcessor on separate threads, joined by bounded queues.
+ * Decoding, skin detection, guitar detection, note detection and encoding each have their own thread.
+ * Every stage takes frames from its queue in frame order, so the stateful stages (previous string weighting,
+ * note onset and offset) see exactly the same sequence of frames as the sequential loop in Engine.
+ * Frames are released once they have been encoded.
+ */
+public class FramePipeline {
+	//Marker passed down the pipeline after the last frame
+	private static final VideoFrame END_OF_VIDEO = new VideoFrame(-1, null);
+
+	private static final int NUMBER_OF_STAGES = 5;
+
+	private VideoFrameSource source;
+	private FrameProcessor processor;
+	private VideoWriter outputVideo;
+	private int queueCapacity;
+
+	/**
+	 * @param source of the frames to process
+	 * @param processor which performs the detection stages
+	 * @param video to write the annotated frames to, or null if no video is to be written
+	 * @param maximum number of frames waiting between two stages
+	 */
+	public FramePipeline(VideoFrameSource source, FrameProcessor processor, VideoWriter outputVideo, int queueCapacity)
+	{
+		this.source = source;
+		this.processor = processor;
+		this.outputVideo = outputVideo;
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Process every frame from the source, returning once the last frame has been encoded
+	 */
+	public void run()
+	{
+		BlockingQueue<VideoFrame> decodedFrames = new ArrayBlockingQueue<VideoFrame>(queueCapacity);
+		BlockingQueue<VideoFrame> skinFrames = new ArrayBlockingQueue<VideoFrame>(queueCapacity);
+		BlockingQueue<VideoFrame> guitarFrames = new ArrayBlockingQueue<VideoFrame>(queueCapacity);
+		BlockingQueue<VideoFrame> noteFrames = new ArrayBlockingQueue<VideoFrame>(queueCapacity);
+
+		ExecutorService stageThreads = Executors.newFixedThreadPool(NUMBER_OF_STAGES);
+		CompletionService<Void> stages = new ExecutorCompletionService<Void>(stageThreads);
+
+		stages.submit(new Callable<Void>() {
+			public Void call() throws InterruptedException
+			{
+				VideoFrame frame;
+				while ((frame = source.nextFrame()) != null)
+				{
+					decodedFrames.put(frame);
+				}
+				decodedFrames.put(END_OF_VIDEO);
+				return null;
+			}
+		});
+
+		stages.submit(new Stage(decodedFrames, skinFrames) {
+			void process(VideoFrame frame)
+			{
+				processor.detectSkin(frame);
+			}
+		});
+
+		stages.submit(new Stage(skinFrames, guitarFrames) {
+			void process(VideoFrame frame)
+			{
+				processor.detectGuitar(frame);
+			}
+		});
+
+		stages.submit(new Stage(guitarFrames, noteFrames) {
+			void process(VideoFrame frame)
+			{
+				processor.detectNotes(frame);
+			}
+		});
+
+		stages.submit(new Stage(noteFrames, null) {
+			void process(VideoFrame frame)
+			{
+				if (outputVideo != null)
+				{
+					processor.writeFrame(frame, outputVideo);
+				}
+
+				frame.release();
+			}
+		});
+
+		try
+		{
+			for(int x = 0; x < NUMBER_OF_STAGES; x++)
+			{
+				stages.take().get();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while processing video", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException("Error in frame processing pipeline", e.getCause());
+		}
+		finally
+		{
+			//Stops the remaining stages if one of them failed
+			stageThreads.shutdownNow();
+		}
+	}
+
+	/**
+	 * A pipeline stage which takes frames from one queue, processes them and passes them on to the next queue
+	 */
+	private abstract class Stage implements Callable<Void> {
+		private BlockingQueue<VideoFrame> input;
+		private BlockingQueue<VideoFrame> output;
+
+		Stage(BlockingQueue<VideoFrame> input, BlockingQueue<VideoFrame> output)
+		{
+			this.input = input;
+			this.output = output;
+		}
+
+		public Void call() throws InterruptedException
+		{
+			while (true)
+			{
+				VideoFrame frame = input.take();
+
+				if (frame != END_OF_VIDEO)
+				{
+					process(frame);
+				}
+
+				if (output != null)
+				{
+					output.put(frame);
+				}
+
+				if (frame == END_OF_VIDEO) return null;
+			}
+		}
+
+		abstract void process(VideoFrame frame);
+	}
+}
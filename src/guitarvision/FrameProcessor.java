@@ -0,0 +1,691 @@
+package guitarvision;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import guitarvision.detection.DetectedLine;
+import guitarvision.detection.EdgeDetector;
+import guitarvision.detection.FretDetector;
+import guitarvision.detection.GuitarString;
+import guitarvision.detection.ImageProcessingOptions;
+import guitarvision.detection.MotionDetector;
+import guitarvision.detection.NeckRectifier;
+import guitarvision.detection.NoteDetector;
+import guitarvision.detection.PluckDetector;
+import guitarvision.detection.RectifiedNeck;
+import guitarvision.detection.SkinDetector;
+import guitarvision.detection.SkinMask;
+import guitarvision.detection.StringDetector;
+import guitarvision.memory.MatArena;
+import guitarvision.profiling.FrameProfile;
+import guitarvision.profiling.ProcessingStage;
+import guitarvision.profiling.ProfileCounter;
+import guitarvision.profiling.Profiler;
+import guitarvision.sheetmusic.MusicNote;
+import guitarvision.sheetmusic.SheetMusic;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.videoio.VideoWriter;
+
+/**
+ * Holds the detection objects and tracking state for the transcription of one video.
+ * The work for each frame is split into stages (skin detection, guitar detection and note detection) which must be
+ * applied to a frame in that order. Each stage has its own detectors and state from previous frames, so frames must
+ * be passed to each stage in frame order, but different stages may be working on different frames at the same time.
+ * The strings and frets are copied into the frame at the end of the guitar detection stage, as that stage goes on
+ * to sort, weight and measure its own strings and frets for the next frame while the note detection stage reads the frame's.
+ * While a stage works on a frame, the frame's profile (if it has one) is set as the thread's current profile,
+ * and the frame's arena as the thread's current arena, so the Mats allocated by the stage are released with the frame.
+ */
+public class FrameProcessor {
+	private Engine engine;
+
+	private int firstNoteDuration;
+	private boolean writeAnnotatedVideo;
+
+	//Detection objects
+	private EdgeDetector edgeDetector;
+	private EdgeDetector fretEdgeDetector = new EdgeDetector();
+	private StringDetector stringDetector = new StringDetector();
+	private NeckRectifier neckRectifier = new NeckRectifier();
+	private FretDetector fretDetector = new FretDetector();
+	//Pluck detector of the note detection stage, and the one measuring the string thicknesses in the guitar detection stage
+	private PluckDetector pluckDetector = new PluckDetector();
+	private PluckDetector thicknessDetector = new PluckDetector();
+	private SkinDetector skinDetector = new SkinDetector();
+	private NoteDetector noteDetector = new NoteDetector();
+	private MotionDetector motionDetector = null;
+
+	private SheetMusic transcribedMusic = new SheetMusic();
+
+	//Guitar detection state
+	private ArrayList<GuitarString> previousStrings = null;
+	private ArrayList<DetectedLine> previousFrets = null;
+	private double trackingConfidenceThreshold = 0;
+
+	//Note detection state
+	private boolean firstFrame = true;
+	private boolean firstNote = true;
+	private ArrayList<MusicNote> currentlyHeldNotes = new ArrayList<MusicNote>();
+
+	//Checkpointing of the tracking state
+	private File checkpointFile = null;
+	private int checkpointInterval = 0;
+	private int framesSinceCheckpoint = 0;
+
+	//File that the detection results of each frame are written to, or null
+	private DetectionCache detectionCache = null;
+
+	//Number of frets stored for each frame in the detection cache
+	private static final int CACHED_FRETS = 32;
+
+	/**
+	 * @param engine that the transcription is being carried out by
+	 * @param firstNoteDuration - number of ticks that the first note detected lasts (four ticks is one musical beat)
+	 * @param poorLighting - whether to use a lower Canny upper threshold due to a scene with poor lighting
+	 * @param writeAnnotatedVideo - whether the frames are being annotated for the output video
+	 */
+	public FrameProcessor(Engine engine, int firstNoteDuration, boolean poorLighting, boolean writeAnnotatedVideo)
+	{
+		this.engine = engine;
+		this.firstNoteDuration = firstNoteDuration;
+		this.writeAnnotatedVideo = writeAnnotatedVideo;
+
+		edgeDetector = new EdgeDetector(engine.processingResolution);
+		if (poorLighting)
+		{
+			edgeDetector.setCannyUpperThreshold(32);
+		}
+		else
+		{
+			edgeDetector.setCannyUpperThreshold(70);
+		}
+
+		edgeDetector.setHoughThreshold(300);
+
+		fretEdgeDetector.setCannyLowerThreshold(0);
+		fretEdgeDetector.setCannyUpperThreshold(250);
+		fretEdgeDetector.setHoughThreshold(70);
+
+		stringDetector.setRegionOfInterestTracking(engine.getRegionOfInterestTracking());
+		fretDetector.setLayoutReuse(engine.getFretLayoutReuse());
+		stringDetector.setAngleWindowedHough(engine.getStringHoughAngleWindow());
+		fretDetector.setHoughMode(engine.getFretHoughMode());
+		stringDetector.setPyramidScale(engine.getPyramidScale());
+		fretDetector.setPyramidScale(engine.getPyramidScale());
+		
+		if (engine.getGeometryTracking())
+		{
+			stringDetector.setTracking(true);
+			fretDetector.setTracking(true);
+			trackingConfidenceThreshold = engine.getTrackingConfidenceThreshold();
+		}
+
+		pluckDetector.setThicknessThresholdFactor(engine.getPluckThresholdFactor());
+		
+		if (engine.getMotionGatedDetection())
+		{
+			motionDetector = new MotionDetector();
+			motionDetector.setMotionThreshold(engine.getMotionThreshold());
+		}
+
+		for(int x = 0; x < stringDetector.getNumberOfStringsToDetect(); x++)
+		{
+			currentlyHeldNotes.add(null);
+		}
+	}
+
+	/**
+	 * Detect the skin in the frame
+	 * @param frame to process
+	 */
+	public void detectSkin(VideoFrame frame)
+	{
+		FrameProfile previousProfile = Profiler.setCurrentFrame(frame.profile);
+		MatArena previousArena = MatArena.setCurrent(frame.arena);
+		long startTime = Profiler.start();
+
+		try
+		{
+			frame.skin = skinDetector.getSkinMask(frame.image);
+
+			Profiler.countAllocation(frame.skin.getImage());
+		}
+		finally
+		{
+			Profiler.stop(ProcessingStage.SKIN, startTime);
+			Profiler.setCurrentFrame(previousProfile);
+			MatArena.setCurrent(previousArena);
+		}
+	}
+
+	/**
+	 * Detect the strings and frets in the frame, and measure the thickness of the strings.
+	 * The guitar neck is rectified once, after the strings are detected, for both the frets and the thicknesses.
+	 * When detection is gated by motion and the guitar has not moved, the strings and frets of the last detection
+	 * are used instead, and only the thicknesses are measured.
+	 * The skin of the frame is drawn on the annotated image if it has been detected.
+	 * @param frame to process
+	 */
+	public void detectGuitar(VideoFrame frame)
+	{
+		FrameProfile previousProfile = Profiler.setCurrentFrame(frame.profile);
+		MatArena previousArena = MatArena.setCurrent(frame.arena);
+
+		try
+		{
+			detectGuitarInFrame(frame);
+		}
+		finally
+		{
+			Profiler.setCurrentFrame(previousProfile);
+			MatArena.setCurrent(previousArena);
+		}
+	}
+
+	private void detectGuitarInFrame(VideoFrame frame)
+	{
+		Mat currentFrame = frame.image;
+		Mat frameToAnnotate = frame.annotatedImage;
+
+		boolean detect = guitarHasMoved(frame) && !trackersAreConfident();
+		
+		boolean tracking = stringDetector.getTracking();
+
+		ArrayList<GuitarString> guitarStrings;
+
+		//Detect strings and frets in frame
+		if (detect)
+		{
+			guitarStrings = stringDetector.getGuitarStrings(currentFrame, frameToAnnotate, edgeDetector, previousStrings, ImageProcessingOptions.DRAWSELECTEDLINES);
+		}
+		else if (tracking)
+		{
+			guitarStrings = stringDetector.predictGuitarStrings(frameToAnnotate, ImageProcessingOptions.DRAWSELECTEDLINES);
+		}
+		else
+		{
+			guitarStrings = stringDetector.reuseGuitarStrings(previousStrings, frameToAnnotate, ImageProcessingOptions.DRAWSELECTEDLINES);
+		}
+
+		previousStrings = guitarStrings;
+
+		//Warp the neck once for both the fret detection and the string thickness measurements
+		long rectifyStartTime = Profiler.start();
+
+		RectifiedNeck neck = neckRectifier.rectify(currentFrame, guitarStrings);
+
+		Profiler.stop(ProcessingStage.FRET_WARP, rectifyStartTime);
+
+		ArrayList<DetectedLine> guitarFrets;
+
+		if (detect)
+		{
+			guitarFrets = fretDetector.getGuitarFrets(neck, frameToAnnotate, fretEdgeDetector, previousFrets, ImageProcessingOptions.DRAWSELECTEDLINES);
+
+			Profiler.count(ProfileCounter.GUITAR_DETECTIONS, 1);
+
+			if (motionDetector != null)
+			{
+				motionDetector.setReference(currentFrame, guitarStrings, frame.skin);
+			}
+		}
+		else if (tracking)
+		{
+			guitarFrets = fretDetector.predictGuitarFrets(frameToAnnotate, ImageProcessingOptions.DRAWSELECTEDLINES);
+		}
+		else
+		{
+			//The previous frets were reversed after they were detected
+			ArrayList<DetectedLine> detectedFrets = new ArrayList<DetectedLine>(previousFrets);
+			Collections.reverse(detectedFrets);
+
+			guitarFrets = fretDetector.reuseGuitarFrets(detectedFrets, frameToAnnotate, ImageProcessingOptions.DRAWSELECTEDLINES);
+		}
+
+		Collections.reverse(guitarFrets);
+
+		//Extract string thicknesses and store them in the string objects
+		long thicknessStartTime = Profiler.start();
+
+		thicknessDetector.getStringThicknesses(guitarStrings, guitarFrets, neck);
+
+		Profiler.stop(ProcessingStage.THICKNESS, thicknessStartTime);
+
+		previousFrets = guitarFrets;
+
+		if (frame.skin != null)
+		{
+			Core.addWeighted(frameToAnnotate, 0.8, frame.skin.getImage(), 0.2, 1.0, frameToAnnotate);
+		}
+
+		frame.guitarStrings = copyStrings(guitarStrings);
+		frame.neck = neck;
+		frame.guitarFrets = copyFrets(guitarFrets);
+
+		frame.stringTrackerState = stringDetector.getTrackerState();
+		frame.fretTrackerState = fretDetector.getTrackerState();
+	}
+
+	/**
+	 * Copy the strings for the note detection stage, with their thicknesses
+	 */
+	private ArrayList<GuitarString> copyStrings(ArrayList<GuitarString> strings)
+	{
+		ArrayList<GuitarString> copies = new ArrayList<GuitarString>(strings.size());
+
+		for(GuitarString string : strings)
+		{
+			copies.add(new GuitarString(string.thickness, string));
+		}
+
+		return copies;
+	}
+
+	/**
+	 * Copy the frets for the note detection stage
+	 */
+	private ArrayList<DetectedLine> copyFrets(ArrayList<DetectedLine> frets)
+	{
+		ArrayList<DetectedLine> copies = new ArrayList<DetectedLine>(frets.size());
+
+		for(DetectedLine fret : frets)
+		{
+			copies.add(new DetectedLine(fret.getRho(), fret.getTheta(), fret.getLength()));
+		}
+
+		return copies;
+	}
+
+	/**
+	 * Decide whether the strings and frets can be predicted by their trackers rather than detected
+	 * @return true if the strings and frets are tracked, and both trackers are confident
+	 */
+	private boolean trackersAreConfident()
+	{
+		if (!stringDetector.hasTrackedStrings() || !fretDetector.hasTrackedFrets()) return false;
+		
+		return stringDetector.getTrackingConfidence() >= trackingConfidenceThreshold && fretDetector.getTrackingConfidence() >= trackingConfidenceThreshold;
+	}
+
+	/**
+	 * Decide whether to detect the strings and frets in a frame, or use those of the last detection
+	 * @param frame to process
+	 * @return true if detection is not gated by motion, the strings and frets have not all been found, or the guitar has moved
+	 */
+	private boolean guitarHasMoved(VideoFrame frame)
+	{
+		if (motionDetector == null) return true;
+
+		if (previousStrings == null || previousFrets == null || previousStrings.size() < stringDetector.getNumberOfStringsToDetect() || previousFrets.isEmpty()) return true;
+
+		//The trackers can only predict the strings and frets once they have started
+		if (stringDetector.getTracking() && !(stringDetector.hasTrackedStrings() && fretDetector.hasTrackedFrets())) return true;
+
+		long startTime = Profiler.start();
+
+		boolean moved = motionDetector.hasMoved(frame.image, frame.skin);
+
+		Profiler.stop(ProcessingStage.MOTION, startTime);
+
+		return moved;
+	}
+
+	/**
+	 * Detect which strings are plucked in the frame, starting and finishing notes accordingly.
+	 * Requires the guitar detection stage to have been carried out on the frame.
+	 * @param frame to process
+	 */
+	public void detectNotes(VideoFrame frame)
+	{
+		FrameProfile previousProfile = Profiler.setCurrentFrame(frame.profile);
+		MatArena previousArena = MatArena.setCurrent(frame.arena);
+		long startTime = Profiler.start();
+
+		try
+		{
+			detectNotesInFrame(frame);
+		}
+		finally
+		{
+			Profiler.stop(ProcessingStage.NOTES, startTime);
+			Profiler.setCurrentFrame(previousProfile);
+			MatArena.setCurrent(previousArena);
+		}
+
+		engine.frameProcessed();
+	}
+
+	private void detectNotesInFrame(VideoFrame frame)
+	{
+		Mat currentFrame = frame.image;
+		Mat frameToAnnotate = frame.annotatedImage;
+		SkinMask skin = frame.skin;
+		int frameNo = frame.frameNumber;
+		ArrayList<GuitarString> guitarStrings = frame.guitarStrings;
+		ArrayList<DetectedLine> guitarFrets = frame.guitarFrets;
+
+		//Record the detection results, unless the frame was read from a cache
+		if (detectionCache != null && frame.skinOverlaps == null)
+		{
+			detectionCache.writeFrame(frame, getSkinOverlaps(frame));
+		}
+
+		//Plucking and note detection for frames after the first frame
+		if (!firstFrame)
+		{
+			recalibratePluckDetector(guitarStrings);
+
+			//Detect which strings are vibrating
+			boolean[] stringsPlayed = pluckDetector.getVibratingStrings(guitarStrings);
+
+			if (stringsPlayed != null)
+			{
+				for(int x = 0; x < stringsPlayed.length && x < currentlyHeldNotes.size(); x++)
+				{
+					if (stringsPlayed[x] && currentlyHeldNotes.get(x) == null)
+					{
+						//Create new note object
+						MusicNote notePlayed;
+
+						if (frame.skinOverlaps != null)
+						{
+							//Frame read from a detection cache, which has no images
+							notePlayed = noteDetector.getNote(frameNo, x, NoteDetector.getFretPlaying(frame.skinOverlaps[x], frame.skinSegments));
+						}
+						else
+						{
+							notePlayed = noteDetector.getNote(frameToAnnotate, frameNo, skin, x, guitarStrings, guitarFrets);
+						}
+
+						if (notePlayed != null)
+						{
+							notePlayed.startingTime = frame.timestamp;
+						}
+
+						currentlyHeldNotes.set(x, notePlayed);
+					}
+					else if (!stringsPlayed[x] && currentlyHeldNotes.get(x) != null)
+					{
+						//Finish note as the string is no longer vibrating and add to sheet music
+						MusicNote currentNote = currentlyHeldNotes.get(x);
+
+						currentNote.setEndingFrame(frameNo);
+						currentNote.setEndingTime(frame.timestamp);
+
+						if (firstNote == true)
+						{
+							transcribedMusic.setTimingFromFirstNote(currentNote, firstNoteDuration);
+						}
+
+						firstNote = false;
+						transcribedMusic.addNote(currentNote);
+
+						currentlyHeldNotes.set(x, null);
+					}
+				}
+			}
+
+			//Annotate frame to show which notes are currently detected
+			//Display which fret is held down for each string even if it is not vibrating
+			if (writeAnnotatedVideo)
+			{
+				int scaleFactor = 12;
+				if (stringsPlayed == null) stringsPlayed = new boolean[stringDetector.getNumberOfStringsToDetect()];
+
+				MusicNote currentNote;
+				for(int x = 0; x < stringDetector.getNumberOfStringsToDetect(); x++)
+				{
+					String currentSemitone = "NONE";
+
+					if (currentlyHeldNotes.get(x) != null)
+					{
+						currentNote = currentlyHeldNotes.get(x);
+						currentSemitone = engine.intToMusicalNote(currentNote.note);
+					}
+					else
+					{
+						Mat nonVibratingAnnotations = MatArena.allocate();
+						currentFrame.copyTo(nonVibratingAnnotations);
+						MusicNote currentFretNote = noteDetector.getNote(nonVibratingAnnotations, frameNo, skin, x, guitarStrings, guitarFrets);
+						if (!(currentFretNote == null))
+						{
+							currentSemitone = engine.intToMusicalNote(currentFretNote.note);
+						}
+					}
+
+					boolean beingPlayed = false;
+					if (x < stringsPlayed.length)
+					{
+						beingPlayed = stringsPlayed[x];
+					}
+
+					Imgproc.putText(frameToAnnotate, "String "+Integer.toString(x)+": " + beingPlayed , new Point((currentFrame.rows() / scaleFactor) * 1 ,(currentFrame.cols() / (scaleFactor)) * (x+1)), Core.FONT_ITALIC, 1.0, new Scalar(255,255,255), 2);
+					Imgproc.putText(frameToAnnotate, "Note : " + currentSemitone , new Point((currentFrame.rows() / scaleFactor) * 8 ,(currentFrame.cols() / (scaleFactor)) * (x+1)), Core.FONT_ITALIC, 1.0, new Scalar(255,255,255), 2);
+				}
+			}
+		}
+		//Initialise plucking detection from the strings in the first frame
+		else
+		{
+			pluckDetector.setInitialStrings(guitarStrings);
+			firstFrame = false;
+		}
+
+		transcribedMusic.frameProcessed(frameNo, frame.timestamp, currentlyHeldNotes);
+
+		if (checkpointFile != null && ++framesSinceCheckpoint >= checkpointInterval)
+		{
+			getCheckpoint(frame).write(checkpointFile);
+			framesSinceCheckpoint = 0;
+		}
+	}
+
+	/**
+	 * Write the annotated frame to the output video
+	 * @param frame to write
+	 * @param video to write to
+	 */
+	public void writeFrame(VideoFrame frame, VideoWriter outputVideo)
+	{
+		long startTime = System.nanoTime();
+
+		outputVideo.write(frame.annotatedImage);
+
+		if (frame.profile != null)
+		{
+			frame.profile.addTime(ProcessingStage.ENCODE, System.nanoTime() - startTime);
+		}
+	}
+
+	/**
+	 * Run guitar detection and pluck detector calibration on a frame without detecting notes.
+	 * Used to let the tracking state settle before the frames which are to be transcribed.
+	 * @param frame to process
+	 */
+	public void warmUp(VideoFrame frame)
+	{
+		if (frame.profile != null)
+		{
+			frame.profile.setWarmUp(true);
+		}
+
+		detectGuitar(frame);
+
+		if (!firstFrame)
+		{
+			recalibratePluckDetector(frame.guitarStrings);
+		}
+		else
+		{
+			pluckDetector.setInitialStrings(frame.guitarStrings);
+			firstFrame = false;
+		}
+	}
+
+	/**
+	 * Re-calibrate pluck detector if previous frames didn't detect all guitar strings
+	 * @param strings detected in the current frame
+	 */
+	private void recalibratePluckDetector(ArrayList<GuitarString> guitarStrings)
+	{
+		if (pluckDetector.getInitialStrings().size() < stringDetector.getNumberOfStringsToDetect() && guitarStrings.size() > pluckDetector.getInitialStrings().size())
+		{
+			pluckDetector.setInitialStrings(guitarStrings);
+		}
+	}
+
+	/**
+	 * Release the buffers of the edge and motion detectors and close the detection cache, once every frame has been processed
+	 */
+	public void release()
+	{
+		edgeDetector.release();
+		fretEdgeDetector.release();
+
+		if (motionDetector != null)
+		{
+			motionDetector.release();
+		}
+
+		if (detectionCache != null)
+		{
+			detectionCache.close();
+		}
+	}
+
+	/**
+	 * @return list with the note being held on each string, or null for strings which are not vibrating
+	 */
+	public ArrayList<MusicNote> getCurrentlyHeldNotes()
+	{
+		return currentlyHeldNotes;
+	}
+
+	/**
+	 * Find the segments between the frets of each string which overlap the skin, for the detection cache
+	 * @param frame which has been through the guitar detection stage
+	 * @return bits of the segments for each string
+	 */
+	private long[] getSkinOverlaps(VideoFrame frame)
+	{
+		long[] skinOverlaps = new long[frame.guitarStrings.size()];
+
+		for(int x = 0; x < skinOverlaps.length; x++)
+		{
+			skinOverlaps[x] = noteDetector.getSkinOverlaps(frame.skin, frame.guitarStrings.get(x), frame.guitarFrets);
+		}
+
+		return skinOverlaps;
+	}
+
+	/**
+	 * Write the detection results of each frame to a cache file, which is closed when the processor is released
+	 * @param file to write, replacing any existing file
+	 */
+	public void setDetectionCacheFile(File file)
+	{
+		detectionCache = DetectionCache.createFile(file, stringDetector.getNumberOfStringsToDetect(), CACHED_FRETS);
+	}
+
+	/**
+	 * Write a checkpoint of the tracking state after every few frames, replacing the previous checkpoint
+	 * @param file to write the checkpoints to, or null to stop checkpointing
+	 * @param number of frames between checkpoints
+	 */
+	public void setCheckpointing(File file, int interval)
+	{
+		checkpointFile = file;
+		checkpointInterval = interval;
+		framesSinceCheckpoint = 0;
+	}
+
+	/**
+	 * Get the tracking state after the note detection stage has processed a frame.
+	 * The strings, frets and their trackers are taken from the frame, as the guitar detection stage may have moved on to later frames.
+	 * @param frame which has just been processed
+	 * @return checkpoint of the state
+	 */
+	private TranscriptionCheckpoint getCheckpoint(VideoFrame frame)
+	{
+		TranscriptionCheckpoint checkpoint = new TranscriptionCheckpoint();
+
+		checkpoint.frameNumber = frame.frameNumber;
+
+		checkpoint.previousStrings = frame.guitarStrings;
+		checkpoint.previousFrets = frame.guitarFrets;
+		checkpoint.stringTracks = frame.stringTrackerState;
+		checkpoint.fretTracks = frame.fretTrackerState;
+
+		checkpoint.pluckInitialStrings = pluckDetector.getInitialStrings();
+		checkpoint.firstFrame = firstFrame;
+		checkpoint.firstNote = firstNote;
+		checkpoint.currentlyHeldNotes = currentlyHeldNotes;
+
+		checkpoint.framesPerTick = transcribedMusic.framesPerTick;
+		checkpoint.globalStartFrame = transcribedMusic.globalStartFrame;
+		checkpoint.millisecondsPerTick = transcribedMusic.millisecondsPerTick;
+		checkpoint.globalStartTime = transcribedMusic.globalStartTime;
+		checkpoint.notes = transcribedMusic.getNotes();
+
+		return checkpoint;
+	}
+
+	/**
+	 * Restore the tracking state from a checkpoint, before the frame after the checkpoint is processed
+	 * @param checkpoint to restore
+	 */
+	public void restoreCheckpoint(TranscriptionCheckpoint checkpoint)
+	{
+		previousStrings = checkpoint.previousStrings;
+		previousFrets = checkpoint.previousFrets;
+		stringDetector.setTrackerState(checkpoint.stringTracks);
+		fretDetector.setTrackerState(checkpoint.fretTracks);
+
+		pluckDetector.setInitialStrings(checkpoint.pluckInitialStrings);
+		firstFrame = checkpoint.firstFrame;
+		firstNote = checkpoint.firstNote;
+
+		for(int x = 0; x < currentlyHeldNotes.size() && x < checkpoint.currentlyHeldNotes.size(); x++)
+		{
+			currentlyHeldNotes.set(x, checkpoint.currentlyHeldNotes.get(x));
+		}
+
+		transcribedMusic.setFramesPerBeat(checkpoint.framesPerTick);
+		transcribedMusic.setInitialFrame(checkpoint.globalStartFrame);
+		transcribedMusic.millisecondsPerTick = checkpoint.millisecondsPerTick;
+		transcribedMusic.globalStartTime = checkpoint.globalStartTime;
+
+		for(MusicNote note : checkpoint.notes)
+		{
+			transcribedMusic.addNote(note);
+		}
+
+		if (motionDetector != null)
+		{
+			motionDetector.reset();
+		}
+	}
+
+	/**
+	 * Set the sheet music that completed notes are added to, before any frames are processed
+	 * @param sheet music, such as StreamingSheetMusic to write the notes to a file as they are completed
+	 */
+	public void setSheetMusic(SheetMusic music)
+	{
+		transcribedMusic = music;
+	}
+
+	/**
+	 * @return the notes that have been completed so far
+	 */
+	public SheetMusic getSheetMusic()
+	{
+		return transcribedMusic;
+	}
+}
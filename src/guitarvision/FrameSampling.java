@@ -0,0 +1,88 @@
+package guitarvision;
+
+/**
+ * Which frames of a video are processed.
+ * Frames are either taken at a fixed stride, or as close as possible to a target number of frames per second using
+ * the timestamps of the frames, which also handles videos whose frame rate varies.
+ * Processing fewer frames is faster but lowers the temporal resolution of pluck detection. The notes are timed by
+ * the timestamps of the frames they start and finish in, so the tempo of the transcription does not depend on the sampling.
+ */
+public class FrameSampling {
+	//Number of video frames for each frame that is processed
+	private int stride = VideoFrameSource.FRAME_STEP;
+
+	//Frames per second to process, or 0 to use the stride
+	private double targetFramesPerSecond = 0;
+
+	//Whether to skip frames with VideoCapture.grab, which does not convert them to an image, rather than read
+	private boolean grabSkippedFrames = true;
+
+	public FrameSampling()
+	{
+	}
+
+	/**
+	 * @param number of video frames for each frame that is processed, 1 to process every frame
+	 */
+	public FrameSampling(int stride)
+	{
+		this.stride = stride;
+	}
+
+	/**
+	 * Get the number of video frames for each processed frame, which is also used for seeking to a processed frame
+	 * when sampling by the target frame rate
+	 * @param frame rate of the video, or 0 if it is not known
+	 * @return stride of at least 1
+	 */
+	public int getStride(double videoFramesPerSecond)
+	{
+		if (targetFramesPerSecond > 0 && videoFramesPerSecond > 0)
+		{
+			return (int) Math.max(1, Math.round(videoFramesPerSecond / targetFramesPerSecond));
+		}
+
+		return Math.max(1, stride);
+	}
+
+	/**
+	 * @param number of video frames for each frame that is processed, 1 to process every frame
+	 */
+	public void setStride(int stride)
+	{
+		this.stride = stride;
+	}
+
+	public int getStride()
+	{
+		return stride;
+	}
+
+	/**
+	 * Set the number of frames to process for each second of video, instead of using the stride.
+	 * Frames are chosen by their timestamps, taking the frame nearest to each sampling time.
+	 * @param frames per second, or 0 to use the stride
+	 */
+	public void setTargetFramesPerSecond(double framesPerSecond)
+	{
+		targetFramesPerSecond = framesPerSecond;
+	}
+
+	public double getTargetFramesPerSecond()
+	{
+		return targetFramesPerSecond;
+	}
+
+	/**
+	 * @param whether to skip frames with VideoCapture.grab, which does not convert them to an image, rather than read
+	 */
+	public void setGrabSkippedFrames(boolean grab)
+	{
+		grabSkippedFrames = grab;
+	}
+
+	public boolean getGrabSkippedFrames()
+	{
+		return grabSkippedFrames;
+	}
+}
@@ -2,16 +2,30 @@ package guitarvision;
 
 import java.io.File;
 
+import guitarvision.profiling.TranscriptionProfile;
+
 public class OutputFileReferences {
 	private File videoFile;
 	private File midiFile;
 	
+	private TranscriptionProfile profile = null;
+	private File profileCsvFile = null;
+	private File profileJsonFile = null;
+	
 	public OutputFileReferences(File videoFile, File midiFile)
 	{
 		this.videoFile = videoFile;
 		this.midiFile = midiFile;
 	}
 	
+	public OutputFileReferences(File videoFile, File midiFile, TranscriptionProfile profile, File profileCsvFile, File profileJsonFile)
+	{
+		this(videoFile, midiFile);
+		this.profile = profile;
+		this.profileCsvFile = profileCsvFile;
+		this.profileJsonFile = profileJsonFile;
+	}
+	
 	public File getVideoFile()
 	{
 		return videoFile;
@@ -21,4 +35,28 @@ public class OutputFileReferences {
 	{
 		return midiFile;
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * @return timings and counters of the transcription, or null if it was not profiled
+	 */
+	public TranscriptionProfile getProfile()
+	{
+		return profile;
+	}
+	
+	/**
+	 * @return file with a row of timings and counters for each frame, or null if the transcription was not profiled
+	 */
+	public File getProfileCsvFile()
+	{
+		return profileCsvFile;
+	}
+	
+	/**
+	 * @return file with the latency histogram of each stage, or null if the transcription was not profiled
+	 */
+	public File getProfileJsonFile()
+	{
+		return profileJsonFile;
+	}
+}
@@ -0,0 +1,12 @@
+package guitarvision;
+
+/**
+ * How the engine schedules the per-frame work of a transcription.
+ * SEQUENTIAL runs every stage for a frame on the calling thread before reading the next frame.
+ * PIPELINED runs decoding, skin detection, guitar detection, note detection and encoding as separate
+ * threads joined by bounded queues, so that different frames are in different stages at the same time.
+ * CHUNKED splits the video into evenly sized chunks which are transcribed in parallel and then stitched together.
+ */
+public enum ProcessingMode {
+	SEQUENTIAL, PIPELINED, CHUNKED
+}
@@ -0,0 +1,359 @@
+package guitarvision;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+
+import guitarvision.detection.DetectedLine;
+import guitarvision.detection.GuitarString;
+import guitarvision.detection.LineTracker;
+import guitarvision.sheetmusic.MusicNote;
+
+/**
+ * The tracking state of a transcription after a frame has been processed, so that an interrupted transcription
+ * can be resumed from the frame after it instead of from the start of the video.
+ * Holds the strings and frets of the frame and their tracks, the strings the pluck detector compares against, the notes being held,
+ * and the timing and notes of the sheet music so far.
+ * The file is written to a temporary file first and then moved over the previous checkpoint, so a transcription
+ * killed while writing leaves the previous checkpoint intact.
+ */
+public class TranscriptionCheckpoint {
+	private static final int MAGIC_NUMBER = 0x47564350;
+	private static final int VERSION = 2;
+
+	//Number of the last processed frame
+	public int frameNumber;
+
+	//Guitar detection state
+	public ArrayList<GuitarString> previousStrings = null;
+	public ArrayList<DetectedLine> previousFrets = null;
+	//Tracks of the strings and frets, or null if they are not tracked
+	public LineTracker.State stringTracks = null;
+	public LineTracker.State fretTracks = null;
+
+	//Note detection state
+	public ArrayList<GuitarString> pluckInitialStrings = null;
+	public boolean firstFrame = true;
+	public boolean firstNote = true;
+	public ArrayList<MusicNote> currentlyHeldNotes = new ArrayList<MusicNote>();
+
+	//Sheet music timing and the notes completed so far
+	public int framesPerTick;
+	public int globalStartFrame;
+	public double millisecondsPerTick;
+	public double globalStartTime;
+	public ArrayList<MusicNote> notes = new ArrayList<MusicNote>();
+
+	/**
+	 * Write the checkpoint, replacing the previous checkpoint once it has been written
+	 * @param file to write to
+	 * @return true if the checkpoint was written
+	 */
+	public boolean write(File checkpointFile)
+	{
+		File temporaryFile = new File(checkpointFile.getPath() + ".tmp");
+
+		DataOutputStream output = null;
+
+		try
+		{
+			output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+
+			output.writeInt(MAGIC_NUMBER);
+			output.writeInt(VERSION);
+
+			output.writeInt(frameNumber);
+
+			writeStrings(output, previousStrings);
+			writeLines(output, previousFrets);
+			writeTracks(output, stringTracks);
+			writeTracks(output, fretTracks);
+
+			writeStrings(output, pluckInitialStrings);
+			output.writeBoolean(firstFrame);
+			output.writeBoolean(firstNote);
+			writeNotes(output, currentlyHeldNotes);
+
+			output.writeInt(framesPerTick);
+			output.writeInt(globalStartFrame);
+			output.writeDouble(millisecondsPerTick);
+			output.writeDouble(globalStartTime);
+			writeNotes(output, notes);
+
+			output.close();
+			output = null;
+
+			Files.move(temporaryFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			return true;
+		}
+		catch (IOException e)
+		{
+			System.out.println(e.getMessage());
+		}
+		finally
+		{
+			if (output != null)
+			{
+				try
+				{
+					output.close();
+				}
+				catch (IOException e)
+				{
+					System.out.println(e.getMessage());
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Read a checkpoint written by write
+	 * @param file to read
+	 * @return the checkpoint, or null if the file does not exist or is not a checkpoint
+	 */
+	public static TranscriptionCheckpoint read(File checkpointFile)
+	{
+		if (!checkpointFile.exists()) return null;
+
+		DataInputStream input = null;
+
+		try
+		{
+			input = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpointFile)));
+
+			if (input.readInt() != MAGIC_NUMBER || input.readInt() != VERSION)
+			{
+				System.out.println("Not a transcription checkpoint: " + checkpointFile.getPath());
+				return null;
+			}
+
+			TranscriptionCheckpoint checkpoint = new TranscriptionCheckpoint();
+
+			checkpoint.frameNumber = input.readInt();
+
+			checkpoint.previousStrings = readStrings(input);
+			checkpoint.previousFrets = readLines(input);
+			checkpoint.stringTracks = readTracks(input);
+			checkpoint.fretTracks = readTracks(input);
+
+			checkpoint.pluckInitialStrings = readStrings(input);
+			checkpoint.firstFrame = input.readBoolean();
+			checkpoint.firstNote = input.readBoolean();
+			checkpoint.currentlyHeldNotes = readNotes(input);
+
+			checkpoint.framesPerTick = input.readInt();
+			checkpoint.globalStartFrame = input.readInt();
+			checkpoint.millisecondsPerTick = input.readDouble();
+			checkpoint.globalStartTime = input.readDouble();
+			checkpoint.notes = readNotes(input);
+
+			return checkpoint;
+		}
+		catch (IOException e)
+		{
+			System.out.println(e.getMessage());
+		}
+		finally
+		{
+			if (input != null)
+			{
+				try
+				{
+					input.close();
+				}
+				catch (IOException e)
+				{
+					System.out.println(e.getMessage());
+				}
+			}
+		}
+
+		return null;
+	}
+
+	//Lists are written as their size, or -1 for null, followed by their elements
+
+	private static void writeLines(DataOutputStream output, ArrayList<DetectedLine> lines) throws IOException
+	{
+		output.writeInt(lines == null ? -1 : lines.size());
+
+		if (lines == null) return;
+
+		for(DetectedLine line : lines)
+		{
+			output.writeDouble(line.getRho());
+			output.writeDouble(line.getTheta());
+			output.writeInt(line.getLength());
+		}
+	}
+
+	private static ArrayList<DetectedLine> readLines(DataInputStream input) throws IOException
+	{
+		int size = input.readInt();
+
+		if (size < 0) return null;
+
+		ArrayList<DetectedLine> lines = new ArrayList<DetectedLine>(size);
+
+		for(int index = 0; index < size; index++)
+		{
+			lines.add(new DetectedLine(input.readDouble(), input.readDouble(), input.readInt()));
+		}
+
+		return lines;
+	}
+
+	private static void writeStrings(DataOutputStream output, ArrayList<GuitarString> strings) throws IOException
+	{
+		output.writeInt(strings == null ? -1 : strings.size());
+
+		if (strings == null) return;
+
+		for(GuitarString string : strings)
+		{
+			output.writeDouble(string.getRho());
+			output.writeDouble(string.getTheta());
+			output.writeInt(string.getLength());
+			output.writeDouble(string.thickness);
+		}
+	}
+
+	private static ArrayList<GuitarString> readStrings(DataInputStream input) throws IOException
+	{
+		int size = input.readInt();
+
+		if (size < 0) return null;
+
+		ArrayList<GuitarString> strings = new ArrayList<GuitarString>(size);
+
+		for(int index = 0; index < size; index++)
+		{
+			DetectedLine line = new DetectedLine(input.readDouble(), input.readDouble(), input.readInt());
+			strings.add(new GuitarString(input.readDouble(), line));
+		}
+
+		return strings;
+	}
+
+	//Tracks are written as their number, or -1 for no tracker, followed by the tracks and the confidence
+
+	private static void writeTracks(DataOutputStream output, LineTracker.State tracks) throws IOException
+	{
+		output.writeInt(tracks == null ? -1 : tracks.rho.length);
+
+		if (tracks == null) return;
+
+		for(int track = 0; track < tracks.rho.length; track++)
+		{
+			output.writeDouble(tracks.rho[track]);
+			output.writeDouble(tracks.theta[track]);
+			output.writeDouble(tracks.rhoVelocity[track]);
+			output.writeDouble(tracks.thetaVelocity[track]);
+			output.writeInt(tracks.length[track]);
+		}
+
+		output.writeDouble(tracks.confidence);
+	}
+
+	private static LineTracker.State readTracks(DataInputStream input) throws IOException
+	{
+		int size = input.readInt();
+
+		if (size < 0) return null;
+
+		LineTracker.State tracks = new LineTracker.State(new double[size], new double[size], new double[size], new double[size], new int[size], 0);
+
+		for(int track = 0; track < size; track++)
+		{
+			tracks.rho[track] = input.readDouble();
+			tracks.theta[track] = input.readDouble();
+			tracks.rhoVelocity[track] = input.readDouble();
+			tracks.thetaVelocity[track] = input.readDouble();
+			tracks.length[track] = input.readInt();
+		}
+
+		tracks.confidence = input.readDouble();
+
+		return tracks;
+	}
+
+	//Notes which are null, for strings which are not vibrating, are kept in their place in the list
+
+	private static void writeNotes(DataOutputStream output, ArrayList<MusicNote> notes) throws IOException
+	{
+		output.writeInt(notes.size());
+
+		for(MusicNote note : notes)
+		{
+			output.writeBoolean(note != null);
+
+			if (note == null) continue;
+
+			output.writeInt(note.note);
+			output.writeInt(note.octave);
+			output.writeInt(note.string);
+			output.writeInt(note.startingFrame);
+			writeNullableInteger(output, note.getEndingFrame());
+			writeNullableDouble(output, note.startingTime);
+			writeNullableDouble(output, note.getEndingTime());
+		}
+	}
+
+	private static ArrayList<MusicNote> readNotes(DataInputStream input) throws IOException
+	{
+		int size = input.readInt();
+
+		ArrayList<MusicNote> notes = new ArrayList<MusicNote>(size);
+
+		for(int index = 0; index < size; index++)
+		{
+			if (!input.readBoolean())
+			{
+				notes.add(null);
+				continue;
+			}
+
+			MusicNote note = new MusicNote(input.readInt(), input.readInt(), input.readInt(), input.readInt());
+			note.setEndingFrame(readNullableInteger(input));
+			note.startingTime = readNullableDouble(input);
+			note.setEndingTime(readNullableDouble(input));
+
+			notes.add(note);
+		}
+
+		return notes;
+	}
+
+	private static void writeNullableInteger(DataOutputStream output, Integer value) throws IOException
+	{
+		output.writeBoolean(value != null);
+		if (value != null) output.writeInt(value);
+	}
+
+	private static Integer readNullableInteger(DataInputStream input) throws IOException
+	{
+		return input.readBoolean() ? Integer.valueOf(input.readInt()) : null;
+	}
+
+	private static void writeNullableDouble(DataOutputStream output, Double value) throws IOException
+	{
+		output.writeBoolean(value != null);
+		if (value != null) output.writeDouble(value);
+	}
+
+	private static Double readNullableDouble(DataInputStream input) throws IOException
+	{
+		return input.readBoolean() ? Double.valueOf(input.readDouble()) : null;
+	}
+}
@@ -0,0 +1,90 @@
+package guitarvision;
+
+import java.io.File;
+
+/**
+ * A video to transcribe as part of a batch, along with the options for transcribing it.
+ * The options are the same as the parameters of Engine.transcribeFromVideo.
+ */
+public class TranscriptionJob {
+	private File videoFile;
+	private String outputDirectoryName;
+	private Integer numberFramesToProcess = null;
+	private int firstNoteDuration = 4;
+	private boolean poorLighting = false;
+	private boolean writeAnnotatedVideo = false;
+	private FrameSampling frameSampling = null;
+
+	/**
+	 * @param video to transcribe
+	 * @param path of directory to write the output files to
+	 */
+	public TranscriptionJob(File videoFile, String outputDirectoryName)
+	{
+		this.videoFile = videoFile;
+		this.outputDirectoryName = outputDirectoryName;
+	}
+
+	public File getVideoFile()
+	{
+		return videoFile;
+	}
+
+	public String getOutputDirectoryName()
+	{
+		return outputDirectoryName;
+	}
+
+	public void setNumberFramesToProcess(Integer frames)
+	{
+		numberFramesToProcess = frames;
+	}
+
+	public Integer getNumberFramesToProcess()
+	{
+		return numberFramesToProcess;
+	}
+
+	public void setFirstNoteDuration(int ticks)
+	{
+		firstNoteDuration = ticks;
+	}
+
+	public int getFirstNoteDuration()
+	{
+		return firstNoteDuration;
+	}
+
+	public void setPoorLighting(boolean value)
+	{
+		poorLighting = value;
+	}
+
+	public boolean getPoorLighting()
+	{
+		return poorLighting;
+	}
+
+	public void setWriteAnnotatedVideo(boolean value)
+	{
+		writeAnnotatedVideo = value;
+	}
+
+	public boolean getWriteAnnotatedVideo()
+	{
+		return writeAnnotatedVideo;
+	}
+
+	/**
+	 * @param which frames of the video to process, or null to use the engine's default
+	 */
+	public void setFrameSampling(FrameSampling sampling)
+	{
+		frameSampling = sampling;
+	}
+
+	public FrameSampling getFrameSampling()
+	{
+		return frameSampling;
+	}
+}
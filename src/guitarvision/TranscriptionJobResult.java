@@ -0,0 +1,66 @@
+package guitarvision;
+
+/**
+ * Outcome of a transcription job run by BatchTranscriber
+ */
+public class TranscriptionJobResult {
+	private TranscriptionJob job;
+	private OutputFileReferences files;
+	private int framesProcessed;
+	private long elapsedNanoseconds;
+	private Throwable error;
+
+	public TranscriptionJobResult(TranscriptionJob job, OutputFileReferences files, int framesProcessed, long elapsedNanoseconds, Throwable error)
+	{
+		this.job = job;
+		this.files = files;
+		this.framesProcessed = framesProcessed;
+		this.elapsedNanoseconds = elapsedNanoseconds;
+		this.error = error;
+	}
+
+	public TranscriptionJob getJob()
+	{
+		return job;
+	}
+
+	/**
+	 * @return references to the generated output files, or null if the job failed
+	 */
+	public OutputFileReferences getFiles()
+	{
+		return files;
+	}
+
+	public int getFramesProcessed()
+	{
+		return framesProcessed;
+	}
+
+	public double getElapsedSeconds()
+	{
+		return elapsedNanoseconds / 1e9;
+	}
+
+	/**
+	 * @return throughput of the job in processed frames per second
+	 */
+	public double getFramesPerSecond()
+	{
+		if (elapsedNanoseconds <= 0) return 0;
+		return framesProcessed / getElapsedSeconds();
+	}
+
+	public boolean succeeded()
+	{
+		return error == null;
+	}
+
+	/**
+	 * @return the exception that stopped the job, or null if it succeeded
+	 */
+	public Throwable getError()
+	{
+		return error;
+	}
+}
@@ -0,0 +1,14 @@
+package guitarvision;
+
+/**
+ * Receives progress updates while an Engine transcribes a video.
+ * Updates may come from the threads processing the frames rather than the thread that started the transcription.
+ */
+public interface TranscriptionProgressListener {
+	/**
+	 * Called after each frame has been processed
+	 * @param number of frames processed so far
+	 * @param estimated total number of frames that will be processed
+	 */
+	void framesProcessed(int framesProcessed, int totalFrames);
+}
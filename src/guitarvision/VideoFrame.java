@@ -0,0 +1,81 @@
+package guitarvision;
+
+import java.util.ArrayList;
+
+import guitarvision.detection.DetectedLine;
+import guitarvision.detection.GuitarString;
+import guitarvision.detection.LineTracker;
+import guitarvision.detection.RectifiedNeck;
+import guitarvision.detection.SkinMask;
+import guitarvision.memory.MatArena;
+import guitarvision.profiling.FrameProfile;
+
+import org.opencv.core.Mat;
+
+/**
+ * A single frame of the video being transcribed, along with the results of each processing stage.
+ * The fields are filled in by the stages of FrameProcessor in order.
+ * The Mats of the frame belong to its arena, and must not be used once the frame has been released.
+ */
+public class VideoFrame {
+	//Index of the frame amongst the frames that are processed (not the frame number in the video)
+	public int frameNumber;
+
+	//Number of the frame in the video
+	public int videoFrameNumber;
+
+	//Time in milliseconds that the frame is shown at in the video, or null if it is not known
+	public Double timestamp = null;
+
+	//Frame resized to the processing resolution
+	public Mat image;
+	//Copy of the frame that the stages draw their results on
+	public Mat annotatedImage;
+
+	public SkinMask skin = null;
+	public ArrayList<GuitarString> guitarStrings = null;
+	public RectifiedNeck neck = null;
+	public ArrayList<DetectedLine> guitarFrets = null;
+	//State of the string and fret trackers after the frame, or null if the strings and frets are not tracked
+	public LineTracker.State stringTrackerState = null;
+	public LineTracker.State fretTrackerState = null;
+
+	//For each string, the segments between the frets which overlap the skin (see NoteDetector.getSkinOverlaps), and the
+	//number of segments, when the frame has been read from a detection cache rather than the video
+	public long[] skinOverlaps = null;
+	public int skinSegments = 0;
+
+	//Timings and counters of the stages, or null if the transcription is not being profiled
+	public FrameProfile profile = null;
+
+	//Owner of the Mats allocated while processing the frame, or null if they are left to the garbage collector
+	public MatArena arena = null;
+
+	public VideoFrame(int frameNumber, Mat image)
+	{
+		this.frameNumber = frameNumber;
+		this.image = image;
+	}
+
+	/**
+	 * Release the native memory of the frame's images and of every Mat allocated while processing it.
+	 * The strings and frets detected in the frame can still be used.
+	 */
+	public void release()
+	{
+		if (arena != null)
+		{
+			arena.release();
+		}
+
+		if (skin != null)
+		{
+			skin.release();
+		}
+
+		image = null;
+		annotatedImage = null;
+		skin = null;
+		neck = null;
+	}
+}
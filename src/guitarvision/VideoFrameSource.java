@@ -0,0 +1,255 @@
+package guitarvision;
+
+import guitarvision.memory.MatArena;
+import guitarvision.memory.MatLeakRegistry;
+import guitarvision.memory.MatPool;
+import guitarvision.profiling.ProcessingStage;
+import guitarvision.profiling.ProfileCounter;
+import guitarvision.profiling.TranscriptionProfile;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+/**
+ * Reads the frames of a video that are to be processed, resized to the processing resolution.
+ * Frames are skipped between the processed frames according to the frame sampling, to reduce processing time.
+ * Each frame is given the timestamp it is shown at in the video, for timing the notes.
+ * Each frame is given an arena for its Mats, which recycles the Mats of frames that have been released.
+ */
+public class VideoFrameSource {
+	//Default number of video frames for each frame that is processed
+	public static final int FRAME_STEP = 2;
+
+	private VideoCapture video;
+	private Size resolution;
+	private int startFrame;
+	private int endFrame;
+
+	private FrameSampling sampling;
+	private int stride;
+	private double videoFramesPerSecond;
+
+	//Number of the processed frame to return next
+	private int frameNumber;
+
+	//Number of the next frame of the video to be read
+	private int videoFrameNumber;
+
+	//Time of the next frame to process when sampling by the target frame rate
+	private double nextSampleTime = Double.NEGATIVE_INFINITY;
+
+	private Mat skippedFrame = new Mat();
+
+	private MatPool matPool = new MatPool();
+
+	private TranscriptionProfile profile = null;
+
+	/**
+	 * @param video to read frames from
+	 * @param resolution to resize the frames to
+	 * @param maximum number of frames to return
+	 */
+	public VideoFrameSource(VideoCapture video, Size resolution, int numberFramesToProcess)
+	{
+		this(video, resolution, new FrameSampling(), 0, numberFramesToProcess);
+	}
+
+	/**
+	 * Source for a section of the video, seeking to the first frame of the section
+	 * @param video to read frames from
+	 * @param resolution to resize the frames to
+	 * @param number of the first frame to return (counting processed frames)
+	 * @param number of the frame after the last frame to return (counting processed frames)
+	 */
+	public VideoFrameSource(VideoCapture video, Size resolution, int startFrame, int endFrame)
+	{
+		this(video, resolution, new FrameSampling(), startFrame, endFrame);
+	}
+
+	/**
+	 * Source for a section of the video, seeking to the first frame of the section
+	 * @param video to read frames from
+	 * @param resolution to resize the frames to
+	 * @param which frames of the video to process
+	 * @param number of the first frame to return (counting processed frames)
+	 * @param number of the frame after the last frame to return (counting processed frames)
+	 */
+	public VideoFrameSource(VideoCapture video, Size resolution, FrameSampling sampling, int startFrame, int endFrame)
+	{
+		this.video = video;
+		this.resolution = resolution;
+		this.sampling = sampling;
+		this.startFrame = startFrame;
+		this.endFrame = endFrame;
+
+		videoFramesPerSecond = video.get(Videoio.CAP_PROP_FPS);
+		stride = sampling.getStride(videoFramesPerSecond);
+
+		frameNumber = startFrame;
+		videoFrameNumber = startFrame * stride;
+
+		if (startFrame > 0)
+		{
+			video.set(Videoio.CAP_PROP_POS_FRAMES, videoFrameNumber);
+		}
+	}
+
+	/**
+	 * Start a frame profile for each frame read, recording the time taken to decode and resize it
+	 * @param profile of the transcription, or null to stop profiling
+	 */
+	public void setProfile(TranscriptionProfile profile)
+	{
+		this.profile = profile;
+	}
+
+	/**
+	 * Record the arenas of the frames read afterwards in a leak registry until they are released
+	 * @param registry, or null to not record them
+	 */
+	public void setLeakRegistry(MatLeakRegistry leakRegistry)
+	{
+		matPool.setLeakRegistry(leakRegistry);
+	}
+
+	/**
+	 * Read the next frame to process
+	 * @return the next frame, or null when the end of the video or the frame limit has been reached
+	 */
+	public VideoFrame nextFrame()
+	{
+		if (frameNumber >= endFrame) return null;
+
+		long startTime = System.nanoTime();
+
+		MatArena arena = matPool.newArena(frameNumber);
+
+		Mat decodedImage = arena.newMat();
+
+		boolean sampleByTime = sampling.getTargetFramesPerSecond() > 0 && videoFramesPerSecond > 0;
+
+		if (!(sampleByTime ? readNextFrameByTime(decodedImage) : readNextFrameByStride(decodedImage)))
+		{
+			arena.release();
+			return null;
+		}
+
+		long decodedTime = System.nanoTime();
+		long decodedBytes = decodedImage.total() * decodedImage.elemSize();
+
+		//Resize image
+		Mat image = arena.newMat();
+		Imgproc.resize(decodedImage, image, resolution);
+
+		VideoFrame frame = new VideoFrame(frameNumber, image);
+
+		frame.videoFrameNumber = videoFrameNumber - 1;
+		frame.timestamp = getTimestamp(frame.videoFrameNumber);
+		frame.arena = arena;
+		frame.annotatedImage = arena.newMat();
+		image.copyTo(frame.annotatedImage);
+
+		if (profile != null)
+		{
+			frame.profile = profile.addFrame(frameNumber);
+			frame.profile.addTime(ProcessingStage.DECODE, decodedTime - startTime);
+			frame.profile.addTime(ProcessingStage.RESIZE, System.nanoTime() - decodedTime);
+			frame.profile.addCount(ProfileCounter.MAT_BYTES, decodedBytes + (2 * image.total() * image.elemSize()));
+		}
+
+		frameNumber++;
+
+		return frame;
+	}
+
+	/**
+	 * Skip the frames before the next processed frame and read it
+	 * @param Mat to read the frame into
+	 * @return false at the end of the video
+	 */
+	private boolean readNextFrameByStride(Mat image)
+	{
+		if (frameNumber > startFrame)
+		{
+			for(int x = 1; x < stride; x++)
+			{
+				if (!skipFrame()) return false;
+			}
+		}
+
+		if (!video.read(image)) return false;
+
+		videoFrameNumber++;
+
+		return true;
+	}
+
+	/**
+	 * Skip frames until the frame nearest to the next sampling time, and read it
+	 * @param Mat to read the frame into
+	 * @return false at the end of the video
+	 */
+	private boolean readNextFrameByTime(Mat image)
+	{
+		double sampleInterval = 1000.0 / sampling.getTargetFramesPerSecond();
+
+		//A frame is taken if it is shown within half a video frame of the sampling time
+		double tolerance = 500.0 / videoFramesPerSecond;
+
+		while (video.grab())
+		{
+			videoFrameNumber++;
+
+			Double time = getTimestamp(videoFrameNumber - 1);
+
+			if (time >= nextSampleTime - tolerance)
+			{
+				//Sampling times follow on from each other, unless the video has jumped past the next one
+				nextSampleTime = (time > nextSampleTime + sampleInterval) ? time + sampleInterval : nextSampleTime + sampleInterval;
+
+				return video.retrieve(image);
+			}
+		}
+
+		return false;
+	}
+
+	private boolean skipFrame()
+	{
+		boolean skipped = sampling.getGrabSkippedFrames() ? video.grab() : video.read(skippedFrame);
+
+		if (skipped) videoFrameNumber++;
+
+		return skipped;
+	}
+
+	/**
+	 * Get the time that the last frame read is shown at.
+	 * Not every video backend reports the position in milliseconds, in which case it is found from the frame rate.
+	 * @param number of the last frame read in the video
+	 * @return time in milliseconds, or null if neither the position nor the frame rate of the video is known
+	 */
+	private Double getTimestamp(int videoFrame)
+	{
+		double time = video.get(Videoio.CAP_PROP_POS_MSEC);
+
+		if (time > 0 || (videoFrame == 0 && videoFramesPerSecond > 0)) return time;
+
+		if (videoFramesPerSecond > 0) return (videoFrame * 1000.0) / videoFramesPerSecond;
+
+		return null;
+	}
+
+	/**
+	 * Release the Mats kept for reading frames, including those recycled from released frames.
+	 * Frames which have not been released yet release their Mats as usual.
+	 */
+	public void release()
+	{
+		skippedFrame.release();
+		matPool.release();
+	}
+}
@@ -2,8 +2,6 @@ package guitarvision.detection;
 
 import guitarvision.Engine;
 
-import org.opencv.core.Core;
-import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.Point;
 
@@ -12,6 +10,7 @@ import org.opencv.core.Point;
  * Class that stores the information for a line, given in Polar Coordinates (defined by rho and theta values).
  * Two line end points may be generated for drawing the line.
  * Functionality for finding the intercepts of the line, intersections with other lines and applying matrix transforms.
+ * The geometry is calculated in Java from rho and theta, without creating Mats.
  */
 public class DetectedLine implements Comparable<DetectedLine>
 {
@@ -19,8 +18,15 @@ public class DetectedLine implements Comparable<DetectedLine>
 	private double rho;
 	private double theta;
 	
+	//Cosine and sine of theta, for the intersections with other lines
+	private double cosTheta;
+	private double sinTheta;
+	
+	//The default distance to extend lines by, found once rather than for every line
+	private static final int DEFAULT_LENGTH = (int) Engine.getInstance().processingResolution.width * 2;
+	
 	//The distance to extend the line on either side of (x0, y0)
-	protected int length = (int) Engine.getInstance().processingResolution.width * 2;
+	protected int length = DEFAULT_LENGTH;
 	
 	//Store the two end points once they have been calculated
 	private Point point1 = null;
@@ -35,7 +41,7 @@ public class DetectedLine implements Comparable<DetectedLine>
 	public DetectedLine(Double rho, Double theta)
 	{
 		this.rho = rho;
-		this.theta = theta;
+		setAngle(theta);
 	}
 	
 	/**
@@ -58,9 +64,6 @@ public class DetectedLine implements Comparable<DetectedLine>
 		point1 = new Point();
 		point2 = new Point();
 		
-		double cosTheta = Math.cos(theta);
-		double sinTheta = Math.sin(theta);
-		
 		//Coordinates of the point that forms a perpendicular line with the origin
 		double x0 = rho * cosTheta;
 		double y0 = rho * sinTheta;
@@ -110,16 +113,38 @@ public class DetectedLine implements Comparable<DetectedLine>
 		return theta;
 	}
 	
+	/**
+	 * @return the distance the line is extended by on either side of (x0, y0)
+	 */
+	public int getLength()
+	{
+		return length;
+	}
+	
 	public void setRho(double val)
 	{
 		rho = val;
-		computePoints();
+		clearPoints();
 	}
 	
 	public void setTheta(double val)
+	{
+		setAngle(val);
+		clearPoints();
+	}
+	
+	private void setAngle(double val)
 	{
 		theta = val;
-		computePoints();
+		cosTheta = Math.cos(theta);
+		sinTheta = Math.sin(theta);
+	}
+	
+	//The end points are calculated again when they are next needed
+	private void clearPoints()
+	{
+		point1 = null;
+		point2 = null;
 	}
 	
 	public double getGradient()
@@ -134,7 +159,7 @@ public class DetectedLine implements Comparable<DetectedLine>
 	
 	public double getYIntercept()
 	{
-		return this.rho / Math.sin(this.theta);
+		return this.rho / sinTheta;
 	}
 
 	/**
@@ -161,105 +186,74 @@ public class DetectedLine implements Comparable<DetectedLine>
 	}
 	
 	/**
-	 * Get the point where this line intersects with another line
+	 * Get the point where this line intersects with another line, by solving the two polar equations
+	 * x cos(theta) + y sin(theta) = rho
 	 * @param line to intersect with
-	 * @return intersection point
+	 * @return intersection point, or null if the lines are parallel
 	 */
 	public Point getCollisionPoint(DetectedLine otherLine)
 	{
-		Point p1 = getPoint1();
-		Point p2 = getPoint2();
+		if (otherLine.theta == theta) return null;
 		
-		Point o1 = otherLine.getPoint1();
-		Point o2 = otherLine.getPoint2();
-	
-		double m1 = (p1.y - p2.y) / (p1.x - p2.x);
-		double m2 = (o1.y - o2.y) / (o1.x - o2.x);
+		double determinant = (cosTheta * otherLine.sinTheta) - (sinTheta * otherLine.cosTheta);
 		
-		double c1 = p1.y - (m1 * p1.x);
-		double c2 = o1.y - (m2 * o1.x);
+		if (determinant == 0) return null;
 		
-		Point intersection = new Point();
+		double x = ((rho * otherLine.sinTheta) - (otherLine.rho * sinTheta)) / determinant;
+		double y = ((otherLine.rho * cosTheta) - (rho * otherLine.cosTheta)) / determinant;
 		
-		if ((otherLine.theta == 0) && (theta == 0))
-		{
-			return null;
-		}
-		else if (otherLine.theta == theta)
-		{
-			return null;
-		}
-		else if (otherLine.theta == 0)
-		{
-			intersection.x = otherLine.rho;
-			intersection.y = (m1 * otherLine.rho) + c1;
-			return intersection;
-		}
-		else if (theta == 0)
-		{
-			intersection.x = rho;
-			intersection.y = (m2 * rho) + c2;
-			return intersection;
-		}
-		else
-		{
-			intersection.x = (c2 - c1)  / (m1 - m2);
-			
-			intersection.y = ((c1 * m2) - (c2 * m1))  / (m2 - m1);
-			
-			return intersection;
-		}
+		return new Point(x, y);
 	}
 	
 	/**
 	 * Apply matrix transform to the line.
-	 * This updates the polar coordinate parameters and the two points describing the line.
+	 * This updates the polar coordinate parameters, and the two points describing the line are calculated again when needed.
 	 * @param the 3 X 3 matrix transform to apply
 	 */
 	public void applyWarp(Mat warp)
 	{
-		Point p1 = getPoint1();
-		Point p2 = getPoint2();
-		
-		Mat point1Vector = new Mat();
-		
-		point1Vector.create(3, 1, CvType.CV_64F);
-		point1Vector.put(0, 0, p1.x);
-		point1Vector.put(1, 0, p1.y);
-		point1Vector.put(2, 0, 1);
+		double[] warpValues = new double[9];
+		warp.get(0, 0, warpValues);
 		
-		Mat point2Vector = new Mat();
-		
-		point2Vector.create(3, 1, CvType.CV_64F);
-		point2Vector.put(0, 0, p2.x);
-		point2Vector.put(1, 0, p2.y);
-		point2Vector.put(2, 0, 1);
+		applyWarp(warpValues);
+	}
+	
+	/**
+	 * Apply matrix transform to the line, given as the elements of a 3 X 3 matrix in row order.
+	 * A transform applied to many lines should be read from its Mat once, rather than for every line.
+	 * The transform is applied to two points on the line, from which the new parameters are found.
+	 * @param the 9 elements of the matrix transform to apply
+	 */
+	public void applyWarp(double[] warp)
+	{
+		//Coordinates of the point that forms a perpendicular line with the origin, and the two points either side of it
+		double x0 = rho * cosTheta;
+		double y0 = rho * sinTheta;
 		
-		Mat point1Transformed = new Mat(1, 3, CvType.CV_64F);
-		Mat point2Transformed = new Mat(1, 3, CvType.CV_64F);
+		double x1 = x0 + length * (-sinTheta);
+		double y1 = y0 + length * (cosTheta);
 		
-		Core.gemm(warp, point1Vector, 1, new Mat(), 0, point1Transformed);
-		Core.gemm(warp, point2Vector, 1, new Mat(), 0, point2Transformed);
-
-		double normalisefactor = point1Transformed.get(2, 0)[0];
+		double x2 = x0 - length * (-sinTheta);
+		double y2 = y0 - length * (cosTheta);
 		
-		point1 = new Point();
-		point1.x = point1Transformed.get(0, 0)[0] / normalisefactor;
-		point1.y = point1Transformed.get(1, 0)[0] / normalisefactor;
+		double normaliseFactor1 = (warp[6] * x1) + (warp[7] * y1) + warp[8];
+		double warpedX1 = ((warp[0] * x1) + (warp[1] * y1) + warp[2]) / normaliseFactor1;
+		double warpedY1 = ((warp[3] * x1) + (warp[4] * y1) + warp[5]) / normaliseFactor1;
 		
-		double normalisefactor2 = point2Transformed.get(2, 0)[0];
+		double normaliseFactor2 = (warp[6] * x2) + (warp[7] * y2) + warp[8];
+		double warpedX2 = ((warp[0] * x2) + (warp[1] * y2) + warp[2]) / normaliseFactor2;
+		double warpedY2 = ((warp[3] * x2) + (warp[4] * y2) + warp[5]) / normaliseFactor2;
 		
-		point2 = new Point();
-		point2.x = point2Transformed.get(0, 0)[0] / normalisefactor2;
-		point2.y = point2Transformed.get(1, 0)[0] / normalisefactor2;
+		//The line through the warped points, found from their differences rather than the gradient so that vertical lines have a rho
+		double differenceX = warpedX2 - warpedX1;
+		double differenceY = warpedY2 - warpedY1;
 		
-		double newGradient = (point2.y - point1.y) / (point2.x - point1.x);
+		double newTheta = Math.atan(-differenceX / differenceY);
+		double newRho = Math.abs((warpedY1 * differenceX) - (differenceY * warpedX1)) / Math.hypot(differenceX, differenceY);
 		
-		double newTheta = Math.atan(-1 / newGradient);
-		double newRho = Math.abs(point1.y - (newGradient * point1.x)) / Math.sqrt((newGradient * newGradient) + 1);	
-		theta = newTheta;
 		rho = newRho;
-		computePoints();
+		setAngle(newTheta);
+		clearPoints();
 	}
 	
 	//Method used for sorting lists of lines by rho value
@@ -1,54 +1,649 @@
 package guitarvision.detection;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import guitarvision.profiling.ProcessingStage;
+import guitarvision.profiling.Profiler;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
-public class EdgeDetector {	
+/**
+ * Canny edge detection and Hough line detection, with their settings.
+ * The detector owns the buffers it writes the blurred image, the edges and the lines into, which are allocated once
+ * for the largest image seen (or the size given to the constructor) and reused for every image after that.
+ * Smaller images, such as the region around the strings, are written into the top left corner of the buffers, and
+ * the blurred image is surrounded by a border of its edge pixels so that Canny gives the same edges as for an image of its own.
+ * The Mats returned are therefore overwritten by the next call, and a detector must only be used by one thread at a time.
+ * The overloads taking output Mats write into the caller's Mats instead.
+ */
+public class EdgeDetector {
 	private int blurKernelSize = 3;
-	
+
 	private int cannyLowerThreshold = 0;
 	private int cannyUpperThreshold = 144;
-	
+
 	private int houghThreshold = 300;
-	
+
+	//Angle between the lines tried by the Hough transform
+	private static final double HOUGH_ANGLE_STEP = Math.PI/360;
+	//Number of angles tried by the full transform, from 0 up to PI
+	private static final int HOUGH_ANGLES = 360;
+
+	//Gaussian kernel for the blur kernel size, created when it is first needed
+	private Mat blurKernel = null;
+
+	private Mat blurBuffer = null;
+	private Mat edgeBuffer = null;
+	private Mat lineBuffer = null;
+	private Mat wrappedLineBuffer = null;
+	private Mat segmentBuffer = null;
+
+	//Views of the buffers for the size of the last image
+	private Mat blurView = null;
+	private Mat edgeView = null;
+
+	//Views of the edge pixels of the blurred image, and of the pixels around it they are copied to
+	private Mat[] blurEdgeViews = null;
+	private Mat[] blurBorderViews = null;
+
+	//Detector for the coarser level of an image pyramid, with the scale it was created for
+	private EdgeDetector coarseDetector = null;
+	private int coarseScale = 1;
+
+	//Image shrunk to a coarser level of an image pyramid
+	private Mat shrinkBuffer = null;
+
+	//Edges of the whole image when they are only detected in some regions of it, and the view of the buffer holding them
+	private Mat regionEdgeBuffer = null;
+	private Mat regionEdgeView = null;
+
+	//Mask of a polygon that edges are kept inside, the view of the buffer the size of the edges, and the corners of the polygon
+	private Mat polygonMaskBuffer = null;
+	private Mat polygonMaskView = null;
+	private MatOfPoint polygonCorners = null;
+
+	//Pixels around a region read by the blur and Canny for the pixels in the region
+	private static final int REGION_MARGIN = 4;
+
+	public EdgeDetector()
+	{
+	}
+
+	/**
+	 * @param size of the largest image that will be processed, to allocate the buffers for
+	 */
+	public EdgeDetector(Size bufferSize)
+	{
+		allocateBuffers(bufferSize, CvType.CV_8UC3);
+	}
+
+	/**
+	 * Detect the edges of an image
+	 * @param image to process
+	 * @return image of the edges, which is overwritten by the next call
+	 */
 	public Mat getEdges(Mat image)
 	{
-		Mat blurredImage = image.clone();
+		int rows = image.rows();
+		int cols = image.cols();
+
+		if (blurBuffer == null || rows + 2 > blurBuffer.rows() || cols + 2 > blurBuffer.cols() || image.type() != blurBuffer.type())
+		{
+			Size bufferSize = new Size(cols, rows);
+
+			if (blurBuffer != null)
+			{
+				bufferSize.width = Math.max(cols, blurBuffer.cols() - 2);
+				bufferSize.height = Math.max(rows, blurBuffer.rows() - 2);
+			}
+
+			releaseBuffers();
+
+			allocateBuffers(bufferSize, image.type());
+
+			Profiler.countAllocation(blurBuffer);
+			Profiler.countAllocation(edgeBuffer);
+		}
+
+		if (blurView == null || blurView.rows() != rows || blurView.cols() != cols)
+		{
+			releaseViews();
+
+			//The blurred image is surrounded by a border of one pixel in the buffer
+			blurView = blurBuffer.submat(1, rows + 1, 1, cols + 1);
+			edgeView = edgeBuffer.submat(0, rows, 0, cols);
+
+			blurEdgeViews = new Mat[] {blurBuffer.submat(1, 2, 1, cols + 1), blurBuffer.submat(rows, rows + 1, 1, cols + 1), blurBuffer.submat(0, rows + 2, 1, 2), blurBuffer.submat(0, rows + 2, cols, cols + 1)};
+			blurBorderViews = new Mat[] {blurBuffer.submat(0, 1, 1, cols + 1), blurBuffer.submat(rows + 1, rows + 2, 1, cols + 1), blurBuffer.submat(0, rows + 2, 0, 1), blurBuffer.submat(0, rows + 2, cols + 1, cols + 2)};
+		}
+
+		long startTime = Profiler.start();
+
+		blur(image, blurView);
+
+		//Canny reads the pixels around the image it is given when it is part of a larger image, so they are set to
+		//the edge pixels of the blurred image, as they would be around an image of its own. The rows are copied before
+		//the columns so that the corners are set as well.
+		for(int side = 0; side < blurEdgeViews.length; side++)
+		{
+			blurEdgeViews[side].copyTo(blurBorderViews[side]);
+		}
+
+		Imgproc.Canny(blurView, edgeView, cannyLowerThreshold, cannyUpperThreshold);
+
+		Profiler.stop(ProcessingStage.EDGES, startTime);
+
+		return edgeView;
+	}
+
+	/**
+	 * Shrink an image by a scale, averaging the pixels as for a coarser level of an image pyramid, and detect the edges of it
+	 * @param image to process
+	 * @param number of pixels of the image along each side of a pixel of the shrunk image
+	 * @return image of the edges of the shrunk image, which is overwritten by the next call
+	 */
+	public Mat getEdges(Mat image, int scale)
+	{
+		if (shrinkBuffer == null)
+		{
+			shrinkBuffer = new Mat();
+		}
+
+		long startTime = Profiler.start();
+
+		Imgproc.resize(image, shrinkBuffer, new Size(Math.max(1, image.cols() / scale), Math.max(1, image.rows() / scale)), 0, 0, Imgproc.INTER_AREA);
+
+		Profiler.stop(ProcessingStage.EDGES, startTime);
+
+		return getEdges(shrinkBuffer);
+	}
+
+	/**
+	 * Detect the edges of an image only in some regions of it, such as those around lines found at a coarser level of an image pyramid.
+	 * Each region is detected with a few pixels around it, so the edges in the region are those of the whole image,
+	 * except where Canny would have joined them to edges outside of it. Regions should not overlap, or the overlap is detected twice.
+	 * @param image to process
+	 * @param regions of the image
+	 * @return image of the edges, the size of the whole image with no edges outside of the regions, which is overwritten by the next call
+	 */
+	public Mat getEdgesInRegions(Mat image, List<Rect> regions)
+	{
+		//The region around the strings changes size every frame, so the buffer is grown to the largest image rather than reallocated
+		regionEdgeBuffer = growBuffer(regionEdgeBuffer, image.rows(), image.cols());
+
+		if (regionEdgeView != null) regionEdgeView.release();
+
+		regionEdgeView = regionEdgeBuffer.submat(0, image.rows(), 0, image.cols());
+		regionEdgeView.setTo(new Scalar(0));
+
+		for(Rect region : regions)
+		{
+			int left = Math.max(0, region.x - REGION_MARGIN);
+			int top = Math.max(0, region.y - REGION_MARGIN);
+			int right = Math.min(image.cols(), region.x + region.width + REGION_MARGIN);
+			int bottom = Math.min(image.rows(), region.y + region.height + REGION_MARGIN);
+
+			Mat detectedImage = image.submat(top, bottom, left, right);
+
+			Mat edges = getEdges(detectedImage);
+
+			Mat edgesInRegion = edges.submat(region.y - top, region.y - top + region.height, region.x - left, region.x - left + region.width);
+			Mat bufferRegion = regionEdgeView.submat(region);
+
+			edgesInRegion.copyTo(bufferRegion);
+
+			detectedImage.release();
+			edgesInRegion.release();
+			bufferRegion.release();
+		}
+
+		return regionEdgeView;
+	}
+
+	/**
+	 * Remove the edges outside of a convex polygon, such as the band around the strings
+	 * @param edges to remove edges from, which are changed
+	 * @param corners of the polygon, in the coordinates of the edges
+	 */
+	public void removeEdgesOutsidePolygon(Mat edges, Point[] corners)
+	{
+		polygonMaskBuffer = growBuffer(polygonMaskBuffer, edges.rows(), edges.cols());
+
+		if (polygonMaskView != null) polygonMaskView.release();
+
+		polygonMaskView = polygonMaskBuffer.submat(0, edges.rows(), 0, edges.cols());
+		polygonMaskView.setTo(new Scalar(0));
+
+		if (polygonCorners == null) polygonCorners = new MatOfPoint();
+
+		polygonCorners.fromArray(corners);
+
+		Imgproc.fillConvexPoly(polygonMaskView, polygonCorners, new Scalar(255));
+		Core.bitwise_and(edges, polygonMaskView, edges);
+	}
+
+	/**
+	 * Grow a single channel buffer to hold an image of a size, keeping it if it is large enough already
+	 * @param buffer, or null if there is none yet
+	 * @param rows of the image
+	 * @param cols of the image
+	 * @return buffer at least the size of the image
+	 */
+	private Mat growBuffer(Mat buffer, int rows, int cols)
+	{
+		if (buffer != null && rows <= buffer.rows() && cols <= buffer.cols()) return buffer;
+
+		if (buffer != null)
+		{
+			rows = Math.max(rows, buffer.rows());
+			cols = Math.max(cols, buffer.cols());
+
+			buffer.release();
+		}
+
+		Mat grownBuffer = new Mat(rows, cols, CvType.CV_8UC1);
+
+		Profiler.countAllocation(grownBuffer);
+
+		return grownBuffer;
+	}
+
+	/**
+	 * Detect the edges of an image only in some ranges of its columns, joining the ranges that overlap
+	 * @param image to process
+	 * @param first column of each range
+	 * @param column after the last column of each range
+	 * @return image of the edges, the size of the whole image with no edges outside of the ranges, which is overwritten by the next call
+	 */
+	public Mat getEdgesInColumns(Mat image, int[] firstColumns, int[] lastColumns)
+	{
+		int cols = image.cols();
+
+		int[][] ranges = new int[firstColumns.length][];
+		int numberOfRanges = 0;
+
+		for(int range = 0; range < firstColumns.length; range++)
+		{
+			int first = Math.max(0, firstColumns[range]);
+			int last = Math.min(cols, lastColumns[range]);
+
+			if (last > first) ranges[numberOfRanges++] = new int[] {first, last};
+		}
+
+		ranges = Arrays.copyOf(ranges, numberOfRanges);
+
+		Arrays.sort(ranges, new Comparator<int[]>() {
+			public int compare(int[] range, int[] otherRange)
+			{
+				return Integer.compare(range[0], otherRange[0]);
+			}
+		});
+
+		ArrayList<Rect> regions = new ArrayList<Rect>();
+
+		int rangeStart = 0;
+		int rangeEnd = -1;
+
+		for(int[] range : ranges)
+		{
+			if (range[0] <= rangeEnd)
+			{
+				rangeEnd = Math.max(rangeEnd, range[1]);
+			}
+			else
+			{
+				if (rangeEnd > rangeStart) regions.add(new Rect(rangeStart, 0, rangeEnd - rangeStart, image.rows()));
+
+				rangeStart = range[0];
+				rangeEnd = range[1];
+			}
+		}
+
+		if (rangeEnd > rangeStart) regions.add(new Rect(rangeStart, 0, rangeEnd - rangeStart, image.rows()));
+
+		return getEdgesInRegions(image, regions);
+	}
+
+	/**
+	 * Detector for the images of a coarser level of an image pyramid, with the same Canny thresholds as this detector
+	 * and the Hough threshold lowered by the scale, as the lines are shorter by the scale.
+	 * The detector is kept for the next call, and has its own buffers so that it does not overwrite the Mats returned by this detector.
+	 * @param number of pixels along each side of a pixel of the coarse images
+	 * @return detector for the coarse images
+	 */
+	public EdgeDetector getCoarseDetector(int scale)
+	{
+		if (coarseDetector == null || coarseScale != scale)
+		{
+			if (coarseDetector != null)
+			{
+				coarseDetector.release();
+			}
+
+			coarseDetector = new EdgeDetector();
+			coarseScale = scale;
+		}
+
+		if (coarseDetector.blurKernelSize != blurKernelSize)
+		{
+			coarseDetector.setBlurFilterSize(blurKernelSize);
+		}
+
+		coarseDetector.cannyLowerThreshold = cannyLowerThreshold;
+		coarseDetector.cannyUpperThreshold = cannyUpperThreshold;
+		coarseDetector.houghThreshold = Math.max(1, houghThreshold / scale);
 
-		Imgproc.GaussianBlur(image, blurredImage,  new Size(blurKernelSize, blurKernelSize), 1);
+		return coarseDetector;
+	}
+
+	/**
+	 * Detect the edges of an image, writing into the given Mats
+	 * @param image to process
+	 * @param Mat to write the blurred image into
+	 * @param Mat to write the edges into
+	 * @return image of the edges
+	 */
+	public Mat getEdges(Mat image, Mat blurredImage, Mat detectedEdges)
+	{
+		long startTime = Profiler.start();
 
-		Mat detectedEdges = new Mat();
+		blur(image, blurredImage);
 
 		Imgproc.Canny(blurredImage, detectedEdges, cannyLowerThreshold, cannyUpperThreshold);
-		
+
+		Profiler.stop(ProcessingStage.EDGES, startTime);
+
 		return detectedEdges;
 	}
 
+	/**
+	 * Apply the same separable filter as GaussianBlur, without creating the kernel for every image
+	 */
+	private void blur(Mat image, Mat blurredImage)
+	{
+		if (blurKernel == null)
+		{
+			blurKernel = Imgproc.getGaussianKernel(blurKernelSize, 1, CvType.CV_32F);
+		}
+
+		Imgproc.sepFilter2D(image, blurredImage, -1, blurKernel, blurKernel, new Point(-1, -1), 0, Core.BORDER_DEFAULT);
+	}
+
+	/**
+	 * Detect the lines in an image of edges
+	 * @param image of edges
+	 * @return Mat with a row of (rho, theta) for each line, which is overwritten by the next call
+	 */
 	public Mat houghTransform(Mat edgeImage)
 	{
-		Mat edges = new Mat();
+		if (lineBuffer == null)
+		{
+			lineBuffer = new Mat();
+		}
+
+		return houghTransform(edgeImage, lineBuffer);
+	}
+
+	/**
+	 * Detect the lines in an image of edges, writing into the given Mat
+	 * @param image of edges
+	 * @param Mat to write a row of (rho, theta) for each line into
+	 * @return the Mat of lines
+	 */
+	public Mat houghTransform(Mat edgeImage, Mat lines)
+	{
+		long startTime = Profiler.start();
+
+		Imgproc.HoughLines(edgeImage, lines, 1, HOUGH_ANGLE_STEP, houghThreshold);
+
+		Profiler.stop(ProcessingStage.HOUGH, startTime);
+
+		return lines;
+	}
+
+	/**
+	 * Detect the lines in an image of edges at angles within a window, so that the accumulator and the voting only cover those angles.
+	 * The window is widened to the angles tried by the full transform, so the lines found are ones the full transform could find.
+	 * It may reach below 0 or above PI for lines close to vertical, in which case the angles at both ends of the range are searched.
+	 * @param image of edges
+	 * @param smallest theta of the lines
+	 * @param largest theta of the lines
+	 * @return lines found, with theta between 0 and PI as for the full transform
+	 */
+	public LineSet houghTransform(Mat edgeImage, double minimumTheta, double maximumTheta)
+	{
+		if (lineBuffer == null)
+		{
+			lineBuffer = new Mat();
+		}
+
+		if (wrappedLineBuffer == null)
+		{
+			wrappedLineBuffer = new Mat();
+		}
+
+		int firstAngle = (int) Math.floor(minimumTheta / HOUGH_ANGLE_STEP);
+		int lastAngle = (int) Math.ceil(maximumTheta / HOUGH_ANGLE_STEP);
+
+		if (lastAngle - firstAngle + 1 >= HOUGH_ANGLES)
+		{
+			return LineSet.fromHoughLines(houghTransform(edgeImage, lineBuffer));
+		}
+
+		//Move the window so that it starts within the range of the full transform
+		while (firstAngle < 0)
+		{
+			firstAngle += HOUGH_ANGLES;
+			lastAngle += HOUGH_ANGLES;
+		}
+
+		while (firstAngle >= HOUGH_ANGLES)
+		{
+			firstAngle -= HOUGH_ANGLES;
+			lastAngle -= HOUGH_ANGLES;
+		}
+
+		long startTime = Profiler.start();
+
+		LineSet lines;
+
+		if (lastAngle < HOUGH_ANGLES)
+		{
+			houghTransform(edgeImage, lineBuffer, firstAngle, lastAngle);
+
+			lines = LineSet.fromHoughLines(lineBuffer);
+		}
+		else
+		{
+			//The window wraps around PI, where the lines are the same as those just above 0 with negative rho
+			houghTransform(edgeImage, lineBuffer, firstAngle, HOUGH_ANGLES - 1);
+			houghTransform(edgeImage, wrappedLineBuffer, 0, lastAngle - HOUGH_ANGLES);
+
+			lines = LineSet.concatenate(LineSet.fromHoughLines(lineBuffer), LineSet.fromHoughLines(wrappedLineBuffer));
+		}
+
+		Profiler.stop(ProcessingStage.HOUGH, startTime);
+
+		return lines;
+	}
+
+	private void houghTransform(Mat edgeImage, Mat lines, int firstAngle, int lastAngle)
+	{
+		Imgproc.HoughLines(edgeImage, lines, 1, HOUGH_ANGLE_STEP, houghThreshold, 0, 0, firstAngle * HOUGH_ANGLE_STEP, Math.min(Math.PI, (lastAngle + 1) * HOUGH_ANGLE_STEP));
+	}
+
+	/**
+	 * Detect segments of lines in an image of edges with the probabilistic Hough transform, which only votes with a sample
+	 * of the edge pixels, and give the lines through them
+	 * @param image of edges
+	 * @param shortest segment to find, in pixels
+	 * @param largest gap between the pixels of a segment, in pixels
+	 * @return lines through the segments found
+	 */
+	public LineSet houghSegments(Mat edgeImage, double minimumLength, double maximumGap)
+	{
+		if (segmentBuffer == null)
+		{
+			segmentBuffer = new Mat();
+		}
+
+		long startTime = Profiler.start();
+
+		Imgproc.HoughLinesP(edgeImage, segmentBuffer, 1, HOUGH_ANGLE_STEP, houghThreshold, minimumLength, maximumGap);
+
+		Profiler.stop(ProcessingStage.HOUGH, startTime);
+
+		return LineSet.fromHoughSegments(segmentBuffer);
+	}
+
+	/**
+	 * Release the native memory of the buffers, which are allocated again if the detector is used afterwards
+	 */
+	public void release()
+	{
+		releaseBuffers();
+
+		if (lineBuffer != null)
+		{
+			lineBuffer.release();
+			lineBuffer = null;
+		}
+
+		if (wrappedLineBuffer != null)
+		{
+			wrappedLineBuffer.release();
+			wrappedLineBuffer = null;
+		}
+
+		if (segmentBuffer != null)
+		{
+			segmentBuffer.release();
+			segmentBuffer = null;
+		}
+
+		if (shrinkBuffer != null)
+		{
+			shrinkBuffer.release();
+			shrinkBuffer = null;
+		}
+
+		if (regionEdgeView != null)
+		{
+			regionEdgeView.release();
+			regionEdgeView = null;
+		}
+
+		if (regionEdgeBuffer != null)
+		{
+			regionEdgeBuffer.release();
+			regionEdgeBuffer = null;
+		}
+
+		if (polygonMaskView != null)
+		{
+			polygonMaskView.release();
+			polygonMaskView = null;
+		}
+
+		if (polygonMaskBuffer != null)
+		{
+			polygonMaskBuffer.release();
+			polygonMaskBuffer = null;
+		}
+
+		if (polygonCorners != null)
+		{
+			polygonCorners.release();
+			polygonCorners = null;
+		}
+
+		if (coarseDetector != null)
+		{
+			coarseDetector.release();
+			coarseDetector = null;
+		}
+
+		if (blurKernel != null)
+		{
+			blurKernel.release();
+			blurKernel = null;
+		}
+	}
+
+	/**
+	 * Allocate the buffers for images up to a size, with a border of one pixel around the blurred image
+	 */
+	private void allocateBuffers(Size size, int type)
+	{
+		blurBuffer = new Mat(new Size(size.width + 2, size.height + 2), type);
+		edgeBuffer = new Mat(size, CvType.CV_8UC1);
+	}
+
+	private void releaseViews()
+	{
+		if (blurView != null)
+		{
+			blurView.release();
+			edgeView.release();
+			blurView = null;
+			edgeView = null;
+
+			for(int side = 0; side < blurEdgeViews.length; side++)
+			{
+				blurEdgeViews[side].release();
+				blurBorderViews[side].release();
+			}
 
-		Imgproc.HoughLines(edgeImage, edges, 1, Math.PI/360, houghThreshold);
+			blurEdgeViews = null;
+			blurBorderViews = null;
+		}
+	}
+
+	private void releaseBuffers()
+	{
+		releaseViews();
 
-		return edges;
+		if (blurBuffer != null)
+		{
+			blurBuffer.release();
+			edgeBuffer.release();
+			blurBuffer = null;
+			edgeBuffer = null;
+		}
 	}
-	
+
 	public void setBlurFilterSize(int newSize)
 	{
 		blurKernelSize = newSize;
+
+		if (blurKernel != null)
+		{
+			blurKernel.release();
+			blurKernel = null;
+		}
 	}
-	
+
 	public void setCannyLowerThreshold(int newThreshold)
 	{
 		cannyLowerThreshold = newThreshold;
 	}
-	
+
 	public void setCannyUpperThreshold(int newThreshold)
 	{
 		cannyUpperThreshold = newThreshold;
 	}
-	
+
 	public void setHoughThreshold(int newThreshold)
 	{
 		houghThreshold = newThreshold;
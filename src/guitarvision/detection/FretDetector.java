@@ -1,19 +1,15 @@
 package guitarvision.detection;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
 
-import org.opencv.core.Core;
-import org.opencv.core.CvType;
+import guitarvision.profiling.ProfileCounter;
+import guitarvision.profiling.Profiler;
+
 import org.opencv.core.Mat;
-import org.opencv.core.Point;
 import org.opencv.core.Scalar;
-import org.opencv.core.Size;
-import org.opencv.core.TermCriteria;
 import org.opencv.imgproc.Imgproc;
-import org.opencv.utils.Converters;
 
 public class FretDetector {
 	private double angleAllowanceInitial = 0.5;
@@ -23,6 +19,29 @@ public class FretDetector {
 	
 	private double previousFretsWeighting = 0.999;
 	
+	//Whether the fret layout of the previous detection is used while the edges of the neck still support it, instead of the Hough transform
+	private boolean layoutReuse = false;
+	//Fraction of the frets of the previous layout that must be supported by the edges for it to be used
+	private double layoutReuseSupport = 0.8;
+	
+	//Layout fitted in the last detection, in the coordinates of the fret image
+	private FretLayout previousLayout = null;
+	
+	//Pixels of the fret image edges, for checking the previous layout
+	private byte[] edgePixels = null;
+	
+	//Tracker of the frets, used instead of weighting by the previous frets when tracking
+	private LineTracker fretTracker = null;
+	
+	//How the Hough transform finds the frets in the image of the neck
+	private HoughMode houghMode = HoughMode.STANDARD;
+	//Shortest segment, and largest gap within a segment, found as a fret in the segment mode, as fractions of the height of the fret image
+	private double segmentMinimumLength = 0.5;
+	private double segmentMaximumGap = 0.1;
+	
+	//Number of pixels along each side of a pixel of the coarse level of the image pyramid the frets are first found in, or 1 to search the full fret image
+	private int pyramidScale = 1;
+	
 	/**
 	 * Get list of lines containing the positions of the frets in the image 
 	 * @param image of guitar in scene
@@ -35,54 +54,86 @@ public class FretDetector {
 	 */
 	public ArrayList<DetectedLine> getGuitarFrets(Mat imageToProcess, Mat imageToAnnotate, ArrayList<GuitarString> guitarStrings, EdgeDetector edgeDetector, ArrayList<DetectedLine> previousFrets, ImageProcessingOptions processingOptions)
 	{
-		double width = imageToProcess.width();
-		double height = imageToProcess.height()/4;
-		Size resolution = new Size(width, height);
-		
-		//Intersect the outer strings with the left and right sides of the image
-		//to obtain rectangle which contains guitar neck
-		GuitarString outerString1 = guitarStrings.get(0);
-		GuitarString outerString2 = guitarStrings.get(guitarStrings.size()-1);
-		
-		List<Point> sourcePoints = new ArrayList<Point>();
-		
-		DetectedLine rightEdgeOfImage = new DetectedLine(width, 0.0);
-		
-		Point rightEdgeUpperPoint = outerString1.getCollisionPoint(rightEdgeOfImage);
-		Point rightEdgeLowerPoint = outerString2.getCollisionPoint(rightEdgeOfImage);
-		
-		Point point1 = new Point(0,outerString1.getYIntercept());
-		Point point2 = new Point(width,rightEdgeUpperPoint.y);
-		Point point3 = new Point(width,rightEdgeLowerPoint.y);
-		Point point4 = new Point(0,outerString2.getYIntercept());
-		sourcePoints.add(point1);
-		sourcePoints.add(point2);
-		sourcePoints.add(point3);
-		sourcePoints.add(point4);
-		Mat source = Converters.vector_Point2f_to_Mat(sourcePoints);
-
-		List<Point> destPoints = new ArrayList<Point>();
-		Point pointD1 = new Point(0,0);
-		Point pointD2 = new Point(width,0);
-		Point pointD3 = new Point(width,height);
-		Point pointD4 = new Point(0,height);
-		destPoints.add(pointD1);
-		destPoints.add(pointD2);
-		destPoints.add(pointD3);
-		destPoints.add(pointD4);
-		Mat dest = Converters.vector_Point2f_to_Mat(destPoints);
-		
-		//Perform perspective transform to isolate guitar neck 
-		Mat warpMat = Imgproc.getPerspectiveTransform(source, dest);
-		Mat inverseWarpMat = warpMat.inv();
-
-		Mat guitarNeckImage = new Mat();
-		Imgproc.warpPerspective(imageToProcess, guitarNeckImage, warpMat, resolution);
+		return getGuitarFrets(new NeckRectifier().rectify(imageToProcess, guitarStrings), imageToAnnotate, edgeDetector, previousFrets, processingOptions);
+	}
+	
+	/**
+	 * Get list of lines containing the positions of the frets in the image, from a neck that has already been rectified
+	 * @param guitar neck rectified from the image of the guitar in scene
+	 * @param image of guitar in scene that is being drawn on in the pipeline, to display to the user
+	 * @param edge detector to use on the fretboard for finding frets
+	 * @param list of frets from the previous frame for tracking
+	 * @param processing option object, whether to draw frets on the annotated image
+	 * @return
+	 */
+	public ArrayList<DetectedLine> getGuitarFrets(RectifiedNeck neck, Mat imageToAnnotate, EdgeDetector edgeDetector, ArrayList<DetectedLine> previousFrets, ImageProcessingOptions processingOptions)
+	{
+		ArrayList<DetectedLine> guitarNeckFrets;
+		
+		if (neck != null)
+		{
+			guitarNeckFrets = getGuitarFretsFromNeckImage(neck.getFretImageToFrameWarp(), neck.getFretImage(), edgeDetector, ImageProcessingOptions.DRAWSELECTEDLINES);
+		}
+		else
+		{
+			guitarNeckFrets = new ArrayList<DetectedLine>();
+		}
+		
+		ArrayList<DetectedLine> finalFrets;
+		
+		if (fretTracker != null)
+		{
+			finalFrets = fretTracker.update(guitarNeckFrets);
+		}
+		else
+		{
+			finalFrets = performPreviousFretWeighting(guitarNeckFrets, previousFrets);
+		}
 		
-		ArrayList<DetectedLine> guitarNeckFrets = getGuitarFretsFromNeckImage(imageToProcess, imageToAnnotate, inverseWarpMat, guitarNeckImage, edgeDetector, ImageProcessingOptions.DRAWSELECTEDLINES);
+		drawFrets(finalFrets, imageToAnnotate, processingOptions);
 		
-		ArrayList<DetectedLine> finalFrets = performPreviousFretWeighting(guitarNeckFrets, previousFrets);
+		return finalFrets;
+	}
+	
+	/**
+	 * Use the frets of an earlier frame for a frame in which the guitar has not moved, instead of detecting them
+	 * @param list of frets from the earlier frame, in the order returned by getGuitarFrets
+	 * @param image of guitar in scene that is being drawn on in the pipeline, to display to the user
+	 * @param processing option object, whether to draw frets on the annotated image
+	 * @return copies of the frets
+	 */
+	public ArrayList<DetectedLine> reuseGuitarFrets(ArrayList<DetectedLine> previousFrets, Mat imageToAnnotate, ImageProcessingOptions processingOptions)
+	{
+		ArrayList<DetectedLine> frets = new ArrayList<DetectedLine>();
+		
+		for(DetectedLine fret : previousFrets)
+		{
+			frets.add(new DetectedLine(fret.getRho(), fret.getTheta(), fret.length));
+		}
+		
+		drawFrets(frets, imageToAnnotate, processingOptions);
+		
+		return frets;
+	}
+	
+	/**
+	 * Use the frets predicted by the tracker for a frame in which they are not detected.
+	 * Requires tracking to be set.
+	 * @param image of guitar in scene that is being drawn on in the pipeline, to display to the user
+	 * @param processing option object, whether to draw frets on the annotated image
+	 * @return the predicted frets, in order of rho
+	 */
+	public ArrayList<DetectedLine> predictGuitarFrets(Mat imageToAnnotate, ImageProcessingOptions processingOptions)
+	{
+		ArrayList<DetectedLine> frets = fretTracker.predict();
 		
+		drawFrets(frets, imageToAnnotate, processingOptions);
+		
+		return frets;
+	}
+	
+	private void drawFrets(ArrayList<DetectedLine> finalFrets, Mat imageToAnnotate, ImageProcessingOptions processingOptions)
+	{
 		if ((processingOptions == ImageProcessingOptions.DRAWSELECTEDLINES) || (processingOptions == ImageProcessingOptions.DRAWCLUSTERS))
 		{
 			int x = 0;
@@ -111,11 +162,9 @@ public class FretDetector {
 				x++;
 			}
 		}
-		
-		return finalFrets;
 	}
 	
-	private ArrayList<DetectedLine> getGuitarFretsFromNeckImage(Mat originalImage, Mat imageToAnnotate, Mat inverseNeckWarp, Mat guitarNeckImage, EdgeDetector edgeDetector, ImageProcessingOptions processingOptions)
+	private ArrayList<DetectedLine> getGuitarFretsFromNeckImage(Mat inverseNeckWarp, Mat guitarNeckImage, EdgeDetector edgeDetector, ImageProcessingOptions processingOptions)
 	{
 		if (edgeDetector == null)
 		{
@@ -125,150 +174,297 @@ public class FretDetector {
 			edgeDetector.setHoughThreshold(300);
 		}
 
-		Mat hsvImage = new Mat();
-		Imgproc.cvtColor(guitarNeckImage, hsvImage, Imgproc.COLOR_BGR2HSV);
-
-		Mat cannyProcessedImage = edgeDetector.getEdges(guitarNeckImage);
-
-		Mat houghLineParameters = edgeDetector.houghTransform(cannyProcessedImage);
+		//With the image pyramid, edges are only detected at full resolution around the frets of the coarse level or the previous layout
+		Mat cannyProcessedImage = (pyramidScale > 1) ? null : edgeDetector.getEdges(guitarNeckImage);
 		
-		ArrayList<DetectedLine> initialLines = getLinesFromParameters(houghLineParameters);
-		
-		ArrayList<DetectedLine> parallelLines = filterFretsByAngle(initialLines);
-
-		int noGroups = numberFretsToDetectInitial;
-		
-		ArrayList<ArrayList<DetectedLine>> fretGroupings = clusterGuitarFrets(parallelLines, noGroups);
-
-		ArrayList<DetectedLine> selectedFrets = selectCentralFretsFromClusters(fretGroupings);
+		ArrayList<DetectedLine> finalFrets = null;
 		
-		Collections.sort(selectedFrets);
-		
-		ArrayList<DetectedLine> finalFrets = addMissingFrets(selectedFrets, numberFretsToDetectFinal, Intercept.XINTERCEPT);
+		if (layoutReuse && previousLayout != null && previousLayoutIsSupported(guitarNeckImage, cannyProcessedImage, edgeDetector))
+		{
+			finalFrets = previousLayout.getFrets();
+			
+			Profiler.count(ProfileCounter.FRET_LAYOUT_REUSES, 1);
+		}
+		else
+		{
+			LineSet initialLines;
+			
+			if (pyramidScale > 1)
+			{
+				EdgeDetector coarseDetector = edgeDetector.getCoarseDetector(pyramidScale);
+				
+				initialLines = getHoughLines(coarseDetector.getEdges(guitarNeckImage, pyramidScale), coarseDetector);
+				initialLines.scale(pyramidScale);
+			}
+			else
+			{
+				initialLines = getHoughLines(cannyProcessedImage, edgeDetector);
+			}
+			
+			int[] parallelLines = filterFretsByAngle(initialLines, initialLines.getAllIndices());
+			
+			int noGroups = numberFretsToDetectInitial;
+			
+			int[][] fretGroupings = clusterGuitarFrets(initialLines, parallelLines, noGroups);
+			
+			ArrayList<DetectedLine> selectedFrets = selectCentralFretsFromClusters(initialLines, fretGroupings);
+			
+			//Frets found at the coarse level are moved onto the edges at full resolution, which are only needed within the distance they are moved
+			if (pyramidScale > 1)
+			{
+				refineFrets(selectedFrets, getEdgesAroundFrets(guitarNeckImage, edgeDetector, selectedFrets, pyramidScale + 1));
+			}
+			
+			//Place the frets by the layout of the frets found, or fill in the gaps between them if no layout fits
+			previousLayout = FretLayout.fit(selectedFrets, angleAllowanceFinal, guitarNeckImage.width(), guitarNeckImage.height(), numberFretsToDetectFinal);
+			
+			if (previousLayout != null)
+			{
+				finalFrets = previousLayout.getFrets();
+			}
+			else
+			{
+				Collections.sort(selectedFrets);
+				
+				finalFrets = addMissingFrets(selectedFrets, numberFretsToDetectFinal, Intercept.XINTERCEPT);
+			}
+		}
 		
 		if (finalFrets == null)
 		{
 			finalFrets = new ArrayList<DetectedLine>();
 		}
 		
-		//Convert from fretboard coordinates to original image coordinates
+		//Convert from fretboard coordinates to original image coordinates, reading the transform from its Mat once
+		double[] inverseWarp = new double[9];
+		inverseNeckWarp.get(0, 0, inverseWarp);
+		
 		for(DetectedLine fret : finalFrets)
 		{
-			fret.applyWarp(inverseNeckWarp);
+			fret.applyWarp(inverseWarp);
 		}
 
 		return finalFrets;
 	}
 	
-	private ArrayList<DetectedLine> getLinesFromParameters(Mat houghLines)
+	/**
+	 * Check whether the edges of the fret image still support the layout of the previous detection
+	 * @param fret image
+	 * @param edges of the fret image, or null to only detect them around the frets of the layout
+	 * @param edge detector to use on the fret image
+	 * @return true if enough of the frets of the layout are found in the edges
+	 */
+	private boolean previousLayoutIsSupported(Mat guitarNeckImage, Mat edges, EdgeDetector edgeDetector)
 	{
-		ArrayList<DetectedLine> guitarStrings = new ArrayList<DetectedLine>();
-
-		for (int lineIndex = 0; lineIndex < houghLines.rows(); lineIndex++)
+		if (edges == null)
 		{
-			double[] polarLineParameters = houghLines.get(lineIndex, 0);
-
-			DetectedLine currentString = new DetectedLine(polarLineParameters[0], polarLineParameters[1]);
-
-			guitarStrings.add(currentString);
+			//The layout looks for edges within two pixels of its frets
+			edges = getEdgesAroundFrets(guitarNeckImage, edgeDetector, previousLayout.getFrets(), 3);
 		}
-
-		return guitarStrings;
+		
+		readEdgePixels(edges);
+		
+		return previousLayout.getSupport(edgePixels, edges.width(), edges.height()) >= layoutReuseSupport;
 	}
 	
-	private ArrayList<DetectedLine> filterFretsByAngle(ArrayList<DetectedLine> candidateFrets)
+	/**
+	 * Move each of the frets found at the coarse level of the image pyramid sideways, by up to the size of a pixel of the coarse level,
+	 * to the position where it crosses the most edge pixels of the fret image at full resolution
+	 * @param frets in the coordinates of the fret image
+	 * @param edges of the fret image
+	 */
+	private void refineFrets(ArrayList<DetectedLine> frets, Mat edges)
 	{
-		ArrayList<DetectedLine> filteredStrings = new ArrayList<DetectedLine>();
-
-		for(int index = 0; index < candidateFrets.size(); index++)
+		readEdgePixels(edges);
+		
+		int width = edges.width();
+		int height = edges.height();
+		
+		for(DetectedLine fret : frets)
 		{
-			double curAngle = candidateFrets.get(index).getTheta();
-			double currentAngleAroundZero = (curAngle > Math.PI / 2) ? curAngle - (Math.PI) : curAngle;
-			if (!((currentAngleAroundZero > angleAllowanceInitial) || (currentAngleAroundZero < -angleAllowanceInitial)))
+			double cos = Math.cos(fret.getTheta());
+			double sin = Math.sin(fret.getTheta());
+			
+			//Only frets closer to vertical than horizontal cross every row
+			if (Math.abs(cos) < 0.5) continue;
+			
+			int bestShift = 0;
+			int bestSupport = -1;
+			
+			//Shifts are tried outwards from no shift, so that the smallest of equally supported shifts is kept
+			for(int step = 0; step <= 2 * pyramidScale; step++)
 			{
-				filteredStrings.add(candidateFrets.get(index));
+				int shift = (step % 2 == 0) ? step / 2 : -(step + 1) / 2;
+				
+				int support = 0;
+				
+				for(int row = 0; row < height; row++)
+				{
+					int column = (int) Math.round((fret.getRho() - (row * sin)) / cos) + shift;
+					
+					if (column >= 0 && column < width && edgePixels[(row * width) + column] != 0)
+					{
+						support++;
+					}
+				}
+				
+				if (support > bestSupport)
+				{
+					bestShift = shift;
+					bestSupport = support;
+				}
 			}
+			
+			fret.setRho(fret.getRho() + (bestShift * cos));
 		}
-
-		return filteredStrings;
 	}
-
-	private ArrayList<ArrayList<DetectedLine>> clusterGuitarFrets(ArrayList<DetectedLine> filteredStrings, int noGroups)
+	
+	/**
+	 * Detect the edges of the fret image only in the columns that the frets cross, widened by a distance on either side
+	 * @param fret image
+	 * @param edge detector to use on the fret image
+	 * @param frets in the coordinates of the fret image
+	 * @param number of columns to widen the columns of each fret by
+	 * @return edges of the fret image, with no edges away from the frets, which are overwritten by the next call to the edge detector
+	 */
+	private Mat getEdgesAroundFrets(Mat guitarNeckImage, EdgeDetector edgeDetector, ArrayList<DetectedLine> frets, int distance)
 	{
-		Mat linesToCluster = new Mat(filteredStrings.size(), 1, CvType.CV_32F);
-
-		for(int index = 0; index < filteredStrings.size(); index++)
+		int width = guitarNeckImage.width();
+		int lastRow = guitarNeckImage.height() - 1;
+		
+		int[] firstColumns = new int[frets.size()];
+		int[] lastColumns = new int[frets.size()];
+		
+		for(int fretIndex = 0; fretIndex < frets.size(); fretIndex++)
 		{
-			DetectedLine curString = filteredStrings.get(index);
-			double rhoValue = curString.getRho();
-			linesToCluster.put(index, 0, rhoValue);
+			DetectedLine fret = frets.get(fretIndex);
+			
+			double cos = Math.cos(fret.getTheta());
+			double sin = Math.sin(fret.getTheta());
+			
+			//Frets closer to horizontal than vertical cross too many columns to be worth narrowing down
+			if (Math.abs(cos) < 0.5)
+			{
+				firstColumns[fretIndex] = 0;
+				lastColumns[fretIndex] = width;
+				continue;
+			}
+			
+			double topColumn = fret.getRho() / cos;
+			double bottomColumn = (fret.getRho() - (lastRow * sin)) / cos;
+			
+			firstColumns[fretIndex] = (int) Math.floor(Math.min(topColumn, bottomColumn)) - distance;
+			lastColumns[fretIndex] = (int) Math.ceil(Math.max(topColumn, bottomColumn)) + distance + 1;
 		}
-
-		Mat clusterLabels = new Mat();
-
-		if (!(filteredStrings.size() > noGroups))
+		
+		return edgeDetector.getEdgesInColumns(guitarNeckImage, firstColumns, lastColumns);
+	}
+	
+	private void readEdgePixels(Mat edges)
+	{
+		int width = edges.width();
+		int height = edges.height();
+		
+		if (edgePixels == null || edgePixels.length != width * height)
 		{
-			noGroups = filteredStrings.size();
+			edgePixels = new byte[width * height];
 		}
-
-		if (filteredStrings.size() == 0)
+		
+		edges.get(0, 0, edgePixels);
+	}
+	
+	/**
+	 * Find the lines in the edges of the fret image with the Hough transform of the Hough mode
+	 * @param edges of the fret image
+	 * @param edge detector to use for finding the lines
+	 * @return lines found in the fret image
+	 */
+	private LineSet getHoughLines(Mat cannyProcessedImage, EdgeDetector edgeDetector)
+	{
+		LineSet lines;
+		
+		if (houghMode == HoughMode.ANGLE_WINDOW)
 		{
-			return new ArrayList<ArrayList<DetectedLine>>();
+			//The frets are close to vertical in the fret image, so only the angles that pass the initial angle filter are searched
+			lines = edgeDetector.houghTransform(cannyProcessedImage, -angleAllowanceInitial, angleAllowanceInitial);
 		}
-
-		Core.kmeans(linesToCluster, noGroups, clusterLabels, new TermCriteria(TermCriteria.COUNT, 5, 1), 5, Core.KMEANS_RANDOM_CENTERS);
-		
-		ArrayList<ArrayList<DetectedLine>> groupedStrings = new ArrayList<ArrayList<DetectedLine>>();
-
-		for(int index = 0; index < noGroups; index++)
+		else if (houghMode == HoughMode.SEGMENTS)
 		{
-			groupedStrings.add(new ArrayList<DetectedLine>());
+			double height = cannyProcessedImage.height();
+			
+			lines = edgeDetector.houghSegments(cannyProcessedImage, height * segmentMinimumLength, height * segmentMaximumGap);
 		}
-
-		for(int index = 0; index < filteredStrings.size(); index++)
+		else
 		{
-			int group = (int) (clusterLabels.get(index, 0)[0]);
+			lines = LineSet.fromHoughLines(edgeDetector.houghTransform(cannyProcessedImage));
+		}
+		
+		Profiler.count(ProfileCounter.FRET_HOUGH_LINES, lines.size);
+		
+		return lines;
+	}
+	
+	private int[] filterFretsByAngle(LineSet lines, int[] candidateFrets)
+	{
+		int[] filteredFrets = new int[candidateFrets.length];
+		int numberFiltered = 0;
 
-			if ((group >= 0) && (group < groupedStrings.size()) && (index < filteredStrings.size()))
+		for(int index : candidateFrets)
+		{
+			double curAngle = lines.theta[index];
+			double currentAngleAroundZero = (curAngle > Math.PI / 2) ? curAngle - (Math.PI) : curAngle;
+			if (!((currentAngleAroundZero > angleAllowanceInitial) || (currentAngleAroundZero < -angleAllowanceInitial)))
 			{
-				groupedStrings.get(group).add(filteredStrings.get(index));
+				filteredFrets[numberFiltered++] = index;
 			}
 		}
-		
-		return groupedStrings;
+
+		return Arrays.copyOf(filteredFrets, numberFiltered);
 	}
 
-	private ArrayList<DetectedLine> selectCentralFretsFromClusters(ArrayList<ArrayList<DetectedLine>> groupedStrings)
+	private int[][] clusterGuitarFrets(LineSet lines, int[] filteredFrets, int noGroups)
+	{
+		double[] rhoValues = new double[filteredFrets.length];
+
+		for(int index = 0; index < filteredFrets.length; index++)
+		{
+			rhoValues[index] = lines.rho[filteredFrets[index]];
+		}
+
+		return LineClusterer.clusterIndices(filteredFrets, rhoValues, noGroups);
+	}
+
+	private ArrayList<DetectedLine> selectCentralFretsFromClusters(LineSet lines, int[][] groupedFrets)
 	{	
-		ArrayList<DetectedLine> finalStrings = new ArrayList<DetectedLine>();
+		ArrayList<DetectedLine> finalFrets = new ArrayList<DetectedLine>();
 		
-		for(int groupIndex = 0; groupIndex < groupedStrings.size(); groupIndex++)
+		for(int[] group : groupedFrets)
 		{
-			ArrayList<Double> rhoValues = new ArrayList<Double>();
-			
-			for(DetectedLine line : groupedStrings.get(groupIndex))
-			{
-				rhoValues.add((Double) line.getRho());
-			}
-
-			if (rhoValues.size() > 0)
+			if (group.length > 0)
 			{
-				Collections.sort(rhoValues);
+				double[] rhoValues = new double[group.length];
+				
+				for(int index = 0; index < group.length; index++)
+				{
+					rhoValues[index] = lines.rho[group[index]];
+				}
+				
+				Arrays.sort(rhoValues);
 
-				Double middleValue = rhoValues.get((int) Math.floor(rhoValues.size() / 2));
+				double middleValue = rhoValues[(int) Math.floor(rhoValues.length / 2)];
 
-				for(DetectedLine line : groupedStrings.get(groupIndex))
+				for(int index : group)
 				{
-					if ((double) middleValue == line.getRho())
+					if (middleValue == lines.rho[index])
 					{
-						finalStrings.add(line);
+						finalFrets.add(lines.getLine(index));
 						break;
 					}
 				}
 			}
 		}
 		
-		return finalStrings;
+		return finalFrets;
 	}
 	
 	public ArrayList<DetectedLine> performPreviousFretWeighting(ArrayList<DetectedLine> curFrets, ArrayList<DetectedLine> previousFrets)
@@ -309,11 +505,11 @@ public class FretDetector {
 		
 		double[] angles = new double[lines.size()];
 		
-		for (DetectedLine line : lines)
+		for (int lineIndex = 0; lineIndex < lines.size(); lineIndex++)
 		{
-			double angle = line.getTheta();
+			double angle = lines.get(lineIndex).getTheta();
 			angle = (angle > Math.PI) ? angle - (Math.PI * 2) : angle;
-			angles[lines.indexOf(line)] = angle;
+			angles[lineIndex] = angle;
 		}
 		
 		double medianAngle = angles[(int) Math.floor((angles.length)/2)];
@@ -350,7 +546,6 @@ public class FretDetector {
 		
 		//Store array of rho separation values between the filtered fret pairs
 		double[] distances = new double[lines.size() - 1];
-		HashMap<Double, Integer> distanceIndexes = new HashMap<Double, Integer>();
 		
 		for (int lineIndex =  0; lineIndex < lines.size() - 1; lineIndex++)
 		{
@@ -359,7 +554,6 @@ public class FretDetector {
 			
 			double distance = line2.getRho() - line1.getRho();
 			distances[lineIndex] = distance;
-			distanceIndexes.put(distance, lineIndex);
 		}
 
 		ArrayList<DetectedLine> linesToAdd = new ArrayList<DetectedLine>();
@@ -456,4 +650,124 @@ public class FretDetector {
 	{
 		numberFretsToDetectFinal = newNumber;
 	}
+	
+	/**
+	 * Set whether the frets are tracked from frame to frame, rather than weighted by the frets of the previous frame
+	 * @param tracking
+	 */
+	public void setTracking(boolean tracking)
+	{
+		fretTracker = tracking ? new LineTracker(2) : null;
+	}
+	
+	public boolean getTracking()
+	{
+		return fretTracker != null;
+	}
+	
+	/**
+	 * @return confidence of the tracker in the frets, or 0 if they are not tracked
+	 */
+	public double getTrackingConfidence()
+	{
+		return (fretTracker != null) ? fretTracker.getConfidence() : 0;
+	}
+	
+	/**
+	 * @return true if the frets are tracked and the tracker has started, so that it can predict them
+	 */
+	public boolean hasTrackedFrets()
+	{
+		return fretTracker != null && fretTracker.hasTracks();
+	}
+	
+	/**
+	 * @return state of the tracker of the frets, or null if they are not tracked
+	 */
+	public LineTracker.State getTrackerState()
+	{
+		return (fretTracker != null) ? fretTracker.getState() : null;
+	}
+	
+	/**
+	 * Restore the tracker of the frets, if they are tracked
+	 * @param state from getTrackerState, or null to start the tracks again from the next frets detected
+	 */
+	public void setTrackerState(LineTracker.State state)
+	{
+		if (fretTracker != null)
+		{
+			fretTracker.setState(state);
+		}
+	}
+	
+	/**
+	 * Set whether the fret layout of the last detection is used, without the Hough transform, while the edges
+	 * of the fret image still support enough of its frets
+	 * @param reuse
+	 */
+	public void setLayoutReuse(boolean reuse)
+	{
+		layoutReuse = reuse;
+	}
+	
+	public boolean getLayoutReuse()
+	{
+		return layoutReuse;
+	}
+	
+	/**
+	 * @param fraction of the frets of the last layout that must be found in the edges for it to be used again
+	 */
+	public void setLayoutReuseSupport(double support)
+	{
+		layoutReuseSupport = support;
+	}
+	
+	public double getLayoutReuseSupport()
+	{
+		return layoutReuseSupport;
+	}
+	
+	/**
+	 * Set how the Hough transform finds the frets in the image of the neck.
+	 * The angle window searches the angles within the initial angle allowance of vertical,
+	 * and the segment mode finds segments of at least half the height of the fret image.
+	 * @param mode
+	 */
+	public void setHoughMode(HoughMode mode)
+	{
+		houghMode = mode;
+	}
+	
+	public HoughMode getHoughMode()
+	{
+		return houghMode;
+	}
+	
+	/**
+	 * Set the scale of the coarse level of the image pyramid that the frets are first found in.
+	 * The frets selected at the coarse level are then moved onto the edges of the fret image at full resolution.
+	 * @param number of pixels along each side of a pixel of the coarse level, or 1 to search the full fret image
+	 */
+	public void setPyramidScale(int scale)
+	{
+		pyramidScale = scale;
+	}
+	
+	public int getPyramidScale()
+	{
+		return pyramidScale;
+	}
+	
+	/**
+	 * Set the segments found as frets in the segment mode
+	 * @param shortest segment, as a fraction of the height of the fret image
+	 * @param largest gap between the pixels of a segment, as a fraction of the height of the fret image
+	 */
+	public void setSegmentLimits(double minimumLength, double maximumGap)
+	{
+		segmentMinimumLength = minimumLength;
+		segmentMaximumGap = maximumGap;
+	}
 }
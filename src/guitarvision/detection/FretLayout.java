@@ -0,0 +1,660 @@
+package guitarvision.detection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Model of the positions of the frets across the image of a rectified guitar neck.
+ * Fret n of a guitar is 1 - 2^(-n/12) of the scale length from the nut. The rectified neck can still be foreshortened
+ * along its length by perspective, so the position of fret n across the image is modelled by a one dimensional
+ * perspective transform of u = 1 - 2^(-n/12): x = (a u + b) / (c u + 1), where b is the position of the nut and
+ * (a + b) / (c + 1) the position of the bridge. The angle of the frets is modelled as changing linearly across the image.
+ * The model is fitted to the frets found by the Hough transform by trying the layouts implied by pairs of nearby frets
+ * and keeping the layout that explains the most frets, and every fret is then placed by the model, including those that
+ * were not found. The first fret found on the nut side is numbered 0, as the spacing of the frets alone does not show
+ * how many frets lie between it and the nut.
+ */
+public class FretLayout {
+	//Ratio between the distances from neighbouring frets to the bridge
+	private static final double FRET_RATIO = Math.pow(2, -1.0 / 12);
+
+	//Frets closer than this to the previous fret, in pixels, are left out of the fit
+	private static final double MINIMUM_SEPARATION = 10;
+
+	//A fret is explained by a layout when it is within this fraction of the fret spacing of a fret of the layout
+	private static final double INLIER_TOLERANCE = 0.25;
+
+	//Amount taken off the score of a layout for each of its frets between the frets found that was not found
+	private static final double MISSING_FRET_PENALTY = 0.5;
+
+	//Layouts are tried from lines up to this many lines apart, which are up to this many frets apart in the layout
+	private static final int MAXIMUM_PAIR_DISTANCE = 3;
+
+	//Highest fret number considered either side of the first fret of a pair
+	private static final int MAXIMUM_FRET_NUMBER = 40;
+
+	//Range of c, where c + 1 is the distance of the bridge from the camera over that of the nut. Without a limit the
+	//perspective can turn the spacing of the frets around, so the nut could be placed on either side
+	private static final double MINIMUM_PERSPECTIVE = -0.5;
+	private static final double MAXIMUM_PERSPECTIVE = 1.0;
+
+	//Number of times the layout is fitted again to the lines it explains
+	private static final int REFITS = 3;
+
+	//Number of frets a layout has to explain to be used
+	private static final int MINIMUM_INLIERS = 4;
+
+	//Fraction of the rows of the image in which a fret has to have an edge to be supported by the edges of a later frame
+	private static final double MINIMUM_FRET_SUPPORT = 0.5;
+
+	//Parameters of x = (a u + b) / (c u + 1)
+	private double a;
+	private double b;
+	private double c;
+
+	//Angle of the frets, angle = angleIntercept + (angleGradient * x)
+	private double angleIntercept;
+	private double angleGradient;
+
+	//Row of the image at which the fret positions are measured
+	private double centreRow;
+
+	private int numberOfInliers;
+
+	//The frets placed by the model, in order of rho
+	private ArrayList<DetectedLine> frets = new ArrayList<DetectedLine>();
+
+	private FretLayout()
+	{
+	}
+
+	/**
+	 * Fit the layout to the frets found in the image of a rectified neck
+	 * @param lines found in the image, which are close to vertical
+	 * @param largest difference from the median angle of the lines for a line to be used
+	 * @param width of the image
+	 * @param height of the image
+	 * @param number of frets to place, starting from the first fret found on the nut side
+	 * @return the layout, or null if no layout explains enough of the lines
+	 */
+	public static FretLayout fit(ArrayList<DetectedLine> candidateFrets, double angleAllowance, int width, int height, int numberOfFrets)
+	{
+		if (candidateFrets.size() < MINIMUM_INLIERS) return null;
+
+		double centreRow = height / 2.0;
+
+		//Measure each line where it crosses the centre row, with its angle around zero
+		int numberOfCandidates = candidateFrets.size();
+
+		double[][] candidates = new double[numberOfCandidates][];
+
+		for(int index = 0; index < numberOfCandidates; index++)
+		{
+			DetectedLine line = candidateFrets.get(index);
+
+			double angle = line.getTheta();
+			double rho = line.getRho();
+
+			if (angle > Math.PI / 2)
+			{
+				angle -= Math.PI;
+				rho = -rho;
+			}
+
+			double position = (rho - (centreRow * Math.sin(angle))) / Math.cos(angle);
+
+			candidates[index] = new double[] {position, angle};
+		}
+
+		Arrays.sort(candidates, new Comparator<double[]>()
+		{
+			@Override
+			public int compare(double[] first, double[] second)
+			{
+				return Double.compare(first[0], second[0]);
+			}
+		});
+
+		//Leave out lines at a different angle to most of the lines, and lines just after another line
+		double[] angles = new double[numberOfCandidates];
+
+		for(int index = 0; index < numberOfCandidates; index++)
+		{
+			angles[index] = candidates[index][1];
+		}
+
+		Arrays.sort(angles);
+
+		double medianAngle = angles[numberOfCandidates / 2];
+
+		double[] positions = new double[numberOfCandidates];
+		double[] fretAngles = new double[numberOfCandidates];
+		int numberOfPositions = 0;
+
+		for(double[] candidate : candidates)
+		{
+			if (Math.abs(candidate[1] - medianAngle) > angleAllowance) continue;
+
+			if (numberOfPositions > 0 && candidate[0] - positions[numberOfPositions - 1] < MINIMUM_SEPARATION) continue;
+
+			positions[numberOfPositions] = candidate[0];
+			fretAngles[numberOfPositions] = candidate[1];
+			numberOfPositions++;
+		}
+
+		if (numberOfPositions < MINIMUM_INLIERS) return null;
+
+		positions = Arrays.copyOf(positions, numberOfPositions);
+		fretAngles = Arrays.copyOf(fretAngles, numberOfPositions);
+
+		//Try the layouts through each pair and each three of nearby lines, for each number of frets between them,
+		//with the nut on either side. Pairs give layouts without perspective, and three lines give layouts with it
+		int[] bestFretNumbers = null;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		double bestResidual = Double.POSITIVE_INFINITY;
+
+		int[] fretNumbers = new int[numberOfPositions];
+
+		FretLayout hypothesis = new FretLayout();
+
+		for(int[][] points : getHypotheses(numberOfPositions))
+		{
+			if (!hypothesis.fitThroughPoints(positions, points[0], points[1])) continue;
+
+			double residual = hypothesis.getFretNumbers(positions, fretNumbers);
+
+			double score = getScore(fretNumbers);
+
+			if (score > bestScore || (score == bestScore && residual < bestResidual))
+			{
+				bestScore = score;
+				bestResidual = residual;
+				bestFretNumbers = fretNumbers.clone();
+			}
+		}
+
+		if (bestFretNumbers == null) return null;
+
+		FretLayout layout = new FretLayout();
+		layout.centreRow = centreRow;
+
+		if (!layout.fitToFretNumbers(positions, fretAngles, bestFretNumbers)) return null;
+
+		//Number the frets again from the fitted layout, which may explain lines the first layout did not
+		for(int refit = 0; refit < REFITS; refit++)
+		{
+			layout.getFretNumbers(positions, fretNumbers);
+
+			double score = getScore(fretNumbers);
+
+			if (score < bestScore) break;
+
+			FretLayout refittedLayout = new FretLayout();
+			refittedLayout.centreRow = centreRow;
+
+			if (!refittedLayout.fitToFretNumbers(positions, fretAngles, fretNumbers)) break;
+
+			layout = refittedLayout;
+			bestScore = score;
+		}
+
+		if (layout.numberOfInliers < MINIMUM_INLIERS) return null;
+
+		layout.placeFrets(width, numberOfFrets);
+
+		return layout;
+	}
+
+	/**
+	 * List the pairs and threes of nearby lines to fit layouts through, with each numbering of their frets
+	 * @param number of lines
+	 * @return for each layout, the indices of the lines and the fret number of each line
+	 */
+	private static ArrayList<int[][]> getHypotheses(int numberOfPositions)
+	{
+		ArrayList<int[][]> hypotheses = new ArrayList<int[][]>();
+
+		for(int first = 0; first < numberOfPositions; first++)
+		{
+			for(int second = first + 1; second < numberOfPositions && second <= first + MAXIMUM_PAIR_DISTANCE; second++)
+			{
+				//A negative direction puts the nut after the lines
+				for(int direction = -1; direction <= 1; direction += 2)
+				{
+					for(int firstDifference = 1; firstDifference <= MAXIMUM_PAIR_DISTANCE; firstDifference++)
+					{
+						int secondNumber = direction * firstDifference;
+
+						hypotheses.add(new int[][] {{first, second}, {0, secondNumber}});
+
+						for(int third = second + 1; third < numberOfPositions && third <= second + MAXIMUM_PAIR_DISTANCE; third++)
+						{
+							for(int secondDifference = 1; secondDifference <= MAXIMUM_PAIR_DISTANCE; secondDifference++)
+							{
+								hypotheses.add(new int[][] {{first, second, third}, {0, secondNumber, secondNumber + (direction * secondDifference)}});
+							}
+						}
+					}
+				}
+			}
+		}
+
+		return hypotheses;
+	}
+
+	/**
+	 * Set the layout to pass exactly through two or three numbered positions, without perspective for two
+	 * @param positions of the lines
+	 * @param indices of the positions to pass through
+	 * @param fret number of each of those positions
+	 * @return true if the perspective of the layout is within its range
+	 */
+	private boolean fitThroughPoints(double[] positions, int[] indices, int[] numbers)
+	{
+		int size = indices.length;
+
+		double[][] matrix = new double[size][];
+		double[] vector = new double[size];
+
+		for(int point = 0; point < size; point++)
+		{
+			double u = 1 - Math.pow(FRET_RATIO, numbers[point]);
+			double position = positions[indices[point]];
+
+			matrix[point] = (size == 3) ? new double[] {u, 1, -u * position} : new double[] {u, 1};
+			vector[point] = position;
+		}
+
+		double[] parameters = solve(matrix, vector);
+
+		if (parameters == null) return false;
+
+		a = parameters[0];
+		b = parameters[1];
+		c = (size == 3) ? parameters[2] : 0;
+
+		return hasValidPerspective();
+	}
+
+	/**
+	 * Number each position by the closest fret of this layout
+	 * @param positions of the lines, in order
+	 * @param array to write the fret number of each position into, or Integer.MIN_VALUE if the position is not explained
+	 * @return sum of the distances to the frets, as fractions of the fret spacings
+	 */
+	private double getFretNumbers(double[] positions, int[] fretNumbers)
+	{
+		double residual = 0;
+
+		int previousFretNumber = Integer.MIN_VALUE;
+
+		for(int index = 0; index < positions.length; index++)
+		{
+			fretNumbers[index] = Integer.MIN_VALUE;
+
+			//Invert x = (a u + b) / (c u + 1) to find u, and from it the fret number
+			double u = (positions[index] - b) / (a - (c * positions[index]));
+
+			if (u >= 1 || Double.isNaN(u)) continue;
+
+			long fretNumber = Math.round(Math.log(1 - u) / Math.log(FRET_RATIO));
+
+			if (Math.abs(fretNumber) > MAXIMUM_FRET_NUMBER) continue;
+
+			double fretPosition = getFretPosition((int) fretNumber);
+			double spacing = Math.abs(getFretPosition((int) fretNumber + 1) - fretPosition);
+
+			double distance = Math.abs(positions[index] - fretPosition) / spacing;
+
+			//Only one line is used for each fret
+			if (spacing < MINIMUM_SEPARATION || distance > INLIER_TOLERANCE || fretNumber == previousFretNumber) continue;
+
+			fretNumbers[index] = (int) fretNumber;
+			previousFretNumber = (int) fretNumber;
+			residual += distance;
+		}
+
+		return residual;
+	}
+
+	/**
+	 * Score of a numbering: the number of lines explained, less a penalty for each fret between them that was not found
+	 */
+	private static double getScore(int[] fretNumbers)
+	{
+		int explained = 0;
+		int lowest = Integer.MAX_VALUE;
+		int highest = Integer.MIN_VALUE;
+
+		for(int fretNumber : fretNumbers)
+		{
+			if (fretNumber == Integer.MIN_VALUE) continue;
+
+			explained++;
+			lowest = Math.min(lowest, fretNumber);
+			highest = Math.max(highest, fretNumber);
+		}
+
+		if (explained == 0) return Double.NEGATIVE_INFINITY;
+
+		int missing = (highest - lowest + 1) - explained;
+
+		return explained - (MISSING_FRET_PENALTY * missing);
+	}
+
+	/**
+	 * Fit the parameters of the layout by least squares to numbered positions.
+	 * The frets are numbered again from the lowest number, and the perspective term is left out
+	 * if there are too few positions for it or it would place the frets out of order.
+	 * @return true if the layout was fitted
+	 */
+	private boolean fitToFretNumbers(double[] positions, double[] fretAngles, int[] fretNumbers)
+	{
+		int lowest = Integer.MAX_VALUE;
+		int highest = Integer.MIN_VALUE;
+
+		numberOfInliers = 0;
+
+		for(int fretNumber : fretNumbers)
+		{
+			if (fretNumber == Integer.MIN_VALUE) continue;
+
+			numberOfInliers++;
+			lowest = Math.min(lowest, fretNumber);
+			highest = Math.max(highest, fretNumber);
+		}
+
+		if (numberOfInliers < 2 || highest == lowest) return false;
+
+		double[] u = new double[positions.length];
+
+		for(int index = 0; index < positions.length; index++)
+		{
+			if (fretNumbers[index] != Integer.MIN_VALUE)
+			{
+				u[index] = 1 - Math.pow(FRET_RATIO, fretNumbers[index] - lowest);
+			}
+		}
+
+		//x = a u + b - c u x is linear in a, b and c
+		boolean fitted = false;
+
+		if (numberOfInliers > 3)
+		{
+			double[][] normalMatrix = new double[3][3];
+			double[] normalVector = new double[3];
+
+			for(int index = 0; index < positions.length; index++)
+			{
+				if (fretNumbers[index] == Integer.MIN_VALUE) continue;
+
+				double[] row = new double[] {u[index], 1, -u[index] * positions[index]};
+
+				addToNormalEquations(normalMatrix, normalVector, row, positions[index]);
+			}
+
+			double[] parameters = solve(normalMatrix, normalVector);
+
+			if (parameters != null)
+			{
+				a = parameters[0];
+				b = parameters[1];
+				c = parameters[2];
+
+				fitted = hasValidPerspective();
+			}
+		}
+
+		if (!fitted)
+		{
+			double[][] normalMatrix = new double[2][2];
+			double[] normalVector = new double[2];
+
+			for(int index = 0; index < positions.length; index++)
+			{
+				if (fretNumbers[index] == Integer.MIN_VALUE) continue;
+
+				addToNormalEquations(normalMatrix, normalVector, new double[] {u[index], 1}, positions[index]);
+			}
+
+			double[] parameters = solve(normalMatrix, normalVector);
+
+			if (parameters == null) return false;
+
+			a = parameters[0];
+			b = parameters[1];
+			c = 0;
+		}
+
+		//Fit the angles of the frets found
+		double[][] normalMatrix = new double[2][2];
+		double[] normalVector = new double[2];
+
+		for(int index = 0; index < positions.length; index++)
+		{
+			if (fretNumbers[index] == Integer.MIN_VALUE) continue;
+
+			addToNormalEquations(normalMatrix, normalVector, new double[] {1, positions[index]}, fretAngles[index]);
+		}
+
+		double[] angleParameters = solve(normalMatrix, normalVector);
+
+		if (angleParameters != null)
+		{
+			angleIntercept = angleParameters[0];
+			angleGradient = angleParameters[1];
+		}
+		else
+		{
+			angleIntercept = 0;
+			angleGradient = 0;
+		}
+
+		return true;
+	}
+
+	private boolean hasValidPerspective()
+	{
+		return (c >= MINIMUM_PERSPECTIVE) && (c <= MAXIMUM_PERSPECTIVE);
+	}
+
+	private static void addToNormalEquations(double[][] normalMatrix, double[] normalVector, double[] row, double value)
+	{
+		for(int i = 0; i < row.length; i++)
+		{
+			for(int j = 0; j < row.length; j++)
+			{
+				normalMatrix[i][j] += row[i] * row[j];
+			}
+
+			normalVector[i] += row[i] * value;
+		}
+	}
+
+	/**
+	 * Solve a small system of linear equations by Gaussian elimination with partial pivoting
+	 * @return the solution, or null if the equations are singular
+	 */
+	private static double[] solve(double[][] matrix, double[] vector)
+	{
+		int size = vector.length;
+
+		double[][] m = new double[size][];
+		double[] v = vector.clone();
+
+		for(int row = 0; row < size; row++)
+		{
+			m[row] = matrix[row].clone();
+		}
+
+		for(int column = 0; column < size; column++)
+		{
+			int pivot = column;
+
+			for(int row = column + 1; row < size; row++)
+			{
+				if (Math.abs(m[row][column]) > Math.abs(m[pivot][column])) pivot = row;
+			}
+
+			if (Math.abs(m[pivot][column]) < 1e-12) return null;
+
+			double[] swapRow = m[column];
+			m[column] = m[pivot];
+			m[pivot] = swapRow;
+
+			double swapValue = v[column];
+			v[column] = v[pivot];
+			v[pivot] = swapValue;
+
+			for(int row = column + 1; row < size; row++)
+			{
+				double factor = m[row][column] / m[column][column];
+
+				for(int k = column; k < size; k++)
+				{
+					m[row][k] -= factor * m[column][k];
+				}
+
+				v[row] -= factor * v[column];
+			}
+		}
+
+		double[] solution = new double[size];
+
+		for(int row = size - 1; row >= 0; row--)
+		{
+			double sum = v[row];
+
+			for(int k = row + 1; k < size; k++)
+			{
+				sum -= m[row][k] * solution[k];
+			}
+
+			solution[row] = sum / m[row][row];
+		}
+
+		return solution;
+	}
+
+	/**
+	 * Create a line for each fret of the layout that is in the image, up to the number of frets
+	 */
+	private void placeFrets(int width, int numberOfFrets)
+	{
+		frets = new ArrayList<DetectedLine>();
+
+		for(int fret = 0; fret <= MAXIMUM_FRET_NUMBER && frets.size() < numberOfFrets; fret++)
+		{
+			double position = getFretPosition(fret);
+
+			if (position < 0 || position > width) break;
+
+			double angle = getFretAngle(position);
+
+			double rho = (position * Math.cos(angle)) + (centreRow * Math.sin(angle));
+
+			frets.add(new DetectedLine(rho, angle));
+		}
+
+		Collections.sort(frets);
+	}
+
+	/**
+	 * @param number of the fret, 0 for the first fret found on the nut side
+	 * @return position of the fret across the image, at the centre row
+	 */
+	public double getFretPosition(int fret)
+	{
+		double u = 1 - Math.pow(FRET_RATIO, fret);
+
+		return ((a * u) + b) / ((c * u) + 1);
+	}
+
+	private double getFretAngle(double position)
+	{
+		return angleIntercept + (angleGradient * position);
+	}
+
+	/**
+	 * @return position across the image of fret 0
+	 */
+	public double getNutPosition()
+	{
+		return b;
+	}
+
+	/**
+	 * @return position across the image of the bridge, where the frets would meet
+	 */
+	public double getBridgePosition()
+	{
+		return (a + b) / (c + 1);
+	}
+
+	/**
+	 * @return number of the lines found that the layout explains
+	 */
+	public int getNumberOfInliers()
+	{
+		return numberOfInliers;
+	}
+
+	/**
+	 * Copies of the frets placed by the layout
+	 * @return frets in the coordinates of the image the layout was fitted in, in order of rho
+	 */
+	public ArrayList<DetectedLine> getFrets()
+	{
+		ArrayList<DetectedLine> fretCopies = new ArrayList<DetectedLine>(frets.size());
+
+		for(DetectedLine fret : frets)
+		{
+			fretCopies.add(new DetectedLine(fret.getRho(), fret.getTheta()));
+		}
+
+		return fretCopies;
+	}
+
+	/**
+	 * Check how many of the frets of the layout are still in an image of edges, such as that of a later frame.
+	 * A fret is supported if it has an edge within two pixels in at least half of the rows of the image.
+	 * @param pixels of the image of edges, a byte for each pixel in row order
+	 * @param width of the image
+	 * @param height of the image
+	 * @return fraction of the frets that are supported
+	 */
+	public double getSupport(byte[] edges, int width, int height)
+	{
+		if (frets.isEmpty()) return 0;
+
+		int supportedFrets = 0;
+
+		for(DetectedLine fret : frets)
+		{
+			double cosTheta = Math.cos(fret.getTheta());
+			double sinTheta = Math.sin(fret.getTheta());
+
+			int supportedRows = 0;
+
+			for(int row = 0; row < height; row++)
+			{
+				int column = (int) Math.round((fret.getRho() - (row * sinTheta)) / cosTheta);
+
+				for(int x = Math.max(0, column - 2); x <= Math.min(width - 1, column + 2); x++)
+				{
+					if (edges[(row * width) + x] != 0)
+					{
+						supportedRows++;
+						break;
+					}
+				}
+			}
+
+			if (supportedRows >= height * MINIMUM_FRET_SUPPORT) supportedFrets++;
+		}
+
+		return supportedFrets / (double) frets.size();
+	}
+}
@@ -0,0 +1,13 @@
+package guitarvision.detection;
+
+/**
+ * How the Hough transform finds lines in an image of edges
+ */
+public enum HoughMode {
+	//Standard transform over every angle
+	STANDARD,
+	//Standard transform over only the angles the lines are expected at
+	ANGLE_WINDOW,
+	//Probabilistic transform, finding segments of lines which are then treated as whole lines
+	SEGMENTS
+}
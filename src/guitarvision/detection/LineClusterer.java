@@ -0,0 +1,217 @@
+package guitarvision.detection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import guitarvision.profiling.ProcessingStage;
+import guitarvision.profiling.ProfileCounter;
+import guitarvision.profiling.Profiler;
+
+/**
+ * Deterministic clustering of lines by a single value, such as their rho value or an intercept.
+ * In one dimension the optimal k-means clusters are contiguous once the values are sorted, so the sorted values
+ * are split into the contiguous groups with the smallest sum of squared distances to the group means, by dynamic programming.
+ * Each row of the dynamic programming table is filled by divide and conquer, as the best split point never
+ * moves left as the end of the last group moves right, which takes O(k n log n) time for n values and k groups.
+ */
+public class LineClusterer {
+	/**
+	 * Cluster lines by a value of each line
+	 * @param lines to cluster
+	 * @param value of each line to cluster by, in the same order as the lines
+	 * @param maximum number of groups, reduced to the number of lines if there are fewer lines
+	 * @return groups of lines, in order of value
+	 */
+	public static ArrayList<ArrayList<DetectedLine>> clusterLines(ArrayList<DetectedLine> lines, double[] values, int noGroups)
+	{
+		int[] positions = new int[lines.size()];
+
+		for(int index = 0; index < lines.size(); index++)
+		{
+			positions[index] = index;
+		}
+
+		ArrayList<ArrayList<DetectedLine>> groupedLines = new ArrayList<ArrayList<DetectedLine>>();
+
+		for(int[] group : clusterIndices(positions, values, noGroups))
+		{
+			ArrayList<DetectedLine> groupLines = new ArrayList<DetectedLine>(group.length);
+
+			for(int index : group)
+			{
+				groupLines.add(lines.get(index));
+			}
+
+			groupedLines.add(groupLines);
+		}
+
+		return groupedLines;
+	}
+
+	/**
+	 * Cluster the lines of a LineSet by a value of each line
+	 * @param indices of the lines to cluster
+	 * @param value of each line to cluster by, in the same order as the indices
+	 * @param maximum number of groups, reduced to the number of lines if there are fewer lines
+	 * @return groups of indices, in order of value, with the indices of each group in their original order
+	 */
+	public static int[][] clusterIndices(int[] indices, double[] values, int noGroups)
+	{
+		if (indices.length == 0)
+		{
+			return new int[0][];
+		}
+
+		long startTime = Profiler.start();
+
+		if (!(indices.length > noGroups))
+		{
+			noGroups = indices.length;
+		}
+
+		int[] labels = getClusterLabels(values, noGroups);
+
+		int[] groupSizes = new int[noGroups];
+
+		for(int label : labels)
+		{
+			groupSizes[label]++;
+		}
+
+		int[][] groupedIndices = new int[noGroups][];
+
+		for(int group = 0; group < noGroups; group++)
+		{
+			groupedIndices[group] = new int[groupSizes[group]];
+			groupSizes[group] = 0;
+		}
+
+		for(int index = 0; index < indices.length; index++)
+		{
+			int group = labels[index];
+			groupedIndices[group][groupSizes[group]++] = indices[index];
+		}
+
+		Profiler.count(ProfileCounter.CLUSTERED_LINES, indices.length);
+		Profiler.stop(ProcessingStage.CLUSTERING, startTime);
+
+		return groupedIndices;
+	}
+
+	/**
+	 * Find the optimal k-means clustering of values
+	 * @param values to cluster
+	 * @param number of groups, between 1 and the number of values
+	 * @return group of each value, where groups are numbered in order of value
+	 */
+	static int[] getClusterLabels(final double[] values, int noGroups)
+	{
+		int n = values.length;
+
+		int[] labels = new int[n];
+
+		if (n == 0) return labels;
+
+		//Sort the indices of the values rather than the values, to label the values in their original order
+		Integer[] order = new Integer[n];
+		for(int index = 0; index < n; index++)
+		{
+			order[index] = index;
+		}
+
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer first, Integer second)
+			{
+				return Double.compare(values[first], values[second]);
+			}
+		});
+
+		//Prefix sums of the sorted values and their squares, to find the cost of any contiguous group in constant time
+		double[] sums = new double[n + 1];
+		double[] squareSums = new double[n + 1];
+
+		for(int index = 0; index < n; index++)
+		{
+			double value = values[order[index]];
+			sums[index + 1] = sums[index] + value;
+			squareSums[index + 1] = squareSums[index] + (value * value);
+		}
+
+		//cost[group][end] is the smallest cost of splitting the first end + 1 sorted values into group + 1 groups
+		//and start[group][end] is the first value of the last group in that split
+		double[][] cost = new double[noGroups][n];
+		int[][] start = new int[noGroups][n];
+
+		for(int end = 0; end < n; end++)
+		{
+			cost[0][end] = groupCost(sums, squareSums, 0, end);
+		}
+
+		for(int group = 1; group < noGroups; group++)
+		{
+			fillRow(cost, start, sums, squareSums, group, group, n - 1, group, n - 1);
+		}
+
+		//Follow the split points back from the last value
+		int end = n - 1;
+
+		for(int group = noGroups - 1; group >= 0; group--)
+		{
+			int first = start[group][end];
+
+			for(int index = first; index <= end; index++)
+			{
+				labels[order[index]] = group;
+			}
+
+			end = first - 1;
+		}
+
+		return labels;
+	}
+
+	/**
+	 * Fill a row of the cost table between two ends, knowing that the start of the last group lies between two values
+	 */
+	private static void fillRow(double[][] cost, int[][] start, double[] sums, double[] squareSums, int group, int endLower, int endUpper, int startLower, int startUpper)
+	{
+		if (endLower > endUpper) return;
+
+		int end = (endLower + endUpper) / 2;
+
+		double bestCost = Double.POSITIVE_INFINITY;
+		int bestStart = startLower;
+
+		//Each earlier group must contain at least one value
+		for(int first = Math.max(startLower, group); first <= Math.min(startUpper, end); first++)
+		{
+			double currentCost = cost[group - 1][first - 1] + groupCost(sums, squareSums, first, end);
+
+			if (currentCost < bestCost)
+			{
+				bestCost = currentCost;
+				bestStart = first;
+			}
+		}
+
+		cost[group][end] = bestCost;
+		start[group][end] = bestStart;
+
+		fillRow(cost, start, sums, squareSums, group, endLower, end - 1, startLower, bestStart);
+		fillRow(cost, start, sums, squareSums, group, end + 1, endUpper, bestStart, startUpper);
+	}
+
+	/**
+	 * Sum of squared distances to the mean of the sorted values from first to last inclusive
+	 */
+	private static double groupCost(double[] sums, double[] squareSums, int first, int last)
+	{
+		int count = last - first + 1;
+		double sum = sums[last + 1] - sums[first];
+
+		return Math.max(0, (squareSums[last + 1] - squareSums[first]) - ((sum * sum) / count));
+	}
+}
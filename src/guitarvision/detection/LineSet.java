@@ -0,0 +1,155 @@
+package guitarvision.detection;
+
+import java.util.ArrayList;
+
+import org.opencv.core.Mat;
+
+/**
+ * Lines found by the Hough transform, stored as arrays of their polar coordinate parameters rather than as DetectedLine objects.
+ * Only a few of the hundreds of lines found in a frame are kept as strings or frets, so the angle filtering and clustering
+ * work on arrays of the indices of the lines still being considered, and DetectedLine objects are only created for the lines selected.
+ */
+public class LineSet {
+	public final double[] rho;
+	public final double[] theta;
+
+	public final int size;
+
+	public LineSet(int size)
+	{
+		this.size = size;
+
+		rho = new double[size];
+		theta = new double[size];
+	}
+
+	/**
+	 * Read the lines found by the Hough transform, with a single read of the Mat
+	 * @param Mat of lines, with a row of (rho, theta) for each line
+	 * @return set of the lines, in the order of the rows
+	 */
+	public static LineSet fromHoughLines(Mat houghLines)
+	{
+		LineSet lines = new LineSet(houghLines.rows());
+
+		if (lines.size == 0) return lines;
+
+		float[] parameters = new float[lines.size * 2];
+		houghLines.get(0, 0, parameters);
+
+		for(int index = 0; index < lines.size; index++)
+		{
+			lines.rho[index] = parameters[index * 2];
+			lines.theta[index] = parameters[(index * 2) + 1];
+		}
+
+		return lines;
+	}
+
+	/**
+	 * Read the segments found by the probabilistic Hough transform as the lines through them, with a single read of the Mat
+	 * @param Mat of segments, with a row of (x1, y1, x2, y2) for each segment
+	 * @return set of the lines, in the order of the rows, with theta between 0 and PI as for the standard transform
+	 */
+	public static LineSet fromHoughSegments(Mat houghSegments)
+	{
+		LineSet lines = new LineSet(houghSegments.rows());
+
+		if (lines.size == 0) return lines;
+
+		int[] endPoints = new int[lines.size * 4];
+		houghSegments.get(0, 0, endPoints);
+
+		for(int index = 0; index < lines.size; index++)
+		{
+			int x1 = endPoints[index * 4];
+			int y1 = endPoints[(index * 4) + 1];
+			int x2 = endPoints[(index * 4) + 2];
+			int y2 = endPoints[(index * 4) + 3];
+
+			//Normal of the segment
+			double theta = Math.atan2(x1 - x2, y2 - y1);
+
+			if (theta < 0) theta += Math.PI;
+			if (theta >= Math.PI) theta -= Math.PI;
+
+			lines.rho[index] = (x1 * Math.cos(theta)) + (y1 * Math.sin(theta));
+			lines.theta[index] = theta;
+		}
+
+		return lines;
+	}
+
+	/**
+	 * Join two sets of lines, such as those found over two ranges of angles
+	 * @return set of the lines of the first set followed by those of the second
+	 */
+	public static LineSet concatenate(LineSet first, LineSet second)
+	{
+		LineSet lines = new LineSet(first.size + second.size);
+
+		System.arraycopy(first.rho, 0, lines.rho, 0, first.size);
+		System.arraycopy(first.theta, 0, lines.theta, 0, first.size);
+		System.arraycopy(second.rho, 0, lines.rho, first.size, second.size);
+		System.arraycopy(second.theta, 0, lines.theta, first.size, second.size);
+
+		return lines;
+	}
+
+	/**
+	 * Move lines found in an image shrunk by a scale to the coordinates of the full image
+	 * @param number of pixels of the full image along each side of a pixel of the shrunk image
+	 */
+	public void scale(double scale)
+	{
+		for(int index = 0; index < size; index++)
+		{
+			rho[index] *= scale;
+		}
+	}
+
+	/**
+	 * @return indices of all of the lines
+	 */
+	public int[] getAllIndices()
+	{
+		int[] indices = new int[size];
+
+		for(int index = 0; index < size; index++)
+		{
+			indices[index] = index;
+		}
+
+		return indices;
+	}
+
+	/**
+	 * Same as DetectedLine.getYIntercept, without creating the line
+	 */
+	public double getYIntercept(int index)
+	{
+		return rho[index] / Math.sin(theta[index]);
+	}
+
+	public DetectedLine getLine(int index)
+	{
+		return new DetectedLine(rho[index], theta[index]);
+	}
+
+	/**
+	 * Create the lines of a group of indices, such as for drawing them
+	 * @param indices of the lines
+	 * @return lines in the order of the indices
+	 */
+	public ArrayList<DetectedLine> getLines(int[] indices)
+	{
+		ArrayList<DetectedLine> lines = new ArrayList<DetectedLine>(indices.length);
+
+		for(int index : indices)
+		{
+			lines.add(getLine(index));
+		}
+
+		return lines;
+	}
+}
@@ -0,0 +1,415 @@
+package guitarvision.detection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Tracks a set of lines, such as the strings or the frets, from frame to frame.
+ * Each line has a state of rho, theta and their velocities per frame. The state is moved on by its velocities to predict
+ * the line in the next frame. A track matched to a line detected there takes the detected line, as smoothing the detections
+ * would move the lines away from the strings and frets in the image, and only its velocities are filtered, corrected towards
+ * the difference from the prediction by the velocity gain. Tracks without a match keep their prediction.
+ * Each track is matched to the nearest detected line within a distance in rho.
+ * The confidence of the tracker is a running measure of how many tracks were matched and how close the matches were,
+ * which decays in frames where the lines are only predicted, so that the lines can be detected again once it is low.
+ */
+public class LineTracker {
+	//Fraction of the difference between the predicted and detected line that is added to the velocity of the track
+	private double velocityGain = 0.02;
+
+	//Largest difference in rho between a track and the line matched to it
+	private double matchDistance = 15;
+
+	//Weight of the latest frame in the confidence
+	private double confidenceWeight = 0.5;
+
+	//Factor the confidence is multiplied by in a frame where the lines are only predicted
+	private double confidenceDecay = 0.95;
+
+	//Confidence below which the tracks are lost, and are started again from the next lines detected
+	private double lostConfidence = 0.2;
+
+	//Number of lines needed to start tracking
+	private int minimumLines;
+
+	//State of each track
+	private double[] rho = new double[0];
+	private double[] theta = new double[0];
+	private double[] rhoVelocity = new double[0];
+	private double[] thetaVelocity = new double[0];
+	private int[] length = new int[0];
+
+	private double confidence = 0;
+
+	/**
+	 * The tracks and confidence of a tracker, such as to write them to a checkpoint
+	 */
+	public static class State {
+		public double[] rho;
+		public double[] theta;
+		public double[] rhoVelocity;
+		public double[] thetaVelocity;
+		public int[] length;
+		public double confidence;
+
+		public State(double[] rho, double[] theta, double[] rhoVelocity, double[] thetaVelocity, int[] length, double confidence)
+		{
+			this.rho = rho;
+			this.theta = theta;
+			this.rhoVelocity = rhoVelocity;
+			this.thetaVelocity = thetaVelocity;
+			this.length = length;
+			this.confidence = confidence;
+		}
+	}
+
+	/**
+	 * @param number of lines that must be detected to start tracking
+	 */
+	public LineTracker(int minimumLines)
+	{
+		this.minimumLines = minimumLines;
+	}
+
+	/**
+	 * Move the tracks on to the next frame and correct them by the lines detected in it
+	 * @param lines detected in the frame
+	 * @return the detected lines matched to tracks and the predictions of the other tracks, in order of rho,
+	 * or the detected lines if there are not enough of them to track
+	 */
+	public ArrayList<DetectedLine> update(ArrayList<? extends DetectedLine> detectedLines)
+	{
+		if (!hasTracks() || confidence < lostConfidence)
+		{
+			if (detectedLines.size() < minimumLines)
+			{
+				return new ArrayList<DetectedLine>(detectedLines);
+			}
+
+			startTracks(detectedLines);
+
+			return getLines();
+		}
+
+		int numberOfTracks = rho.length;
+
+		double[] predictedRhos = new double[numberOfTracks];
+
+		for(int track = 0; track < numberOfTracks; track++)
+		{
+			predictedRhos[track] = rho[track] + rhoVelocity[track];
+		}
+
+		int[] matches = matchLines(detectedLines, predictedRhos);
+
+		int matchedTracks = 0;
+		double totalDistance = 0;
+
+		for(int track = 0; track < numberOfTracks; track++)
+		{
+			double predictedRho = predictedRhos[track];
+			double predictedTheta = theta[track] + thetaVelocity[track];
+
+			//A track without a match keeps its prediction but stops moving, so that it does not drift away while its line is not detected
+			if (matches[track] < 0)
+			{
+				rho[track] = predictedRho;
+				theta[track] = predictedTheta;
+				rhoVelocity[track] = 0;
+				thetaVelocity[track] = 0;
+				continue;
+			}
+
+			DetectedLine detectedLine = detectedLines.get(matches[track]);
+
+			matchedTracks++;
+			totalDistance += Math.abs(detectedLine.getRho() - predictedRho);
+
+			double rhoResidual = detectedLine.getRho() - predictedRho;
+			double thetaResidual = detectedLine.getTheta() - predictedTheta;
+
+			rho[track] = detectedLine.getRho();
+			theta[track] = detectedLine.getTheta();
+			length[track] = detectedLine.getLength();
+			rhoVelocity[track] += velocityGain * rhoResidual;
+			thetaVelocity[track] += velocityGain * thetaResidual;
+		}
+
+		//Quality of the frame, from the fraction of tracks matched and how close they were
+		double quality = 0;
+
+		if (matchedTracks > 0)
+		{
+			quality = (matchedTracks / (double) numberOfTracks) * (1 - (totalDistance / (matchedTracks * matchDistance)));
+		}
+
+		confidence = ((1 - confidenceWeight) * confidence) + (confidenceWeight * quality);
+
+		return getLines();
+	}
+
+	/**
+	 * Match the tracks to the lines detected in a frame.
+	 * When there are as many lines as tracks, they are matched in order of rho, as the strings and frets are about as far apart
+	 * as they move between frames, so the nearest line to a track may be its neighbour's. Otherwise each track is matched to the
+	 * nearest line which is nearer to it than to the tracks either side.
+	 * @param lines detected in the frame
+	 * @param rho predicted for each track
+	 * @return index of the line matched to each track, or -1 for the tracks without a match
+	 */
+	private int[] matchLines(final ArrayList<? extends DetectedLine> detectedLines, final double[] predictedRhos)
+	{
+		int numberOfTracks = predictedRhos.length;
+
+		int[] matches = new int[numberOfTracks];
+		Arrays.fill(matches, -1);
+
+		if (detectedLines.size() == numberOfTracks)
+		{
+			Integer[] tracksByRho = new Integer[numberOfTracks];
+			Integer[] linesByRho = new Integer[numberOfTracks];
+
+			for(int track = 0; track < numberOfTracks; track++)
+			{
+				tracksByRho[track] = track;
+				linesByRho[track] = track;
+			}
+
+			Arrays.sort(tracksByRho, new Comparator<Integer>() {
+				public int compare(Integer track, Integer otherTrack)
+				{
+					return Double.compare(predictedRhos[track], predictedRhos[otherTrack]);
+				}
+			});
+
+			Arrays.sort(linesByRho, new Comparator<Integer>() {
+				public int compare(Integer line, Integer otherLine)
+				{
+					return Double.compare(detectedLines.get(line).getRho(), detectedLines.get(otherLine).getRho());
+				}
+			});
+
+			for(int position = 0; position < numberOfTracks; position++)
+			{
+				int track = tracksByRho[position];
+				int line = linesByRho[position];
+
+				if (Math.abs(detectedLines.get(line).getRho() - predictedRhos[track]) <= matchDistance)
+				{
+					matches[track] = line;
+				}
+			}
+
+			return matches;
+		}
+
+		boolean[] used = new boolean[detectedLines.size()];
+
+		for(int track = 0; track < numberOfTracks; track++)
+		{
+			//Lines are only matched to a track if they are nearer to it than to the tracks either side,
+			//as a track taking its neighbour's line would follow the wrong line
+			double nearestDistance = matchDistance;
+
+			for(int otherTrack = 0; otherTrack < numberOfTracks; otherTrack++)
+			{
+				if (otherTrack != track)
+				{
+					nearestDistance = Math.min(nearestDistance, Math.abs(predictedRhos[otherTrack] - predictedRhos[track]) / 2);
+				}
+			}
+
+			for(int index = 0; index < detectedLines.size(); index++)
+			{
+				double distance = Math.abs(detectedLines.get(index).getRho() - predictedRhos[track]);
+
+				if (!used[index] && distance < nearestDistance)
+				{
+					matches[track] = index;
+					nearestDistance = distance;
+				}
+			}
+
+			if (matches[track] >= 0) used[matches[track]] = true;
+		}
+
+		return matches;
+	}
+
+	/**
+	 * Move the tracks on to the next frame without any detected lines, lowering the confidence
+	 * @return the predicted lines, in order of rho
+	 */
+	public ArrayList<DetectedLine> predict()
+	{
+		for(int track = 0; track < rho.length; track++)
+		{
+			rho[track] += rhoVelocity[track];
+			theta[track] += thetaVelocity[track];
+		}
+
+		confidence *= confidenceDecay;
+
+		return getLines();
+	}
+
+	/**
+	 * The lines expected in the next frame, without moving the tracks on
+	 * @return the predicted lines, in order of rho
+	 */
+	public ArrayList<DetectedLine> getPredictedLines()
+	{
+		ArrayList<DetectedLine> lines = new ArrayList<DetectedLine>(rho.length);
+
+		for(int track = 0; track < rho.length; track++)
+		{
+			lines.add(new DetectedLine(rho[track] + rhoVelocity[track], theta[track] + thetaVelocity[track], length[track]));
+		}
+
+		Collections.sort(lines);
+
+		return lines;
+	}
+
+	private ArrayList<DetectedLine> getLines()
+	{
+		ArrayList<DetectedLine> lines = new ArrayList<DetectedLine>(rho.length);
+
+		for(int track = 0; track < rho.length; track++)
+		{
+			lines.add(new DetectedLine(rho[track], theta[track], length[track]));
+		}
+
+		Collections.sort(lines);
+
+		return lines;
+	}
+
+	private void startTracks(ArrayList<? extends DetectedLine> detectedLines)
+	{
+		int numberOfTracks = detectedLines.size();
+
+		rho = new double[numberOfTracks];
+		theta = new double[numberOfTracks];
+		rhoVelocity = new double[numberOfTracks];
+		thetaVelocity = new double[numberOfTracks];
+		length = new int[numberOfTracks];
+
+		for(int track = 0; track < numberOfTracks; track++)
+		{
+			DetectedLine line = detectedLines.get(track);
+
+			rho[track] = line.getRho();
+			theta[track] = line.getTheta();
+			length[track] = line.getLength();
+		}
+
+		//Nothing is known yet of how well the lines are tracked
+		confidence = lostConfidence;
+	}
+
+	/**
+	 * Forget the tracks, so that they are started again from the next lines detected
+	 */
+	public void reset()
+	{
+		rho = new double[0];
+		theta = new double[0];
+		rhoVelocity = new double[0];
+		thetaVelocity = new double[0];
+		length = new int[0];
+
+		confidence = 0;
+	}
+
+	/**
+	 * @return copy of the tracks and confidence, which later updates do not change
+	 */
+	public State getState()
+	{
+		return new State(rho.clone(), theta.clone(), rhoVelocity.clone(), thetaVelocity.clone(), length.clone(), confidence);
+	}
+
+	/**
+	 * Replace the tracks and confidence, such as to resume from a checkpoint
+	 * @param state from getState, or null to forget the tracks
+	 */
+	public void setState(State state)
+	{
+		if (state == null)
+		{
+			reset();
+			return;
+		}
+
+		rho = state.rho.clone();
+		theta = state.theta.clone();
+		rhoVelocity = state.rhoVelocity.clone();
+		thetaVelocity = state.thetaVelocity.clone();
+		length = state.length.clone();
+
+		confidence = state.confidence;
+	}
+
+	public boolean hasTracks()
+	{
+		return rho.length > 0;
+	}
+
+	/**
+	 * @return confidence in the tracks between 0 and 1, 0 when there are no tracks
+	 */
+	public double getConfidence()
+	{
+		return confidence;
+	}
+
+	/**
+	 * @return true if the tracks are being followed, rather than waiting to be started again
+	 */
+	public boolean isTracking()
+	{
+		return hasTracks() && confidence >= lostConfidence;
+	}
+
+	/**
+	 * @param fraction of the difference between the predicted and detected line that is added to the velocity of the track
+	 */
+	public void setVelocityGain(double gain)
+	{
+		velocityGain = gain;
+	}
+
+	public double getVelocityGain()
+	{
+		return velocityGain;
+	}
+
+	/**
+	 * @param largest difference in rho between a track and the line matched to it
+	 */
+	public void setMatchDistance(double distance)
+	{
+		matchDistance = distance;
+	}
+
+	public double getMatchDistance()
+	{
+		return matchDistance;
+	}
+
+	/**
+	 * @param factor the confidence is multiplied by in a frame where the lines are only predicted
+	 */
+	public void setConfidenceDecay(double decay)
+	{
+		confidenceDecay = decay;
+	}
+
+	public double getConfidenceDecay()
+	{
+		return confidenceDecay;
+	}
+}
@@ -0,0 +1,224 @@
+package guitarvision.detection;
+
+import java.util.ArrayList;
+
+import guitarvision.memory.MatArena;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Class for deciding whether the guitar neck has moved since the strings and frets were last detected.
+ * The region of the frame around the strings is shrunk to a small grey image when the guitar is detected, and the
+ * motion of later frames is the mean difference between the same region of the frame and that image.
+ * Skin pixels are left out, so that the hands moving over the neck do not count as motion of the guitar.
+ * The difference is taken from the frame the guitar was detected in rather than the previous frame, so slow
+ * movement adds up until the guitar is detected again.
+ */
+public class MotionDetector {
+	//Mean difference in grey level of the pixels around the neck, above which the guitar is detected again
+	private double motionThreshold = 4.0;
+
+	//Factor to shrink the region around the neck by before comparing it
+	private int downsampleFactor = 8;
+
+	//Distance to widen the region by on either side, as a fraction of the distance between the outer strings
+	private double regionMargin = 0.5;
+
+	//Number of frames after which the guitar is detected again even if it has not moved
+	private int maximumFramesWithoutDetection = 15;
+
+	//Region and shrunk image of the frame the guitar was last detected in
+	private Rect referenceRegion = null;
+	private Mat referenceImage = new Mat();
+	private Mat referenceSkin = new Mat();
+	private int framesSinceReference = 0;
+
+	//Buffers reused between frames
+	private Mat smallImage = new Mat();
+	private Mat greyImage = new Mat();
+	private Mat smallSkin = new Mat();
+	private Mat skinChannel = new Mat();
+	private Mat stillPixels = new Mat();
+	private Mat difference = new Mat();
+
+	/**
+	 * Decide whether the strings and frets need to be detected in a frame
+	 * @param image of the frame
+	 * @param skin detected in the frame, or null to compare every pixel
+	 * @return true if the guitar has moved since it was last detected, or no detection has been recorded
+	 */
+	public boolean hasMoved(Mat image, SkinMask skin)
+	{
+		if (referenceRegion == null || framesSinceReference >= maximumFramesWithoutDetection) return true;
+
+		framesSinceReference++;
+
+		return getMotion(image, skin) > motionThreshold;
+	}
+
+	/**
+	 * Measure the motion of the region around the neck since the guitar was last detected
+	 * @param image of the frame
+	 * @param skin detected in the frame, or null to compare every pixel
+	 * @return mean difference in grey level of the pixels which are not skin, or Double.MAX_VALUE if no detection has been recorded
+	 */
+	public double getMotion(Mat image, SkinMask skin)
+	{
+		if (referenceRegion == null) return Double.MAX_VALUE;
+
+		shrink(image, skin, greyImage, smallSkin);
+
+		Core.absdiff(greyImage, referenceImage, difference);
+
+		//Leave out the pixels which are skin in either frame
+		Core.bitwise_or(smallSkin, referenceSkin, stillPixels);
+		Core.bitwise_not(stillPixels, stillPixels);
+
+		//Too little of the neck is visible to tell whether it has moved
+		if (Core.countNonZero(stillPixels) < stillPixels.total() / 2) return Double.MAX_VALUE;
+
+		return Core.mean(difference, stillPixels).val[0];
+	}
+
+	/**
+	 * Record the frame that the guitar has been detected in, for comparing the following frames to
+	 * @param image of the frame
+	 * @param strings detected in the frame
+	 * @param skin detected in the frame, or null
+	 */
+	public void setReference(Mat image, ArrayList<GuitarString> strings, SkinMask skin)
+	{
+		referenceRegion = getNeckRegion(image, strings);
+		framesSinceReference = 0;
+
+		if (referenceRegion != null)
+		{
+			shrink(image, skin, referenceImage, referenceSkin);
+		}
+	}
+
+	/**
+	 * Forget the frame that the guitar was last detected in, so that it is detected in the next frame
+	 */
+	public void reset()
+	{
+		referenceRegion = null;
+	}
+
+	/**
+	 * Shrink the reference region of a frame to a grey image, along with a mask of its skin pixels
+	 */
+	private void shrink(Mat image, SkinMask skin, Mat shrunkImage, Mat shrunkSkin)
+	{
+		Size smallSize = new Size(Math.max(1, referenceRegion.width / downsampleFactor), Math.max(1, referenceRegion.height / downsampleFactor));
+
+		Imgproc.resize(MatArena.track(image.submat(referenceRegion)), smallImage, smallSize, 0, 0, Imgproc.INTER_AREA);
+		Imgproc.cvtColor(smallImage, shrunkImage, Imgproc.COLOR_BGR2GRAY);
+
+		if (skin != null)
+		{
+			//Pixels of the shrunk image which are partly skin are left out as well
+			Imgproc.resize(MatArena.track(skin.getImage().submat(referenceRegion)), smallImage, smallSize, 0, 0, Imgproc.INTER_AREA);
+			Core.extractChannel(smallImage, skinChannel, 0);
+			Imgproc.threshold(skinChannel, shrunkSkin, 0, 255, Imgproc.THRESH_BINARY);
+		}
+		else
+		{
+			shrunkSkin.create(shrunkImage.size(), shrunkImage.type());
+			shrunkSkin.setTo(new Scalar(0));
+		}
+	}
+
+	/**
+	 * Find the rows of the frame that the neck crosses, between the outer strings widened by the margin
+	 * @param image of the frame
+	 * @param strings detected in the frame
+	 * @return region across the whole width of the frame, or null if the strings are not close to horizontal
+	 */
+	private Rect getNeckRegion(Mat image, ArrayList<GuitarString> strings)
+	{
+		NeckBand band = NeckBand.fromStrings(strings, regionMargin, image.width(), image.height());
+
+		if (band == null) return null;
+
+		Rect region = band.getBounds();
+
+		if (region.height < downsampleFactor || region.width < downsampleFactor) return null;
+
+		return region;
+	}
+
+	/**
+	 * @param mean difference in grey level of the pixels around the neck, above which the guitar is detected again
+	 */
+	public void setMotionThreshold(double threshold)
+	{
+		motionThreshold = threshold;
+	}
+
+	public double getMotionThreshold()
+	{
+		return motionThreshold;
+	}
+
+	/**
+	 * @param factor to shrink the region around the neck by before comparing it
+	 */
+	public void setDownsampleFactor(int factor)
+	{
+		downsampleFactor = factor;
+	}
+
+	public int getDownsampleFactor()
+	{
+		return downsampleFactor;
+	}
+
+	/**
+	 * @param distance to widen the region by on either side, as a fraction of the distance between the outer strings
+	 */
+	public void setRegionMargin(double margin)
+	{
+		regionMargin = margin;
+	}
+
+	public double getRegionMargin()
+	{
+		return regionMargin;
+	}
+
+	/**
+	 * @param number of frames after which the guitar is detected again even if it has not moved
+	 */
+	public void setMaximumFramesWithoutDetection(int frames)
+	{
+		maximumFramesWithoutDetection = frames;
+	}
+
+	public int getMaximumFramesWithoutDetection()
+	{
+		return maximumFramesWithoutDetection;
+	}
+
+	/**
+	 * Release the native memory of the reference image and the buffers
+	 */
+	public void release()
+	{
+		referenceRegion = null;
+
+		referenceImage.release();
+		referenceSkin.release();
+		smallImage.release();
+		greyImage.release();
+		smallSkin.release();
+		skinChannel.release();
+		stillPixels.release();
+		difference.release();
+	}
+}
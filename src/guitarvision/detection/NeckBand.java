@@ -0,0 +1,97 @@
+package guitarvision.detection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+
+/**
+ * Band of an image around the strings of a guitar, which is the band between the outer strings widened by a margin
+ * on either side, running across the whole width of the image. Used to only search or compare the part of a frame around the neck.
+ */
+public class NeckBand {
+	private Point[] corners;
+	private Rect bounds;
+
+	private NeckBand(Point[] corners, Rect bounds)
+	{
+		this.corners = corners;
+		this.bounds = bounds;
+	}
+
+	/**
+	 * Find the band around some strings
+	 * @param strings of the guitar, in any order
+	 * @param distance to widen the band by on either side, as a fraction of the distance between the outer strings
+	 * @param width of the image
+	 * @param height of the image
+	 * @return band, or null if there are fewer than two strings, the outer strings are closer to vertical than horizontal, or the band is outside of the image
+	 */
+	public static NeckBand fromStrings(ArrayList<? extends DetectedLine> strings, double marginFactor, int width, int height)
+	{
+		if (strings == null || strings.size() < 2) return null;
+
+		ArrayList<DetectedLine> sortedStrings = new ArrayList<DetectedLine>(strings);
+		Collections.sort(sortedStrings);
+
+		DetectedLine outerString1 = sortedStrings.get(0);
+		DetectedLine outerString2 = sortedStrings.get(sortedStrings.size() - 1);
+
+		//The band is only found for strings that are closer to horizontal than vertical
+		if (Math.abs(Math.sin(outerString1.getTheta())) < 0.7 || Math.abs(Math.sin(outerString2.getTheta())) < 0.7) return null;
+
+		double margin = (outerString2.getRho() - outerString1.getRho()) * marginFactor;
+
+		DetectedLine upperEdge = new DetectedLine(outerString1.getRho() - margin, outerString1.getTheta());
+		DetectedLine lowerEdge = new DetectedLine(outerString2.getRho() + margin, outerString2.getTheta());
+
+		DetectedLine rightEdgeOfImage = new DetectedLine((double) width, 0.0);
+
+		Point[] corners = new Point[] {
+			new Point(0, upperEdge.getYIntercept()),
+			new Point(width, upperEdge.getCollisionPoint(rightEdgeOfImage).y),
+			new Point(width, lowerEdge.getCollisionPoint(rightEdgeOfImage).y),
+			new Point(0, lowerEdge.getYIntercept())
+		};
+
+		double top = height;
+		double bottom = 0;
+
+		for(Point corner : corners)
+		{
+			top = Math.min(top, corner.y);
+			bottom = Math.max(bottom, corner.y);
+		}
+
+		int boundsTop = (int) Math.max(0, Math.floor(top));
+		int boundsBottom = (int) Math.min(height, Math.ceil(bottom));
+
+		if (boundsBottom <= boundsTop || width <= 0) return null;
+
+		return new NeckBand(corners, new Rect(0, boundsTop, width, boundsBottom - boundsTop));
+	}
+
+	/**
+	 * @return corners of the band in image coordinates: the upper edge from the left to the right, and then the lower edge from the right to the left
+	 */
+	public Point[] getCorners()
+	{
+		Point[] cornersCopy = new Point[corners.length];
+
+		for(int corner = 0; corner < corners.length; corner++)
+		{
+			cornersCopy[corner] = corners[corner].clone();
+		}
+
+		return cornersCopy;
+	}
+
+	/**
+	 * @return rows of the image the band crosses, across the whole width of the image
+	 */
+	public Rect getBounds()
+	{
+		return bounds.clone();
+	}
+}
@@ -0,0 +1,104 @@
+package guitarvision.detection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import guitarvision.memory.MatArena;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.utils.Converters;
+
+/**
+ * Class for finding the perspective transform that makes the strings of the guitar neck in a frame horizontal.
+ * The transform is found once per frame, and the rectified neck is used for both fret detection and measuring the string thicknesses.
+ */
+public class NeckRectifier {
+	//Average height of the band of rows for each string, 0 to use half the frame height
+	private int stringBandHeight = 0;
+
+	//Height of the image used for fret detection, as a fraction of the frame height
+	private double fretImageHeightFactor = 0.25;
+
+	/**
+	 * Rectify the guitar neck so that the outer strings are horizontal.
+	 * The outer strings are placed half a band from the top and bottom of the rectified neck, so that
+	 * the outer strings' bands fit in it.
+	 * @param image of guitar in scene
+	 * @param list of strings detected in the image, in order of rho
+	 * @return the rectified neck, or null if fewer than two strings were detected
+	 */
+	public RectifiedNeck rectify(Mat image, ArrayList<GuitarString> guitarStrings)
+	{
+		if (guitarStrings == null || guitarStrings.size() < 2) return null;
+
+		int numberOfStrings = guitarStrings.size();
+
+		double width = image.width();
+		int bandHeight = (stringBandHeight > 0) ? stringBandHeight : image.height() / 2;
+		int height = numberOfStrings * bandHeight;
+
+		int firstStringRow = bandHeight / 2;
+		int lastStringRow = height - (bandHeight / 2);
+
+		//Intersect the outer strings with the left and right sides of the image
+		//to obtain rectangle which contains guitar neck
+		GuitarString outerString1 = guitarStrings.get(0);
+		GuitarString outerString2 = guitarStrings.get(numberOfStrings - 1);
+
+		DetectedLine rightEdgeOfImage = new DetectedLine(width, 0.0);
+
+		Point rightEdgeUpperPoint = outerString1.getCollisionPoint(rightEdgeOfImage);
+		Point rightEdgeLowerPoint = outerString2.getCollisionPoint(rightEdgeOfImage);
+
+		List<Point> sourcePoints = new ArrayList<Point>();
+		sourcePoints.add(new Point(0, outerString1.getYIntercept()));
+		sourcePoints.add(new Point(width, rightEdgeUpperPoint.y));
+		sourcePoints.add(new Point(width, rightEdgeLowerPoint.y));
+		sourcePoints.add(new Point(0, outerString2.getYIntercept()));
+		Mat source = MatArena.track(Converters.vector_Point2f_to_Mat(sourcePoints));
+
+		List<Point> destPoints = new ArrayList<Point>();
+		destPoints.add(new Point(0, firstStringRow));
+		destPoints.add(new Point(width, firstStringRow));
+		destPoints.add(new Point(width, lastStringRow));
+		destPoints.add(new Point(0, lastStringRow));
+		Mat dest = MatArena.track(Converters.vector_Point2f_to_Mat(destPoints));
+
+		Mat warpMat = MatArena.track(Imgproc.getPerspectiveTransform(source, dest));
+
+		Size fretImageResolution = new Size(width, Math.max(1, Math.round(image.height() * fretImageHeightFactor)));
+
+		return new RectifiedNeck(image, guitarStrings, warpMat, height, firstStringRow, lastStringRow, fretImageResolution);
+	}
+
+	/**
+	 * Set the average height of the band of the rectified neck for each string, which is the distance between neighbouring strings.
+	 * The string thicknesses are measured in pixels of the band, so larger bands measure them more precisely but take longer to render.
+	 * @param height in pixels, or 0 to use half the frame height
+	 */
+	public void setStringBandHeight(int height)
+	{
+		stringBandHeight = height;
+	}
+
+	public int getStringBandHeight()
+	{
+		return stringBandHeight;
+	}
+
+	/**
+	 * @param height of the image used for fret detection, as a fraction of the frame height
+	 */
+	public void setFretImageHeightFactor(double factor)
+	{
+		fretImageHeightFactor = factor;
+	}
+
+	public double getFretImageHeightFactor()
+	{
+		return fretImageHeightFactor;
+	}
+}
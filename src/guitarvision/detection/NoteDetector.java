@@ -19,13 +19,13 @@ public class NoteDetector {
 	 * Get an object containing the note being played
 	 * @param copy of image to annotate frets which are being played
 	 * @param current frame number in video to store with note object
-	 * @param copy of image with only skin pixels set
+	 * @param skin detected in the image
 	 * @param number of the string which is vibrating, to store with the note object
 	 * @param list of detected guitar strings
 	 * @param list of detected guitar frets
 	 * @return object containing the note being played
 	 */
-	public MusicNote getNote(Mat frameToAnnotate, int frameNumber, Mat skin, int vibratingStringNo, ArrayList<GuitarString> guitarStrings, ArrayList<DetectedLine> guitarFrets)
+	public MusicNote getNote(Mat frameToAnnotate, int frameNumber, SkinMask skin, int vibratingStringNo, ArrayList<GuitarString> guitarStrings, ArrayList<DetectedLine> guitarFrets)
 	{
 		if (guitarStrings.size() <= vibratingStringNo)
 		{
@@ -91,6 +91,18 @@ public class NoteDetector {
 			}
 		}
 		
+		return getNote(frameNumber, vibratingStringNo, fretPlaying);
+	}
+	
+	/**
+	 * Get an object containing the note being played on a string held down at a fret
+	 * @param current frame number in video to store with note object
+	 * @param number of the string which is vibrating
+	 * @param number of the fret being held, 0 for the open string
+	 * @return object containing the note being played
+	 */
+	public MusicNote getNote(int frameNumber, int vibratingStringNo, int fretPlaying)
+	{
 		int note;
 		int octave;
 		
@@ -136,4 +148,57 @@ public class NoteDetector {
 
 		return musicNote;
 	}
+	
+	/**
+	 * Find which segments of a string, between each fret and the next, overlap the skin, as getNote does
+	 * @param skin detected in the image
+	 * @param string to check
+	 * @param list of detected guitar frets
+	 * @return bit x is set if the segment between frets x and x + 1 overlaps the skin, for up to 64 segments
+	 */
+	public long getSkinOverlaps(SkinMask skin, GuitarString string, ArrayList<DetectedLine> guitarFrets)
+	{
+		long overlaps = 0;
+		
+		for(int x = 0; x < guitarFrets.size() - 1 && x < 64; x++)
+		{
+			Point startPoint = string.getCollisionPoint(guitarFrets.get(x));
+			Point endPoint = string.getCollisionPoint(guitarFrets.get(x+1));
+			
+			if (SkinDetector.fretOverlapSkin(skin, startPoint, endPoint))
+			{
+				overlaps |= 1L << x;
+			}
+		}
+		
+		return overlaps;
+	}
+	
+	/**
+	 * Find the fret being held from the segments of a string that overlap the skin: the first segment after
+	 * the hand which does not overlap it
+	 * @param bits of the segments which overlap the skin, from getSkinOverlaps
+	 * @param number of segments, one less than the number of frets
+	 * @return number of the fret being held, 0 if it is not found
+	 */
+	public static int getFretPlaying(long skinOverlaps, int numberOfSegments)
+	{
+		boolean startedOverlapping = false;
+		
+		for(int x = 0; x < numberOfSegments && x < 64; x++)
+		{
+			boolean overlapping = (skinOverlaps & (1L << x)) != 0;
+			
+			if (overlapping)
+			{
+				startedOverlapping = true;
+			}
+			else if (startedOverlapping)
+			{
+				return x;
+			}
+		}
+		
+		return 0;
+	}
 }
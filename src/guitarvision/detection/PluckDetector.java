@@ -1,10 +1,10 @@
 package guitarvision.detection;
 
-import guitarvision.Engine;
-
 import java.util.ArrayList;
 import java.util.List;
 
+import guitarvision.memory.MatArena;
+
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfPoint;
@@ -12,7 +12,6 @@ import org.opencv.core.Point;
 import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
-import org.opencv.utils.Converters;
 
 /**
  * @author Alex Day
@@ -22,6 +21,16 @@ public class PluckDetector {
 	private ArrayList<GuitarString> initialStrings;
 	private double thicknessThresholdFactor = 1.2;
 	
+	private Mat dilateKernel = Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(5,5));
+	private Mat erodeKernel = Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(8,8));
+	
+	//Buffers reused between the strings and frames
+	private Mat greyImage = new Mat();
+	private Mat sobelOutput = new Mat();
+	private Mat contourImage = new Mat();
+	private Mat hierarchy = new Mat();
+	private byte[] contourPixels = null;
+	
 	public void setInitialStrings(ArrayList<GuitarString> initialStrings)
 	{
 		this.initialStrings = initialStrings;
@@ -32,6 +41,19 @@ public class PluckDetector {
 		return initialStrings;
 	}
 	
+	/**
+	 * @param factor by which a string must be thicker than in the initial frame to be vibrating
+	 */
+	public void setThicknessThresholdFactor(double factor)
+	{
+		thicknessThresholdFactor = factor;
+	}
+	
+	public double getThicknessThresholdFactor()
+	{
+		return thicknessThresholdFactor;
+	}
+	
 	/**
 	 * Determine the thickness of strings in the image, and store them in the string objects
 	 * @param list of guitar strings
@@ -40,32 +62,34 @@ public class PluckDetector {
 	 */
 	public void getStringThicknesses(ArrayList<GuitarString> strings, ArrayList<DetectedLine> frets, Mat originalImage)
 	{
-		for(int stringIndex = 0; stringIndex < strings.size(); stringIndex++)
+		getStringThicknesses(strings, frets, new NeckRectifier().rectify(originalImage, strings));
+	}
+	
+	/**
+	 * Determine the thickness of strings from the rectified guitar neck, and store them in the string objects
+	 * @param list of guitar strings
+	 * @param list of frets, for isolating the string image to around the fretboard
+	 * @param guitar neck rectified from the original image, with a band for each string
+	 */
+	public void getStringThicknesses(ArrayList<GuitarString> strings, ArrayList<DetectedLine> frets, RectifiedNeck neck)
+	{
+		if (neck == null) return;
+		
+		int numberOfStrings = Math.min(strings.size(), neck.getNumberOfStrings());
+		
+		int[] stringImageLeft = new int[numberOfStrings];
+		int[] stringImageRight = new int[numberOfStrings];
+		
+		for(int stringIndex = 0; stringIndex < numberOfStrings; stringIndex++)
 		{
-			//Extract string from image by performing perspective transform on a rectangle surrounding the string
-			double curRho = strings.get(stringIndex).getRho();
-			double nextRho;
-			double difference;
-			if (stringIndex == strings.size()-1)
-			{
-				nextRho = strings.get(stringIndex-1).getRho();
-				difference = curRho - nextRho;
-				
-			}
-			else
-			{
-				nextRho = strings.get(stringIndex+1).getRho();
-				difference = nextRho - curRho;
-			}
+			GuitarString curString = strings.get(stringIndex);
 			
 			double fretSpanStart = 0;
 			double fretSpanEnd = 0;
 			
-			//Find where the outer frets collide with the string, for creating the bounding rectangle
+			//Find where the outer frets collide with the string, for the ends of the string image
 			if (frets != null && frets.size() > 0)
 			{
-				GuitarString curString = strings.get(stringIndex);
-				
 				Point collideWithFret1 = frets.get(frets.size()-1).getCollisionPoint(curString);
 				Point collideWithFret2 = frets.get(0).getCollisionPoint(curString);
 				
@@ -76,64 +100,42 @@ public class PluckDetector {
 				if (fretSpanStart < 0) fretSpanStart = 0;
 				
 				fretSpanEnd = collideWithFret2.x - (width / 3);
-				
-				if (fretSpanStart - fretSpanEnd == 0)
-				{
-					fretSpanStart = 0;
-					fretSpanEnd = Engine.getInstance().processingResolution.width;
-				}
-
 			}
 			
-			//Find parallel lines halfway between the strings on either side
-			//to form the bounding rectangle for the perspective transform
-			DetectedLine startStringLine = new DetectedLine(curRho - (difference / 2), strings.get(stringIndex).getTheta());
-			DetectedLine endStringLine = new DetectedLine(curRho + (difference / 2), strings.get(stringIndex).getTheta());
-			
-			List<Point> sourcePoints = new ArrayList<Point>();
-			
-			double height = Engine.getInstance().processingResolution.height / 2;
-			double width = Math.abs(fretSpanEnd - fretSpanStart);
-			
-			DetectedLine rightSideOfRectangle = new DetectedLine(fretSpanEnd, 0.0);
-			
-			DetectedLine leftSideOfRectangle = new DetectedLine(fretSpanStart, 0.0);
-			
-			Point bottomRightPoint = startStringLine.getCollisionPoint(rightSideOfRectangle);
-
-			Point topRightPoint = endStringLine.getCollisionPoint(rightSideOfRectangle);
+			//Use the whole width of the neck if the span of the frets is not known
+			if (Math.abs(fretSpanEnd - fretSpanStart) < 1)
+			{
+				fretSpanStart = 0;
+				fretSpanEnd = neck.getSize().width;
+			}
 			
-			Point bottomLeftPoint = startStringLine.getCollisionPoint(leftSideOfRectangle);
-
-			Point topLeftPoint = endStringLine.getCollisionPoint(leftSideOfRectangle);
+			double stringY = curString.getCollisionPoint(new DetectedLine((fretSpanStart + fretSpanEnd) / 2, 0.0)).y;
 			
-			Point point1 = new Point(fretSpanStart,bottomLeftPoint.y);
-			Point point2 = new Point(fretSpanEnd,bottomRightPoint.y);
-			Point point3 = new Point(fretSpanEnd,topRightPoint.y);
-			Point point4 = new Point(fretSpanStart,topLeftPoint.y);
-			sourcePoints.add(point1);
-			sourcePoints.add(point2);
-			sourcePoints.add(point3);
-			sourcePoints.add(point4);
-			Mat source = Converters.vector_Point2f_to_Mat(sourcePoints);
-
-			List<Point> destPoints = new ArrayList<Point>();
-			Point pointD1 = new Point(0,0);
-			Point pointD2 = new Point(width,0);
-			Point pointD3 = new Point(width,height);
-			Point pointD4 = new Point(0,height);
-			destPoints.add(pointD1);
-			destPoints.add(pointD2);
-			destPoints.add(pointD3);
-			destPoints.add(pointD4);
-			Mat dest = Converters.vector_Point2f_to_Mat(destPoints);
+			double rectifiedStart = neck.getRectifiedX(fretSpanStart, stringY);
+			double rectifiedEnd = neck.getRectifiedX(fretSpanEnd, stringY);
 			
-			Mat warpMat = Imgproc.getPerspectiveTransform(source, dest);
-
-			Mat result = new Mat();
-			Imgproc.warpPerspective(originalImage, result, warpMat, new Size(width, height));
+			stringImageLeft[stringIndex] = (int) Math.round(Math.min(rectifiedStart, rectifiedEnd));
+			stringImageRight[stringIndex] = (int) Math.round(Math.max(rectifiedStart, rectifiedEnd));
+		}
+		
+		//Render the bands of every string in one warp, covering the spans of all the strings
+		int left = Integer.MAX_VALUE;
+		int right = Integer.MIN_VALUE;
+		
+		for(int stringIndex = 0; stringIndex < numberOfStrings; stringIndex++)
+		{
+			left = Math.min(left, stringImageLeft[stringIndex]);
+			right = Math.max(right, stringImageRight[stringIndex]);
+		}
+		
+		if (numberOfStrings > 0) neck.getStringBands(left, right);
+		
+		for(int stringIndex = 0; stringIndex < numberOfStrings; stringIndex++)
+		{
+			//The string image is a view of the rendered bands, so no pixels are copied
+			Mat stringImage = neck.getStringBand(stringIndex, stringImageLeft[stringIndex], stringImageRight[stringIndex]);
 			
-			double newThickness = getThicknessFromStringImage(result);
+			double newThickness = (stringImage == null) ? 0 : getThicknessFromStringImage(stringImage);
 
 			strings.get(stringIndex).thickness = newThickness;
 		}
@@ -144,63 +146,28 @@ public class PluckDetector {
 	 * @param image of the guitar string isolated
 	 * @return the perceived thickness of the string in the image
 	 */
-	private Double getThicknessFromStringImage(Mat image)
-	{	
-		Mat greyImage = new Mat();
-		
+	Double getThicknessFromStringImage(Mat image)
+	{
 		Imgproc.cvtColor(image, greyImage, Imgproc.COLOR_RGB2GRAY);
 
-		Mat sobelOutput = new Mat();
 		Imgproc.Sobel(greyImage, sobelOutput, CvType.CV_8UC1, 0, 1);
 		
-		Mat kernelD = Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(5,5));
+		Imgproc.dilate(sobelOutput, sobelOutput, dilateKernel);
 		
-		Imgproc.dilate(sobelOutput, sobelOutput, kernelD);
-		
-		for(int x = 0; x < image.rows(); x ++)
-		{
-			for(int y = 0; y < image.cols(); y ++)
-			{
-				double g = sobelOutput.get(x, y)[0];
-				
-				if (g > 10)
-				{
-					g = 255;
-				}
-				else
-				{
-					g = 0;
-				}
-				
-				greyImage.put(x, y, new double[] {g});
-			}
-
-		}
-
-		image = greyImage;
-
-		Mat kernel = Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(8,8));
+		//Keep only the strong horizontal edges
+		Imgproc.threshold(sobelOutput, greyImage, 10, 255, Imgproc.THRESH_BINARY);
 		
-		Imgproc.erode(image, image, kernel);
+		Imgproc.erode(greyImage, greyImage, erodeKernel);
 		
 		List<MatOfPoint> contours = new ArrayList<MatOfPoint>();
-		Imgproc.findContours(image, contours, new Mat(), Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
-		
-		Mat contourImage = image.clone();
-		
-		for(int x1 = 0; x1 < contourImage.rows(); x1 ++)
-		{
-			for(int y = 0; y < contourImage.cols(); y ++)
-			{
-				contourImage.put(x1, y, new double[] {0,0,0});
-			}
-
-		}
+		Imgproc.findContours(greyImage, contours, hierarchy, Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
 		
 		double maxPerim = 0;
 		MatOfPoint maxContour = null;
 		for(MatOfPoint contour: contours)
 		{
+			MatArena.track(contour);
+			
 			double perim = Imgproc.contourArea(contour);
 			if (perim > maxPerim)
 			{
@@ -212,6 +179,9 @@ public class PluckDetector {
 		
 		if (maxContour != null)
 		{
+			contourImage.create(greyImage.size(), greyImage.type());
+			contourImage.setTo(new Scalar(0));
+			
 			ArrayList<MatOfPoint> contoursToDraw = new ArrayList<MatOfPoint>();
 			contoursToDraw.add(maxContour);
 			
@@ -230,30 +200,38 @@ public class PluckDetector {
 	
 	/**
 	 * Given horizontal contour, find the mean thickness of it in the frame
-	 * @param image with contour
+	 * @param single channel image with contour
 	 * @return mean thickness
 	 */
 	private Double getMeanContourThickness(Mat contourImage)
 	{
+		int columns = contourImage.cols();
+		int rows = contourImage.rows();
+		
+		if (contourPixels == null || contourPixels.length != columns * rows)
+		{
+			contourPixels = new byte[columns * rows];
+		}
+		contourImage.get(0, 0, contourPixels);
+		
 		int count = 0;
 		int thicknessTotal = 0;
-		for(int x = 0; x < contourImage.cols(); x++)
+		for(int x = 0; x < columns; x++)
 		{
-			int minPoint = contourImage.rows() - 1;
-			int maxPoint = 0;
-			boolean anyPoints = false;
-			for(int y = 0; y < contourImage.rows(); y++)
+			//Thickness of the column is the distance between its first and last contour pixels
+			int minPoint = -1;
+			int maxPoint = -1;
+			for(int index = x; index < contourPixels.length; index += columns)
 			{
-				if (contourImage.get(y, x)[0] > 0)
+				if (contourPixels[index] != 0)
 				{
-					if (y < minPoint) minPoint = y;
-					if (y > maxPoint) maxPoint = y;
-					anyPoints = true;
+					if (minPoint < 0) minPoint = index / columns;
+					maxPoint = index / columns;
 				}
 			}
-			if (anyPoints)
+			if (minPoint >= 0)
 			{
-				thicknessTotal += Math.abs(maxPoint - minPoint);
+				thicknessTotal += maxPoint - minPoint;
 				count++;
 			}
 		}
@@ -0,0 +1,241 @@
+package guitarvision.detection;
+
+import java.util.ArrayList;
+
+import guitarvision.memory.MatArena;
+import guitarvision.profiling.ProcessingStage;
+import guitarvision.profiling.Profiler;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Range;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * The guitar neck in a frame, with the perspective transform that makes the strings horizontal.
+ * Produced once per frame by NeckRectifier and shared by the fret and pluck detectors.
+ * In the rectified neck each string has a band of rows centred on it, as high as the distance to the next string.
+ * The neck is rendered lazily from the frame at two resolutions: a low resolution image of the whole width for fret detection,
+ * and a single image of the string bands between the outer frets, which each string's image is a view of.
+ */
+public class RectifiedNeck {
+	//Matrix added to the products of multiply, which is empty as it is multiplied by zero.
+	//It has no pixels and is only read, so it is shared by every neck rather than allocated for each product.
+	private static final Mat NO_ADDED_MATRIX = new Mat();
+
+	private Mat frame;
+
+	//Perspective transform from the frame to the rectified neck
+	private Mat warpMat;
+	private double[] warp;
+	private double[] inverseWarp;
+
+	private int width;
+	private int height;
+
+	//Rows of the rectified neck that the outer strings are on
+	private int firstStringRow;
+	private int lastStringRow;
+
+	private ArrayList<GuitarString> guitarStrings;
+
+	private Size fretImageResolution;
+	private Mat fretImage = null;
+	private Mat fretImageToFrameWarp = null;
+
+	//Columns of the rectified neck covered by the string bands image, which is null until it is rendered
+	private Mat stringBandsImage = null;
+	private int stringBandsLeft = 0;
+	private int stringBandsRight = 0;
+
+	RectifiedNeck(Mat frame, ArrayList<GuitarString> guitarStrings, Mat warpMat, int height, int firstStringRow, int lastStringRow, Size fretImageResolution)
+	{
+		this.frame = frame;
+		this.guitarStrings = guitarStrings;
+		this.warpMat = warpMat;
+		this.width = frame.width();
+		this.height = height;
+		this.firstStringRow = firstStringRow;
+		this.lastStringRow = lastStringRow;
+		this.fretImageResolution = fretImageResolution;
+
+		warp = new double[9];
+		warpMat.get(0, 0, warp);
+
+		inverseWarp = new double[9];
+		MatArena.track(warpMat.inv()).get(0, 0, inverseWarp);
+	}
+
+	public int getNumberOfStrings()
+	{
+		return guitarStrings.size();
+	}
+
+	/**
+	 * @return size of the whole rectified neck, at the string band resolution
+	 */
+	public Size getSize()
+	{
+		return new Size(width, height);
+	}
+
+	/**
+	 * Get the x coordinate in the rectified neck of a point in the frame.
+	 * The sides of the frame stay vertical after rectification, so every vertical line does and this does not depend on the y coordinate.
+	 * @param x coordinate in the frame
+	 * @param y coordinate in the frame
+	 * @return x coordinate in the rectified neck
+	 */
+	public double getRectifiedX(double x, double y)
+	{
+		return ((warp[0] * x) + (warp[1] * y) + warp[2]) / ((warp[6] * x) + (warp[7] * y) + warp[8]);
+	}
+
+	/**
+	 * Get the row of the rectified neck that a string is on at a column.
+	 * The strings other than the outer strings are only approximately horizontal in the rectified neck, so this varies along the string.
+	 * @param index of string
+	 * @param column of the rectified neck
+	 * @return row of string
+	 */
+	public double getStringRow(int stringIndex, double rectifiedX)
+	{
+		//Find the column of the frame that the column of the rectified neck comes from
+		double frameX = ((inverseWarp[0] * rectifiedX) + inverseWarp[2]) / ((inverseWarp[6] * rectifiedX) + inverseWarp[8]);
+
+		Point framePoint = guitarStrings.get(stringIndex).getCollisionPoint(new DetectedLine(frameX, 0.0));
+
+		return ((warp[3] * framePoint.x) + (warp[4] * framePoint.y) + warp[5]) / ((warp[6] * framePoint.x) + (warp[7] * framePoint.y) + warp[8]);
+	}
+
+	/**
+	 * Lazily render the part of the neck between the outer strings, at the resolution used for fret detection
+	 * @return image of neck with the outer strings along the top and bottom edges
+	 */
+	public Mat getFretImage()
+	{
+		if (fretImage == null)
+		{
+			long startTime = Profiler.start();
+
+			//Scale the rows between the outer strings down to the height of the fret image
+			double scale = fretImageResolution.height / (lastStringRow - firstStringRow);
+
+			Mat neckToFretImage = MatArena.track(Mat.eye(3, 3, CvType.CV_64F));
+			neckToFretImage.put(0, 0, fretImageResolution.width / width);
+			neckToFretImage.put(1, 1, scale);
+			neckToFretImage.put(1, 2, -firstStringRow * scale);
+
+			Mat frameToFretImage = multiply(neckToFretImage, warpMat);
+
+			fretImage = MatArena.allocate();
+			Imgproc.warpPerspective(frame, fretImage, frameToFretImage, fretImageResolution);
+
+			fretImageToFrameWarp = MatArena.track(frameToFretImage.inv());
+
+			Profiler.countAllocation(fretImage);
+			Profiler.stop(ProcessingStage.FRET_WARP, startTime);
+		}
+		return fretImage;
+	}
+
+	/**
+	 * @return transform from fret image coordinates back to frame coordinates
+	 */
+	public Mat getFretImageToFrameWarp()
+	{
+		getFretImage();
+		return fretImageToFrameWarp;
+	}
+
+	/**
+	 * Render the string bands between two columns of the rectified neck, in a single warp of the frame.
+	 * Views of the bands for columns in this range can then be taken with getStringBand without rendering again.
+	 * @param left column of the rectified neck
+	 * @param right column of the rectified neck (exclusive)
+	 * @return image of every string band between the columns
+	 */
+	public Mat getStringBands(int left, int right)
+	{
+		left = Math.max(0, left);
+		right = Math.min(width, right);
+
+		if (!(stringBandsImage == null || left < stringBandsLeft || right > stringBandsRight))
+		{
+			return stringBandsImage;
+		}
+
+		if (stringBandsImage == null)
+		{
+			stringBandsImage = MatArena.allocate();
+		}
+		else
+		{
+			left = Math.min(left, stringBandsLeft);
+			right = Math.max(right, stringBandsRight);
+		}
+
+		Mat neckToBands = MatArena.track(Mat.eye(3, 3, CvType.CV_64F));
+		neckToBands.put(0, 2, -left);
+
+		Imgproc.warpPerspective(frame, stringBandsImage, multiply(neckToBands, warpMat), new Size(right - left, height));
+
+		Profiler.countAllocation(stringBandsImage);
+
+		stringBandsLeft = left;
+		stringBandsRight = right;
+
+		return stringBandsImage;
+	}
+
+	/**
+	 * Get the band of the rectified neck around a string, between two columns.
+	 * The band is a view of the string bands image, so no pixels are copied unless the columns have not been rendered yet.
+	 * @param index of string
+	 * @param left column of the rectified neck
+	 * @param right column of the rectified neck (exclusive)
+	 * @return image of string, or null if the band is empty
+	 */
+	public Mat getStringBand(int stringIndex, int left, int right)
+	{
+		left = Math.max(0, left);
+		right = Math.min(width, right);
+
+		if (right <= left) return null;
+
+		//Centre the band on the string, extending it by half the distance to the next string on either side
+		double middleColumn = (left + right) / 2.0;
+
+		double stringRow = getStringRow(stringIndex, middleColumn);
+
+		double distance;
+
+		if (stringIndex == guitarStrings.size() - 1)
+		{
+			distance = stringRow - getStringRow(stringIndex - 1, middleColumn);
+		}
+		else
+		{
+			distance = getStringRow(stringIndex + 1, middleColumn) - stringRow;
+		}
+
+		int top = (int) Math.round(Math.max(0, stringRow - Math.abs(distance / 2)));
+		int bottom = (int) Math.round(Math.min(height, stringRow + Math.abs(distance / 2)));
+
+		if (bottom <= top) return null;
+
+		Mat bands = getStringBands(left, right);
+
+		return MatArena.track(bands.submat(new Range(top, bottom), new Range(left - stringBandsLeft, right - stringBandsLeft)));
+	}
+
+	private Mat multiply(Mat first, Mat second)
+	{
+		Mat product = MatArena.allocate();
+		Core.gemm(first, second, 1, NO_ADDED_MATRIX, 0, product);
+		return product;
+	}
+}
@@ -1,9 +1,11 @@
 package guitarvision.detection;
 
-import org.opencv.core.Core;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import guitarvision.memory.MatArena;
+
 import org.opencv.core.Mat;
 import org.opencv.core.Point;
-import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
@@ -12,80 +14,151 @@ public class SkinDetector {
 	
 	private static final int overlapThreshold = 3;
 	
-	//Skin analysis algorithm from paper by Christophe Garcia and Georgios Tziritas
-	//Face detection using quantized skin color regions merging and wavelet packet analysis. IEEE Transactions on Multimedia, 1(3):264.277, 1999.
-	public Mat getSkin(Mat image)
+	//Range of 8-bit saturation values that are classified as skin for each 8-bit hue and value, indexed by (hue << 8) | value.
+	//Once the hue and value are fixed, every condition of the skin rule is a bound on the saturation,
+	//so the skin colours for each hue and value form a single range of saturations.
+	private static final short[] minimumSkinSaturation = new short[256 * 256];
+	private static final short[] maximumSkinSaturation = new short[256 * 256];
+	
+	static
 	{
-		Mat hsvImage = new Mat();
-		Imgproc.cvtColor(image, hsvImage, Imgproc.COLOR_BGR2HSV);
-		
-		for(int row = 0; row < hsvImage.rows(); row++)
+		for(int hue = 0; hue < 256; hue++)
 		{
-			for(int column = 0; column < hsvImage.cols(); column++)
+			for(int value = 0; value < 256; value++)
 			{
-				double[] pixel = hsvImage.get(row, column);
-				
-				double h = pixel[0];
-				double s = pixel[1];
-				double v = pixel[2];
-				
-				h = (h * 360.0) / 179.0;
-				s = (s * 100.0) / 255.0;
-				v = (v * 100.0) / 255.0;
+				int index = (hue << 8) | value;
 				
-				if (h > 180)
-				{
-					h = h - 360.0;
-				}
-				
-				boolean skin = false;
+				//Empty range unless a skin saturation is found
+				minimumSkinSaturation[index] = 256;
+				maximumSkinSaturation[index] = -1;
 				
-				if ((s >= 10) && (v >= 40) && (s <= (-1 * h) + (-1 * 0.1 * v) + 110) && (h <= (-1 * 0.4 * v) + 75))
+				for(int saturation = 0; saturation < 256; saturation++)
 				{
-					if (h >= 0)
-					{
-						if (s <= (0.08 * (100 - v) * h) + (0.5 * v))
-						{
-							skin = true;
-						}
-					}
-					
-					if (h <= 0)
+					if (isSkinColour(hue, saturation, value))
 					{
-						if (s <= (0.5 * h) + 35)
-						{
-							skin = true;
-						}
+						if (minimumSkinSaturation[index] == 256) minimumSkinSaturation[index] = (short) saturation;
+						maximumSkinSaturation[index] = (short) saturation;
 					}
 				}
-				
-				if (skin)
+			}
+		}
+	}
+	
+	//Buffer holding the pixels of the frame being classified
+	private byte[] pixels = null;
+	
+	//Copies of the pixels of the skin masks of released frames, reused by the masks of later frames.
+	//Frames are released by a different thread to the one detecting skin when they are processed by a pipeline.
+	private ConcurrentLinkedQueue<byte[]> maskPixelBuffers = new ConcurrentLinkedQueue<byte[]>();
+	
+	private Mat kernelErode = Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(5,5));
+	private Mat kernelDilate = Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(8,8));
+	
+	//Skin analysis algorithm from paper by Christophe Garcia and Georgios Tziritas
+	//Face detection using quantized skin color regions merging and wavelet packet analysis. IEEE Transactions on Multimedia, 1(3):264.277, 1999.
+	public Mat getSkin(Mat image)
+	{
+		Mat hsvImage = MatArena.allocate();
+		Imgproc.cvtColor(image, hsvImage, Imgproc.COLOR_BGR2HSV);
+		
+		//Classify every pixel in one pass over a copy of the image data, rather than accessing the pixels one at a time
+		int numberOfBytes = (int) hsvImage.total() * hsvImage.channels();
+		
+		if (pixels == null || pixels.length != numberOfBytes)
+		{
+			pixels = new byte[numberOfBytes];
+		}
+		
+		hsvImage.get(0, 0, pixels);
+		
+		byte skinColour = (byte) detectedColour;
+		
+		for(int index = 0; index < numberOfBytes; index += 3)
+		{
+			int h = pixels[index] & 0xFF;
+			int s = pixels[index + 1] & 0xFF;
+			int v = pixels[index + 2] & 0xFF;
+			
+			byte colour = 0;
+			
+			if (lookUpSkinColour(h, s, v))
+			{
+				colour = skinColour;
+			}
+			
+			pixels[index] = colour;
+			pixels[index + 1] = colour;
+			pixels[index + 2] = colour;
+		}
+		
+		hsvImage.put(0, 0, pixels);
+		
+		return smoothDetectedSkin(hsvImage);
+	}
+	
+	/**
+	 * Determine whether a colour is skin coloured, using the ranges of OpenCV's 8-bit HSV images
+	 * @param hue (0 to 179)
+	 * @param saturation (0 to 255)
+	 * @param value (0 to 255)
+	 * @return whether the colour is skin
+	 */
+	static boolean isSkinColour(int hue, int saturation, int value)
+	{
+		double h = (hue * 360.0) / 179.0;
+		double s = (saturation * 100.0) / 255.0;
+		double v = (value * 100.0) / 255.0;
+		
+		if (h > 180)
+		{
+			h = h - 360.0;
+		}
+		
+		boolean skin = false;
+		
+		if ((s >= 10) && (v >= 40) && (s <= (-1 * h) + (-1 * 0.1 * v) + 110) && (h <= (-1 * 0.4 * v) + 75))
+		{
+			if (h >= 0)
+			{
+				if (s <= (0.08 * (100 - v) * h) + (0.5 * v))
 				{
-					hsvImage.put(row, column, new double[] {detectedColour,detectedColour,detectedColour});
+					skin = true;
 				}
-				else
+			}
+			
+			if (h <= 0)
+			{
+				if (s <= (0.5 * h) + 35)
 				{
-					hsvImage.put(row, column, new double[] {0.0,0.0,0.0});
+					skin = true;
 				}
 			}
 		}
 		
-		return smoothDetectedSkin(hsvImage);
+		return skin;
+	}
+	
+	/**
+	 * Look up whether a colour is skin coloured in the precomputed saturation ranges
+	 * @param hue (0 to 179)
+	 * @param saturation (0 to 255)
+	 * @param value (0 to 255)
+	 * @return whether the colour is skin
+	 */
+	static boolean lookUpSkinColour(int hue, int saturation, int value)
+	{
+		int rangeIndex = (hue << 8) | value;
+		return (saturation >= minimumSkinSaturation[rangeIndex]) && (saturation <= maximumSkinSaturation[rangeIndex]);
 	}
 	
 	/**
 	 * Erode and then dilate the detected skin image to remove noise
-	 * @param image to process
+	 * @param image to process, which is modified
 	 * @return processed image
 	 */
 	public Mat smoothDetectedSkin(Mat image)
 	{
-		Mat kernelErode = Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(5,5));
-		Mat kernelDilate = Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(8,8));
-		
-		Mat result = new Mat();
-		
-		result = image;
+		Mat result = image;
 
 		Imgproc.erode(image, result, kernelErode);
 
@@ -95,32 +168,29 @@ public class SkinDetector {
 	}
 
 	
+	/**
+	 * Detect skin in the image and keep a copy of the result for testing lines against it
+	 * @param image to process
+	 * @return detected skin, which should be released with its frame so that its copy is reused
+	 */
+	public SkinMask getSkinMask(Mat image)
+	{
+		return new SkinMask(getSkin(image), maskPixelBuffers);
+	}
+	
 	/**
 	 * Detect whether the given line overlaps with the isolated skin image. 
 	 * The overlap must be over 'overlapThreshold' pixels.
-	 * @param skin image
+	 * Only the pixels along the line are visited, no images are allocated.
+	 * @param skin detected in the image
 	 * @param start point of line
 	 * @param end point of line
 	 * @return whether the line overlaps with the skin image
 	 */
-	public static boolean fretOverlapSkin(Mat skin, Point startPoint, Point endPoint)
+	public static boolean fretOverlapSkin(SkinMask skin, Point startPoint, Point endPoint)
 	{
-		Mat lineImage = new Mat(skin.rows(), skin.cols(), skin.type(), new Scalar(0,0,0));
-
-		Imgproc.line(lineImage, startPoint, endPoint, new Scalar(detectedColour,detectedColour,detectedColour));
-
-		Mat result = new Mat();
-		
-		Core.subtract(lineImage, skin, result);
-
-		Core.subtract(lineImage, result, result);
-
-		Mat greyImage = new Mat();
-
-		Imgproc.cvtColor(result, greyImage, Imgproc.COLOR_BGR2GRAY);
-
-		boolean overlap = !(Core.countNonZero(greyImage) < overlapThreshold);
+		boolean overlap = !(skin.countSkinPixelsOnLine(startPoint, endPoint) < overlapThreshold);
 		
 		return (overlap);
 	}
-}
+}
\ No newline at end of file
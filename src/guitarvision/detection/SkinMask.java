@@ -0,0 +1,229 @@
+package guitarvision.detection;
+
+import java.util.Queue;
+
+import guitarvision.memory.MatArena;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+
+/**
+ * Result of skin detection on a frame.
+ * Holds a copy of one channel of the mask's pixels so that lines can be tested for overlap with the skin without calling OpenCV.
+ * The copy can be taken from a queue of the copies of masks that have been released, so that frames reuse the memory of earlier frames.
+ */
+public class SkinMask {
+	private Mat image;
+
+	private byte[] pixels;
+	private int width;
+	private int height;
+
+	//Queue to give the copy of the pixels back to when the mask is released, or null if it is not reused
+	private Queue<byte[]> pixelBuffers;
+
+	/**
+	 * @param image produced by SkinDetector.getSkin, with every channel of the skin pixels set
+	 */
+	public SkinMask(Mat image)
+	{
+		this(image, null);
+	}
+
+	/**
+	 * @param image produced by SkinDetector.getSkin, with every channel of the skin pixels set
+	 * @param queue of copies of the pixels of released masks to reuse, or null to allocate the copy
+	 */
+	public SkinMask(Mat image, Queue<byte[]> pixelBuffers)
+	{
+		this.image = image;
+		this.pixelBuffers = pixelBuffers;
+
+		width = image.cols();
+		height = image.rows();
+
+		//Every channel is the same, so only the first is copied
+		Mat skinChannel = image;
+
+		if (image.channels() > 1)
+		{
+			skinChannel = MatArena.allocate();
+			Core.extractChannel(image, skinChannel, 0);
+		}
+
+		if (pixelBuffers != null)
+		{
+			pixels = pixelBuffers.poll();
+		}
+
+		if (pixels == null || pixels.length != width * height)
+		{
+			pixels = new byte[width * height];
+		}
+
+		skinChannel.get(0, 0, pixels);
+	}
+
+	/**
+	 * Give the copy of the pixels back to the queue it was taken from, to be reused by the mask of a later frame.
+	 * The mask must not be tested against once released.
+	 */
+	public void release()
+	{
+		if (pixelBuffers != null && pixels != null)
+		{
+			pixelBuffers.offer(pixels);
+		}
+
+		pixels = null;
+	}
+
+	/**
+	 * @return the skin image, for drawing on annotated frames
+	 */
+	public Mat getImage()
+	{
+		return image;
+	}
+
+	public boolean isSkin(int x, int y)
+	{
+		return pixels[(y * width) + x] != 0;
+	}
+
+	/**
+	 * Count the skin pixels along a line.
+	 * The pixels visited are the same as those drawn by Imgproc.line with a thickness of 1 and 8-connectivity.
+	 * @param start point of line
+	 * @param end point of line
+	 * @return number of skin pixels on the line
+	 */
+	public int countSkinPixelsOnLine(Point startPoint, Point endPoint)
+	{
+		//Imgproc.line truncates the coordinates to integers
+		long x1 = (int) startPoint.x;
+		long y1 = (int) startPoint.y;
+		long x2 = (int) endPoint.x;
+		long y2 = (int) endPoint.y;
+
+		//Clip the line to the image in the same way as OpenCV's clipLine
+		long right = width - 1;
+		long bottom = height - 1;
+
+		if (width <= 0 || height <= 0) return 0;
+
+		int c1 = outCode(x1, y1, right, bottom);
+		int c2 = outCode(x2, y2, right, bottom);
+
+		if (((c1 & c2) == 0) && ((c1 | c2) != 0))
+		{
+			long a;
+
+			if ((c1 & 12) != 0)
+			{
+				a = c1 < 8 ? 0 : bottom;
+				x1 += (long) ((double) (a - y1) * (x2 - x1) / (y2 - y1));
+				y1 = a;
+				c1 = outCode(x1, 0, right, bottom);
+			}
+
+			if ((c2 & 12) != 0)
+			{
+				a = c2 < 8 ? 0 : bottom;
+				x2 += (long) ((double) (a - y2) * (x2 - x1) / (y2 - y1));
+				y2 = a;
+				c2 = outCode(x2, 0, right, bottom);
+			}
+
+			if (((c1 & c2) == 0) && ((c1 | c2) != 0))
+			{
+				if (c1 != 0)
+				{
+					a = c1 == 1 ? 0 : right;
+					y1 += (long) ((double) (a - x1) * (y2 - y1) / (x2 - x1));
+					x1 = a;
+					c1 = 0;
+				}
+
+				if (c2 != 0)
+				{
+					a = c2 == 1 ? 0 : right;
+					y2 += (long) ((double) (a - x2) * (y2 - y1) / (x2 - x1));
+					x2 = a;
+					c2 = 0;
+				}
+			}
+		}
+
+		if ((c1 | c2) != 0) return 0;
+
+		//Walk the line from left to right in the same way as OpenCV's LineIterator
+		int startX = (int) x1;
+		int startY = (int) y1;
+		int dx = (int) (x2 - x1);
+		int dy = (int) (y2 - y1);
+
+		if (dx < 0)
+		{
+			startX = (int) x2;
+			startY = (int) y2;
+			dx = -dx;
+			dy = -dy;
+		}
+
+		int yStep = 1;
+		if (dy < 0)
+		{
+			dy = -dy;
+			yStep = -1;
+		}
+
+		boolean steep = dy > dx;
+
+		int majorDistance = steep ? dy : dx;
+		int minorDistance = steep ? dx : dy;
+
+		int error = majorDistance - (minorDistance + minorDistance);
+		int plusDelta = majorDistance + majorDistance;
+		int minusDelta = -(minorDistance + minorDistance);
+
+		int x = startX;
+		int y = startY;
+		int count = 0;
+
+		for(int step = 0; step <= majorDistance; step++)
+		{
+			if (isSkin(x, y)) count++;
+
+			boolean minorStep = error < 0;
+
+			error += minusDelta;
+
+			if (steep)
+			{
+				y += yStep;
+				if (minorStep) x++;
+			}
+			else
+			{
+				x++;
+				if (minorStep) y += yStep;
+			}
+
+			if (minorStep) error += plusDelta;
+		}
+
+		return count;
+	}
+
+	private int outCode(long x, long y, long right, long bottom)
+	{
+		int code = 0;
+		if (x < 0) code += 1;
+		if (x > right) code += 2;
+		if (y < 0) code += 4;
+		if (y > bottom) code += 8;
+		return code;
+	}
+}
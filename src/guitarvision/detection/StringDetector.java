@@ -5,11 +5,14 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Random;
 
-import org.opencv.core.Core;
-import org.opencv.core.CvType;
+import guitarvision.memory.MatArena;
+import guitarvision.profiling.ProfileCounter;
+import guitarvision.profiling.Profiler;
+
 import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
-import org.opencv.core.TermCriteria;
 import org.opencv.imgproc.Imgproc;
 
 public class StringDetector {	
@@ -22,6 +25,25 @@ public class StringDetector {
 	
 	private double previousStringsWeight = 0.95;
 	
+	//Whether to only search for strings around the strings of the previous frame
+	private boolean regionOfInterestTracking = false;
+	//Distance to widen the region, and the band around the strings found at the coarse level of the pyramid, by on either side, as a fraction of the distance between the outer strings
+	private double regionOfInterestMargin = 1.5;
+	
+	//Tracker of the strings, used instead of weighting by the previous strings when tracking
+	private LineTracker stringTracker = null;
+	
+	//Whether the Hough transform only accumulates over the angles around the strings of the previous frame
+	private boolean angleWindowedHough = false;
+	
+	//Number of pixels along each side of a pixel of the coarse level of the image pyramid the strings are first found in, or 1 to search the full image
+	private int pyramidScale = 1;
+	//Largest difference in angle between the strings found at the coarse level and at full resolution
+	private double pyramidAngleAllowance = 0.1;
+	
+	//Width of the tiles of columns that edges are detected in within the band around the strings
+	private static final int BAND_TILE_WIDTH = 80;
+	
 	/**
 	 * Find guitar strings in image
 	 * @param image containing guitar
@@ -41,50 +63,63 @@ public class StringDetector {
 			edgeDetector.setHoughThreshold(300);
 		}
 		
-		Mat cannyProcessedImage = edgeDetector.getEdges(originalImage);
-		
-		Mat houghLineParameters = edgeDetector.houghTransform(cannyProcessedImage);
-		
-		ArrayList<DetectedLine> initialLines = getLinesFromParameters(houghLineParameters);
-		
-		ArrayList<DetectedLine> parallelLines = filterGuitarStringsByAngle(initialLines);
+		//The clusters are only created as lines when they are drawn
+		ArrayList<ArrayList<DetectedLine>> stringGroupings = (processingOptions == ImageProcessingOptions.DRAWCLUSTERS) ? new ArrayList<ArrayList<DetectedLine>>() : null;
 		
-		int noGroups = numberLinesToDetectInitial;
-		
-		ArrayList<ArrayList<DetectedLine>> stringGroupings = clusterGuitarStrings(parallelLines, noGroups);
+		ArrayList<GuitarString> guitarStringsFiltered = null;
 		
-		ArrayList<DetectedLine> selectedStrings = selectCentralLinesFromClusters(stringGroupings);
+		//Only search around the strings of the previous frame, or those predicted by the tracker, when they are all known
+		ArrayList<GuitarString> regionStrings = regionOfInterestTracking ? previousStrings : null;
 		
-		Collections.sort(selectedStrings);
-		
-		ArrayList<DetectedLine> filteredStrings = evenlyDistributeStrings(selectedStrings, numberLinesToDetectFinal);
-	
-		if (filteredStrings == null)
+		if (stringTracker != null)
 		{
-			filteredStrings = new ArrayList<DetectedLine>();
+			regionStrings = stringTracker.isTracking() ? createStrings(stringTracker.getPredictedLines()) : null;
 		}
-
-		ArrayList<GuitarString> guitarStringsFiltered = new ArrayList<GuitarString>();
 		
-		for(DetectedLine line : filteredStrings)
+		if (regionStrings != null && regionStrings.size() >= numberLinesToDetectFinal)
 		{
-			if (line instanceof GuitarString)
+			LineSet initialLines = getLinesInRegionOfInterest(originalImage, edgeDetector, regionStrings, regionOfInterestMargin, getAngleWindow());
+			
+			if (initialLines != null)
 			{
-				guitarStringsFiltered.add((GuitarString) line);
+				guitarStringsFiltered = getStringsFromLines(initialLines, stringGroupings);
+				
+				//Tracking is lost if the strings are not all found in the region, so search the whole image instead
+				if (guitarStringsFiltered.size() < numberLinesToDetectFinal)
+				{
+					guitarStringsFiltered = null;
+					if (stringGroupings != null) stringGroupings.clear();
+				}
 			}
 		}
 		
-		ArrayList<GuitarString> finalStrings = performPreviousStringWeighting(guitarStringsFiltered, previousStrings);
-
-		if((processingOptions == ImageProcessingOptions.DRAWSELECTEDLINES) || (processingOptions == ImageProcessingOptions.DRAWCLUSTERS))
+		if (guitarStringsFiltered == null && pyramidScale > 1)
 		{
-			for(DetectedLine string : finalStrings)
-			{
-				Imgproc.line(imageToAnnotate, string.getPoint1(), string.getPoint2(), stringColour);
-
-			}
+			guitarStringsFiltered = getStringsFromPyramid(originalImage, edgeDetector, previousStrings, stringGroupings);
+		}
+		
+		if (guitarStringsFiltered == null)
+		{
+			Mat cannyProcessedImage = edgeDetector.getEdges(originalImage);
+			
+			LineSet initialLines = getHoughLines(cannyProcessedImage, edgeDetector, (regionStrings != null) ? regionStrings : previousStrings, getAngleWindow());
+			
+			guitarStringsFiltered = getStringsFromLines(initialLines, stringGroupings);
 		}
 		
+		ArrayList<GuitarString> finalStrings;
+		
+		if (stringTracker != null)
+		{
+			finalStrings = createStrings(stringTracker.update(guitarStringsFiltered));
+		}
+		else
+		{
+			finalStrings = performPreviousStringWeighting(guitarStringsFiltered, previousStrings);
+		}
+
+		drawStrings(finalStrings, imageToAnnotate, processingOptions);
+		
 		Random randomGenerator = new Random();
 		randomGenerator.setSeed(50);
 		
@@ -105,126 +140,370 @@ public class StringDetector {
 		return finalStrings;
 	}
 	
-	private ArrayList<DetectedLine> getLinesFromParameters(Mat houghLines)
+	/**
+	 * Use the strings of an earlier frame for a frame in which the guitar has not moved, instead of detecting them.
+	 * The strings are copied, as their thicknesses are measured separately for each frame.
+	 * @param list of strings from the earlier frame
+	 * @param copy of image to annotate strings for user
+	 * @param processing option object, whether to draw the strings on the annotated image
+	 * @return copies of the strings
+	 */
+	public ArrayList<GuitarString> reuseGuitarStrings(ArrayList<GuitarString> previousStrings, Mat imageToAnnotate, ImageProcessingOptions processingOptions)
 	{
-		ArrayList<DetectedLine> guitarStrings = new ArrayList<DetectedLine>();
-
-		for (int lineIndex = 0; lineIndex < houghLines.rows(); lineIndex++)
+		ArrayList<GuitarString> strings = new ArrayList<GuitarString>();
+		
+		for(GuitarString string : previousStrings)
 		{
-			double[] polarLineParameters = houghLines.get(lineIndex, 0);
-
-			DetectedLine currentString = new DetectedLine(polarLineParameters[0], polarLineParameters[1]);
-
-			guitarStrings.add(currentString);
+			strings.add(new GuitarString(string.thickness, string));
 		}
-
-		return guitarStrings;
+		
+		drawStrings(strings, imageToAnnotate, processingOptions);
+		
+		return strings;
 	}
-
-	private ArrayList<DetectedLine> filterGuitarStringsByAngle(ArrayList<DetectedLine> candidateStrings)
+	
+	/**
+	 * Use the strings predicted by the tracker for a frame in which they are not detected.
+	 * Requires tracking to be set.
+	 * @param copy of image to annotate strings for user
+	 * @param processing option object, whether to draw the strings on the annotated image
+	 * @return the predicted strings, in order of rho
+	 */
+	public ArrayList<GuitarString> predictGuitarStrings(Mat imageToAnnotate, ImageProcessingOptions processingOptions)
 	{
-		double totalAngle = 0;
-
-		for(DetectedLine curString : candidateStrings)
+		ArrayList<GuitarString> strings = createStrings(stringTracker.predict());
+		
+		drawStrings(strings, imageToAnnotate, processingOptions);
+		
+		return strings;
+	}
+	
+	//The thicknesses of the strings are measured separately for each frame
+	private ArrayList<GuitarString> createStrings(ArrayList<DetectedLine> lines)
+	{
+		ArrayList<GuitarString> strings = new ArrayList<GuitarString>(lines.size());
+		
+		for(DetectedLine line : lines)
 		{
-			totalAngle += curString.getTheta();
+			strings.add((line instanceof GuitarString) ? (GuitarString) line : new GuitarString(0, line));
 		}
-
-		double averageAngle = totalAngle/candidateStrings.size();
-
-		ArrayList<DetectedLine> filteredStrings = new ArrayList<DetectedLine>();
-
-		if (candidateStrings.size() > 0)
+		
+		return strings;
+	}
+	
+	private void drawStrings(ArrayList<GuitarString> strings, Mat imageToAnnotate, ImageProcessingOptions processingOptions)
+	{
+		if((processingOptions == ImageProcessingOptions.DRAWSELECTEDLINES) || (processingOptions == ImageProcessingOptions.DRAWCLUSTERS))
 		{
+			for(DetectedLine string : strings)
+			{
+				Imgproc.line(imageToAnnotate, string.getPoint1(), string.getPoint2(), stringColour);
 
-			for(int a = 0; a < candidateStrings.size(); a++)
+			}
+		}
+	}
+	
+	/**
+	 * Select the guitar strings from the lines found by the Hough transform
+	 * @param lines found in the image
+	 * @param list to add the clusters of lines to, for drawing, or null if they are not drawn
+	 * @return strings sorted by rho value
+	 */
+	private ArrayList<GuitarString> getStringsFromLines(LineSet initialLines, ArrayList<ArrayList<DetectedLine>> stringGroupings)
+	{
+		int[] parallelLines = filterGuitarStringsByAngle(initialLines, initialLines.getAllIndices());
+		
+		int noGroups = numberLinesToDetectInitial;
+		
+		int[][] groupedLines = clusterGuitarStrings(initialLines, parallelLines, noGroups);
+		
+		if (stringGroupings != null)
+		{
+			for(int[] group : groupedLines)
 			{
-				if (!((candidateStrings.get(a).getTheta() > averageAngle + angleAllowance) || (candidateStrings.get(a).getTheta() < averageAngle - angleAllowance)))
-				{
-					filteredStrings.add(candidateStrings.get(a));
-				}
+				stringGroupings.add(initialLines.getLines(group));
 			}
 		}
+		
+		ArrayList<DetectedLine> selectedStrings = selectCentralLinesFromClusters(initialLines, groupedLines);
+		
+		Collections.sort(selectedStrings);
+		
+		ArrayList<DetectedLine> filteredStrings = null;
+		
+		//At least two lines are needed to find the string separation
+		if (selectedStrings.size() > 1)
+		{
+			filteredStrings = evenlyDistributeStrings(selectedStrings, numberLinesToDetectFinal);
+		}
+	
+		if (filteredStrings == null)
+		{
+			filteredStrings = new ArrayList<DetectedLine>();
+		}
 
-		return filteredStrings;
+		ArrayList<GuitarString> guitarStringsFiltered = new ArrayList<GuitarString>();
+		
+		for(DetectedLine line : filteredStrings)
+		{
+			if (line instanceof GuitarString)
+			{
+				guitarStringsFiltered.add((GuitarString) line);
+			}
+		}
+		
+		return guitarStringsFiltered;
 	}
-
-	private ArrayList<ArrayList<DetectedLine>> clusterGuitarStrings(ArrayList<DetectedLine> filteredStrings, int noGroups)
+	
+	/**
+	 * Find lines in the region of the image around the strings of the previous frame.
+	 * The region is the band between the outer strings, widened by the margin on either side.
+	 * Edges are only detected in tiles of columns covering the band, and edges outside the band are removed before the Hough transform.
+	 * @param image containing guitar
+	 * @param edge detector to use for finding the strings
+	 * @param list of strings from previous frame
+	 * @param distance to widen the band by on either side, as a fraction of the distance between the outer strings
+	 * @param largest difference in angle from the strings of the lines searched for, or 0 to search every angle
+	 * @return lines in image coordinates, or null if the region could not be found
+	 */
+	private LineSet getLinesInRegionOfInterest(Mat originalImage, EdgeDetector edgeDetector, ArrayList<GuitarString> previousStrings, double marginFactor, double angleWindow)
 	{
-		//Cluster lines by y intercept
-		Mat linesToCluster = new Mat(filteredStrings.size(), 1, CvType.CV_32F);
-
-		for(int a = 0; a < filteredStrings.size(); a++)
+		NeckBand band = NeckBand.fromStrings(previousStrings, marginFactor, originalImage.width(), originalImage.height());
+		
+		if (band == null) return null;
+		
+		Rect region = band.getBounds();
+		
+		if (region.height < 2) return null;
+		
+		Point[] corners = band.getCorners();
+		
+		for(Point corner : corners)
 		{
-			DetectedLine curString = filteredStrings.get(a);
-			double yIntercept = curString.getYIntercept();
-			linesToCluster.put(a, 0, yIntercept);
+			corner.x -= region.x;
+			corner.y -= region.y;
 		}
+		
+		//The band is sloped, so the rows it crosses are found for each tile rather than for the whole width of the image
+		Mat cannyProcessedImage = edgeDetector.getEdgesInRegions(MatArena.track(originalImage.submat(region)), getBandTiles(corners, region.width, region.height));
+		
+		edgeDetector.removeEdgesOutsidePolygon(cannyProcessedImage, corners);
+		
+		LineSet lines = getHoughLines(cannyProcessedImage, edgeDetector, previousStrings, angleWindow);
+		
+		//Move the lines from region coordinates to image coordinates
+		for (int lineIndex = 0; lineIndex < lines.size; lineIndex++)
+		{
+			double theta = lines.theta[lineIndex];
+			
+			lines.rho[lineIndex] += (region.x * Math.cos(theta)) + (region.y * Math.sin(theta));
+		}
+		
+		return lines;
+	}
 
-		Mat clusterLabels = new Mat();
-
-		if (!(filteredStrings.size() > noGroups))
+	/**
+	 * Split a band into tiles of columns, each covering the rows the band crosses in those columns
+	 * @param corners of the band, the upper edge from the left to the right and then the lower edge from the right to the left
+	 * @param width of the image
+	 * @param height of the image
+	 * @return tiles, in image coordinates
+	 */
+	private ArrayList<Rect> getBandTiles(Point[] corners, int width, int height)
+	{
+		ArrayList<Rect> tiles = new ArrayList<Rect>();
+		
+		for(int tileLeft = 0; tileLeft < width; tileLeft += BAND_TILE_WIDTH)
 		{
-			noGroups = filteredStrings.size();
+			int tileRight = Math.min(width, tileLeft + BAND_TILE_WIDTH);
+			
+			//The edges of the band are straight, so it is highest and lowest at the sides of the tile
+			double[] tileYs = new double[] {
+				getYOnEdge(corners[0], corners[1], tileLeft), getYOnEdge(corners[0], corners[1], tileRight),
+				getYOnEdge(corners[3], corners[2], tileLeft), getYOnEdge(corners[3], corners[2], tileRight)
+			};
+			
+			double top = height;
+			double bottom = 0;
+			
+			for(double y : tileYs)
+			{
+				top = Math.min(top, y);
+				bottom = Math.max(bottom, y);
+			}
+			
+			int tileTop = (int) Math.max(0, Math.floor(top));
+			int tileBottom = (int) Math.min(height, Math.ceil(bottom));
+			
+			if (tileBottom > tileTop) tiles.add(new Rect(tileLeft, tileTop, tileRight - tileLeft, tileBottom - tileTop));
 		}
+		
+		return tiles;
+	}
+	
+	private double getYOnEdge(Point start, Point end, double x)
+	{
+		if (end.x == start.x) return start.y;
+		
+		return start.y + ((end.y - start.y) * (x - start.x) / (end.x - start.x));
+	}
 
-		if (filteredStrings.size() == 0)
+	/**
+	 * Find the strings in the image shrunk by the pyramid scale, and then find them at full resolution only in the band
+	 * around the strings found in the shrunk image, widened by the region of interest margin, and at angles close to theirs
+	 * @param image containing guitar
+	 * @param edge detector to use for finding the strings
+	 * @param list of strings from previous frame
+	 * @param list to add the clusters of lines to, for drawing, or null if they are not drawn
+	 * @return strings sorted by rho value, or null if they were not all found
+	 */
+	private ArrayList<GuitarString> getStringsFromPyramid(Mat originalImage, EdgeDetector edgeDetector, ArrayList<GuitarString> previousStrings, ArrayList<ArrayList<DetectedLine>> stringGroupings)
+	{
+		EdgeDetector coarseDetector = edgeDetector.getCoarseDetector(pyramidScale);
+		
+		LineSet coarseLines = getHoughLines(coarseDetector.getEdges(originalImage, pyramidScale), coarseDetector, previousStrings, getAngleWindow());
+		
+		coarseLines.scale(pyramidScale);
+		
+		ArrayList<GuitarString> coarseStrings = getStringsFromLines(coarseLines, null);
+		
+		if (coarseStrings.size() < numberLinesToDetectFinal) return null;
+		
+		//The strings at full resolution are close to the angle of those found at the coarse level
+		LineSet initialLines = getLinesInRegionOfInterest(originalImage, edgeDetector, coarseStrings, regionOfInterestMargin, pyramidAngleAllowance);
+		
+		if (initialLines == null) return null;
+		
+		ArrayList<GuitarString> strings = getStringsFromLines(initialLines, stringGroupings);
+		
+		if (strings.size() < numberLinesToDetectFinal)
+		{
+			if (stringGroupings != null) stringGroupings.clear();
+			
+			return null;
+		}
+		
+		return strings;
+	}
+	
+	/**
+	 * @return largest difference in angle from the strings of the previous frame of the lines searched for, or 0 to search every angle
+	 */
+	private double getAngleWindow()
+	{
+		return angleWindowedHough ? angleAllowance : 0;
+	}
+	
+	/**
+	 * Find the lines in an image of edges with the Hough transform, only searching the angles around the given strings if there is a window
+	 * @param image of edges
+	 * @param edge detector to use for finding the lines
+	 * @param strings whose angle the strings are expected at, or null to search every angle
+	 * @param largest difference in angle from the strings of the lines searched for, or 0 to search every angle
+	 * @return lines found in the image
+	 */
+	private LineSet getHoughLines(Mat cannyProcessedImage, EdgeDetector edgeDetector, ArrayList<GuitarString> windowStrings, double angleWindow)
+	{
+		LineSet lines;
+		
+		if (angleWindow > 0 && windowStrings != null && !windowStrings.isEmpty())
+		{
+			//Average the angles as directions of double the angle, so that strings either side of vertical average to vertical
+			double totalSin = 0;
+			double totalCos = 0;
+			
+			for(GuitarString string : windowStrings)
+			{
+				totalSin += Math.sin(2 * string.getTheta());
+				totalCos += Math.cos(2 * string.getTheta());
+			}
+			
+			double averageAngle = Math.atan2(totalSin, totalCos) / 2;
+			
+			if (averageAngle < 0) averageAngle += Math.PI;
+			
+			lines = edgeDetector.houghTransform(cannyProcessedImage, averageAngle - angleWindow, averageAngle + angleWindow);
+		}
+		else
 		{
-			return new ArrayList<ArrayList<DetectedLine>>();
+			lines = LineSet.fromHoughLines(edgeDetector.houghTransform(cannyProcessedImage));
 		}
 		
-		Core.kmeans(linesToCluster, noGroups, clusterLabels, new TermCriteria(TermCriteria.COUNT, 50, 1), 10, Core.KMEANS_RANDOM_CENTERS);
+		Profiler.count(ProfileCounter.STRING_HOUGH_LINES, lines.size);
+		
+		return lines;
+	}
 
-		ArrayList<ArrayList<DetectedLine>> groupedStrings = new ArrayList<ArrayList<DetectedLine>>();
+	private int[] filterGuitarStringsByAngle(LineSet lines, int[] candidateStrings)
+	{
+		double totalAngle = 0;
 
-		for(int c = 0; c < noGroups; c++)
+		for(int index : candidateStrings)
 		{
-			groupedStrings.add(new ArrayList<DetectedLine>());
+			totalAngle += lines.theta[index];
 		}
 
-		for(int a = 0; a < filteredStrings.size(); a++)
+		double averageAngle = totalAngle/candidateStrings.length;
+
+		int[] filteredStrings = new int[candidateStrings.length];
+		int numberFiltered = 0;
+
+		for(int index : candidateStrings)
 		{
-			int group = (int) (clusterLabels.get(a, 0)[0]);
-			
-			if ((group >= 0) && (group < groupedStrings.size()) && (a < filteredStrings.size()))
+			double theta = lines.theta[index];
+
+			if (!((theta > averageAngle + angleAllowance) || (theta < averageAngle - angleAllowance)))
 			{
-				groupedStrings.get(group).add(filteredStrings.get(a));
+				filteredStrings[numberFiltered++] = index;
 			}
 		}
-		
-		return groupedStrings;
+
+		return Arrays.copyOf(filteredStrings, numberFiltered);
+	}
+
+	private int[][] clusterGuitarStrings(LineSet lines, int[] filteredStrings, int noGroups)
+	{
+		//Cluster lines by y intercept
+		double[] yIntercepts = new double[filteredStrings.length];
+
+		for(int a = 0; a < filteredStrings.length; a++)
+		{
+			yIntercepts[a] = lines.getYIntercept(filteredStrings[a]);
+		}
+
+		return LineClusterer.clusterIndices(filteredStrings, yIntercepts, noGroups);
 	}
 
-	private ArrayList<DetectedLine> selectCentralLinesFromClusters(ArrayList<ArrayList<DetectedLine>> groupedStrings)
+	private ArrayList<DetectedLine> selectCentralLinesFromClusters(LineSet lines, int[][] groupedStrings)
 	{	
 		
 		ArrayList<DetectedLine> finalStrings = new ArrayList<DetectedLine>();
 		
-		for(int b = 0; b < groupedStrings.size(); b++)
+		for(int[] group : groupedStrings)
 		{
-			ArrayList<Double> rhoValues = new ArrayList<Double>();
-			
-			for(DetectedLine s : groupedStrings.get(b))
+			if (group.length > 0)
 			{
-				rhoValues.add((Double) s.getRho());
-			}
-
-			if (rhoValues.size() > 0)
-			{
-				Collections.sort(rhoValues);
+				double[] rhoValues = new double[group.length];
 				
-				double smallestValue = rhoValues.get(0);
-				double largestValue = rhoValues.get(rhoValues.size() - 1);
+				for(int a = 0; a < group.length; a++)
+				{
+					rhoValues[a] = lines.rho[group[a]];
+				}
+				
+				Arrays.sort(rhoValues);
+				
+				double smallestValue = rhoValues[0];
+				double largestValue = rhoValues[rhoValues.length - 1];
 				
 				double thickness = largestValue - smallestValue;
 
-				double middleValue = rhoValues.get((int) Math.floor(rhoValues.size() / 2));
+				double middleValue = rhoValues[(int) Math.floor(rhoValues.length / 2)];
 
-				for(DetectedLine s : groupedStrings.get(b))
+				for(int index : group)
 				{
-					if ((double) middleValue == s.getRho())
+					if (middleValue == lines.rho[index])
 					{
-						GuitarString string = new GuitarString(thickness, s);
+						GuitarString string = new GuitarString(thickness, lines.getLine(index));
 						
 						finalStrings.add(string);
 						break;
@@ -405,6 +684,124 @@ public class StringDetector {
 		return angleAllowance;
 	}
 	
+	public void setRegionOfInterestTracking(boolean tracking)
+	{
+		regionOfInterestTracking = tracking;
+	}
+	
+	public boolean getRegionOfInterestTracking()
+	{
+		return regionOfInterestTracking;
+	}
+	
+	/**
+	 * @param distance to widen the tracked region, and the band around the strings found at the coarse level of the pyramid, by on either side, as a fraction of the distance between the outer strings
+	 */
+	public void setRegionOfInterestMargin(double margin)
+	{
+		regionOfInterestMargin = margin;
+	}
+	
+	public double getRegionOfInterestMargin()
+	{
+		return regionOfInterestMargin;
+	}
+	
+	/**
+	 * Set whether the Hough transform only searches the angles within the angle allowance of the strings of the previous frame,
+	 * or of the strings predicted by the tracker, searching every angle when there are none
+	 * @param windowed
+	 */
+	public void setAngleWindowedHough(boolean windowed)
+	{
+		angleWindowedHough = windowed;
+	}
+	
+	public boolean getAngleWindowedHough()
+	{
+		return angleWindowedHough;
+	}
+	
+	/**
+	 * Set the scale of the coarse level of the image pyramid that the strings are first found in, when they are not known from
+	 * the previous frame or the tracker. The strings are then found at full resolution in the band around those found at the coarse level,
+	 * searching the whole image if they are not all found.
+	 * @param number of pixels along each side of a pixel of the coarse level, or 1 to search the full image
+	 */
+	public void setPyramidScale(int scale)
+	{
+		pyramidScale = scale;
+	}
+	
+	public int getPyramidScale()
+	{
+		return pyramidScale;
+	}
+	
+	/**
+	 * @param largest difference in angle between the strings found at the coarse level and at full resolution
+	 */
+	public void setPyramidAngleAllowance(double allowance)
+	{
+		pyramidAngleAllowance = allowance;
+	}
+	
+	public double getPyramidAngleAllowance()
+	{
+		return pyramidAngleAllowance;
+	}
+	
+	/**
+	 * Set whether the strings are tracked from frame to frame, rather than weighted by the strings of the previous frame.
+	 * The region of the image searched for strings is then found from the strings predicted by the tracker.
+	 * @param tracking
+	 */
+	public void setTracking(boolean tracking)
+	{
+		stringTracker = tracking ? new LineTracker(numberLinesToDetectFinal) : null;
+	}
+	
+	public boolean getTracking()
+	{
+		return stringTracker != null;
+	}
+	
+	/**
+	 * @return confidence of the tracker in the strings, or 0 if they are not tracked
+	 */
+	public double getTrackingConfidence()
+	{
+		return (stringTracker != null) ? stringTracker.getConfidence() : 0;
+	}
+	
+	/**
+	 * @return true if the strings are tracked and the tracker has started, so that it can predict them
+	 */
+	public boolean hasTrackedStrings()
+	{
+		return stringTracker != null && stringTracker.hasTracks();
+	}
+	
+	/**
+	 * @return state of the tracker of the strings, or null if they are not tracked
+	 */
+	public LineTracker.State getTrackerState()
+	{
+		return (stringTracker != null) ? stringTracker.getState() : null;
+	}
+	
+	/**
+	 * Restore the tracker of the strings, if they are tracked
+	 * @param state from getTrackerState, or null to start the tracks again from the next strings detected
+	 */
+	public void setTrackerState(LineTracker.State state)
+	{
+		if (stringTracker != null)
+		{
+			stringTracker.setState(state);
+		}
+	}
+	
 	public void setNumberOfStringsToDetect(int newNumber)
 	{
 		numberLinesToDetectFinal = newNumber;
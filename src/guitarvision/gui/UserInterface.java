@@ -327,7 +327,7 @@ public class UserInterface extends Application{
 							SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss");
 							Date date = new Date();
 							System.out.println(format.format(date));
-							Engine.getInstance().transcribeFromVideo(file, null, null, noteTicks, checkBoxLighting.isSelected(), true);
+							new Engine().transcribeFromVideo(file, null, null, noteTicks, checkBoxLighting.isSelected(), true);
 						}
 					});
 					
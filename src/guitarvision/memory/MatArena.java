@@ -0,0 +1,254 @@
+package guitarvision.memory;
+
+import java.util.ArrayList;
+
+import org.opencv.core.Mat;
+
+/**
+ * Owner of the native memory of the Mats used while processing a frame.
+ * OpenCV Mats only free their native memory when released or finalised by the garbage collector, and the Java objects
+ * are small enough that the collector rarely runs, so Mats that are not released grow the memory of the process
+ * without bound. The stages allocate their Mats from the arena of the frame instead, and the arena releases every
+ * one of them when the frame has been written. Mats allocated by the arena are recycled through its pool for later frames.
+ * As with the profiler, the arena of the frame being processed is held per thread, so the detection classes do not need to be passed it.
+ * When no arena is set for the thread the static methods allocate ordinary Mats.
+ * An arena is used by one thread at a time.
+ * Arenas which are not released, and Mats allocated while the thread has no arena, are recorded by a MatLeakRegistry if one is set.
+ */
+public class MatArena {
+	private static final ThreadLocal<MatArena> currentArena = new ThreadLocal<MatArena>();
+
+	private MatPool pool;
+	private int frameNumber;
+
+	//Registry to report the arena to if it is not released, or null
+	private MatLeakRegistry leakRegistry;
+
+	//Mats of an earlier frame, handed out again in the order they were allocated
+	private ArrayList<Mat> recycledMats;
+	private int nextRecycledMat = 0;
+
+	//Mats allocated by the arena, which are recycled, and Mats created elsewhere, which are released
+	private ArrayList<Mat> allocatedMats = new ArrayList<Mat>();
+	private ArrayList<Mat> trackedMats = new ArrayList<Mat>();
+
+	private boolean released = false;
+
+	/**
+	 * @param pool to recycle Mats through, or null to release them
+	 * @param number of the frame, for leak reports
+	 */
+	public MatArena(MatPool pool, int frameNumber)
+	{
+		this(pool, frameNumber, (pool == null) ? null : pool.getLeakRegistry());
+	}
+
+	/**
+	 * @param pool to recycle Mats through, or null to release them
+	 * @param number of the frame, for leak reports
+	 * @param registry to record the arena in until it is released, or null
+	 */
+	public MatArena(MatPool pool, int frameNumber, MatLeakRegistry leakRegistry)
+	{
+		this.pool = pool;
+		this.frameNumber = frameNumber;
+		this.leakRegistry = leakRegistry;
+
+		recycledMats = (pool == null) ? new ArrayList<Mat>() : pool.take();
+
+		if (leakRegistry != null)
+		{
+			leakRegistry.addArena(this);
+		}
+	}
+
+	/**
+	 * Allocate a Mat which is released with the arena.
+	 * The Mat may still hold the pixels of an earlier frame, so it must only be used as the output of an OpenCV function.
+	 * @return the Mat
+	 */
+	public Mat newMat()
+	{
+		Mat mat;
+
+		if (nextRecycledMat < recycledMats.size())
+		{
+			mat = recycledMats.get(nextRecycledMat);
+			nextRecycledMat++;
+		}
+		else
+		{
+			mat = new Mat();
+		}
+
+		allocatedMats.add(mat);
+
+		return mat;
+	}
+
+	/**
+	 * Release a Mat created elsewhere (such as by an OpenCV function, or a view of another Mat) with the arena
+	 * @param mat
+	 * @return the same Mat
+	 */
+	public <T extends Mat> T add(T mat)
+	{
+		trackedMats.add(mat);
+
+		return mat;
+	}
+
+	/**
+	 * Release every Mat created elsewhere and recycle or release every Mat allocated by the arena.
+	 * None of the Mats may be used afterwards.
+	 */
+	public void release()
+	{
+		if (released) return;
+
+		for(Mat mat : trackedMats)
+		{
+			mat.release();
+		}
+
+		trackedMats.clear();
+
+		//Mats of the earlier frame which were not needed again are kept as well
+		for(int index = nextRecycledMat; index < recycledMats.size(); index++)
+		{
+			allocatedMats.add(recycledMats.get(index));
+		}
+
+		if (pool == null)
+		{
+			for(Mat mat : allocatedMats)
+			{
+				mat.release();
+			}
+		}
+		else
+		{
+			pool.recycle(allocatedMats);
+		}
+
+		allocatedMats = null;
+		recycledMats = null;
+
+		released = true;
+
+		if (leakRegistry != null)
+		{
+			leakRegistry.removeArena(this);
+		}
+	}
+
+	/**
+	 * @return number of Mats which will be released or recycled with the arena
+	 */
+	public int getNumberOfMats()
+	{
+		return released ? 0 : (allocatedMats.size() + trackedMats.size());
+	}
+
+	/**
+	 * @return bytes of native memory held by the Mats of the arena
+	 */
+	public long getBytes()
+	{
+		long bytes = 0;
+
+		if (!released)
+		{
+			for(Mat mat : allocatedMats)
+			{
+				bytes += mat.total() * mat.elemSize();
+			}
+
+			for(Mat mat : trackedMats)
+			{
+				bytes += mat.total() * mat.elemSize();
+			}
+		}
+
+		return bytes;
+	}
+
+	public int getFrameNumber()
+	{
+		return frameNumber;
+	}
+
+	/**
+	 * Set the arena that the current thread allocates from
+	 * @param arena, or null to allocate ordinary Mats
+	 * @return the arena that was previously set, to be restored afterwards
+	 */
+	public static MatArena setCurrent(MatArena arena)
+	{
+		MatArena previousArena = currentArena.get();
+
+		if (arena == null)
+		{
+			currentArena.remove();
+		}
+		else
+		{
+			currentArena.set(arena);
+		}
+
+		return previousArena;
+	}
+
+	public static MatArena getCurrent()
+	{
+		return currentArena.get();
+	}
+
+	/**
+	 * Allocate a Mat from the current thread's arena, which may hold the pixels of an earlier frame
+	 * @return the Mat, which is an ordinary Mat if the thread has no arena
+	 */
+	public static Mat allocate()
+	{
+		MatArena arena = currentArena.get();
+
+		if (arena == null)
+		{
+			recordUntrackedMat();
+			return new Mat();
+		}
+
+		return arena.newMat();
+	}
+
+	/**
+	 * Release a Mat with the current thread's arena
+	 * @param mat
+	 * @return the same Mat
+	 */
+	public static <T extends Mat> T track(T mat)
+	{
+		MatArena arena = currentArena.get();
+
+		if (arena == null)
+		{
+			recordUntrackedMat();
+			return mat;
+		}
+
+		return arena.add(mat);
+	}
+
+	/**
+	 * Record a Mat allocated or tracked without an arena in the current thread's leak registry, if it has one
+	 */
+	private static void recordUntrackedMat()
+	{
+		MatLeakRegistry registry = MatLeakRegistry.getCurrent();
+
+		if (registry != null)
+		{
+			registry.recordUntrackedMat();
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package guitarvision.memory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Record of the Mats of one transcription which are only freed when they are garbage collected: the frame arenas
+ * which are not released, and the places Mats are allocated or tracked while a thread has no arena.
+ * Each transcription that reports leaks has its own registry, so transcriptions run at the same time do not mix their reports.
+ * Arenas are given the registry of the pool they are created from. Mats allocated without an arena are recorded
+ * in the registry of the current thread, which is inherited by the threads it starts, such as those of a frame pipeline.
+ */
+public class MatLeakRegistry {
+	private static final InheritableThreadLocal<MatLeakRegistry> currentRegistry = new InheritableThreadLocal<MatLeakRegistry>();
+
+	private final Set<MatArena> unreleasedArenas = Collections.newSetFromMap(new ConcurrentHashMap<MatArena, Boolean>());
+	private final ConcurrentHashMap<String, AtomicLong> untrackedMatSites = new ConcurrentHashMap<String, AtomicLong>();
+
+	/**
+	 * Set the registry that records the Mats allocated without an arena by the current thread, and the threads it starts
+	 * @param registry, or null to not record them
+	 * @return the registry that was previously set, to be restored afterwards
+	 */
+	public static MatLeakRegistry setCurrent(MatLeakRegistry registry)
+	{
+		MatLeakRegistry previousRegistry = currentRegistry.get();
+
+		if (registry == null)
+		{
+			currentRegistry.remove();
+		}
+		else
+		{
+			currentRegistry.set(registry);
+		}
+
+		return previousRegistry;
+	}
+
+	public static MatLeakRegistry getCurrent()
+	{
+		return currentRegistry.get();
+	}
+
+	void addArena(MatArena arena)
+	{
+		unreleasedArenas.add(arena);
+	}
+
+	void removeArena(MatArena arena)
+	{
+		unreleasedArenas.remove(arena);
+	}
+
+	/**
+	 * Count an allocation without an arena against the method which called into MatArena
+	 */
+	void recordUntrackedMat()
+	{
+		String site = "unknown";
+
+		for(StackTraceElement element : Thread.currentThread().getStackTrace())
+		{
+			String className = element.getClassName();
+
+			if (!(className.equals(MatArena.class.getName()) || className.equals(MatLeakRegistry.class.getName()) || className.equals(Thread.class.getName())))
+			{
+				site = element.toString();
+				break;
+			}
+		}
+
+		AtomicLong count = untrackedMatSites.get(site);
+
+		if (count == null)
+		{
+			untrackedMatSites.putIfAbsent(site, new AtomicLong());
+			count = untrackedMatSites.get(site);
+		}
+
+		count.incrementAndGet();
+	}
+
+	/**
+	 * Describe the arenas given this registry which have not been released, and the Mats allocated or tracked
+	 * without an arena by threads using this registry
+	 * @return report with a line for each arena and each place Mats were allocated, or null if there are no leaks
+	 */
+	public String getReport()
+	{
+		StringBuilder report = new StringBuilder();
+
+		TreeMap<Integer, MatArena> arenasByFrame = new TreeMap<Integer, MatArena>();
+
+		for(MatArena arena : unreleasedArenas)
+		{
+			arenasByFrame.put(arena.getFrameNumber(), arena);
+		}
+
+		for(MatArena arena : arenasByFrame.values())
+		{
+			report.append("Arena of frame " + arena.getFrameNumber() + " not released: " + arena.getNumberOfMats() + " Mats, " + arena.getBytes() + " bytes\n");
+		}
+
+		for(Map.Entry<String, AtomicLong> site : new TreeMap<String, AtomicLong>(untrackedMatSites).entrySet())
+		{
+			report.append(site.getValue().get() + " Mats allocated without an arena at " + site.getKey() + "\n");
+		}
+
+		return (report.length() == 0) ? null : report.toString();
+	}
+}
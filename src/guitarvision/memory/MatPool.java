@@ -0,0 +1,94 @@
+package guitarvision.memory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import org.opencv.core.Mat;
+
+/**
+ * Mats kept between frames so that each frame reuses the native memory of an earlier frame rather than allocating its own.
+ * The Mats of a released frame arena are kept together in the order they were allocated, and handed to a new arena
+ * in the same order. As the stages allocate the same Mats in the same order for every frame, each Mat is usually
+ * given the same size and type as before, and OpenCV writes into its existing memory.
+ * There is a list of Mats for each frame arena that is in use at once, so the memory held is bounded by the number of
+ * frames being processed at the same time.
+ */
+public class MatPool {
+	private ArrayDeque<ArrayList<Mat>> freeMatLists = new ArrayDeque<ArrayList<Mat>>();
+
+	private boolean released = false;
+
+	//Registry given to the arenas of the pool, or null
+	private MatLeakRegistry leakRegistry = null;
+
+	/**
+	 * Set the registry that records the arenas created afterwards until they are released
+	 * @param registry, or null to not record them
+	 */
+	public void setLeakRegistry(MatLeakRegistry leakRegistry)
+	{
+		this.leakRegistry = leakRegistry;
+	}
+
+	public MatLeakRegistry getLeakRegistry()
+	{
+		return leakRegistry;
+	}
+
+	/**
+	 * Create an arena for a frame which allocates from this pool
+	 * @param number of the frame
+	 * @return the arena
+	 */
+	public MatArena newArena(int frameNumber)
+	{
+		return new MatArena(this, frameNumber);
+	}
+
+	/**
+	 * @return the Mats of the most recently released arena, or an empty list if there are none
+	 */
+	synchronized ArrayList<Mat> take()
+	{
+		ArrayList<Mat> mats = freeMatLists.pollFirst();
+
+		return (mats == null) ? new ArrayList<Mat>() : mats;
+	}
+
+	/**
+	 * Keep the Mats of a released arena for a later arena, or release them if the pool has been released
+	 * @param mats in the order they were allocated
+	 */
+	synchronized void recycle(ArrayList<Mat> mats)
+	{
+		if (released)
+		{
+			for(Mat mat : mats)
+			{
+				mat.release();
+			}
+		}
+		else
+		{
+			freeMatLists.addFirst(mats);
+		}
+	}
+
+	/**
+	 * Release the memory of every Mat in the pool, and of the Mats of arenas released afterwards
+	 */
+	public synchronized void release()
+	{
+		for(ArrayList<Mat> mats : freeMatLists)
+		{
+			for(Mat mat : mats)
+			{
+				mat.release();
+			}
+		}
+
+		freeMatLists.clear();
+
+		released = true;
+	}
+}
@@ -0,0 +1,75 @@
+package guitarvision.profiling;
+
+/**
+ * The time spent in each stage and the counters for a single frame.
+ * A frame is only worked on by one stage at a time, so the profile is not synchronised.
+ */
+public class FrameProfile {
+	private int frameNumber;
+	private boolean warmUp = false;
+
+	private long[] stageNanoseconds = new long[ProcessingStage.values().length];
+	private int[] stageRuns = new int[ProcessingStage.values().length];
+	private long[] counters = new long[ProfileCounter.values().length];
+
+	/**
+	 * @param index of the frame amongst the frames that are processed
+	 */
+	public FrameProfile(int frameNumber)
+	{
+		this.frameNumber = frameNumber;
+	}
+
+	public int getFrameNumber()
+	{
+		return frameNumber;
+	}
+
+	/**
+	 * Mark the frame as only being processed to warm up the tracking state, without detecting notes
+	 * @param warmUp
+	 */
+	public void setWarmUp(boolean warmUp)
+	{
+		this.warmUp = warmUp;
+	}
+
+	public boolean isWarmUp()
+	{
+		return warmUp;
+	}
+
+	public void addTime(ProcessingStage stage, long nanoseconds)
+	{
+		stageNanoseconds[stage.ordinal()] += nanoseconds;
+		stageRuns[stage.ordinal()]++;
+	}
+
+	/**
+	 * @param stage
+	 * @return total time spent in the stage for this frame, in nanoseconds
+	 */
+	public long getTime(ProcessingStage stage)
+	{
+		return stageNanoseconds[stage.ordinal()];
+	}
+
+	/**
+	 * @param stage
+	 * @return whether the stage was run for this frame
+	 */
+	public boolean hasRun(ProcessingStage stage)
+	{
+		return stageRuns[stage.ordinal()] > 0;
+	}
+
+	public void addCount(ProfileCounter counter, long amount)
+	{
+		counters[counter.ordinal()] += amount;
+	}
+
+	public long getCount(ProfileCounter counter)
+	{
+		return counters[counter.ordinal()];
+	}
+}
@@ -0,0 +1,115 @@
+package guitarvision.profiling;
+
+/**
+ * Histogram of latencies with logarithmically sized buckets.
+ * Each power of two of microseconds is split into four buckets, so a bucket is about 19% wider than the one before it.
+ * Percentiles are estimated by the upper bound of the bucket they fall in.
+ */
+public class LatencyHistogram {
+	private static final int BUCKETS_PER_POWER_OF_TWO = 4;
+	private static final int NUMBER_OF_BUCKETS = 40 * BUCKETS_PER_POWER_OF_TWO;
+
+	private long[] bucketCounts = new long[NUMBER_OF_BUCKETS];
+
+	private long count = 0;
+	private long totalNanoseconds = 0;
+	private long minimumNanoseconds = Long.MAX_VALUE;
+	private long maximumNanoseconds = 0;
+
+	public void record(long nanoseconds)
+	{
+		bucketCounts[getBucket(nanoseconds)]++;
+
+		count++;
+		totalNanoseconds += nanoseconds;
+		minimumNanoseconds = Math.min(minimumNanoseconds, nanoseconds);
+		maximumNanoseconds = Math.max(maximumNanoseconds, nanoseconds);
+	}
+
+	/**
+	 * Bucket 0 holds latencies under a microsecond, and bucket b holds latencies up to 2^(b/4) microseconds
+	 */
+	private static int getBucket(long nanoseconds)
+	{
+		double microseconds = nanoseconds / 1000.0;
+
+		if (microseconds < 1) return 0;
+
+		int bucket = 1 + (int) Math.floor(BUCKETS_PER_POWER_OF_TWO * (Math.log(microseconds) / Math.log(2)));
+
+		return Math.min(bucket, NUMBER_OF_BUCKETS - 1);
+	}
+
+	/**
+	 * @param bucket index
+	 * @return largest latency in the bucket, in nanoseconds
+	 */
+	public static double getBucketUpperBound(int bucket)
+	{
+		if (bucket == 0) return 1000;
+
+		return 1000 * Math.pow(2, (double) bucket / BUCKETS_PER_POWER_OF_TWO);
+	}
+
+	public int getNumberOfBuckets()
+	{
+		return NUMBER_OF_BUCKETS;
+	}
+
+	public long getBucketCount(int bucket)
+	{
+		return bucketCounts[bucket];
+	}
+
+	public long getCount()
+	{
+		return count;
+	}
+
+	public long getTotalNanoseconds()
+	{
+		return totalNanoseconds;
+	}
+
+	public double getMeanNanoseconds()
+	{
+		if (count == 0) return 0;
+		return (double) totalNanoseconds / count;
+	}
+
+	public long getMinimumNanoseconds()
+	{
+		if (count == 0) return 0;
+		return minimumNanoseconds;
+	}
+
+	public long getMaximumNanoseconds()
+	{
+		return maximumNanoseconds;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return estimated latency that the percentile of recorded latencies do not exceed, in nanoseconds
+	 */
+	public double getPercentileNanoseconds(double percentile)
+	{
+		if (count == 0) return 0;
+
+		long rank = Math.max(1, (long) Math.ceil((percentile / 100.0) * count));
+
+		long cumulativeCount = 0;
+
+		for(int bucket = 0; bucket < NUMBER_OF_BUCKETS; bucket++)
+		{
+			cumulativeCount += bucketCounts[bucket];
+
+			if (cumulativeCount >= rank)
+			{
+				return Math.max(minimumNanoseconds, Math.min(maximumNanoseconds, getBucketUpperBound(bucket)));
+			}
+		}
+
+		return maximumNanoseconds;
+	}
+}
@@ -0,0 +1,30 @@
+package guitarvision.profiling;
+
+/**
+ * The parts of the per-frame work of a transcription that are timed when profiling.
+ * Stages which run more than once for a frame, such as edge detection for both the strings and the frets, are timed in total.
+ */
+public enum ProcessingStage {
+	//Reading the frame from the video
+	DECODE,
+	//Resizing the frame to the processing resolution and copying it for annotation
+	RESIZE,
+	//Skin detection
+	SKIN,
+	//Measuring how far the guitar has moved since it was last detected, when detection is gated by motion
+	MOTION,
+	//Blurring and Canny edge detection
+	EDGES,
+	//Hough line transform
+	HOUGH,
+	//Clustering the lines into strings or frets
+	CLUSTERING,
+	//Rectifying the neck and rendering it for fret detection
+	FRET_WARP,
+	//Rendering the string bands and measuring the string thicknesses
+	THICKNESS,
+	//Pluck and note detection
+	NOTES,
+	//Writing the annotated frame to the output video
+	ENCODE
+}
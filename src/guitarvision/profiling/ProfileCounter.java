@@ -0,0 +1,19 @@
+package guitarvision.profiling;
+
+/**
+ * Quantities counted for each frame when profiling
+ */
+public enum ProfileCounter {
+	//Lines found by the Hough transform when detecting strings
+	STRING_HOUGH_LINES,
+	//Lines found by the Hough transform when detecting frets
+	FRET_HOUGH_LINES,
+	//Frames in which the fret layout of an earlier frame was used instead of the Hough transform
+	FRET_LAYOUT_REUSES,
+	//Lines passed to the line clusterer
+	CLUSTERED_LINES,
+	//Frames in which the strings and frets were detected rather than reused from an earlier frame
+	GUITAR_DETECTIONS,
+	//Bytes of the native image Mats allocated by the stages
+	MAT_BYTES
+}
@@ -0,0 +1,86 @@
+package guitarvision.profiling;
+
+import org.opencv.core.Mat;
+
+/**
+ * Entry points for timing stages and counting from anywhere in the processing of a frame.
+ * The frame profile being recorded is held per thread, so that the detection classes do not need to be passed it,
+ * and each stage of a pipelined transcription records into the profile of the frame it is working on.
+ * When no frame profile is set for the thread (profiling is off) every method does nothing.
+ */
+public class Profiler {
+	private static final ThreadLocal<FrameProfile> currentFrame = new ThreadLocal<FrameProfile>();
+
+	/**
+	 * Set the frame profile that the current thread records into
+	 * @param profile, or null to stop recording
+	 * @return the profile that was previously set, to be restored afterwards
+	 */
+	public static FrameProfile setCurrentFrame(FrameProfile profile)
+	{
+		FrameProfile previousProfile = currentFrame.get();
+
+		if (profile == null)
+		{
+			currentFrame.remove();
+		}
+		else
+		{
+			currentFrame.set(profile);
+		}
+
+		return previousProfile;
+	}
+
+	public static FrameProfile getCurrentFrame()
+	{
+		return currentFrame.get();
+	}
+
+	/**
+	 * @return start time to pass to stop, or 0 if the thread is not recording
+	 */
+	public static long start()
+	{
+		return (currentFrame.get() == null) ? 0 : System.nanoTime();
+	}
+
+	/**
+	 * Add the time since start to a stage of the current frame
+	 * @param stage
+	 * @param time returned by start
+	 */
+	public static void stop(ProcessingStage stage, long startTime)
+	{
+		FrameProfile profile = currentFrame.get();
+
+		if (profile != null)
+		{
+			profile.addTime(stage, System.nanoTime() - startTime);
+		}
+	}
+
+	public static void count(ProfileCounter counter, long amount)
+	{
+		FrameProfile profile = currentFrame.get();
+
+		if (profile != null)
+		{
+			profile.addCount(counter, amount);
+		}
+	}
+
+	/**
+	 * Count the native memory of a Mat allocated by a stage
+	 * @param mat
+	 */
+	public static void countAllocation(Mat mat)
+	{
+		FrameProfile profile = currentFrame.get();
+
+		if (profile != null)
+		{
+			profile.addCount(ProfileCounter.MAT_BYTES, mat.total() * mat.elemSize());
+		}
+	}
+}
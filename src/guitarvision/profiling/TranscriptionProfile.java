@@ -0,0 +1,250 @@
+package guitarvision.profiling;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The frame profiles recorded while transcribing one video, with per-stage latency histograms and counter totals.
+ * Frame profiles may be added from several threads when transcribing in chunks.
+ */
+public class TranscriptionProfile {
+	private ArrayList<FrameProfile> frames = new ArrayList<FrameProfile>();
+
+	private long elapsedNanoseconds = 0;
+
+	/**
+	 * Start the profile of a frame
+	 * @param index of the frame amongst the frames that are processed
+	 * @return profile to record the frame's stages into
+	 */
+	public synchronized FrameProfile addFrame(int frameNumber)
+	{
+		FrameProfile frame = new FrameProfile(frameNumber);
+		frames.add(frame);
+		return frame;
+	}
+
+	/**
+	 * @return profiles of the frames, in order of frame number with warm-up frames first
+	 */
+	public synchronized List<FrameProfile> getFrames()
+	{
+		ArrayList<FrameProfile> sortedFrames = new ArrayList<FrameProfile>(frames);
+
+		Collections.sort(sortedFrames, new Comparator<FrameProfile>() {
+			public int compare(FrameProfile frame1, FrameProfile frame2)
+			{
+				int comparison = Integer.compare(frame1.getFrameNumber(), frame2.getFrameNumber());
+
+				if (comparison == 0)
+				{
+					comparison = Boolean.compare(frame2.isWarmUp(), frame1.isWarmUp());
+				}
+
+				return comparison;
+			}
+		});
+
+		return sortedFrames;
+	}
+
+	/**
+	 * @param stage
+	 * @return histogram of the time spent in the stage by each frame that ran it
+	 */
+	public LatencyHistogram getHistogram(ProcessingStage stage)
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		for(FrameProfile frame : getFrames())
+		{
+			if (frame.hasRun(stage))
+			{
+				histogram.record(frame.getTime(stage));
+			}
+		}
+
+		return histogram;
+	}
+
+	/**
+	 * @param counter
+	 * @return sum of the counter over every frame
+	 */
+	public long getTotal(ProfileCounter counter)
+	{
+		long total = 0;
+
+		for(FrameProfile frame : getFrames())
+		{
+			total += frame.getCount(counter);
+		}
+
+		return total;
+	}
+
+	public void setElapsedNanoseconds(long nanoseconds)
+	{
+		elapsedNanoseconds = nanoseconds;
+	}
+
+	/**
+	 * @return wall clock time of the whole transcription
+	 */
+	public long getElapsedNanoseconds()
+	{
+		return elapsedNanoseconds;
+	}
+
+	/**
+	 * Write a row for each frame with the milliseconds spent in each stage and the counters
+	 * @param name of file, without the extension
+	 * @return the written file, or null if it could not be written
+	 */
+	public File writeCsvFile(String fileName)
+	{
+		File csvFile = new File(fileName + ".csv");
+
+		PrintWriter writer = null;
+
+		try
+		{
+			writer = new PrintWriter(csvFile, "UTF-8");
+
+			StringBuilder header = new StringBuilder("frame,warm_up");
+
+			for(ProcessingStage stage : ProcessingStage.values())
+			{
+				header.append(",").append(stage.name().toLowerCase()).append("_ms");
+			}
+
+			for(ProfileCounter counter : ProfileCounter.values())
+			{
+				header.append(",").append(counter.name().toLowerCase());
+			}
+
+			writer.println(header);
+
+			for(FrameProfile frame : getFrames())
+			{
+				StringBuilder row = new StringBuilder();
+				row.append(frame.getFrameNumber()).append(",").append(frame.isWarmUp());
+
+				for(ProcessingStage stage : ProcessingStage.values())
+				{
+					row.append(",").append(formatMilliseconds(frame.getTime(stage)));
+				}
+
+				for(ProfileCounter counter : ProfileCounter.values())
+				{
+					row.append(",").append(frame.getCount(counter));
+				}
+
+				writer.println(row);
+			}
+		}
+		catch (IOException e)
+		{
+			System.out.println(e.getMessage());
+			csvFile = null;
+		}
+		finally
+		{
+			if (writer != null) writer.close();
+		}
+
+		return csvFile;
+	}
+
+	/**
+	 * Write a summary of the profile, with the latency histogram of each stage and the counter totals
+	 * @param name of file, without the extension
+	 * @return the written file, or null if it could not be written
+	 */
+	public File writeJsonFile(String fileName)
+	{
+		File jsonFile = new File(fileName + ".json");
+
+		PrintWriter writer = null;
+
+		try
+		{
+			writer = new PrintWriter(jsonFile, "UTF-8");
+
+			writer.println("{");
+			writer.println("  \"frames\": " + getFrames().size() + ",");
+			writer.println("  \"elapsed_ms\": " + formatMilliseconds(elapsedNanoseconds) + ",");
+
+			writer.println("  \"stages\": {");
+
+			ProcessingStage[] stages = ProcessingStage.values();
+
+			for(int stageIndex = 0; stageIndex < stages.length; stageIndex++)
+			{
+				LatencyHistogram histogram = getHistogram(stages[stageIndex]);
+
+				writer.println("    \"" + stages[stageIndex].name().toLowerCase() + "\": {");
+				writer.println("      \"count\": " + histogram.getCount() + ",");
+				writer.println("      \"total_ms\": " + formatMilliseconds(histogram.getTotalNanoseconds()) + ",");
+				writer.println("      \"mean_ms\": " + formatMilliseconds(histogram.getMeanNanoseconds()) + ",");
+				writer.println("      \"min_ms\": " + formatMilliseconds(histogram.getMinimumNanoseconds()) + ",");
+				writer.println("      \"p50_ms\": " + formatMilliseconds(histogram.getPercentileNanoseconds(50)) + ",");
+				writer.println("      \"p90_ms\": " + formatMilliseconds(histogram.getPercentileNanoseconds(90)) + ",");
+				writer.println("      \"p99_ms\": " + formatMilliseconds(histogram.getPercentileNanoseconds(99)) + ",");
+				writer.println("      \"max_ms\": " + formatMilliseconds(histogram.getMaximumNanoseconds()) + ",");
+
+				//Only the buckets which contain latencies are written
+				StringBuilder buckets = new StringBuilder();
+
+				for(int bucket = 0; bucket < histogram.getNumberOfBuckets(); bucket++)
+				{
+					if (histogram.getBucketCount(bucket) == 0) continue;
+
+					if (buckets.length() > 0) buckets.append(", ");
+
+					buckets.append("{\"upper_ms\": ").append(formatMilliseconds(LatencyHistogram.getBucketUpperBound(bucket)));
+					buckets.append(", \"count\": ").append(histogram.getBucketCount(bucket)).append("}");
+				}
+
+				writer.println("      \"histogram\": [" + buckets + "]");
+				writer.println("    }" + ((stageIndex < stages.length - 1) ? "," : ""));
+			}
+
+			writer.println("  },");
+
+			writer.println("  \"counters\": {");
+
+			ProfileCounter[] counters = ProfileCounter.values();
+
+			for(int counterIndex = 0; counterIndex < counters.length; counterIndex++)
+			{
+				writer.println("    \"" + counters[counterIndex].name().toLowerCase() + "\": " + getTotal(counters[counterIndex]) + ((counterIndex < counters.length - 1) ? "," : ""));
+			}
+
+			writer.println("  }");
+			writer.println("}");
+		}
+		catch (IOException e)
+		{
+			System.out.println(e.getMessage());
+			jsonFile = null;
+		}
+		finally
+		{
+			if (writer != null) writer.close();
+		}
+
+		return jsonFile;
+	}
+
+	private static String formatMilliseconds(double nanoseconds)
+	{
+		return String.format(Locale.ROOT, "%.3f", nanoseconds / 1e6);
+	}
+}
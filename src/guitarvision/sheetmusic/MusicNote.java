@@ -11,6 +11,10 @@ public class MusicNote {
 	public Integer startingFrame;
 	private Integer endingFrame = null;
 	
+	//Times in milliseconds of the frames the note starts and finishes in, or null if they are not known
+	public Double startingTime = null;
+	private Double endingTime = null;
+	
 	public MusicNote(int note, int octave, int string, Integer startingFrame)
 	{
 		this.note = note;
@@ -29,4 +33,22 @@ public class MusicNote {
 	{
 		return endingFrame;
 	}
+	
+	public void setEndingTime(Double endingTime)
+	{
+		this.endingTime = endingTime;
+	}
+	
+	public Double getEndingTime()
+	{
+		return endingTime;
+	}
+	
+	/**
+	 * @return whether the note is timed in milliseconds rather than by frame numbers
+	 */
+	public boolean isTimed()
+	{
+		return startingTime != null && endingTime != null;
+	}
 }
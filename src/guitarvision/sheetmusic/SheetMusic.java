@@ -3,6 +3,7 @@ package guitarvision.sheetmusic;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 import javax.sound.midi.*;
 
@@ -12,6 +13,10 @@ public class SheetMusic {
 	
 	public int framesPerTick = 24;
 	public int globalStartFrame = 48;
+	
+	//Timing of notes with timestamps, used when the first note has timestamps
+	public double millisecondsPerTick = 0;
+	public double globalStartTime = 0;
 
 	public void setInitialFrame(int value)
 	{
@@ -23,11 +28,124 @@ public class SheetMusic {
 		framesPerTick = value;
 	}
 	
+	/**
+	 * Use the first note to determine the relationship between number of frames and number of music ticks
+	 * given the specified number of ticks of the first note.
+	 * If the first note has timestamps, notes with timestamps are timed by them instead of their frame numbers,
+	 * so the timing does not depend on which frames of the video were processed.
+	 * @param the first note to be completed
+	 * @param number of ticks that the first note lasts (four ticks is one musical beat)
+	 */
+	public void setTimingFromFirstNote(MusicNote firstNote, int firstNoteDuration)
+	{
+		int initialFrame = firstNote.startingFrame;
+		int frameDuration = firstNote.getEndingFrame() - initialFrame;
+		int framesInTick = (int) Math.round((double) frameDuration / (double) firstNoteDuration);
+		if (framesInTick < 1) framesInTick = 1;
+		setInitialFrame(initialFrame);
+		setFramesPerBeat(framesInTick);
+		
+		millisecondsPerTick = 0;
+		
+		if (firstNote.isTimed())
+		{
+			double duration = firstNote.getEndingTime() - firstNote.startingTime;
+			
+			if (duration > 0)
+			{
+				globalStartTime = firstNote.startingTime;
+				millisecondsPerTick = duration / firstNoteDuration;
+			}
+		}
+	}
+	
 	public void addNote(MusicNote note)
 	{
 		notes.add(note);
 	}
 	
+	public ArrayList<MusicNote> getNotes()
+	{
+		return notes;
+	}
+	
+	/**
+	 * Called after each frame has been processed, with the notes that are still being held.
+	 * Sheet music kept in memory has nothing to do until it is written.
+	 * @param number of the frame
+	 * @param time of the frame in milliseconds, or null if it is not known
+	 * @param list of the notes being held, with null for strings which are not vibrating
+	 */
+	public void frameProcessed(int frameNumber, Double time, List<MusicNote> heldNotes)
+	{
+	}
+	
+	/**
+	 * Convert a finished note to MIDI events: the string used to play it, the start of the note and the end of the note
+	 * @param note which has finished
+	 * @return the three events, in that order
+	 */
+	protected MidiEvent[] getNoteEvents(MusicNote note) throws InvalidMidiDataException
+	{
+		int midiNote = note.note + note.octave * 12;
+		int stringUsed = note.string;
+		
+		int initialTick = getStartingTick(note.startingFrame, note.isTimed() ? note.startingTime : null);
+		int ticks;
+		
+		if (millisecondsPerTick > 0 && note.isTimed())
+		{
+			//Convert from times to tick numbers
+			ticks = (int) Math.round((note.getEndingTime() - note.startingTime) / millisecondsPerTick);
+		}
+		else
+		{
+			//Convert from frames numbers to tick numbers
+			int frames = note.getEndingFrame() - note.startingFrame;
+			ticks = (int) Math.round(((double)frames / (double) framesPerTick));
+		}
+		
+		if (ticks <= 0) ticks = 1;
+		
+		//Annotate MIDI with string used to play note
+		MetaMessage metaMessage = new MetaMessage();
+		metaMessage.setMessage(0x01, (Integer.toString(stringUsed)).getBytes(), 1);
+		
+		//Start of note
+		ShortMessage startMessage = new ShortMessage();
+		startMessage.setMessage(0x90, midiNote, 127);
+		
+		//End of note
+		ShortMessage endMessage = new ShortMessage();
+		endMessage.setMessage(0x80, midiNote, 127);
+		
+		return new MidiEvent[] {new MidiEvent(metaMessage, initialTick), new MidiEvent(startMessage, initialTick), new MidiEvent(endMessage, initialTick + ticks)};
+	}
+	
+	/**
+	 * Get the tick that a note starting at a frame is placed at
+	 * @param number of the frame the note starts in
+	 * @param time of the frame in milliseconds, or null to time the note by its frame number
+	 * @return tick of the start of the note
+	 */
+	protected int getStartingTick(int startFrame, Double startTime)
+	{
+		int initialTick;
+		
+		if (millisecondsPerTick > 0 && startTime != null)
+		{
+			initialTick = (int) Math.round((startTime - globalStartTime) / millisecondsPerTick);
+		}
+		else
+		{
+			initialTick = (int) Math.round(((double) (startFrame - globalStartFrame) / (double) framesPerTick));
+		}
+		
+		if (initialTick < 0) initialTick = 0;
+		
+		return initialTick;
+	}
+	
 	public File writeFile(String fileName)
 	{
 		File sheetMusicFile = null;
@@ -40,51 +158,18 @@ public class SheetMusic {
 			int finalTick = 0;
 			
 			for(MusicNote note: notes)
-			{	
-				ShortMessage noteMessage = new ShortMessage();
-				
-				int midiNote = note.note + note.octave * 12;
-				int stringUsed = note.string;
-				int startFrame = note.startingFrame;
-				int endFrame = note.getEndingFrame();
-				
-				int frames = endFrame - startFrame;
+			{
+				MidiEvent[] noteEvents = getNoteEvents(note);
 				
-				//Convert from frames numbers to tick numbers
-				int ticks = (int) Math.round(((double)frames / (double) framesPerTick));
-				
-				if (ticks <= 0) ticks = 1;
-				
-				int initialTick = (int) Math.round(((double) (startFrame - globalStartFrame) / (double) framesPerTick));
-			
-				if (initialTick < 0) initialTick = 0;
-				
-				if (ticks + initialTick > finalTick)
+				for(MidiEvent noteEvent : noteEvents)
 				{
-					finalTick = ticks + initialTick;
+					midiTrack.add(noteEvent);
 				}
 				
-				//Annotate MIDI with string used to play note
-				MetaMessage metaMessage = new MetaMessage();
-				metaMessage.setMessage(0x01, (Integer.toString(stringUsed)).getBytes(), 1);
-				
-				MidiEvent noteEventMeta = new MidiEvent(metaMessage, initialTick);
-				midiTrack.add(noteEventMeta);
-				
-				//Start of note
-				noteMessage.setMessage(0x90, midiNote, 127);
-				
-				MidiEvent noteEvent = new MidiEvent(noteMessage, initialTick);
-				
-				midiTrack.add(noteEvent);
-
-				//End of note
-				noteMessage = new ShortMessage();
-				noteMessage.setMessage(0x80, midiNote, 127);
-				
-				noteEvent = new MidiEvent(noteMessage, initialTick + ticks);
-				
-				midiTrack.add(noteEvent);
+				if (noteEvents[2].getTick() > finalTick)
+				{
+					finalTick = (int) noteEvents[2].getTick();
+				}
 			}
 			
 			//End track
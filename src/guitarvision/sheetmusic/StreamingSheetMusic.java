@@ -0,0 +1,276 @@
+package guitarvision.sheetmusic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+
+/**
+ * Sheet music which is written to its MIDI file while the video is transcribed, rather than kept in memory.
+ * The events of each completed note wait until no note that is still being held, or has yet to be played,
+ * can start before them, and are then appended to the track every few frames. The file is a valid MIDI file
+ * after every flush, with the end of track event and the length of the track rewritten each time, so it can be
+ * read while the transcription is running. Only the notes which are being held and the events waiting to be
+ * written are kept, so memory does not grow with the number of notes.
+ * getNotes returns an empty list, and the file given to the constructor is the one written by writeFile.
+ */
+public class StreamingSheetMusic extends SheetMusic {
+	//Position of the length of the track in the file, after the header and the track's identifier
+	private static final int TRACK_LENGTH_POSITION = 18;
+	private static final int TRACK_START_POSITION = 22;
+
+	private static final byte[] END_OF_TRACK = new byte[] {(byte) 0xFF, 0x2F, 0x00};
+
+	//Number of frames between writing the completed notes to the file
+	private int flushInterval = 15;
+
+	private File midiFile = null;
+	private RandomAccessFile output = null;
+
+	//Events of the completed notes which have not been written yet, in the order they appear in the track
+	private PriorityQueue<PendingEvent> pendingEvents = new PriorityQueue<PendingEvent>(16, new Comparator<PendingEvent>() {
+		public int compare(PendingEvent event1, PendingEvent event2)
+		{
+			int tickOrder = Long.compare(event1.event.getTick(), event2.event.getTick());
+			if (tickOrder != 0) return tickOrder;
+			return Long.compare(event1.sequence, event2.sequence);
+		}
+	});
+
+	private long eventsAdded = 0;
+
+	//Tick of the last event written, and the position in the file of the end of the track which follows it
+	private long lastWrittenTick = 0;
+	private long endOfTrackPosition = TRACK_START_POSITION;
+
+	private boolean timingSet = false;
+	private int framesSinceFlush = 0;
+
+	/**
+	 * Create the MIDI file, containing an empty track until notes are completed
+	 * @param name of the file to write, without the extension, or null for the default name
+	 */
+	public StreamingSheetMusic(String fileName)
+	{
+		if (fileName == null) fileName = "GuitarVisionTranscription";
+
+		midiFile = new File(fileName + ".mid");
+
+		try
+		{
+			output = new RandomAccessFile(midiFile, "rw");
+			output.setLength(0);
+
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+
+			//Header of a type 1 file with one track and four ticks per beat, the same as SheetMusic.writeFile
+			header.write(new byte[] {'M', 'T', 'h', 'd', 0, 0, 0, 6, 0, 1, 0, 1, 0, 4});
+			header.write(new byte[] {'M', 'T', 'r', 'k', 0, 0, 0, 0});
+
+			output.write(header.toByteArray());
+
+			writeEvents(new ByteArrayOutputStream(), lastWrittenTick);
+		}
+		catch (IOException e)
+		{
+			System.out.println(e.getMessage());
+			closeOutput();
+		}
+	}
+
+	@Override
+	public void setTimingFromFirstNote(MusicNote firstNote, int firstNoteDuration)
+	{
+		super.setTimingFromFirstNote(firstNote, firstNoteDuration);
+		timingSet = true;
+	}
+
+	/**
+	 * Queue the events of a completed note to be written to the file
+	 * @param note which has finished
+	 */
+	@Override
+	public void addNote(MusicNote note)
+	{
+		try
+		{
+			for(MidiEvent noteEvent : getNoteEvents(note))
+			{
+				pendingEvents.add(new PendingEvent(noteEvent, eventsAdded++));
+			}
+		}
+		catch (InvalidMidiDataException e)
+		{
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Write the events which come before every note being held and the current frame, every few frames
+	 * @param number of the frame
+	 * @param time of the frame in milliseconds, or null if it is not known
+	 * @param list of the notes being held, with null for strings which are not vibrating
+	 */
+	@Override
+	public void frameProcessed(int frameNumber, Double time, List<MusicNote> heldNotes)
+	{
+		framesSinceFlush++;
+
+		//The ticks of the notes are not known until the timing is set from the first note
+		if (!timingSet || framesSinceFlush < flushInterval) return;
+
+		framesSinceFlush = 0;
+
+		//Notes played in later frames start at or after the tick of this frame
+		long horizon = getStartingTick(frameNumber, time);
+
+		for(MusicNote heldNote : heldNotes)
+		{
+			if (heldNote != null)
+			{
+				horizon = Math.min(horizon, getStartingTick(heldNote.startingFrame, heldNote.startingTime));
+			}
+		}
+
+		flush(horizon);
+	}
+
+	/**
+	 * Write the events before a tick to the file
+	 * @param tick before which no more events can be added
+	 */
+	public void flush(long horizon)
+	{
+		if (output == null || pendingEvents.isEmpty() || pendingEvents.peek().event.getTick() >= horizon) return;
+
+		ByteArrayOutputStream events = new ByteArrayOutputStream();
+
+		long previousTick = lastWrittenTick;
+
+		while (!pendingEvents.isEmpty() && pendingEvents.peek().event.getTick() < horizon)
+		{
+			MidiEvent event = pendingEvents.poll().event;
+
+			writeVariableLengthQuantity(events, event.getTick() - previousTick);
+
+			byte[] message = event.getMessage().getMessage();
+			events.write(message, 0, message.length);
+
+			previousTick = event.getTick();
+		}
+
+		try
+		{
+			writeEvents(events, previousTick);
+		}
+		catch (IOException e)
+		{
+			System.out.println(e.getMessage());
+			closeOutput();
+		}
+	}
+
+	/**
+	 * Write the remaining events and close the file. The last event is the end of the last note, which is where the track ends.
+	 * @param ignored, the file is the one given to the constructor
+	 * @return the MIDI file, or null if it could not be written
+	 */
+	@Override
+	public File writeFile(String fileName)
+	{
+		if (output == null) return null;
+
+		flush(Long.MAX_VALUE);
+
+		if (output == null) return null;
+
+		closeOutput();
+
+		return midiFile;
+	}
+
+	/**
+	 * Replace the end of the track with events, followed by a new end of the track at the tick of the last event
+	 */
+	private void writeEvents(ByteArrayOutputStream events, long tick) throws IOException
+	{
+		events.write(0);
+		events.write(END_OF_TRACK);
+
+		output.seek(endOfTrackPosition);
+		output.write(events.toByteArray());
+
+		output.seek(TRACK_LENGTH_POSITION);
+		output.writeInt((int) (endOfTrackPosition + events.size() - TRACK_START_POSITION));
+
+		endOfTrackPosition += events.size() - END_OF_TRACK.length - 1;
+		lastWrittenTick = tick;
+	}
+
+	private void closeOutput()
+	{
+		if (output != null)
+		{
+			try
+			{
+				output.close();
+			}
+			catch (IOException e)
+			{
+				System.out.println(e.getMessage());
+			}
+
+			output = null;
+		}
+	}
+
+	/**
+	 * Write a number in the variable length format used for the times between MIDI events
+	 */
+	private static void writeVariableLengthQuantity(ByteArrayOutputStream stream, long value)
+	{
+		int groups = 1;
+
+		while (groups < 5 && (value >> (7 * groups)) > 0)
+		{
+			groups++;
+		}
+
+		for(int group = groups - 1; group > 0; group--)
+		{
+			stream.write((int) (((value >> (7 * group)) & 0x7F) | 0x80));
+		}
+
+		stream.write((int) (value & 0x7F));
+	}
+
+	/**
+	 * @param number of frames between writing the completed notes to the file
+	 */
+	public void setFlushInterval(int frames)
+	{
+		flushInterval = frames;
+	}
+
+	public int getFlushInterval()
+	{
+		return flushInterval;
+	}
+
+	private static class PendingEvent {
+		public MidiEvent event;
+		public long sequence;
+
+		public PendingEvent(MidiEvent event, long sequence)
+		{
+			this.event = event;
+			this.sequence = sequence;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package guitarvision;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import guitarvision.ChunkedTranscriber.ChunkResult;
+import guitarvision.sheetmusic.MusicNote;
+import guitarvision.sheetmusic.SheetMusic;
+
+import org.junit.Test;
+
+public class ChunkedTranscriberTest {
+	private MusicNote note(int pitch, int string, int start, Integer end)
+	{
+		MusicNote note = new MusicNote(pitch, 4, string, start);
+		note.setEndingFrame(end);
+		return note;
+	}
+
+	private ArrayList<MusicNote> heldNotes(MusicNote... notes)
+	{
+		ArrayList<MusicNote> held = new ArrayList<MusicNote>();
+		for(int x = 0; x < 6; x++)
+		{
+			held.add(null);
+		}
+		for(MusicNote note : notes)
+		{
+			held.set(note.string, note);
+		}
+		return held;
+	}
+
+	@Test
+	public void testHeldNoteMergedAcrossBoundary()
+	{
+		ArrayList<ChunkResult> results = new ArrayList<ChunkResult>();
+
+		ArrayList<MusicNote> chunk1Notes = new ArrayList<MusicNote>();
+		chunk1Notes.add(note(4, 0, 10, 20));
+		MusicNote heldNote = note(7, 2, 90, null);
+		results.add(new ChunkResult(0, chunk1Notes, heldNotes(heldNote), null));
+
+		//The string is still vibrating at the start of the second chunk, so the second chunk starts a new note there
+		ArrayList<MusicNote> chunk2Notes = new ArrayList<MusicNote>();
+		chunk2Notes.add(note(9, 2, 100, 130));
+		chunk2Notes.add(note(0, 1, 110, 120));
+		results.add(new ChunkResult(100, chunk2Notes, heldNotes(), null));
+
+		SheetMusic music = ChunkedTranscriber.stitchNotes(results, 2);
+
+		ArrayList<MusicNote> notes = music.getNotes();
+
+		assertEquals(3, notes.size());
+
+		assertEquals(10, (int) notes.get(0).startingFrame);
+
+		assertEquals(110, (int) notes.get(1).startingFrame);
+
+		//The merged note keeps the pitch it started with and finishes where the continuation finished
+		assertEquals(7, notes.get(2).note);
+		assertEquals(90, (int) notes.get(2).startingFrame);
+		assertEquals(130, (int) notes.get(2).getEndingFrame());
+
+		assertEquals(10, music.globalStartFrame);
+		assertEquals(5, music.framesPerTick);
+	}
+
+	@Test
+	public void testHeldNoteFinishedAtBoundary()
+	{
+		ArrayList<ChunkResult> results = new ArrayList<ChunkResult>();
+
+		results.add(new ChunkResult(0, new ArrayList<MusicNote>(), heldNotes(note(4, 5, 40, null)), null));
+
+		ArrayList<MusicNote> chunk2Notes = new ArrayList<MusicNote>();
+		chunk2Notes.add(note(2, 5, 60, 70));
+		results.add(new ChunkResult(50, chunk2Notes, heldNotes(note(11, 3, 95, null)), null));
+
+		ArrayList<MusicNote> notes = ChunkedTranscriber.stitchNotes(results, 4).getNotes();
+
+		assertEquals(2, notes.size());
+
+		assertEquals(40, (int) notes.get(0).startingFrame);
+		assertEquals(50, (int) notes.get(0).getEndingFrame());
+
+		assertEquals(60, (int) notes.get(1).startingFrame);
+	}
+}
@@ -0,0 +1,98 @@
+package guitarvision;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import guitarvision.detection.DetectedLine;
+import guitarvision.detection.GuitarString;
+import guitarvision.detection.NoteDetector;
+
+import org.junit.Test;
+
+public class DetectionCacheTest {
+	private VideoFrame createFrame(int frameNumber, Double timestamp, int numberOfFrets)
+	{
+		VideoFrame frame = new VideoFrame(frameNumber, null);
+
+		frame.videoFrameNumber = frameNumber * 2;
+		frame.timestamp = timestamp;
+
+		frame.guitarStrings = new ArrayList<GuitarString>();
+
+		for(int string = 0; string < 6; string++)
+		{
+			frame.guitarStrings.add(new GuitarString(2.0 + (string * 0.1), new DetectedLine(80.0 + (string * 8), 1.5)));
+		}
+
+		frame.guitarFrets = new ArrayList<DetectedLine>();
+
+		for(int fret = 0; fret < numberOfFrets; fret++)
+		{
+			frame.guitarFrets.add(new DetectedLine(100.0 + (fret * 30), 0.05));
+		}
+
+		return frame;
+	}
+
+	@Test
+	public void testFramesAreReadBack() throws Exception
+	{
+		File cacheFile = File.createTempFile("detections", ".cache");
+
+		try
+		{
+			DetectionCache cache = DetectionCache.createFile(cacheFile, 6, 8);
+
+			cache.writeFrame(createFrame(0, 0.0, 5), new long[] {0, 1, 3, 0, 0, 6});
+
+			//More frets than the cache stores, and no timestamp
+			cache.writeFrame(createFrame(1, null, 12), new long[] {0, 0, 0, 0, 0, 1L << 10});
+
+			cache.close();
+
+			DetectionCache readCache = DetectionCache.openFile(cacheFile);
+
+			assertEquals(2, readCache.getNumberOfFrames());
+
+			VideoFrame frame = readCache.readFrame(0);
+
+			assertEquals(0, frame.frameNumber);
+			assertEquals(0.0, frame.timestamp, 0);
+			assertEquals(6, frame.guitarStrings.size());
+			assertEquals(88.0, frame.guitarStrings.get(1).getRho(), 1e-4);
+			assertEquals(1.5, frame.guitarStrings.get(1).getTheta(), 1e-6);
+			assertEquals(2.1, frame.guitarStrings.get(1).thickness, 0);
+			assertEquals(5, frame.guitarFrets.size());
+			assertEquals(4, frame.skinSegments);
+			assertEquals(3, frame.skinOverlaps[2]);
+
+			frame = readCache.readFrame(1);
+
+			assertEquals(1, frame.frameNumber);
+			assertEquals(2, frame.videoFrameNumber);
+			assertNull(frame.timestamp);
+			assertEquals(8, frame.guitarFrets.size());
+			assertEquals(11, frame.skinSegments);
+			assertEquals(1L << 10, frame.skinOverlaps[5]);
+
+			readCache.close();
+		}
+		finally
+		{
+			cacheFile.delete();
+		}
+	}
+
+	@Test
+	public void testFretPlayingFromSkinOverlaps()
+	{
+		//The fret is the first segment after the hand
+		assertEquals(3, NoteDetector.getFretPlaying(0b0110, 10));
+		assertEquals(0, NoteDetector.getFretPlaying(0, 10));
+
+		//The hand reaches the end of the neck
+		assertEquals(0, NoteDetector.getFretPlaying(0b1100, 4));
+	}
+}
@@ -0,0 +1,71 @@
+package guitarvision;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import guitarvision.synthetic.SyntheticScene;
+import guitarvision.synthetic.SyntheticVideoGenerator;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+
+public class FramePipelineTest {
+	//Size of a MIDI file holding no notes
+	private static final int EMPTY_MIDI_LENGTH = 26;
+
+	@BeforeClass
+	public static void loadOpenCV()
+	{
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+	}
+
+	private File transcribe(File video, int numberOfFrames, File outputDirectory, ProcessingMode mode)
+	{
+		Engine engine = Engine.getInstance();
+		ProcessingMode previousMode = engine.getProcessingMode();
+
+		engine.setProcessingMode(mode);
+
+		outputDirectory.mkdirs();
+
+		try
+		{
+			OutputFileReferences output = engine.transcribeFromVideo(video, numberOfFrames, outputDirectory.getPath(), 4, false, false);
+
+			assertNotNull(output);
+			assertNotNull(output.getMidiFile());
+
+			return output.getMidiFile();
+		}
+		finally
+		{
+			engine.setProcessingMode(previousMode);
+		}
+	}
+
+	@Test
+	public void testPipelinedNotesMatchSequential() throws Exception
+	{
+		SyntheticScene scene = new SyntheticScene();
+		scene.numberOfFrames = 120;
+		scene.addRandomNotes(3, 7, 50);
+
+		File directory = Files.createTempDirectory("pipeline").toFile();
+
+		File video = new SyntheticVideoGenerator(scene).writeVideo(directory.getPath() + File.separator + "synthetic.avi");
+
+		int numberOfFrames = scene.numberOfFrames / VideoFrameSource.FRAME_STEP;
+
+		File sequentialMidi = transcribe(video, numberOfFrames, new File(directory, "sequential"), ProcessingMode.SEQUENTIAL);
+		File pipelinedMidi = transcribe(video, numberOfFrames, new File(directory, "pipelined"), ProcessingMode.PIPELINED);
+
+		//The MIDI files hold the notes and their timing, so the notes are the same if the files are
+		byte[] sequentialNotes = Files.readAllBytes(sequentialMidi.toPath());
+
+		assertTrue(sequentialNotes.length > EMPTY_MIDI_LENGTH);
+		assertArrayEquals(sequentialNotes, Files.readAllBytes(pipelinedMidi.toPath()));
+	}
+}
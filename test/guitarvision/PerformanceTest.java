@@ -9,7 +9,10 @@ import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 
 public class PerformanceTest {
 	String sampleVideoDirectory = "resources/video/";
@@ -106,6 +109,10 @@ public class PerformanceTest {
 		
 		writeOutput(MusicStatistics.tableHeader);
 		
+		List<TranscriptionJob> jobs = new ArrayList<TranscriptionJob>();
+		
+		HashMap<TranscriptionJob, File> manualTranscriptions = new HashMap<TranscriptionJob, File>();
+		
 		for(String directory : eachVideoDirectory)
 		{
 			File curDirectory = new File(sampleVideoDirectory + directory);
@@ -114,41 +121,54 @@ public class PerformanceTest {
 			
 			File outputPieceDirectory = getDirectoryFromPath(outputDirectory.getPath() + java.io.File.separator + directory);
 			
-			String[] eachVideoAddress = curDirectory.list(new FilenameFilter() {
-				
-				@Override
-				public boolean accept(File dir, String name) {
-					return (new File(dir, name)).isFile() && ((name.toLowerCase().endsWith(".mov")) || (name.toLowerCase().endsWith(".mp4")));
-				}
-			});
-			
-			for(String videoAddress : eachVideoAddress)
+			for(TranscriptionJob job : BatchTranscriber.getJobsForDirectory(curDirectory, outputPieceDirectory.getPath()))
 			{
-				boolean poorLighting = false;
-				if (videoAddress.contains("scene_poor_lighting"))
+				if (job.getVideoFile().getName().contains("scene_poor_lighting"))
 				{
-					poorLighting = true;
+					job.setPoorLighting(true);
 				}
-
-				String outputMidi = outputPieceDirectory.getPath();
-
-				File videoFile = new File(sampleVideoDirectory + directory + java.io.File.separator + videoAddress);
 				
-				OutputFileReferences files = Engine.getInstance().transcribeFromVideo(videoFile, 1000, outputMidi, 4, poorLighting, true);
+				job.setNumberFramesToProcess(1000);
+				job.setWriteAnnotatedVideo(true);
 				
-				File outputMIDIFile = files.getMidiFile();
+				jobs.add(job);
+				manualTranscriptions.put(job, correspondingMIDIFile);
+			}
+		}
+		
+		//Transcribe the videos in parallel, comparing each transcription as soon as it is complete
+		BatchTranscriber transcriber = new BatchTranscriber();
+		
+		transcriber.setListener(new BatchTranscriptionListener() {
+			@Override
+			public void jobProgress(TranscriptionJob job, int framesProcessed, int totalFrames, double framesPerSecond)
+			{
+			}
+			
+			@Override
+			public void jobFinished(TranscriptionJobResult result)
+			{
+				System.out.println(result.getJob().getVideoFile().getName() + ": " + result.getFramesProcessed() + " frames at " + result.getFramesPerSecond() + " frames/s");
+				
+				File outputMIDIFile = null;
+				
+				if (result.succeeded())
+				{
+					outputMIDIFile = result.getFiles().getMidiFile();
+				}
 				
 				if (!(outputMIDIFile == null))
 				{
-					compareMIDIFiles(correspondingMIDIFile, outputMIDIFile);
+					compareMIDIFiles(manualTranscriptions.get(result.getJob()), outputMIDIFile);
 				}
 				else
 				{
 					System.out.println("ERROR WITH GENERATED MIDI FILE");
 				}
-				
 			}
-		}
+		});
+		
+		transcriber.transcribe(jobs);
 		
 		try
 		{
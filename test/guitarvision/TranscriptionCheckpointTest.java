@@ -0,0 +1,164 @@
+package guitarvision;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import guitarvision.detection.DetectedLine;
+import guitarvision.detection.GuitarString;
+import guitarvision.detection.LineTracker;
+import guitarvision.sheetmusic.MusicNote;
+
+import org.junit.Test;
+
+public class TranscriptionCheckpointTest {
+	@Test
+	public void testCheckpointIsReadBack() throws Exception
+	{
+		TranscriptionCheckpoint checkpoint = new TranscriptionCheckpoint();
+
+		checkpoint.frameNumber = 120;
+
+		checkpoint.previousStrings = new ArrayList<GuitarString>();
+		checkpoint.previousStrings.add(new GuitarString(3.5, new DetectedLine(80.0, 1.5, 500)));
+		checkpoint.previousStrings.add(new GuitarString(2.5, new DetectedLine(88.0, 1.55, 500)));
+
+		checkpoint.previousFrets = new ArrayList<DetectedLine>();
+		checkpoint.previousFrets.add(new DetectedLine(300.0, 0.1, 400));
+
+		checkpoint.pluckInitialStrings = null;
+		checkpoint.firstFrame = false;
+		checkpoint.firstNote = false;
+
+		MusicNote heldNote = new MusicNote(4, 3, 1, 110);
+		heldNote.startingTime = 3666.0;
+
+		checkpoint.currentlyHeldNotes.add(null);
+		checkpoint.currentlyHeldNotes.add(heldNote);
+
+		MusicNote completedNote = new MusicNote(7, 2, 0, 40);
+		completedNote.setEndingFrame(48);
+
+		checkpoint.framesPerTick = 2;
+		checkpoint.globalStartFrame = 40;
+		checkpoint.notes.add(completedNote);
+
+		File checkpointFile = File.createTempFile("checkpoint", ".dat");
+
+		try
+		{
+			assertTrue(checkpoint.write(checkpointFile));
+
+			TranscriptionCheckpoint readCheckpoint = TranscriptionCheckpoint.read(checkpointFile);
+
+			assertEquals(120, readCheckpoint.frameNumber);
+
+			assertEquals(2, readCheckpoint.previousStrings.size());
+			assertEquals(88.0, readCheckpoint.previousStrings.get(1).getRho(), 0);
+			assertEquals(1.55, readCheckpoint.previousStrings.get(1).getTheta(), 0);
+			assertEquals(500, readCheckpoint.previousStrings.get(1).getLength());
+			assertEquals(2.5, readCheckpoint.previousStrings.get(1).thickness, 0);
+
+			assertEquals(1, readCheckpoint.previousFrets.size());
+			assertEquals(300.0, readCheckpoint.previousFrets.get(0).getRho(), 0);
+
+			assertNull(readCheckpoint.stringTracks);
+			assertNull(readCheckpoint.fretTracks);
+
+			assertNull(readCheckpoint.pluckInitialStrings);
+			assertFalse(readCheckpoint.firstFrame);
+			assertFalse(readCheckpoint.firstNote);
+
+			assertEquals(2, readCheckpoint.currentlyHeldNotes.size());
+			assertNull(readCheckpoint.currentlyHeldNotes.get(0));
+			assertEquals(1, readCheckpoint.currentlyHeldNotes.get(1).string);
+			assertEquals(3666.0, readCheckpoint.currentlyHeldNotes.get(1).startingTime, 0);
+			assertNull(readCheckpoint.currentlyHeldNotes.get(1).getEndingFrame());
+
+			assertEquals(2, readCheckpoint.framesPerTick);
+			assertEquals(40, readCheckpoint.globalStartFrame);
+			assertEquals(1, readCheckpoint.notes.size());
+			assertEquals(7, readCheckpoint.notes.get(0).note);
+			assertEquals(48, (int) readCheckpoint.notes.get(0).getEndingFrame());
+			assertFalse(readCheckpoint.notes.get(0).isTimed());
+		}
+		finally
+		{
+			checkpointFile.delete();
+		}
+	}
+
+	//Strings moving down the image by a pixel a frame
+	private ArrayList<DetectedLine> movingLines(int frame)
+	{
+		ArrayList<DetectedLine> lines = new ArrayList<DetectedLine>();
+
+		for(int line = 0; line < 6; line++)
+		{
+			lines.add(new DetectedLine(20.0 + (16 * line) + frame, 1.45 + (0.001 * frame), 400));
+		}
+
+		return lines;
+	}
+
+	@Test
+	public void testTracksAreResumed() throws Exception
+	{
+		LineTracker tracker = new LineTracker(6);
+
+		for(int frame = 0; frame < 30; frame++)
+		{
+			tracker.update(movingLines(frame));
+		}
+
+		tracker.predict();
+
+		TranscriptionCheckpoint checkpoint = new TranscriptionCheckpoint();
+		checkpoint.stringTracks = tracker.getState();
+
+		File checkpointFile = File.createTempFile("checkpoint", ".dat");
+
+		try
+		{
+			assertTrue(checkpoint.write(checkpointFile));
+
+			TranscriptionCheckpoint readCheckpoint = TranscriptionCheckpoint.read(checkpointFile);
+
+			assertNull(readCheckpoint.fretTracks);
+
+			LineTracker resumedTracker = new LineTracker(6);
+			resumedTracker.setState(readCheckpoint.stringTracks);
+
+			assertEquals(tracker.getConfidence(), resumedTracker.getConfidence(), 0);
+			assertTrue(resumedTracker.isTracking());
+
+			//The resumed tracker predicts and follows the lines as the tracker it was saved from would have
+			for(int frame = 31; frame < 40; frame++)
+			{
+				ArrayList<DetectedLine> expectedLines = (frame % 3 == 0) ? tracker.predict() : tracker.update(movingLines(frame));
+				ArrayList<DetectedLine> resumedLines = (frame % 3 == 0) ? resumedTracker.predict() : resumedTracker.update(movingLines(frame));
+
+				assertEquals(expectedLines.size(), resumedLines.size());
+
+				for(int line = 0; line < expectedLines.size(); line++)
+				{
+					assertEquals(expectedLines.get(line).getRho(), resumedLines.get(line).getRho(), 0);
+					assertEquals(expectedLines.get(line).getTheta(), resumedLines.get(line).getTheta(), 0);
+				}
+
+				assertEquals(tracker.getConfidence(), resumedTracker.getConfidence(), 0);
+			}
+		}
+		finally
+		{
+			checkpointFile.delete();
+		}
+	}
+
+	@Test
+	public void testMissingCheckpointIsNull()
+	{
+		assertNull(TranscriptionCheckpoint.read(new File("no_such_checkpoint.dat")));
+	}
+}
@@ -0,0 +1,118 @@
+package guitarvision.detection;
+
+import static org.junit.Assert.*;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.Point;
+
+public class DetectedLineTest {
+	@BeforeClass
+	public static void loadOpenCV()
+	{
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+	}
+
+	@Test
+	public void testCollisionWithVerticalLine()
+	{
+		//The lines y = 100 and x = 50
+		DetectedLine string = new DetectedLine(100.0, Math.PI / 2);
+		DetectedLine fret = new DetectedLine(50.0, 0.0);
+
+		Point point = string.getCollisionPoint(fret);
+
+		assertEquals(50, point.x, 1e-9);
+		assertEquals(100, point.y, 1e-9);
+
+		point = fret.getCollisionPoint(string);
+
+		assertEquals(50, point.x, 1e-9);
+		assertEquals(100, point.y, 1e-9);
+	}
+
+	@Test
+	public void testCollisionWithSlopedLine()
+	{
+		//The lines x + y = 100 and y = 20, crossing at (80, 20)
+		DetectedLine line = new DetectedLine(100 / Math.sqrt(2), Math.PI / 4);
+		DetectedLine otherLine = new DetectedLine(20.0, Math.PI / 2);
+
+		Point point = line.getCollisionPoint(otherLine);
+
+		assertEquals(80, point.x, 1e-9);
+		assertEquals(20, point.y, 1e-9);
+	}
+
+	@Test
+	public void testCollisionOfNearlyParallelLines()
+	{
+		//y = 100, and the line -x sin(0.001) + y cos(0.001) = 100, which cross at x = -100 tan(0.0005)
+		DetectedLine line = new DetectedLine(100.0, Math.PI / 2);
+		DetectedLine otherLine = new DetectedLine(100.0, (Math.PI / 2) + 0.001);
+
+		Point point = line.getCollisionPoint(otherLine);
+
+		assertEquals(-100 * Math.tan(0.0005), point.x, 1e-9);
+		assertEquals(100, point.y, 1e-9);
+
+		assertNull(line.getCollisionPoint(new DetectedLine(200.0, Math.PI / 2)));
+	}
+
+	@Test
+	public void testCollisionDoesNotUseRoundedEndPoints()
+	{
+		//A fret 0.0002 radians from vertical, whose rounded end points have the same x coordinate,
+		//so the gradient between them is infinite
+		DetectedLine fret = new DetectedLine(50.0, 0.0002);
+		DetectedLine string = new DetectedLine(100.0, Math.PI / 2);
+
+		assertEquals(fret.getPoint1().x, fret.getPoint2().x, 0);
+
+		//x cos(theta) + 100 sin(theta) = 50
+		Point point = string.getCollisionPoint(fret);
+
+		assertEquals((50 - (100 * Math.sin(0.0002))) / Math.cos(0.0002), point.x, 1e-9);
+		assertEquals(100, point.y, 1e-9);
+
+		//A string crossing at a fraction of a pixel, which rounding the end points would move
+		DetectedLine slopedString = new DetectedLine(100.3, 1.4);
+
+		point = slopedString.getCollisionPoint(new DetectedLine(50.0, 0.0));
+
+		assertEquals(50, point.x, 1e-9);
+		assertEquals((100.3 - (50 * Math.cos(1.4))) / Math.sin(1.4), point.y, 1e-9);
+	}
+
+	@Test
+	public void testWarpToVerticalLine()
+	{
+		//Perspective transform dividing by 1 + x / 1000, which keeps x = 100 vertical at x = 100 / 1.1
+		double[] warp = {1, 0, 0, 0, 1, 0, 0.001, 0, 1};
+
+		DetectedLine fret = new DetectedLine(100.0, 0.0);
+		fret.applyWarp(warp);
+
+		assertEquals(0, fret.getTheta(), 1e-12);
+		assertEquals(100 / 1.1, fret.getRho(), 1e-9);
+	}
+
+	@Test
+	public void testWarpOfSlopedLine()
+	{
+		//Scaling x + y = 10 sqrt(2) by two gives x + y = 20 sqrt(2)
+		DetectedLine line = new DetectedLine(10.0, Math.PI / 4);
+		line.applyWarp(new double[] {2, 0, 0, 0, 2, 0, 0, 0, 1});
+
+		assertEquals(Math.PI / 4, line.getTheta(), 1e-9);
+		assertEquals(20, line.getRho(), 1e-9);
+
+		//Moving y = 100 by (10, 20) gives y = 120
+		line = new DetectedLine(100.0, Math.PI / 2);
+		line.applyWarp(new double[] {1, 0, 10, 0, 1, 20, 0, 0, 1});
+
+		assertEquals(Math.PI / 2, Math.abs(line.getTheta()), 1e-9);
+		assertEquals(120, line.getRho(), 1e-9);
+	}
+}
@@ -0,0 +1,294 @@
+package guitarvision.detection;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+public class EdgeDetectorTest {
+	@BeforeClass
+	public static void loadOpenCV()
+	{
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+	}
+
+	//The edge detection used by EdgeDetector.getEdges before it kept its own buffers
+	private Mat referenceEdges(Mat image)
+	{
+		Mat blurredImage = new Mat();
+		Imgproc.GaussianBlur(image, blurredImage, new Size(3, 3), 1);
+
+		Mat edges = new Mat();
+		Imgproc.Canny(blurredImage, edges, 0, 70);
+
+		return edges;
+	}
+
+	private Mat randomImage(int rows, int cols)
+	{
+		Mat image = new Mat(rows, cols, CvType.CV_8UC3);
+		Core.setRNGSeed(50);
+		Core.randu(image, 0, 256);
+		Imgproc.GaussianBlur(image, image, new Size(9, 9), 3);
+		return image;
+	}
+
+	private boolean equal(Mat first, Mat second)
+	{
+		if (!first.size().equals(second.size())) return false;
+
+		Mat difference = new Mat();
+		Core.absdiff(first, second, difference);
+
+		return Core.countNonZero(difference) == 0;
+	}
+
+	@Test
+	public void testBuffersGiveSameEdges()
+	{
+		Mat image = randomImage(120, 160);
+
+		EdgeDetector detector = new EdgeDetector(new Size(200, 150));
+		detector.setCannyUpperThreshold(70);
+
+		Mat edges = detector.getEdges(image);
+
+		assertTrue(equal(referenceEdges(image), edges));
+
+		long bufferAddress = edges.dataAddr();
+
+		//A region of the image is written into the same buffer, and blurred using the pixels around it
+		Mat region = image.submat(30, 70, 0, 160);
+
+		Mat regionEdges = detector.getEdges(region);
+
+		assertEquals(40, regionEdges.rows());
+		assertTrue(equal(referenceEdges(region), regionEdges));
+		assertEquals(bufferAddress, regionEdges.dataAddr());
+
+		//Larger images grow the buffers
+		Mat largeImage = randomImage(300, 400);
+
+		assertTrue(equal(referenceEdges(largeImage), detector.getEdges(largeImage)));
+	}
+
+	@Test
+	public void testCallerSuppliedMats()
+	{
+		Mat image = randomImage(60, 80);
+
+		EdgeDetector detector = new EdgeDetector();
+		detector.setCannyUpperThreshold(70);
+
+		Mat blurredImage = new Mat();
+		Mat edges = new Mat();
+
+		assertSame(edges, detector.getEdges(image, blurredImage, edges));
+		assertTrue(equal(referenceEdges(image), edges));
+
+		Mat lines = new Mat();
+		detector.setHoughThreshold(20);
+
+		assertSame(lines, detector.houghTransform(edges, lines));
+	}
+
+	//Edges of a horizontal line at y = 50 and a vertical line at x = 120
+	private Mat crossingLineEdges()
+	{
+		Mat edges = Mat.zeros(200, 200, CvType.CV_8UC1);
+
+		Imgproc.line(edges, new Point(0, 50), new Point(199, 50), new Scalar(255));
+		Imgproc.line(edges, new Point(120, 0), new Point(120, 199), new Scalar(255));
+
+		return edges;
+	}
+
+	//Whether the lines contain one within a distance of the given line, where theta of 0 and PI are the same line with opposite rho
+	private boolean containsLine(LineSet lines, double rho, double theta)
+	{
+		for(int index = 0; index < lines.size; index++)
+		{
+			double lineRho = lines.rho[index];
+			double lineTheta = lines.theta[index];
+
+			if (lineTheta > Math.PI / 2 && theta < Math.PI / 4)
+			{
+				lineRho = -lineRho;
+				lineTheta -= Math.PI;
+			}
+
+			if (Math.abs(lineRho - rho) <= 2 && Math.abs(lineTheta - theta) <= 0.02) return true;
+		}
+
+		return false;
+	}
+
+	@Test
+	public void testAngleWindow()
+	{
+		Mat edges = crossingLineEdges();
+
+		EdgeDetector detector = new EdgeDetector();
+		detector.setHoughThreshold(150);
+
+		LineSet horizontalLines = detector.houghTransform(edges, (Math.PI / 2) - 0.2, (Math.PI / 2) + 0.2);
+
+		assertTrue(containsLine(horizontalLines, 50, Math.PI / 2));
+		assertFalse(containsLine(horizontalLines, 120, 0));
+
+		for(int index = 0; index < horizontalLines.size; index++)
+		{
+			assertEquals(Math.PI / 2, horizontalLines.theta[index], 0.21);
+		}
+
+		//The window around vertical wraps around to the angles just below PI
+		LineSet verticalLines = detector.houghTransform(edges, -0.2, 0.2);
+
+		assertTrue(containsLine(verticalLines, 120, 0));
+		assertFalse(containsLine(verticalLines, 50, Math.PI / 2));
+
+		//A window of every angle is the full transform
+		LineSet allLines = detector.houghTransform(edges, 0, Math.PI);
+
+		assertEquals(detector.houghTransform(edges).rows(), allLines.size);
+	}
+
+	@Test
+	public void testSegments()
+	{
+		Mat edges = crossingLineEdges();
+
+		EdgeDetector detector = new EdgeDetector();
+		detector.setHoughThreshold(50);
+
+		LineSet lines = detector.houghSegments(edges, 100, 5);
+
+		assertTrue(containsLine(lines, 50, Math.PI / 2));
+		assertTrue(containsLine(lines, 120, 0));
+
+		for(int index = 0; index < lines.size; index++)
+		{
+			assertTrue(lines.theta[index] >= 0 && lines.theta[index] < Math.PI);
+		}
+
+		assertEquals(0, detector.houghSegments(edges, 250, 5).size);
+	}
+
+	@Test
+	public void testCoarseDetector()
+	{
+		Mat image = randomImage(120, 160);
+
+		EdgeDetector detector = new EdgeDetector();
+		detector.setCannyUpperThreshold(70);
+		detector.setHoughThreshold(300);
+
+		Mat edges = detector.getEdges(image);
+
+		EdgeDetector coarseDetector = detector.getCoarseDetector(2);
+
+		assertSame(coarseDetector, detector.getCoarseDetector(2));
+
+		//The coarse detector has its own buffers, so the edges of the full image are kept
+		Mat coarseEdges = coarseDetector.getEdges(image, 2);
+
+		assertEquals(60, coarseEdges.rows());
+		assertEquals(80, coarseEdges.cols());
+		assertTrue(equal(referenceEdges(image), edges));
+
+		Mat shrunkImage = new Mat();
+		Imgproc.resize(image, shrunkImage, new Size(80, 60), 0, 0, Imgproc.INTER_AREA);
+
+		assertTrue(equal(referenceEdges(shrunkImage), coarseEdges));
+
+		//Lines found in the shrunk image are moved to the coordinates of the full image
+		LineSet lines = new LineSet(1);
+		lines.rho[0] = 25;
+		lines.scale(2);
+
+		assertEquals(50, lines.rho[0], 0);
+	}
+
+	//Edges a region should have, detected with the four pixels around it that EdgeDetector reads
+	private Mat referenceRegionEdges(Mat image, Rect region)
+	{
+		int left = Math.max(0, region.x - 4);
+		int top = Math.max(0, region.y - 4);
+		int right = Math.min(image.cols(), region.x + region.width + 4);
+		int bottom = Math.min(image.rows(), region.y + region.height + 4);
+
+		Mat edges = referenceEdges(image.submat(top, bottom, left, right));
+
+		return edges.submat(region.y - top, region.y - top + region.height, region.x - left, region.x - left + region.width);
+	}
+
+	@Test
+	public void testEdgesInRegions()
+	{
+		Mat image = randomImage(120, 160);
+
+		EdgeDetector detector = new EdgeDetector();
+		detector.setCannyUpperThreshold(70);
+
+		ArrayList<Rect> regions = new ArrayList<Rect>();
+		regions.add(new Rect(0, 0, 40, 120));
+		regions.add(new Rect(60, 30, 50, 40));
+
+		Mat edges = detector.getEdgesInRegions(image, regions);
+
+		assertEquals(image.size(), edges.size());
+
+		int edgesInRegions = 0;
+
+		for(Rect region : regions)
+		{
+			assertTrue(equal(referenceRegionEdges(image, region), edges.submat(region)));
+
+			edgesInRegions += Core.countNonZero(edges.submat(region));
+		}
+
+		assertTrue(edgesInRegions > 0);
+		assertEquals(edgesInRegions, Core.countNonZero(edges));
+
+		//Overlapping ranges of columns are joined, and ranges outside of the image are cut to it
+		edges = detector.getEdgesInColumns(image, new int[] {30, 10, -5}, new int[] {50, 35, 5});
+
+		assertTrue(equal(referenceRegionEdges(image, new Rect(0, 0, 5, 120)), edges.colRange(0, 5)));
+		assertTrue(equal(referenceRegionEdges(image, new Rect(10, 0, 40, 120)), edges.colRange(10, 50)));
+		assertEquals(0, Core.countNonZero(edges.colRange(5, 10)));
+		assertEquals(0, Core.countNonZero(edges.colRange(50, 160)));
+	}
+
+	@Test
+	public void testRemoveEdgesOutsidePolygon()
+	{
+		EdgeDetector detector = new EdgeDetector();
+
+		Point[] corners = new Point[] {new Point(0, 10), new Point(59, 0), new Point(59, 20), new Point(0, 30)};
+
+		Mat expected = Mat.zeros(40, 60, CvType.CV_8UC1);
+		Imgproc.fillConvexPoly(expected, new MatOfPoint(corners), new Scalar(255));
+
+		//The mask is kept between calls, so smaller edge images use part of it
+		for(int rows : new int[] {80, 40})
+		{
+			Mat edges = new Mat(rows, 60, CvType.CV_8UC1, new Scalar(255));
+
+			detector.removeEdgesOutsidePolygon(edges, corners);
+
+			assertTrue(equal(expected, edges.rowRange(0, 40)));
+			assertEquals(0, Core.countNonZero(edges.rowRange(40, rows)));
+		}
+	}
+}
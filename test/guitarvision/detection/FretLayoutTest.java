@@ -0,0 +1,132 @@
+package guitarvision.detection;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class FretLayoutTest {
+	private static final int WIDTH = 960;
+	private static final int HEIGHT = 135;
+
+	//Position of fret n on a neck with the nut at nutPosition, seen with perspective x = (a u + b) / (c u + 1)
+	private double getFretPosition(int fret, double scale, double nutPosition, double perspective)
+	{
+		double u = 1 - Math.pow(2, -fret / 12.0);
+
+		return ((scale * u) + nutPosition) / ((perspective * u) + 1);
+	}
+
+	//Vertical line through a position, given as the Hough transform gives it
+	private DetectedLine createLine(double position)
+	{
+		return new DetectedLine(position, 0.0);
+	}
+
+	@Test
+	public void testMissingFretsArePlaced()
+	{
+		ArrayList<DetectedLine> lines = new ArrayList<DetectedLine>();
+
+		//Nut on the right, with frets 3 and 7 not found, a pixel of error in the positions, and two lines that are not frets
+		for(int fret = 0; fret <= 12; fret++)
+		{
+			if (fret == 3 || fret == 7) continue;
+
+			lines.add(createLine(getFretPosition(fret, -1400, 900, 0) + ((fret % 2 == 0) ? 1 : -1)));
+		}
+
+		lines.add(createLine(getFretPosition(4, -1400, 900, 0) + 20));
+		lines.add(createLine(72));
+
+		FretLayout layout = FretLayout.fit(lines, 0.2, WIDTH, HEIGHT, 13);
+
+		assertNotNull(layout);
+		assertEquals(11, layout.getNumberOfInliers());
+
+		ArrayList<DetectedLine> frets = layout.getFrets();
+
+		assertEquals(13, frets.size());
+
+		//The frets are in order of rho, so the nut is last
+		for(int fret = 0; fret <= 12; fret++)
+		{
+			assertEquals(getFretPosition(fret, -1400, 900, 0), frets.get(12 - fret).getRho(), 1.5);
+		}
+
+		assertEquals(900, layout.getNutPosition(), 1.5);
+	}
+
+	@Test
+	public void testPerspectiveIsFitted()
+	{
+		ArrayList<DetectedLine> lines = new ArrayList<DetectedLine>();
+
+		//Nut on the left, with the far end of the neck further from the camera
+		for(int fret = 0; fret <= 14; fret++)
+		{
+			if (fret == 9) continue;
+
+			lines.add(createLine(getFretPosition(fret, 1500, 40, 0.4)));
+		}
+
+		FretLayout layout = FretLayout.fit(lines, 0.2, WIDTH, HEIGHT, 20);
+
+		assertNotNull(layout);
+
+		ArrayList<DetectedLine> frets = layout.getFrets();
+
+		//Frets are placed up to the edge of the image
+		assertTrue(frets.size() > 15);
+
+		for(int fret = 0; fret < frets.size(); fret++)
+		{
+			assertEquals(getFretPosition(fret, 1500, 40, 0.4), frets.get(fret).getRho(), 0.5);
+		}
+	}
+
+	@Test
+	public void testTooFewLinesAreNotFitted()
+	{
+		ArrayList<DetectedLine> lines = new ArrayList<DetectedLine>();
+
+		lines.add(createLine(100));
+		lines.add(createLine(200));
+		lines.add(createLine(290));
+
+		assertNull(FretLayout.fit(lines, 0.2, WIDTH, HEIGHT, 20));
+	}
+
+	@Test
+	public void testSupportFromEdges()
+	{
+		ArrayList<DetectedLine> lines = new ArrayList<DetectedLine>();
+
+		for(int fret = 0; fret <= 8; fret++)
+		{
+			lines.add(createLine(getFretPosition(fret, -1400, 900, 0)));
+		}
+
+		FretLayout layout = FretLayout.fit(lines, 0.2, WIDTH, HEIGHT, 9);
+
+		assertNotNull(layout);
+
+		byte[] edges = new byte[WIDTH * HEIGHT];
+
+		assertEquals(0, layout.getSupport(edges, WIDTH, HEIGHT), 0);
+
+		//Draw the edge of each fret a pixel to the side of it
+		for(DetectedLine fret : layout.getFrets())
+		{
+			int column = (int) Math.round(fret.getRho()) + 1;
+
+			for(int row = 0; row < HEIGHT; row++)
+			{
+				edges[(row * WIDTH) + column] = (byte) 255;
+			}
+		}
+
+		assertEquals(1, layout.getSupport(edges, WIDTH, HEIGHT), 0);
+	}
+}
@@ -0,0 +1,102 @@
+package guitarvision.detection;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LineClustererTest {
+	private double getClusteringCost(double[] values, int[] labels, int noGroups)
+	{
+		double[] sums = new double[noGroups];
+		int[] counts = new int[noGroups];
+
+		for(int index = 0; index < values.length; index++)
+		{
+			sums[labels[index]] += values[index];
+			counts[labels[index]]++;
+		}
+
+		double cost = 0;
+
+		for(int index = 0; index < values.length; index++)
+		{
+			double difference = values[index] - (sums[labels[index]] / counts[labels[index]]);
+			cost += difference * difference;
+		}
+
+		return cost;
+	}
+
+	//Try every assignment of values to groups where no group is empty
+	private double getBruteForceCost(double[] values, int noGroups)
+	{
+		int[] labels = new int[values.length];
+		double bestCost = Double.POSITIVE_INFINITY;
+
+		int assignments = (int) Math.pow(noGroups, values.length);
+
+		for(int assignment = 0; assignment < assignments; assignment++)
+		{
+			int remaining = assignment;
+			boolean[] used = new boolean[noGroups];
+
+			for(int index = 0; index < values.length; index++)
+			{
+				labels[index] = remaining % noGroups;
+				used[labels[index]] = true;
+				remaining /= noGroups;
+			}
+
+			boolean allUsed = true;
+			for(boolean groupUsed : used)
+			{
+				allUsed &= groupUsed;
+			}
+
+			if (allUsed)
+			{
+				bestCost = Math.min(bestCost, getClusteringCost(values, labels, noGroups));
+			}
+		}
+
+		return bestCost;
+	}
+
+	@Test
+	public void testClusteringIsOptimal()
+	{
+		Random random = new Random(7);
+
+		for(int trial = 0; trial < 300; trial++)
+		{
+			int n = 1 + random.nextInt(8);
+			int noGroups = 1 + random.nextInt(Math.min(n, 4));
+
+			double[] values = new double[n];
+			for(int index = 0; index < n; index++)
+			{
+				//Round some values to force ties
+				values[index] = (trial % 2 == 0) ? random.nextInt(5) : random.nextDouble() * 100;
+			}
+
+			int[] labels = LineClusterer.getClusterLabels(values, noGroups);
+
+			double cost = getClusteringCost(values, labels, noGroups);
+			double bestCost = getBruteForceCost(values, noGroups);
+
+			assertEquals(bestCost, cost, 1e-6);
+		}
+	}
+
+	@Test
+	public void testGroupsAreInOrderOfValue()
+	{
+		double[] values = new double[] {300, 10, 305, 12, 150, 11, 148};
+
+		int[] labels = LineClusterer.getClusterLabels(values, 3);
+
+		assertArrayEquals(new int[] {2, 0, 2, 0, 1, 0, 1}, labels);
+	}
+}
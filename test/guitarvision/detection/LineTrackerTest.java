@@ -0,0 +1,169 @@
+package guitarvision.detection;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class LineTrackerTest {
+	//Horizontal lines at the given rhos, moved on by an offset
+	private ArrayList<DetectedLine> createLines(double[] rhos, double offset)
+	{
+		ArrayList<DetectedLine> lines = new ArrayList<DetectedLine>();
+
+		for(double rho : rhos)
+		{
+			lines.add(new DetectedLine(rho + offset, Math.PI / 2));
+		}
+
+		return lines;
+	}
+
+	@Test
+	public void testMovingLinesAreFollowed()
+	{
+		double[] rhos = {20, 40, 60, 80, 100, 120};
+
+		LineTracker tracker = new LineTracker(6);
+
+		//Lines moving by a pixel each frame
+		for(int frame = 0; frame < 200; frame++)
+		{
+			tracker.update(createLines(rhos, frame));
+		}
+
+		assertTrue(tracker.isTracking());
+		assertTrue(tracker.getConfidence() > 0.9);
+
+		ArrayList<DetectedLine> predicted = tracker.getPredictedLines();
+
+		assertEquals(6, predicted.size());
+
+		for(int line = 0; line < rhos.length; line++)
+		{
+			assertEquals(rhos[line] + 200, predicted.get(line).getRho(), 0.5);
+		}
+	}
+
+	@Test
+	public void testMissingLineCoasts()
+	{
+		double[] rhos = {20, 40, 60, 80, 100, 120};
+		double[] missingRhos = {20, 40, 80, 100, 120};
+
+		LineTracker tracker = new LineTracker(6);
+
+		for(int frame = 0; frame < 20; frame++)
+		{
+			tracker.update(createLines(rhos, 0));
+		}
+
+		double confidence = tracker.getConfidence();
+
+		ArrayList<DetectedLine> lines = tracker.update(createLines(missingRhos, 0));
+
+		//The line not detected keeps its place, but the tracker is less sure of the lines
+		assertEquals(6, lines.size());
+		assertEquals(60, lines.get(2).getRho(), 0.01);
+		assertTrue(tracker.getConfidence() < confidence);
+	}
+
+	@Test
+	public void testConfidenceDecaysWhenPredicting()
+	{
+		LineTracker tracker = new LineTracker(2);
+
+		assertFalse(tracker.isTracking());
+
+		//Too few lines to start tracking
+		tracker.update(createLines(new double[] {50}, 0));
+
+		assertFalse(tracker.hasTracks());
+
+		for(int frame = 0; frame < 10; frame++)
+		{
+			tracker.update(createLines(new double[] {50, 90}, 0));
+		}
+
+		double confidence = tracker.getConfidence();
+
+		tracker.predict();
+
+		assertEquals(confidence * tracker.getConfidenceDecay(), tracker.getConfidence(), 1e-9);
+
+		tracker.reset();
+
+		assertFalse(tracker.hasTracks());
+		assertEquals(0, tracker.getConfidence(), 0);
+	}
+
+	@Test
+	public void testStationaryLinesKeepDetectedPositions()
+	{
+		double[] rhos = {20, 36, 52, 68, 84, 100};
+		double theta = 1.45;
+
+		LineTracker tracker = new LineTracker(6);
+
+		//Lines which do not move, detected half a pixel and a thousandth of a radian either side of where they are
+		for(int frame = 0; frame < 200; frame++)
+		{
+			double rhoNoise = (frame % 2 == 0) ? 0.5 : -0.5;
+			double thetaNoise = (frame % 3 == 0) ? 0.001 : -0.001;
+
+			ArrayList<DetectedLine> detected = new ArrayList<DetectedLine>();
+
+			for(double rho : rhos)
+			{
+				detected.add(new DetectedLine(rho + rhoNoise, theta + thetaNoise));
+			}
+
+			ArrayList<DetectedLine> lines = tracker.update(detected);
+
+			assertEquals(rhos.length, lines.size());
+
+			//Lines matched to tracks are the lines detected, rather than moved towards the tracks
+			for(int line = 0; line < rhos.length; line++)
+			{
+				assertEquals(rhos[line] + rhoNoise, lines.get(line).getRho(), 1e-9);
+				assertEquals(theta + thetaNoise, lines.get(line).getTheta(), 1e-9);
+			}
+		}
+
+		assertTrue(tracker.isTracking());
+
+		//The noise does not build up a velocity that moves the predicted lines away
+		ArrayList<DetectedLine> predicted = tracker.getPredictedLines();
+
+		for(int line = 0; line < rhos.length; line++)
+		{
+			assertEquals(rhos[line], predicted.get(line).getRho(), 1);
+			assertEquals(theta, predicted.get(line).getTheta(), 0.005);
+		}
+	}
+
+	@Test
+	public void testTracksDoNotTakeNeighbouringLines()
+	{
+		double[] rhos = {20, 36, 52, 68, 84, 100};
+
+		LineTracker tracker = new LineTracker(6);
+
+		for(int frame = 0; frame < 20; frame++)
+		{
+			tracker.update(createLines(rhos, 0));
+		}
+
+		//The first line is missed and a spurious line is found between the next two, which is
+		//within the match distance of both of them but nearer to neither than to the other
+		ArrayList<DetectedLine> lines = tracker.update(createLines(new double[] {36, 44, 68, 84, 100}, 0));
+
+		assertEquals(6, lines.size());
+
+		for(int line = 0; line < rhos.length; line++)
+		{
+			assertEquals(rhos[line], lines.get(line).getRho(), 1e-9);
+		}
+	}
+}
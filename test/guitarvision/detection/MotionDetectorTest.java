@@ -0,0 +1,117 @@
+package guitarvision.detection;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+public class MotionDetectorTest {
+	@BeforeClass
+	public static void loadOpenCV()
+	{
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+	}
+
+	private Mat randomImage(int rows, int cols)
+	{
+		Mat image = new Mat(rows, cols, CvType.CV_8UC3);
+		Core.setRNGSeed(50);
+		Core.randu(image, 0, 256);
+		Imgproc.GaussianBlur(image, image, new Size(9, 9), 3);
+		return image;
+	}
+
+	//Six horizontal strings across the middle of the image
+	private ArrayList<GuitarString> horizontalStrings()
+	{
+		ArrayList<GuitarString> strings = new ArrayList<GuitarString>();
+
+		for(int string = 0; string < 6; string++)
+		{
+			strings.add(new GuitarString(0, new DetectedLine(80.0 + (string * 8), Math.PI / 2)));
+		}
+
+		return strings;
+	}
+
+	@Test
+	public void testStillFrameHasNotMoved()
+	{
+		Mat image = randomImage(200, 320);
+
+		MotionDetector detector = new MotionDetector();
+
+		assertTrue(detector.hasMoved(image, null));
+
+		detector.setReference(image, horizontalStrings(), null);
+
+		assertEquals(0, detector.getMotion(image, null), 0);
+		assertFalse(detector.hasMoved(image, null));
+	}
+
+	@Test
+	public void testShiftedFrameHasMoved()
+	{
+		Mat image = randomImage(200, 320);
+
+		MotionDetector detector = new MotionDetector();
+		detector.setReference(image, horizontalStrings(), null);
+
+		//Move the image down by a string spacing
+		Mat shiftedImage = Mat.zeros(image.size(), image.type());
+		image.submat(0, 192, 0, 320).copyTo(shiftedImage.submat(8, 200, 0, 320));
+
+		assertTrue(detector.getMotion(shiftedImage, null) > detector.getMotionThreshold());
+		assertTrue(detector.hasMoved(shiftedImage, null));
+	}
+
+	@Test
+	public void testSkinIsNotMotion()
+	{
+		Mat image = randomImage(200, 320);
+
+		MotionDetector detector = new MotionDetector();
+		detector.setReference(image, horizontalStrings(), null);
+
+		//A hand covering part of the neck
+		Rect hand = new Rect(100, 70, 60, 60);
+
+		Mat handImage = image.clone();
+		handImage.submat(hand).setTo(new Scalar(120, 150, 200));
+
+		Mat skinImage = Mat.zeros(image.size(), image.type());
+		skinImage.submat(hand).setTo(new Scalar(255, 255, 255));
+
+		SkinMask skin = new SkinMask(skinImage);
+
+		assertTrue(detector.getMotion(handImage, null) > 0);
+		assertEquals(0, detector.getMotion(handImage, skin), 0);
+		assertFalse(detector.hasMoved(handImage, skin));
+	}
+
+	@Test
+	public void testDetectedAgainAfterMaximumFrames()
+	{
+		Mat image = randomImage(200, 320);
+
+		MotionDetector detector = new MotionDetector();
+		detector.setMaximumFramesWithoutDetection(3);
+		detector.setReference(image, horizontalStrings(), null);
+
+		for(int frame = 0; frame < 3; frame++)
+		{
+			assertFalse(detector.hasMoved(image, null));
+		}
+
+		assertTrue(detector.hasMoved(image, null));
+	}
+}
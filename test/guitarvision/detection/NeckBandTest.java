@@ -0,0 +1,63 @@
+package guitarvision.detection;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+
+public class NeckBandTest {
+	@Test
+	public void testBandAroundHorizontalStrings()
+	{
+		ArrayList<GuitarString> strings = new ArrayList<GuitarString>();
+
+		//Given out of order, as the band is between the outer strings
+		for(double rho : new double[] {120, 100, 140})
+		{
+			strings.add(new GuitarString(0, new DetectedLine(rho, Math.PI / 2)));
+		}
+
+		NeckBand band = NeckBand.fromStrings(strings, 0.5, 200, 300);
+
+		//The rows are rounded outwards, so a row either side of the band may be included
+		Rect bounds = band.getBounds();
+
+		assertEquals(0, bounds.x);
+		assertEquals(200, bounds.width);
+		assertEquals(80, bounds.y, 1);
+		assertEquals(160, bounds.y + bounds.height, 1);
+
+		Point[] corners = band.getCorners();
+
+		assertEquals(4, corners.length);
+		assertEquals(80, corners[0].y, 1e-9);
+		assertEquals(200, corners[1].x, 1e-9);
+		assertEquals(160, corners[2].y, 1e-9);
+		assertEquals(0, corners[3].x, 1e-9);
+
+		//Moving the corners given does not move the band
+		corners[0].y = 0;
+
+		assertEquals(80, band.getCorners()[0].y, 1e-9);
+
+		//The band is cut to the image
+		bounds = NeckBand.fromStrings(strings, 0.5, 200, 150).getBounds();
+
+		assertEquals(150, bounds.y + bounds.height);
+	}
+
+	@Test
+	public void testNoBandForVerticalStrings()
+	{
+		ArrayList<GuitarString> strings = new ArrayList<GuitarString>();
+		strings.add(new GuitarString(0, new DetectedLine(100.0, 0.0)));
+		strings.add(new GuitarString(0, new DetectedLine(140.0, 0.0)));
+
+		assertNull(NeckBand.fromStrings(strings, 0.5, 200, 300));
+
+		assertNull(NeckBand.fromStrings(new ArrayList<GuitarString>(strings.subList(0, 1)), 0.5, 200, 300));
+	}
+}
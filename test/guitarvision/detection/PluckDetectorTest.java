@@ -0,0 +1,149 @@
+package guitarvision.detection;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import guitarvision.Engine;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+public class PluckDetectorTest {
+	@BeforeClass
+	public static void loadOpenCV()
+	{
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+	}
+
+	//The thickness measurement used before the bulk pixel copy, which thresholded and measured the string image pixel by pixel
+	private Double referenceThickness(Mat image)
+	{
+		Mat greyImage = new Mat();
+		Imgproc.cvtColor(image, greyImage, Imgproc.COLOR_RGB2GRAY);
+
+		Mat sobelOutput = new Mat();
+		Imgproc.Sobel(greyImage, sobelOutput, CvType.CV_8UC1, 0, 1);
+		Imgproc.dilate(sobelOutput, sobelOutput, Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(5,5)));
+
+		byte[] pixels = new byte[(int) sobelOutput.total()];
+		sobelOutput.get(0, 0, pixels);
+
+		for(int index = 0; index < pixels.length; index++)
+		{
+			pixels[index] = ((pixels[index] & 0xFF) > 10) ? (byte) 255 : 0;
+		}
+
+		greyImage.put(0, 0, pixels);
+
+		Imgproc.erode(greyImage, greyImage, Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(8,8)));
+
+		List<MatOfPoint> contours = new ArrayList<MatOfPoint>();
+		Imgproc.findContours(greyImage, contours, new Mat(), Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
+
+		double maxPerim = 0;
+		MatOfPoint maxContour = null;
+		for(MatOfPoint contour : contours)
+		{
+			double perim = Imgproc.contourArea(contour);
+			if (perim > maxPerim)
+			{
+				maxPerim = perim;
+				maxContour = contour;
+			}
+		}
+
+		if (maxContour == null) return 0.0;
+
+		Mat contourImage = Mat.zeros(greyImage.size(), greyImage.type());
+
+		ArrayList<MatOfPoint> contoursToDraw = new ArrayList<MatOfPoint>();
+		contoursToDraw.add(maxContour);
+		Imgproc.drawContours(contourImage, contoursToDraw, -1, new Scalar(150,150,150));
+
+		contourImage.get(0, 0, pixels);
+
+		int count = 0;
+		int thicknessTotal = 0;
+		for(int x = 0; x < contourImage.cols(); x++)
+		{
+			int minPoint = contourImage.rows() - 1;
+			int maxPoint = 0;
+			boolean anyPoints = false;
+			for(int y = 0; y < contourImage.rows(); y++)
+			{
+				if (pixels[(y * contourImage.cols()) + x] != 0)
+				{
+					if (y < minPoint) minPoint = y;
+					if (y > maxPoint) maxPoint = y;
+					anyPoints = true;
+				}
+			}
+			if (anyPoints)
+			{
+				thicknessTotal += Math.abs(maxPoint - minPoint);
+				count++;
+			}
+		}
+
+		double thickness = 0;
+		if (count > 0) thickness = (thicknessTotal / count);
+
+		if (maxPerim < contourImage.cols() * 5) thickness = 0;
+
+		return thickness;
+	}
+
+	@Test
+	public void testThicknessMatchesReferenceOnSampleImages()
+	{
+		Size processingResolution = Engine.getInstance().processingResolution;
+
+		int stringImageHeight = (int) (processingResolution.height / 2);
+		int[] stringImageWidths = {60, 240, 960};
+		int bandsPerImage = 4;
+
+		PluckDetector detector = new PluckDetector();
+
+		int stringsFound = 0;
+
+		for(int imageNumber = 2; imageNumber <= 6; imageNumber++)
+		{
+			Mat image = Imgcodecs.imread("resources/images/guitar" + imageNumber + ".png");
+
+			assertFalse(image.empty());
+
+			Imgproc.resize(image, image, processingResolution);
+
+			for(int width : stringImageWidths)
+			{
+				for(int band = 0; band < bandsPerImage; band++)
+				{
+					int x = (int) ((image.cols() - width) * band / (double) bandsPerImage);
+					int y = (int) ((image.rows() - stringImageHeight) * band / (double) bandsPerImage);
+
+					//A view, as the detector is given views of the rectified neck
+					Mat stringImage = new Mat(image, new Rect(x, y, width, stringImageHeight));
+
+					Double expected = referenceThickness(stringImage);
+
+					assertEquals("guitar" + imageNumber + " band " + band + " of width " + width, expected, detector.getThicknessFromStringImage(stringImage));
+
+					if (expected > 0) stringsFound++;
+				}
+			}
+		}
+
+		assertTrue(stringsFound > 0);
+	}
+}
@@ -0,0 +1,116 @@
+package guitarvision.detection;
+
+import static org.junit.Assert.*;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+public class SkinDetectorTest {
+	@BeforeClass
+	public static void loadOpenCV()
+	{
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+	}
+	
+	//The per-pixel rule used by SkinDetector.getSkin before the saturation lookup table was introduced
+	private boolean referenceSkinRule(double h, double s, double v)
+	{
+		h = (h * 360.0) / 179.0;
+		s = (s * 100.0) / 255.0;
+		v = (v * 100.0) / 255.0;
+		
+		if (h > 180)
+		{
+			h = h - 360.0;
+		}
+		
+		boolean skin = false;
+		
+		if ((s >= 10) && (v >= 40) && (s <= (-1 * h) + (-1 * 0.1 * v) + 110) && (h <= (-1 * 0.4 * v) + 75))
+		{
+			if (h >= 0)
+			{
+				if (s <= (0.08 * (100 - v) * h) + (0.5 * v))
+				{
+					skin = true;
+				}
+			}
+			
+			if (h <= 0)
+			{
+				if (s <= (0.5 * h) + 35)
+				{
+					skin = true;
+				}
+			}
+		}
+		
+		return skin;
+	}
+	
+	@Test
+	public void testLookUpMatchesRuleForEveryColour()
+	{
+		int skinColours = 0;
+		
+		for(int h = 0; h < 180; h++)
+		{
+			for(int s = 0; s < 256; s++)
+			{
+				for(int v = 0; v < 256; v++)
+				{
+					boolean expected = referenceSkinRule(h, s, v);
+					
+					if (expected != SkinDetector.lookUpSkinColour(h, s, v))
+					{
+						fail("Skin classification differs for HSV (" + h + "," + s + "," + v + ")");
+					}
+					
+					if (expected) skinColours++;
+				}
+			}
+		}
+		
+		assertTrue(skinColours > 0);
+	}
+	
+	@Test
+	public void testSkinMatchesRuleOnSampleImage()
+	{
+		Mat image = Imgcodecs.imread("resources/images/guitar2.png");
+		
+		assertFalse(image.empty());
+		
+		//Classify each pixel with the rule, as getSkin did before the lookup table
+		Mat expectedSkin = new Mat();
+		Imgproc.cvtColor(image, expectedSkin, Imgproc.COLOR_BGR2HSV);
+		
+		byte[] pixels = new byte[(int) expectedSkin.total() * 3];
+		expectedSkin.get(0, 0, pixels);
+		
+		for(int index = 0; index < pixels.length; index += 3)
+		{
+			byte colour = referenceSkinRule(pixels[index] & 0xFF, pixels[index + 1] & 0xFF, pixels[index + 2] & 0xFF) ? (byte) 255 : 0;
+			
+			pixels[index] = colour;
+			pixels[index + 1] = colour;
+			pixels[index + 2] = colour;
+		}
+		
+		expectedSkin.put(0, 0, pixels);
+		
+		SkinDetector detector = new SkinDetector();
+		
+		detector.smoothDetectedSkin(expectedSkin);
+		
+		Mat difference = new Mat();
+		Core.absdiff(expectedSkin, detector.getSkin(image), difference);
+		
+		assertEquals(0, Core.countNonZero(difference.reshape(1)));
+		assertTrue(Core.countNonZero(expectedSkin.reshape(1)) > 0);
+	}
+}
@@ -0,0 +1,146 @@
+package guitarvision.detection;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+public class SkinMaskTest {
+	@BeforeClass
+	public static void loadOpenCV()
+	{
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+	}
+
+	//Single channel mask with about half of its pixels set
+	private Mat randomMask(int rows, int cols)
+	{
+		Mat mask = new Mat(rows, cols, CvType.CV_8UC1);
+		Core.setRNGSeed(50);
+		Core.randu(mask, 0, 256);
+		Imgproc.threshold(mask, mask, 127, 255, Imgproc.THRESH_BINARY);
+		return mask;
+	}
+
+	//The skin pixels on a line drawn by OpenCV, which SkinMask.countSkinPixelsOnLine should visit in the same way
+	private int referenceCount(Mat mask, Point startPoint, Point endPoint)
+	{
+		Mat line = Mat.zeros(mask.size(), CvType.CV_8UC1);
+		Imgproc.line(line, startPoint, endPoint, new Scalar(255), 1, Imgproc.LINE_8, 0);
+
+		Core.bitwise_and(line, mask, line);
+
+		return Core.countNonZero(line);
+	}
+
+	private ArrayList<Point[]> createSegments(int rows, int cols)
+	{
+		ArrayList<Point[]> segments = new ArrayList<Point[]>();
+
+		//Vertical, horizontal, steep, shallow and zero length lines, with fractional end points
+		segments.add(new Point[] {new Point(10.7, 0), new Point(10.2, rows - 1)});
+		segments.add(new Point[] {new Point(0, 20.9), new Point(cols - 1, 20.1)});
+		segments.add(new Point[] {new Point(30.5, 2.5), new Point(35.9, rows - 3.5)});
+		segments.add(new Point[] {new Point(cols - 2.2, 5.6), new Point(3.3, 12.8)});
+		segments.add(new Point[] {new Point(40.4, 30.6), new Point(40.9, 30.1)});
+		segments.add(new Point[] {new Point(cols - 1, rows - 1), new Point(0, 0)});
+
+		//Lines partly off the image, through each side and corner
+		segments.add(new Point[] {new Point(-20.5, 15.2), new Point(cols + 20.7, 40.3)});
+		segments.add(new Point[] {new Point(25.1, -30.8), new Point(60.6, rows + 25.4)});
+		segments.add(new Point[] {new Point(-10, -10), new Point(cols + 10, rows + 10)});
+		segments.add(new Point[] {new Point(cols + 5.5, -7.5), new Point(-9.5, rows + 3.5)});
+		segments.add(new Point[] {new Point(50.5, 20.5), new Point(cols + 40.5, rows + 90.5)});
+		segments.add(new Point[] {new Point(-0.9, 10), new Point(-0.9, 30)});
+
+		//Lines wholly off the image
+		segments.add(new Point[] {new Point(-20, -5), new Point(cols + 20, -1)});
+		segments.add(new Point[] {new Point(cols + 1, 0), new Point(cols + 30, rows)});
+		segments.add(new Point[] {new Point(-50, rows + 40), new Point(-1, rows + 1)});
+		segments.add(new Point[] {new Point(-30, rows - 5), new Point(5, rows + 40)});
+
+		//Random segments, some ending off the image
+		Random random = new Random(50);
+
+		for(int segment = 0; segment < 2000; segment++)
+		{
+			Point[] points = new Point[2];
+
+			for(int point = 0; point < 2; point++)
+			{
+				points[point] = new Point((random.nextDouble() * (cols + 60)) - 30, (random.nextDouble() * (rows + 60)) - 30);
+			}
+
+			segments.add(points);
+		}
+
+		return segments;
+	}
+
+	@Test
+	public void testCountMatchesDrawnLines()
+	{
+		int rows = 61;
+		int cols = 97;
+
+		Mat mask = randomMask(rows, cols);
+
+		//The skin images of SkinDetector have three channels, which are all the same
+		Mat skinImage = new Mat();
+		Imgproc.cvtColor(mask, skinImage, Imgproc.COLOR_GRAY2BGR);
+
+		SkinMask skin = new SkinMask(skinImage);
+		SkinMask singleChannelSkin = new SkinMask(mask);
+
+		for(Point[] segment : createSegments(rows, cols))
+		{
+			int expected = referenceCount(mask, segment[0], segment[1]);
+
+			String description = segment[0] + " to " + segment[1];
+
+			assertEquals(description, expected, skin.countSkinPixelsOnLine(segment[0], segment[1]));
+			assertEquals(description, expected, singleChannelSkin.countSkinPixelsOnLine(segment[0], segment[1]));
+		}
+	}
+
+	@Test
+	public void testReleasedPixelsAreReused()
+	{
+		Mat mask = randomMask(61, 97);
+
+		ConcurrentLinkedQueue<byte[]> pixelBuffers = new ConcurrentLinkedQueue<byte[]>();
+
+		SkinMask skin = new SkinMask(mask, pixelBuffers);
+
+		Point start = new Point(0, 0);
+		Point end = new Point(96, 60);
+
+		int count = skin.countSkinPixelsOnLine(start, end);
+
+		skin.release();
+
+		assertEquals(1, pixelBuffers.size());
+
+		//A mask of the same size takes the released copy, and a mask of another size allocates its own
+		SkinMask nextSkin = new SkinMask(mask, pixelBuffers);
+
+		assertEquals(0, pixelBuffers.size());
+		assertEquals(count, nextSkin.countSkinPixelsOnLine(start, end));
+
+		SkinMask smallerSkin = new SkinMask(randomMask(30, 40), pixelBuffers);
+		smallerSkin.release();
+		nextSkin.release();
+
+		assertEquals(2, pixelBuffers.size());
+	}
+}
@@ -0,0 +1,111 @@
+package guitarvision.memory;
+
+import static org.junit.Assert.*;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+public class MatArenaTest {
+	@BeforeClass
+	public static void loadOpenCV()
+	{
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+	}
+
+	@Test
+	public void testMatsAreRecycledInAllocationOrder()
+	{
+		MatPool pool = new MatPool();
+
+		MatArena arena = pool.newArena(0);
+		Mat first = arena.newMat();
+		Mat second = arena.newMat();
+		first.create(4, 4, CvType.CV_8UC1);
+		second.create(8, 8, CvType.CV_8UC3);
+		arena.release();
+
+		//The next frame is given the same Mats in the same order, with their memory
+		MatArena nextArena = pool.newArena(1);
+		assertSame(first, nextArena.newMat());
+		assertSame(second, nextArena.newMat());
+		assertEquals(64, second.total());
+		assertNotSame(first, nextArena.newMat());
+		nextArena.release();
+
+		pool.release();
+
+		assertTrue(first.empty());
+		assertTrue(second.empty());
+	}
+
+	@Test
+	public void testTrackedMatsAreReleased()
+	{
+		MatArena arena = new MatArena(null, 0);
+
+		MatArena previousArena = MatArena.setCurrent(arena);
+
+		Mat tracked = MatArena.track(Mat.eye(3, 3, CvType.CV_64F));
+		Mat allocated = MatArena.allocate();
+		allocated.create(2, 2, CvType.CV_8UC1);
+
+		MatArena.setCurrent(previousArena);
+
+		assertEquals(2, arena.getNumberOfMats());
+		assertEquals((9 * 8) + 4, arena.getBytes());
+
+		arena.release();
+
+		assertTrue(tracked.empty());
+		assertTrue(allocated.empty());
+		assertEquals(0, arena.getNumberOfMats());
+	}
+
+	@Test
+	public void testLeakReport()
+	{
+		MatLeakRegistry registry = new MatLeakRegistry();
+		MatLeakRegistry otherRegistry = new MatLeakRegistry();
+
+		MatLeakRegistry previousRegistry = MatLeakRegistry.setCurrent(registry);
+
+		try
+		{
+			MatArena releasedArena = new MatArena(null, 1, registry);
+			releasedArena.newMat();
+			releasedArena.release();
+
+			MatArena leakedArena = new MatArena(null, 2, registry);
+			leakedArena.newMat();
+
+			//An arena of another transcription
+			MatArena otherArena = new MatArena(null, 3, otherRegistry);
+
+			//No arena is set for this thread
+			MatArena.allocate();
+
+			String report = registry.getReport();
+
+			assertNotNull(report);
+			assertFalse(report.contains("frame 1 "));
+			assertFalse(report.contains("frame 3 "));
+			assertTrue(report.contains("Arena of frame 2 not released: 1 Mats"));
+			assertTrue(report.contains("MatArenaTest.testLeakReport"));
+
+			assertTrue(otherRegistry.getReport().contains("Arena of frame 3 not released: 0 Mats"));
+			assertFalse(otherRegistry.getReport().contains("without an arena"));
+
+			leakedArena.release();
+			otherArena.release();
+
+			assertNull(otherRegistry.getReport());
+		}
+		finally
+		{
+			MatLeakRegistry.setCurrent(previousRegistry);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package guitarvision.profiling;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TranscriptionProfileTest {
+	@Test
+	public void testHistogramPercentiles()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		//1 to 100 milliseconds
+		for(int milliseconds = 1; milliseconds <= 100; milliseconds++)
+		{
+			histogram.record(milliseconds * 1000000L);
+		}
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(50.5e6, histogram.getMeanNanoseconds(), 1e-6);
+		assertEquals(1000000L, histogram.getMinimumNanoseconds());
+		assertEquals(100000000L, histogram.getMaximumNanoseconds());
+
+		//Percentiles are bucket upper bounds, which are at most 19% above the exact value
+		assertEquals(50e6, histogram.getPercentileNanoseconds(50), 50e6 * 0.19);
+		assertEquals(90e6, histogram.getPercentileNanoseconds(90), 90e6 * 0.19);
+		assertEquals(100e6, histogram.getPercentileNanoseconds(100), 0);
+	}
+
+	@Test
+	public void testStagesAreOnlyCountedForFramesThatRanThem()
+	{
+		TranscriptionProfile profile = new TranscriptionProfile();
+
+		FrameProfile warmUpFrame = profile.addFrame(0);
+		warmUpFrame.setWarmUp(true);
+		warmUpFrame.addTime(ProcessingStage.EDGES, 4000);
+
+		FrameProfile frame = profile.addFrame(0);
+		frame.addTime(ProcessingStage.EDGES, 1000);
+		frame.addTime(ProcessingStage.EDGES, 2000);
+		frame.addTime(ProcessingStage.NOTES, 500);
+		frame.addCount(ProfileCounter.STRING_HOUGH_LINES, 20);
+
+		assertEquals(2, profile.getHistogram(ProcessingStage.EDGES).getCount());
+		assertEquals(7000, profile.getHistogram(ProcessingStage.EDGES).getTotalNanoseconds());
+		assertEquals(1, profile.getHistogram(ProcessingStage.NOTES).getCount());
+		assertEquals(0, profile.getHistogram(ProcessingStage.DECODE).getCount());
+		assertEquals(20, profile.getTotal(ProfileCounter.STRING_HOUGH_LINES));
+
+		assertTrue(profile.getFrames().get(0).isWarmUp());
+	}
+}
@@ -0,0 +1,98 @@
+package guitarvision.sheetmusic;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import org.junit.Test;
+
+public class SheetMusicTest {
+	//Notes starting and finishing at the given times in milliseconds, found in frames sampled at the given interval
+	private SheetMusic transcribe(double[][] times, double millisecondsPerFrame)
+	{
+		SheetMusic music = new SheetMusic();
+
+		for(double[] time : times)
+		{
+			MusicNote note = new MusicNote(4, 4, 0, (int) Math.round(time[0] / millisecondsPerFrame));
+			note.setEndingFrame((int) Math.round(time[1] / millisecondsPerFrame));
+			note.startingTime = time[0];
+			note.setEndingTime(time[1]);
+
+			if (music.getNotes().size() == 0)
+			{
+				music.setTimingFromFirstNote(note, 4);
+			}
+
+			music.addNote(note);
+		}
+
+		return music;
+	}
+
+	private ArrayList<Long> getNoteTicks(File midiFile) throws Exception
+	{
+		ArrayList<Long> ticks = new ArrayList<Long>();
+
+		Sequence sequence = MidiSystem.getSequence(midiFile);
+
+		for(Track track : sequence.getTracks())
+		{
+			for(int index = 0; index < track.size(); index++)
+			{
+				MidiEvent event = track.get(index);
+
+				if (event.getMessage() instanceof ShortMessage)
+				{
+					ticks.add(event.getTick());
+				}
+			}
+		}
+
+		return ticks;
+	}
+
+	@Test
+	public void testTimedNotesDoNotDependOnSampling() throws Exception
+	{
+		double[][] times = {{1000, 2000}, {2500, 3000}, {4000, 6000}};
+
+		File everyFrame = File.createTempFile("every_frame", "");
+		File everyThirdFrame = File.createTempFile("every_third_frame", "");
+
+		try
+		{
+			//Every frame of a 30 frames per second video, and every third frame
+			File everyFrameMidi = transcribe(times, 1000.0 / 30).writeFile(everyFrame.getPath());
+			File everyThirdFrameMidi = transcribe(times, 3000.0 / 30).writeFile(everyThirdFrame.getPath());
+
+			ArrayList<Long> ticks = getNoteTicks(everyFrameMidi);
+
+			//The first note lasts four ticks, so a second is four ticks
+			assertEquals(6, ticks.size());
+			assertEquals(0, (long) ticks.get(0));
+			assertEquals(4, (long) ticks.get(1));
+			assertEquals(6, (long) ticks.get(2));
+			assertEquals(8, (long) ticks.get(3));
+			assertEquals(12, (long) ticks.get(4));
+			assertEquals(20, (long) ticks.get(5));
+
+			assertEquals(ticks, getNoteTicks(everyThirdFrameMidi));
+
+			everyFrameMidi.delete();
+			everyThirdFrameMidi.delete();
+		}
+		finally
+		{
+			everyFrame.delete();
+			everyThirdFrame.delete();
+		}
+	}
+}
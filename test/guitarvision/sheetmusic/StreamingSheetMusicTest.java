@@ -0,0 +1,142 @@
+package guitarvision.sheetmusic;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Track;
+
+import org.junit.Test;
+
+public class StreamingSheetMusicTest {
+	//Notes given as starting frame, ending frame and string, with the second and third overlapping
+	private static final int[][] NOTES = {{10, 14, 0}, {20, 40, 1}, {24, 30, 2}, {30, 34, 3}, {60, 62, 4}};
+
+	//Play the notes into the sheet music frame by frame, as FrameProcessor does
+	private void transcribe(SheetMusic music, int frames, File partialFile, int partialFrame, ArrayList<String> partialEvents) throws Exception
+	{
+		ArrayList<MusicNote> heldNotes = new ArrayList<MusicNote>(Arrays.asList(new MusicNote[6]));
+
+		boolean firstNote = true;
+
+		for(int frame = 0; frame < frames; frame++)
+		{
+			for(int[] note : NOTES)
+			{
+				if (note[0] == frame)
+				{
+					MusicNote heldNote = new MusicNote(note[2], 4, note[2], frame);
+					heldNote.startingTime = frame * 100.0;
+					heldNotes.set(note[2], heldNote);
+				}
+				else if (note[1] == frame)
+				{
+					MusicNote heldNote = heldNotes.get(note[2]);
+					heldNote.setEndingFrame(frame);
+					heldNote.setEndingTime(frame * 100.0);
+
+					if (firstNote)
+					{
+						music.setTimingFromFirstNote(heldNote, 4);
+						firstNote = false;
+					}
+
+					music.addNote(heldNote);
+					heldNotes.set(note[2], null);
+				}
+			}
+
+			music.frameProcessed(frame, frame * 100.0, heldNotes);
+
+			if (frame == partialFrame)
+			{
+				partialEvents.addAll(getEvents(partialFile));
+			}
+		}
+	}
+
+	//Tick and bytes of each event in the file
+	private ArrayList<String> getEvents(File midiFile) throws Exception
+	{
+		ArrayList<String> events = new ArrayList<String>();
+
+		Sequence sequence = MidiSystem.getSequence(midiFile);
+
+		for(Track track : sequence.getTracks())
+		{
+			for(int index = 0; index < track.size(); index++)
+			{
+				MidiEvent event = track.get(index);
+				events.add(event.getTick() + " " + Arrays.toString(event.getMessage().getMessage()));
+			}
+		}
+
+		return events;
+	}
+
+	@Test
+	public void testStreamedFileMatchesWrittenFile() throws Exception
+	{
+		File writtenName = File.createTempFile("written", "");
+		File streamedName = File.createTempFile("streamed", "");
+		File streamedFile = new File(streamedName.getPath() + ".mid");
+
+		try
+		{
+			SheetMusic music = new SheetMusic();
+			transcribe(music, 70, null, -1, null);
+			File writtenFile = music.writeFile(writtenName.getPath());
+
+			//Part way through, while the note on string 1 is held, the file is valid and has only the first note
+			StreamingSheetMusic streamingMusic = new StreamingSheetMusic(streamedName.getPath());
+			streamingMusic.setFlushInterval(1);
+
+			ArrayList<String> partialEvents = new ArrayList<String>();
+			transcribe(streamingMusic, 70, streamedFile, 35, partialEvents);
+
+			assertEquals(0, streamingMusic.getNotes().size());
+			assertEquals(streamedFile, streamingMusic.writeFile(streamedName.getPath()));
+
+			ArrayList<String> writtenEvents = getEvents(writtenFile);
+
+			assertEquals(16, writtenEvents.size());
+			assertEquals(writtenEvents, getEvents(streamedFile));
+
+			//The three events of the first note, and the end of the track
+			assertEquals(4, partialEvents.size());
+			assertEquals(writtenEvents.subList(0, 3), partialEvents.subList(0, 3));
+
+			writtenFile.delete();
+		}
+		finally
+		{
+			writtenName.delete();
+			streamedName.delete();
+			streamedFile.delete();
+		}
+	}
+
+	@Test
+	public void testEmptyFileIsValid() throws Exception
+	{
+		File streamedName = File.createTempFile("empty", "");
+
+		try
+		{
+			File streamedFile = new StreamingSheetMusic(streamedName.getPath()).writeFile(null);
+
+			assertEquals(1, getEvents(streamedFile).size());
+
+			streamedFile.delete();
+		}
+		finally
+		{
+			streamedName.delete();
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package guitarvision.synthetic;
+
+/**
+ * A note played in a synthetic scene: a finger held on a fret of a string while the string vibrates
+ */
+public class ScriptedNote {
+	//Number of the string, 0 is the low E string at the top of the neck
+	public int string;
+	//Number of the fret held down, 0 for the open string
+	public int fret;
+	//Video frames that the note starts on and finishes before
+	public int startFrame;
+	public int endFrame;
+
+	public ScriptedNote(int string, int fret, int startFrame, int endFrame)
+	{
+		this.string = string;
+		this.fret = fret;
+		this.startFrame = startFrame;
+		this.endFrame = endFrame;
+	}
+
+	public boolean isPlayingAt(int frame)
+	{
+		return frame >= startFrame && frame < endFrame;
+	}
+}
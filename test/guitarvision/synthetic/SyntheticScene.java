@@ -0,0 +1,78 @@
+package guitarvision.synthetic;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Parameters of a synthetic guitar video and the notes played in it.
+ * Distances on the neck are in pixels of the neck before the perspective is applied, which are roughly pixels of the frame.
+ */
+public class SyntheticScene {
+	public int width = 1280;
+	public int height = 720;
+	public double fps = 30;
+	public int numberOfFrames = 300;
+
+	//Length of the visible neck and distance between the outer strings, as fractions of the frame width and height
+	public double neckLengthFactor = 0.9;
+	public double neckWidthFactor = 0.18;
+
+	//Anticlockwise rotation of the neck in the frame
+	public double tiltDegrees = 8;
+	//How much narrower the far (left) end of the neck appears than the near end, as a fraction
+	public double perspective = 0.15;
+
+	//Brightness multiplier applied to the whole frame, below 1 for a poorly lit scene
+	public double lighting = 1.0;
+	//Standard deviation of the sensor noise added to each frame
+	public double noise = 4;
+
+	//Number of frets visible on the neck, after the nut
+	public int numberOfFrets = 12;
+
+	//Thickness of the high E string, the other strings get up to twice as thick towards the low E string
+	public double stringThickness = 2;
+	//A vibrating string is blurred into a band either side of it, as wide as this fraction of the distance between strings,
+	//and the width of the band oscillates at this frequency
+	public double vibrationAmplitude = 0.15;
+	public double vibrationFrequency = 7;
+
+	//Seed for the sensor noise
+	public int seed = 50;
+
+	public ArrayList<ScriptedNote> notes = new ArrayList<ScriptedNote>();
+
+	/**
+	 * Script random notes, with no two notes on the same string at the same time
+	 * @param number of notes started per second
+	 * @param highest fret played
+	 * @param seed for the note choices
+	 */
+	public void addRandomNotes(double notesPerSecond, int highestFret, long seed)
+	{
+		Random random = new Random(seed);
+
+		int[] stringFreeFrame = new int[6];
+
+		//The strings are still for the first half second, as the transcription measures their thickness in the first frame
+		int firstFrame = Math.min(numberOfFrames, (int) Math.round(fps * 0.5));
+
+		int numberOfNotes = (int) Math.round(notesPerSecond * (numberOfFrames - firstFrame) / fps);
+
+		for(int noteIndex = 0; noteIndex < numberOfNotes; noteIndex++)
+		{
+			int startFrame = firstFrame + (int) ((long) noteIndex * (numberOfFrames - firstFrame) / numberOfNotes);
+			//Notes last between a third of a second and a second
+			int endFrame = Math.min(numberOfFrames, startFrame + (int) Math.round(fps * (0.33 + 0.67 * random.nextDouble())));
+
+			int string = random.nextInt(6);
+
+			//Leave a gap after the previous note on the string so that the string stops vibrating
+			if (stringFreeFrame[string] > startFrame) continue;
+
+			notes.add(new ScriptedNote(string, random.nextInt(highestFret + 1), startFrame, endFrame));
+
+			stringFreeFrame[string] = endFrame + (int) Math.round(fps * 0.2);
+		}
+	}
+}
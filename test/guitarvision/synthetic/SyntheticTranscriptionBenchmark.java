@@ -0,0 +1,110 @@
+package guitarvision.synthetic;
+
+import java.io.File;
+
+import guitarvision.Engine;
+import guitarvision.OutputFileReferences;
+import guitarvision.VideoFrameSource;
+import guitarvision.sheetmusic.MusicStatistics;
+import guitarvision.sheetmusic.SheetComparator;
+
+import org.opencv.core.Core;
+
+/**
+ * Transcribes synthetic videos over a sweep of resolutions, tilts, lighting levels and note densities,
+ * printing the processing rate and the accuracy against the ground truth of each video.
+ * As every video is generated from fixed seeds, results can be compared between versions of the engine.
+ */
+public class SyntheticTranscriptionBenchmark {
+	String outputDirectoryName = "test_output" + File.separator + "synthetic";
+
+	//Seconds of video to generate for each scene
+	double seconds = 10;
+
+	int firstNoteDuration = 4;
+
+	/**
+	 * Generate a scene, transcribe it and print the results
+	 * @param name of the scene, used for the output files
+	 * @param scene to generate, whose notes are added here
+	 * @param number of notes started per second
+	 */
+	public void runScene(String name, SyntheticScene scene, double notesPerSecond)
+	{
+		scene.numberOfFrames = (int) Math.round(seconds * scene.fps);
+		scene.addRandomNotes(notesPerSecond, 7, 50);
+
+		String sceneDirectoryName = outputDirectoryName + File.separator + name;
+		new File(sceneDirectoryName).mkdirs();
+
+		SyntheticVideoGenerator generator = new SyntheticVideoGenerator(scene);
+
+		File video = generator.writeVideo(sceneDirectoryName + File.separator + name + ".avi");
+		File groundTruth = generator.writeGroundTruth(sceneDirectoryName + File.separator + name + "_truth", firstNoteDuration);
+
+		long startTime = System.nanoTime();
+
+		OutputFileReferences output = Engine.getInstance().transcribeFromVideo(video, scene.numberOfFrames / VideoFrameSource.FRAME_STEP, sceneDirectoryName, firstNoteDuration, scene.lighting < 1, false);
+
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+
+		if (output == null || output.getMidiFile() == null)
+		{
+			System.out.println(name + ",transcription failed");
+			return;
+		}
+
+		MusicStatistics statistics = new SheetComparator().compareFiles(groundTruth, output.getMidiFile());
+		statistics.name = name;
+
+		double framesPerSecond = (scene.numberOfFrames / VideoFrameSource.FRAME_STEP) / seconds;
+
+		System.out.println(statistics.tableRecordText() + "," + scene.notes.size() + "," + String.format("%.2f", framesPerSecond));
+	}
+
+	public void runAll()
+	{
+		System.out.println(MusicStatistics.tableHeader + ",Notes played,Processed frames per second");
+
+		int[][] resolutions = {{640, 360}, {1280, 720}, {1920, 1080}};
+
+		for(int[] resolution : resolutions)
+		{
+			SyntheticScene scene = new SyntheticScene();
+			scene.width = resolution[0];
+			scene.height = resolution[1];
+			runScene("resolution_" + resolution[0] + "x" + resolution[1], scene, 2);
+		}
+
+		for(double tilt : new double[] {0, 15})
+		{
+			SyntheticScene scene = new SyntheticScene();
+			scene.tiltDegrees = tilt;
+			runScene("tilt_" + (int) tilt, scene, 2);
+		}
+
+		SyntheticScene darkScene = new SyntheticScene();
+		darkScene.lighting = 0.5;
+		runScene("lighting_dark", darkScene, 2);
+
+		for(double notesPerSecond : new double[] {1, 4})
+		{
+			SyntheticScene scene = new SyntheticScene();
+			runScene("density_" + (int) notesPerSecond, scene, notesPerSecond);
+		}
+	}
+
+	public static void main(String[] args)
+	{
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+		SyntheticTranscriptionBenchmark benchmark = new SyntheticTranscriptionBenchmark();
+
+		if (args.length > 0)
+		{
+			benchmark.seconds = Double.parseDouble(args[0]);
+		}
+
+		benchmark.runAll();
+	}
+}
@@ -0,0 +1,357 @@
+package guitarvision.synthetic;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+import guitarvision.VideoFrameSource;
+import guitarvision.sheetmusic.MusicNote;
+import guitarvision.sheetmusic.SheetMusic;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.videoio.VideoWriter;
+
+/**
+ * Renders a synthetic video of a guitar neck being played, along with the MIDI file of the notes played in it.
+ * The neck is drawn flat with the strings horizontal and the nut on the right, then placed in the frame with a perspective
+ * transform, so every line on the neck stays straight. The frets are spaced by the twelfth root of two rule, fingers are
+ * skin coloured ellipses just behind the fret held down, and a vibrating string is drawn inside a band of blur that
+ * oscillates in width.
+ */
+public class SyntheticVideoGenerator {
+	//Pitch of each open string, in the units of MusicNote (note + octave * 12)
+	private static final int[] OPEN_STRING_PITCHES = {52, 57, 62, 67, 71, 76};
+
+	//Colours in BGR order. The wood is too dark to be detected as skin.
+	private static final Scalar BACKGROUND_COLOUR = new Scalar(70, 65, 60);
+	private static final Scalar WOOD_COLOUR = new Scalar(25, 45, 85);
+	private static final Scalar FRET_COLOUR = new Scalar(175, 175, 185);
+	private static final Scalar NUT_COLOUR = new Scalar(215, 220, 225);
+	private static final Scalar STRING_COLOUR = new Scalar(205, 205, 205);
+	private static final Scalar VIBRATION_COLOUR = new Scalar(150, 155, 165);
+	private static final Scalar SKIN_COLOUR = new Scalar(130, 170, 230);
+
+	//Polygons are drawn with this many fractional bits, so that thin lines keep their thickness
+	private static final int SHIFT = 4;
+
+	private SyntheticScene scene;
+
+	//Size of the flat neck
+	private double neckLength;
+	private double neckWidth;
+	private double stringSpacing;
+
+	//Positions along the flat neck of the nut (fret 0) and each fret
+	private double[] fretPositions;
+
+	//Perspective transform from the flat neck to the frame
+	private Mat neckToFrame;
+
+	public SyntheticVideoGenerator(SyntheticScene scene)
+	{
+		this.scene = scene;
+
+		neckLength = scene.neckLengthFactor * scene.width;
+		stringSpacing = (scene.neckWidthFactor * scene.height) / 5;
+		neckWidth = stringSpacing * 6;
+
+		//Fret n is 1 - 2^(-n/12) of the scale length from the nut, and the last fret is just inside the far end of the neck
+		double nutPosition = neckLength * 0.97;
+		double scaleLength = (nutPosition - (neckLength * 0.04)) / (1 - Math.pow(2, -scene.numberOfFrets / 12.0));
+
+		fretPositions = new double[scene.numberOfFrets + 1];
+
+		for(int fret = 0; fret <= scene.numberOfFrets; fret++)
+		{
+			fretPositions[fret] = nutPosition - (scaleLength * (1 - Math.pow(2, -fret / 12.0)));
+		}
+
+		neckToFrame = getNeckToFrameTransform();
+	}
+
+	/**
+	 * Place the flat neck in the centre of the frame, narrowed at the far end and rotated by the tilt
+	 */
+	private Mat getNeckToFrameTransform()
+	{
+		double centreX = scene.width / 2.0;
+		double centreY = scene.height / 2.0;
+
+		double nearHalfWidth = neckWidth / 2;
+		double farHalfWidth = nearHalfWidth * (1 - scene.perspective);
+
+		Point[] frameCorners = new Point[] {
+			new Point(-neckLength / 2, -farHalfWidth),
+			new Point(neckLength / 2, -nearHalfWidth),
+			new Point(neckLength / 2, nearHalfWidth),
+			new Point(-neckLength / 2, farHalfWidth)
+		};
+
+		double angle = Math.toRadians(scene.tiltDegrees);
+
+		for(Point corner : frameCorners)
+		{
+			double x = corner.x;
+			double y = corner.y;
+
+			//Anticlockwise on screen, where y points down
+			corner.x = centreX + (x * Math.cos(angle)) + (y * Math.sin(angle));
+			corner.y = centreY - (x * Math.sin(angle)) + (y * Math.cos(angle));
+		}
+
+		MatOfPoint2f neckCorners = new MatOfPoint2f(new Point(0, 0), new Point(neckLength, 0), new Point(neckLength, neckWidth), new Point(0, neckWidth));
+
+		return Imgproc.getPerspectiveTransform(neckCorners, new MatOfPoint2f(frameCorners));
+	}
+
+	/**
+	 * @param string number
+	 * @return distance of the string from the top edge of the flat neck
+	 */
+	private double getStringPosition(int string)
+	{
+		return stringSpacing * (string + 0.5);
+	}
+
+	/**
+	 * Fill a polygon given in flat neck coordinates
+	 */
+	private void fillNeckPolygon(Mat frame, Point[] neckPoints, Scalar colour)
+	{
+		MatOfPoint2f framePoints = new MatOfPoint2f();
+		Core.perspectiveTransform(new MatOfPoint2f(neckPoints), framePoints, neckToFrame);
+
+		Point[] points = framePoints.toArray();
+
+		for(Point point : points)
+		{
+			point.x = Math.round(point.x * (1 << SHIFT));
+			point.y = Math.round(point.y * (1 << SHIFT));
+		}
+
+		Imgproc.fillConvexPoly(frame, new MatOfPoint(points), colour, Imgproc.LINE_AA, SHIFT);
+	}
+
+	/**
+	 * Fill a rectangle of the flat neck
+	 */
+	private void fillNeckRectangle(Mat frame, double left, double top, double right, double bottom, Scalar colour)
+	{
+		fillNeckPolygon(frame, new Point[] {new Point(left, top), new Point(right, top), new Point(right, bottom), new Point(left, bottom)}, colour);
+	}
+
+	/**
+	 * Draw a frame of the video
+	 * @param number of the video frame
+	 * @param image to draw into, of the scene size
+	 */
+	public void renderFrame(int frameNumber, Mat frame)
+	{
+		frame.setTo(BACKGROUND_COLOUR);
+
+		fillNeckRectangle(frame, 0, 0, neckLength, neckWidth, WOOD_COLOUR);
+
+		//The nut is thicker than the frets
+		for(int fret = 0; fret < fretPositions.length; fret++)
+		{
+			double fretThickness = (fret == 0) ? 8 : 3;
+			fillNeckRectangle(frame, fretPositions[fret] - (fretThickness / 2), 0, fretPositions[fret] + (fretThickness / 2), neckWidth, (fret == 0) ? NUT_COLOUR : FRET_COLOUR);
+		}
+
+		double time = frameNumber / scene.fps;
+
+		for(int string = 0; string < 6; string++)
+		{
+			double position = getStringPosition(string);
+
+			for(ScriptedNote note : scene.notes)
+			{
+				if (note.string == string && note.isPlayingAt(frameNumber))
+				{
+					//The blur of the vibrating string is between the wood and the string in colour
+					double oscillation = 0.5 + (0.5 * Math.sin(2 * Math.PI * scene.vibrationFrequency * time));
+					double amplitude = scene.vibrationAmplitude * stringSpacing * (0.75 + (0.25 * oscillation));
+
+					fillNeckRectangle(frame, 0, position - amplitude, neckLength, position + amplitude, VIBRATION_COLOUR);
+				}
+			}
+
+			//The low E string is twice as thick as the high E string
+			double thickness = scene.stringThickness * (1 + ((5 - string) / 5.0));
+
+			fillNeckRectangle(frame, 0, position - (thickness / 2), neckLength, position + (thickness / 2), STRING_COLOUR);
+		}
+
+		for(ScriptedNote note : scene.notes)
+		{
+			if (note.fret > 0 && note.fret < fretPositions.length && note.isPlayingAt(frameNumber))
+			{
+				drawFinger(frame, note.string, note.fret);
+			}
+		}
+
+		if (scene.lighting != 1.0)
+		{
+			frame.convertTo(frame, -1, scene.lighting, 0);
+		}
+	}
+
+	/**
+	 * Draw a finger holding a string down behind a fret
+	 */
+	private void drawFinger(Mat frame, int string, int fret)
+	{
+		double fretSpace = fretPositions[fret - 1] - fretPositions[fret];
+
+		double centreX = fretPositions[fret] + (0.35 * fretSpace);
+		double centreY = getStringPosition(string);
+
+		double radiusX = 0.3 * fretSpace;
+		double radiusY = 0.6 * stringSpacing;
+
+		Point[] outline = new Point[32];
+
+		for(int x = 0; x < outline.length; x++)
+		{
+			double angle = (2 * Math.PI * x) / outline.length;
+			outline[x] = new Point(centreX + (radiusX * Math.cos(angle)), centreY + (radiusY * Math.sin(angle)));
+		}
+
+		fillNeckPolygon(frame, outline, SKIN_COLOUR);
+	}
+
+	/**
+	 * Render every frame of the scene to a video file
+	 * @param path of the video, which should have the .avi extension for the Motion JPEG codec
+	 * @return the written video
+	 */
+	public File writeVideo(String fileName)
+	{
+		VideoWriter writer = new VideoWriter(fileName, VideoWriter.fourcc('M', 'J', 'P', 'G'), scene.fps, new Size(scene.width, scene.height), true);
+
+		if (!writer.isOpened())
+		{
+			throw new IllegalStateException("Could not open video writer for " + fileName);
+		}
+
+		Mat frame = new Mat(scene.height, scene.width, CvType.CV_8UC3);
+		Mat noise = new Mat(scene.height, scene.width, CvType.CV_8UC3);
+
+		Core.setRNGSeed(scene.seed);
+
+		for(int frameNumber = 0; frameNumber < scene.numberOfFrames; frameNumber++)
+		{
+			renderFrame(frameNumber, frame);
+
+			if (scene.noise > 0)
+			{
+				//Noise centred on 128 is added and 128 taken away again, saturating at 0 and 255
+				Core.randn(noise, 128, scene.noise);
+				Core.addWeighted(frame, 1, noise, 1, -128, frame);
+			}
+
+			writer.write(frame);
+		}
+
+		writer.release();
+		frame.release();
+		noise.release();
+
+		return new File(fileName);
+	}
+
+	/**
+	 * Write the notes of the scene as a MIDI file, in the same way as a transcription of the video.
+	 * Frame numbers are converted to the processed frames of a transcription, and the timing is set from the first
+	 * note to finish, as the engine does.
+	 * @param path of the MIDI file, without the extension
+	 * @param firstNoteDuration - number of ticks that the first note lasts, as passed to the engine
+	 * @return the written MIDI file
+	 */
+	public File writeGroundTruth(String fileName, int firstNoteDuration)
+	{
+		ArrayList<ScriptedNote> notesByEnd = new ArrayList<ScriptedNote>(scene.notes);
+
+		//The engine adds notes to the sheet music as they finish
+		Collections.sort(notesByEnd, new Comparator<ScriptedNote>() {
+			public int compare(ScriptedNote note1, ScriptedNote note2)
+			{
+				int comparison = Integer.compare(note1.endFrame, note2.endFrame);
+
+				if (comparison == 0)
+				{
+					comparison = Integer.compare(note1.string, note2.string);
+				}
+
+				return comparison;
+			}
+		});
+
+		SheetMusic music = new SheetMusic();
+
+		for(ScriptedNote scriptedNote : notesByEnd)
+		{
+			int pitch = OPEN_STRING_PITCHES[scriptedNote.string] + scriptedNote.fret;
+
+			MusicNote note = new MusicNote(pitch % 12, pitch / 12, scriptedNote.string, scriptedNote.startFrame / VideoFrameSource.FRAME_STEP);
+			note.setEndingFrame(scriptedNote.endFrame / VideoFrameSource.FRAME_STEP);
+			note.startingTime = (scriptedNote.startFrame * 1000.0) / scene.fps;
+			note.setEndingTime((scriptedNote.endFrame * 1000.0) / scene.fps);
+
+			if (music.getNotes().size() == 0)
+			{
+				music.setTimingFromFirstNote(note, firstNoteDuration);
+			}
+
+			music.addNote(note);
+		}
+
+		return music.writeFile(fileName);
+	}
+
+	/**
+	 * Write a synthetic video and its ground truth MIDI file
+	 * Arguments: output directory, then optionally width, height, duration in seconds, notes per second, tilt in degrees and lighting
+	 */
+	public static void main(String[] args)
+	{
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+		String outputDirectory = (args.length > 0) ? args[0] : "test_output";
+
+		SyntheticScene scene = new SyntheticScene();
+
+		if (args.length > 2)
+		{
+			scene.width = Integer.parseInt(args[1]);
+			scene.height = Integer.parseInt(args[2]);
+		}
+
+		double seconds = (args.length > 3) ? Double.parseDouble(args[3]) : 10;
+		double notesPerSecond = (args.length > 4) ? Double.parseDouble(args[4]) : 2;
+
+		if (args.length > 5) scene.tiltDegrees = Double.parseDouble(args[5]);
+		if (args.length > 6) scene.lighting = Double.parseDouble(args[6]);
+
+		scene.numberOfFrames = (int) Math.round(seconds * scene.fps);
+		scene.addRandomNotes(notesPerSecond, 7, 50);
+
+		new File(outputDirectory).mkdirs();
+
+		SyntheticVideoGenerator generator = new SyntheticVideoGenerator(scene);
+
+		File video = generator.writeVideo(outputDirectory + File.separator + "synthetic.avi");
+		File midi = generator.writeGroundTruth(outputDirectory + File.separator + "synthetic_truth", 4);
+
+		System.out.println("Wrote " + scene.notes.size() + " notes to " + video.getPath() + " and " + midi.getPath());
+	}
+}